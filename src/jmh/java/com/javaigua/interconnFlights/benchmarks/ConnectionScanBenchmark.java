@@ -0,0 +1,57 @@
+package com.javaigua.interconnFlights.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.javaigua.interconnFlights.algorithms.ConnectionScan;
+import com.javaigua.interconnFlights.domain.Route;
+
+/**
+ * Measures the connection scan search of one day between random pairs of airports of a synthetic network.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionScanBenchmark {
+
+  private static final int PAIRS = 1024;
+
+  @State(Scope.Thread)
+  public static class Queries {
+    ConnectionScan connectionScan;
+    int[] sources = new int[PAIRS];
+    int[] targets = new int[PAIRS];
+    long windowStart;
+    long windowEnd;
+    int next;
+
+    @Setup(Level.Trial)
+    public void createQueries(NetworkState state) {
+      connectionScan = new ConnectionScan(state.network.getRoutesByKey(), state.network.getSchedules(),
+        state.network.getFirstMonth(), state.network.getLastMonth());
+      LocalDateTime start = state.network.getFirstMonth().atDay(1).atTime(6, 0);
+      windowStart = ConnectionScan.toEpochMinute(start);
+      windowEnd = ConnectionScan.toEpochMinute(start.plusHours(18));
+      // departures and arrivals of random routes, so both airports have scheduled flights
+      List<Route> routes = state.network.getRoutes();
+      Random random = new Random(state.seed);
+      for (int i = 0; i < PAIRS; i++) {
+        sources[i] = connectionScan.indexOf(routes.get(random.nextInt(routes.size())).getAirportFrom());
+        targets[i] = connectionScan.indexOf(routes.get(random.nextInt(routes.size())).getAirportTo());
+      }
+    }
+  }
+
+  @Benchmark
+  public List<ConnectionScan.Journey> search(Queries queries) {
+    int i = queries.next++ & (PAIRS - 1);
+    return queries.connectionScan.search(queries.sources[i], queries.targets[i], queries.windowStart,
+      queries.windowEnd, 120, 1440);
+  }
+}
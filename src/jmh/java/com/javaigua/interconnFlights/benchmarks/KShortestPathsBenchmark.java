@@ -0,0 +1,58 @@
+package com.javaigua.interconnFlights.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.javaigua.interconnFlights.algorithms.CompactDigraph;
+import com.javaigua.interconnFlights.algorithms.KShortestPaths;
+import com.javaigua.interconnFlights.algorithms.SymbolDigraph;
+
+/**
+ * Measures the k-shortest paths search between random pairs of airports of a synthetic network.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KShortestPathsBenchmark {
+
+  private static final int PAIRS = 1024;
+
+  @State(Scope.Thread)
+  public static class Queries {
+    @Param({"2"})
+    public int kPaths;
+
+    @Param({"2"})
+    public int maxLegs;
+
+    CompactDigraph digraph;
+    int[] sources = new int[PAIRS];
+    int[] targets = new int[PAIRS];
+    int next;
+
+    @Setup(Level.Trial)
+    public void createQueries(NetworkState state) {
+      SymbolDigraph symbolDigraph = new SymbolDigraph(state.network.getRoutesByKey(), state.network.getSchedules());
+      digraph = symbolDigraph.compactDigraph();
+      Random random = new Random(state.seed);
+      for (int i = 0; i < PAIRS; i++) {
+        sources[i] = random.nextInt(digraph.V());
+        do {
+          targets[i] = random.nextInt(digraph.V());
+        } while (targets[i] == sources[i] && digraph.V() > 1);
+      }
+    }
+  }
+
+  @Benchmark
+  public List<KShortestPaths.Path> search(Queries queries) {
+    int i = queries.next++ & (PAIRS - 1);
+    return KShortestPaths.getKShortestPaths(queries.digraph, queries.sources[i], queries.targets[i], queries.kPaths,
+      queries.maxLegs);
+  }
+}
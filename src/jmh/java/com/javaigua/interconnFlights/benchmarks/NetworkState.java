@@ -0,0 +1,35 @@
+package com.javaigua.interconnFlights.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.javaigua.interconnFlights.synthetic.SyntheticNetwork;
+
+/**
+ * A synthetic network shared by the iterations of a benchmark, parameterised by airports, routes, flights per day and
+ * months of schedules.
+ */
+@State(Scope.Benchmark)
+public class NetworkState {
+
+  @Param({"100"})
+  public int airports;
+
+  @Param({"1000"})
+  public int routes;
+
+  @Param({"4"})
+  public int flightsPerDay;
+
+  @Param({"1", "2"})
+  public int months;
+
+  @Param({"42"})
+  public long seed;
+
+  public SyntheticNetwork network;
+
+  @Setup(Level.Trial)
+  public void createNetwork() {
+    network = new SyntheticNetwork(airports, routes, flightsPerDay, months, seed);
+  }
+}
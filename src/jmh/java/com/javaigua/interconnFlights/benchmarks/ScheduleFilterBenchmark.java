@@ -0,0 +1,52 @@
+package com.javaigua.interconnFlights.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.javaigua.interconnFlights.domain.DaySchedule;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+import com.javaigua.interconnFlights.timetable.ScheduleFilter;
+
+/**
+ * Measures the filtering of the flights of every day of a month schedule by a date time range, as done for every
+ * fetched month schedule.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleFilterBenchmark {
+
+  @State(Scope.Thread)
+  public static class Month {
+    int year;
+    int month;
+    List<DaySchedule> days;
+    LocalDateTime departureDateTime;
+    LocalDateTime arrivalDateTime;
+
+    @Setup(Level.Trial)
+    public void pickMonth(NetworkState state) {
+      MonthSchedule monthSchedule = state.network.getSchedules().values().iterator().next().get(0);
+      year = state.network.getFirstMonth().getYear();
+      month = monthSchedule.getMonth();
+      days = monthSchedule.getDays();
+      // a range starting mid-morning of the first day and ending mid-afternoon of the last one
+      departureDateTime = LocalDateTime.of(year, month, 1, 9, 30).minusSeconds(1);
+      arrivalDateTime = LocalDateTime.of(year, month, days.size(), 16, 0).plusSeconds(1);
+    }
+  }
+
+  @Benchmark
+  public void onlyFlightsInBetween(Month month, Blackhole blackhole) {
+    for (DaySchedule daySchedule : month.days) {
+      blackhole.consume(ScheduleFilter.onlyFlightsInBetween(month.year, month.month, daySchedule,
+        month.departureDateTime, month.arrivalDateTime, true));
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.javaigua.interconnFlights.benchmarks;
+
+import java.io.NotSerializableException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.JavaSerializer;
+import akka.serialization.Serializer;
+import akka.serialization.SerializerWithStringManifest;
+
+import com.typesafe.config.ConfigFactory;
+
+import com.javaigua.interconnFlights.actors.messages.GetInterconnections;
+import com.javaigua.interconnFlights.actors.messages.RoutesAndSchedules;
+import com.javaigua.interconnFlights.serialization.InterconnFlightsSerializer;
+
+/**
+ * Measures the encoding and decoding of a RoutesAndSchedules message carrying the routes and schedules of a whole
+ * synthetic network, with the compact serializer bound to the pipeline messages and with Java serialization.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Message {
+    @Param({"interconn", "java"})
+    public String serializer;
+
+    ActorSystem system;
+    Serializer encoder;
+    RoutesAndSchedules routesAndSchedules;
+    String manifest;
+    byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void createMessage(NetworkState state) {
+      system = ActorSystem.create("serialization-benchmark",
+        ConfigFactory.parseString("akka.actor.provider = local").withFallback(ConfigFactory.load()));
+      encoder = "java".equals(serializer) ? new JavaSerializer((ExtendedActorSystem) system) :
+        new InterconnFlightsSerializer((ExtendedActorSystem) system);
+      LocalDateTime start = state.network.getFirstMonth().atDay(1).atTime(6, 0);
+      routesAndSchedules = new RoutesAndSchedules(
+        new GetInterconnections(state.network.airport(0), state.network.airport(1), start, start.plusDays(2)),
+        state.network.getRoutesByKey(), state.network.getSchedules(), null, null);
+      manifest = encoder instanceof SerializerWithStringManifest ?
+        ((SerializerWithStringManifest) encoder).manifest(routesAndSchedules) : null;
+      bytes = encoder.toBinary(routesAndSchedules);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+      system.terminate();
+    }
+  }
+
+  @Benchmark
+  public byte[] encode(Message message) {
+    return message.encoder.toBinary(message.routesAndSchedules);
+  }
+
+  @Benchmark
+  public Object decode(Message message) throws NotSerializableException {
+    return message.encoder instanceof SerializerWithStringManifest ?
+      ((SerializerWithStringManifest) message.encoder).fromBinary(message.bytes, message.manifest) :
+      message.encoder.fromBinary(message.bytes, RoutesAndSchedules.class);
+  }
+}
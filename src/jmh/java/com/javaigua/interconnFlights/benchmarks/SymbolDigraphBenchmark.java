@@ -0,0 +1,23 @@
+package com.javaigua.interconnFlights.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.javaigua.interconnFlights.algorithms.SymbolDigraph;
+
+/**
+ * Measures the construction of the graph of airports and flights of a whole synthetic network.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolDigraphBenchmark {
+
+  @Benchmark
+  public SymbolDigraph build(NetworkState state) {
+    return new SymbolDigraph(state.network.getRoutesByKey(), state.network.getSchedules());
+  }
+}
@@ -0,0 +1,135 @@
+package com.javaigua.interconnFlights.actors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.duration.Duration;
+
+import akka.actor.*;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import com.javaigua.interconnFlights.actors.messages.*;
+
+/**
+ * A short-lived actor that answers a GetBatchInterconnections message on behalf of the finder.
+ *
+ * Every query of the batch gets a child collector as original sender, so the result the calculators send for it can
+ * be told apart from the others. All the fetches are handed to a single fetcher that fetches the month schedules
+ * shared by the queries once. Once every query is answered, a List of their Set of InterconnFlights (or the Throwable
+ * that failed them), in the order of the queries of the batch, is sent to the requester and this actor stops.
+ */
+public class BatchInterconnectionsActor extends AbstractActor {
+
+  /**
+   * The answer of a single query of the batch, sent by its collector.
+   */
+  static class Collected {
+    private final int index;
+    private final Object result;
+
+    Collected(int index, Object result) {
+      this.index = index;
+      this.result = result;
+    }
+  }
+
+  /**
+   * A child actor standing as the original sender of a single query of the batch.
+   */
+  static class QueryCollector extends AbstractActor {
+    private final int index;
+
+    QueryCollector(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder()
+        .matchAny(result -> {
+          getContext().getParent().tell(new Collected(index, result), getSelf());
+          getContext().stop(getSelf());
+        })
+        .build();
+    }
+  }
+
+  LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+
+  final Config config = ConfigFactory.load();
+
+  private final GetBatchInterconnections batch;
+  private final ActorRef fetchers;
+  private final ActorRef replyTo;
+  private final Object[] results;
+  private int pending;
+
+  /**
+   * Convenient actor builder
+   *
+   * @param batch the queries to answer
+   * @param fetchers the fetchers of the finder
+   * @param replyTo the requester of the batch
+   */
+  public static Props props(GetBatchInterconnections batch, ActorRef fetchers, ActorRef replyTo) {
+    return Props.create(BatchInterconnectionsActor.class,
+      () -> new BatchInterconnectionsActor(batch, fetchers, replyTo));
+  }
+
+  BatchInterconnectionsActor(GetBatchInterconnections batch, ActorRef fetchers, ActorRef replyTo) {
+    this.batch = batch;
+    this.fetchers = fetchers;
+    this.replyTo = replyTo;
+    this.results = new Object[batch.getQueries().size()];
+    this.pending = results.length;
+  }
+
+  @Override
+  public void preStart() {
+    getContext().setReceiveTimeout(Duration.create(config.getInt("application.timeout-millis"), TimeUnit.MILLISECONDS));
+
+    final List<FetchRoutesAndSchedule> fetches = new ArrayList<>();
+    for (int i = 0; i < results.length; i++) {
+      final int index = i;
+      final ActorRef collector = getContext().actorOf(
+        Props.create(QueryCollector.class, () -> new QueryCollector(index)));
+      fetches.add(new FetchRoutesAndSchedule(batch.getQueries().get(i), getContext().getParent(), collector));
+    }
+    fetchers.tell(new FetchBatchRoutesAndSchedules(fetches), getSelf());
+  }
+
+  /**
+   * Main entry point of messages handled by this actor
+   */
+  @Override
+  public Receive createReceive() {
+    return receiveBuilder()
+      .match(Collected.class, // handle Collected msgs
+        collected -> {
+          results[collected.index] = collected.result instanceof Status.Failure ?
+            ((Status.Failure) collected.result).cause() : collected.result;
+          if (--pending == 0) {
+            // in the order of the batch, equal queries get a result each
+            replyTo.tell(Collections.unmodifiableList(Arrays.asList(results)), getSelf());
+            getContext().stop(getSelf());
+          }
+        }
+      )
+      .match(ReceiveTimeout.class, // the requester is no longer waiting
+        timeout -> {
+          log.warning("status= batch_interconnections_timed_out, pending= {}, desc= {}", pending,
+            batch.getLookUpName());
+          getContext().stop(getSelf());
+        }
+      )
+      .matchAny(unknown -> log.info("{} unknown message received: {}", this.getClass().getName(), unknown))
+      .build();
+  }
+}
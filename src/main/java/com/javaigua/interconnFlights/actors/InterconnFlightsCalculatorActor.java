@@ -1,31 +1,68 @@
 package com.javaigua.interconnFlights.actors;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import akka.actor.*;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
 import com.javaigua.interconnFlights.domain.*;
 import com.javaigua.interconnFlights.algorithms.*;
 import com.javaigua.interconnFlights.actors.messages.*;
+import com.javaigua.interconnFlights.metrics.Metrics;
 
 /**
  * An actor that handles the final stage to calculate interconnecting flights with the provided routes and schedule data.
  *
  * For every message received by this actor a directed graph (and associated symbol table) is created and
  * a k-shortest paths calculation is performed. The result is sent to original the actor that requested the operation.
+ *
+ * Alternatively, when the connection-scan engine is configured, a time-dependent search over the flights sorted by
+ * departure is performed instead, so only catchable connections are calculated.
+ *
+ * Calendar queries are always answered by sweeping the connections of the whole date range day by day, with a
+ * SortedMap of the interconnections of every day.
+ *
+ * Streaming requests get every interconnection sent as soon as it is built, direct flights first, followed by a
+ * Status.Success once the calculation is completed. A failed calculation is answered with a Status.Failure.
+ *
+ * Instances of this actor are pooled workers running on the dedicated calculator dispatcher, so calculations do not
+ * compete with http handling and unmarshalling for the default dispatcher threads. The finder is told once every
+ * calculation is completed. Searches over large windows are split by hub across the cores of the SearchPool.
  */
 public class InterconnFlightsCalculatorActor extends AbstractActor {
 
+  static final String K_SHORTEST_ENGINE = "k-shortest";
+  static final String CONNECTION_SCAN_ENGINE = "connection-scan";
+  static final String DISPATCHER = "application.calculator.dispatcher";
+
   LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
+  final Metrics metrics = Metrics.get(getContext().getSystem());
+  // shared by the calculators of the actor system, splits the heaviest searches across cores
+  final ForkJoinPool searchPool = SearchPool.get(getContext().getSystem()).getPool();
+  final Config config = ConfigFactory.load();
+  final String engine = config.getString("application.calculator.engine");
+  final int kPaths = config.getInt("application.calculator.k-paths");
+  final int maxLegs = config.getInt("application.calculator.max-legs");
+  final int minConnectionMinutes = config.getInt("application.calculator.min-connection-minutes");
+  final int maxLayoverMinutes = config.getInt("application.calculator.max-layover-minutes");
+  final int parallelThreshold = config.getInt("application.calculator.parallel-threshold");
+
   /**
    * Convenient actor builder
    */
   public static Props props() {
-    return Props.create(InterconnFlightsCalculatorActor.class);
+    return Props.create(InterconnFlightsCalculatorActor.class).withDispatcher(DISPATCHER);
   }
 
   /**
@@ -37,13 +74,103 @@ public class InterconnFlightsCalculatorActor extends AbstractActor {
       .match(CalculateInterconnFlights.class,  // handle CalculateInterconnFlights msgs
         calculateInterconnFlights -> {
           ActorRef actorRef = calculateInterconnFlights.getOriginalSender();
-          actorRef.tell(calculateInterconnectingFlights(calculateInterconnFlights), getSelf());
+          try {
+            if (calculateInterconnFlights.getGetInterconnections().isCalendar()) {
+              actorRef.tell(calendarInterconnectingFlights(calculateInterconnFlights), getSelf());
+            } else if (calculateInterconnFlights.getGetInterconnections().isStreaming()) {
+              streamInterconnectingFlights(calculateInterconnFlights, actorRef);
+            } else {
+              Set<InterconnFlights> interconnFlights = new LinkedHashSet<>();
+              calculate(calculateInterconnFlights, interconnFlights::add);
+              actorRef.tell(interconnFlights, getSelf());
+            }
+          } catch (RuntimeException e) {
+            // already reported to the requester, the worker goes on with the next calculation
+            log.warning("status= calculator_failed, desc= {}, error= {}",
+              calculateInterconnFlights.getGetInterconnections().getLookUpName(), e.getMessage());
+            actorRef.tell(new Status.Failure(e), getSelf());
+          } finally {
+            // the finder no longer has this query in flight
+            calculateInterconnFlights.getSender().tell(
+              new InterconnectionsCompleted(calculateInterconnFlights.getGetInterconnections()), getSelf());
+          }
         }
       )
       .matchAny(unknown -> log.info("{} unknown message received: {}", this.getClass().getName(), unknown))
       .build();
   }
 
+  /**
+   * Calculates interconnecting flights with the configured engine, passing every one of them to the given consumer.
+   */
+  private void calculate(CalculateInterconnFlights msg, Consumer<InterconnFlights> interconnFlights) {
+    if (CONNECTION_SCAN_ENGINE.equals(engine)) {
+      scanInterconnectingFlights(msg, interconnFlights);
+    } else {
+      calculateInterconnectingFlights(msg, interconnFlights);
+    }
+  }
+
+  /**
+   * Sends every distinct interconnecting flight to the given actor as soon as it is known, then a Status.Success with
+   * their count. The direct flights are sent before any graph or connection is built, the ones with a stop as soon as
+   * they are calculated.
+   */
+  private void streamInterconnectingFlights(CalculateInterconnFlights msg, ActorRef actorRef) {
+    final Set<String> sent = new HashSet<>();
+    final Consumer<InterconnFlights> send = interconnFlights -> {
+      if (sent.add(interconnFlights.getId())) actorRef.tell(interconnFlights, getSelf());
+    };
+    directFlights(msg, send);
+    calculate(msg, send);
+    actorRef.tell(new Status.Success(sent.size()), getSelf());
+  }
+
+  /**
+   * Passes the flights of the direct route of the query to the given consumer, in the format of the configured engine
+   * so they are told apart from the same ones calculated afterwards by their id.
+   *
+   * The schedules of the query are already filtered by its time range, so the direct flights are known from the
+   * schedules of the direct route alone. The connection-scan engine only keeps the ones departing and arriving within
+   * the window of the query.
+   */
+  private void directFlights(CalculateInterconnFlights msg, Consumer<InterconnFlights> interconnFlights) {
+    final GetInterconnections query = msg.getGetInterconnections();
+    final long directKey = AirportDictionary.routeKey(query.getDeparture(), query.getArrival());
+    final Route direct = msg.getRoutes().get(directKey);
+    final List<MonthSchedule> directSchedules = msg.getSchedules().get(directKey);
+    if (direct == null || directSchedules == null) return;
+
+    if (!CONNECTION_SCAN_ENGINE.equals(engine)) {
+      for (MonthSchedule monthSchedule : directSchedules) {
+        for (DaySchedule daySchedule : monthSchedule.getDays()) {
+          for (Flight flight : daySchedule.getFlights()) {
+            interconnFlights.accept(new InterconnFlights(flight.getNumber(), new InterconnFlight[]{
+              new InterconnFlight(flight.getNumber(), query.getDeparture(), query.getArrival(),
+                flight.getDepartureTime(), flight.getArrivalTime())}));
+          }
+        }
+      }
+      return;
+    }
+
+    final LongObjectHashMap<Route> routes = new LongObjectHashMap<>(1);
+    routes.put(directKey, direct);
+    final LongObjectHashMap<List<MonthSchedule>> schedules = new LongObjectHashMap<>(1);
+    schedules.put(directKey, directSchedules);
+    final ConnectionScan connectionScan = new ConnectionScan(routes, schedules,
+      YearMonth.from(query.getDepartureDateTime()), YearMonth.from(query.getArrivalDateTime()));
+    if (!connectionScan.contains(query.getDeparture()) || !connectionScan.contains(query.getArrival())) return;
+
+    final List<ConnectionScan.Journey> journeys = connectionScan.searchFeasible(
+      connectionScan.indexOf(query.getDeparture()), connectionScan.indexOf(query.getArrival()),
+      ConnectionScan.toEpochMinute(query.getDepartureDateTime()),
+      ConnectionScan.toEpochMinute(query.getArrivalDateTime()), minConnectionMinutes, maxLayoverMinutes, null);
+    journeys.sort(Comparator.comparingLong(ConnectionScan.Journey::departure));
+    journeys.forEach(journey ->
+      interconnFlights.accept(ConnectionScan.toInterconnFlights(journey, connectionScan::nameOf)));
+  }
+
   /**
    * Handles CalculateInterconnFlights messages sent to this actor.
    *
@@ -51,45 +178,148 @@ public class InterconnFlightsCalculatorActor extends AbstractActor {
    * with the given routes and schedules information.
    *
    * @param msg a CalculateInterconnFlights message to be processed
-   * @return a InterconnFlightsCollection object with interconnecting flights with 1 or two 2 legs
+   * @param interconnFlights consumer of the interconnecting flights with 1 or two 2 legs
    */
-  private Set<InterconnFlights> calculateInterconnectingFlights(CalculateInterconnFlights msg) {
-    final Map<String, Route> routes = msg.getRoutes();
-    final Map<String, List<MonthSchedule>> schedules = msg.getSchedules();
+  private void calculateInterconnectingFlights(CalculateInterconnFlights msg,
+                                               Consumer<InterconnFlights> interconnFlights) {
+    final LongObjectHashMap<Route> routes = msg.getRoutes();
+    final LongObjectHashMap<List<MonthSchedule>> schedules = msg.getSchedules();
     final String source = msg.getGetInterconnections().getDeparture();
     final String destination = msg.getGetInterconnections().getArrival();
 
     log.info("status= flights_calculator_starting, routes_size= {}, schedule_size= {} ", routes.size(), schedules.size());
 
     // Create SymbolDigraph with routes and schedule
+    final long buildStart = System.nanoTime();
     SymbolDigraph symbolDigraph = new SymbolDigraph(routes, schedules);
-    EdgeWeightedDigraph graph = symbolDigraph.digraph();
-    log.debug("status= flights_calculator_graph_created, symbolDigraph= {}", symbolDigraph.toString());
+    CompactDigraph graph = symbolDigraph.compactDigraph();
+    metrics.recordStage("graph_build", buildStart);
+    log.debug("status= flights_calculator_graph_created, symbolDigraph= {}", symbolDigraph);
 
-    Set<InterconnFlights> interconnFlights = new LinkedHashSet<>();
     if (!msg.getRoutes().isEmpty() && !msg.getSchedules().isEmpty() &&
       symbolDigraph.contains(source) && symbolDigraph.contains(destination)) {
       int origIndex = symbolDigraph.indexOf(source);
       int destIndex = symbolDigraph.indexOf(destination);
 
-      List<KShortestPaths.Path> kShortestPaths = KShortestPaths.getKShortestPaths(graph, origIndex, destIndex, 2);
+      final long searchStart = System.nanoTime();
+      List<KShortestPaths.Path> kShortestPaths = KShortestPaths.getKShortestPaths(graph, origIndex, destIndex, kPaths,
+        maxLegs);
+      metrics.recordStage("k_shortest_paths", searchStart);
       log.info("status= flights_calculator_kshortest_paths_calculated, orig_dest= {}, paths= {} ",
         origIndex + "_" + destIndex, printShortestPaths(symbolDigraph, kShortestPaths));
 
-      for (KShortestPaths.Path path : kShortestPaths) {
+      forEach(kShortestPaths, path -> path.legs() == 1, msg.getGetInterconnections().isStreaming(), path -> {
         Set<InterconnFlight> interconnFlightsArray = new LinkedHashSet<>();
         for (DirectedEdge e : path.getPath()) {
           interconnFlightsArray.add(
             new InterconnFlight(e.flight().getNumber(), symbolDigraph.nameOf(e.from()),
               symbolDigraph.nameOf(e.to()), e.flight().getDepartureTime(), e.flight().getArrivalTime()));
         }
-        interconnFlights.add(
+        interconnFlights.accept(
           new InterconnFlights(
             interconnFlightsArray.stream().map(f -> f.getNumber()).collect(Collectors.joining("_")),
             interconnFlightsArray.toArray(new InterconnFlight[]{})));
+      });
+    }
+  }
+
+  /**
+   * Handles CalculateInterconnFlights messages sent to this actor with the connection-scan engine.
+   *
+   * Sorts the flights of the given routes and schedules by departure and performs a single pass connection scan over
+   * the requested time range, honouring the configured minimum connection time and maximum layover.
+   *
+   * @param msg a CalculateInterconnFlights message to be processed
+   * @param interconnFlights consumer of the catchable interconnecting flights with 1 or 2 legs
+   */
+  private void scanInterconnectingFlights(CalculateInterconnFlights msg, Consumer<InterconnFlights> interconnFlights) {
+    final GetInterconnections query = msg.getGetInterconnections();
+    final String source = query.getDeparture();
+    final String destination = query.getArrival();
+
+    log.info("status= flights_scanner_starting, routes_size= {}, schedule_size= {} ", msg.getRoutes().size(),
+      msg.getSchedules().size());
+
+    final long buildStart = System.nanoTime();
+    ConnectionScan connectionScan = new ConnectionScan(msg.getRoutes(), msg.getSchedules(),
+      YearMonth.from(query.getDepartureDateTime()), YearMonth.from(query.getArrivalDateTime()));
+    metrics.recordStage("connections_build", buildStart);
+
+    if (connectionScan.contains(source) && connectionScan.contains(destination)) {
+      final long windowStart = ConnectionScan.toEpochMinute(query.getDepartureDateTime());
+      final long windowEnd = ConnectionScan.toEpochMinute(query.getArrivalDateTime());
+      // only large windows are worth splitting by hub
+      final boolean parallel = connectionScan.windowSize(windowStart, windowEnd) >= parallelThreshold;
+      final long searchStart = System.nanoTime();
+      List<ConnectionScan.Journey> journeys = connectionScan.search(
+        connectionScan.indexOf(source), connectionScan.indexOf(destination), windowStart, windowEnd,
+        minConnectionMinutes, maxLayoverMinutes, parallel ? searchPool : null);
+      metrics.recordStage("connection_scan", searchStart);
+      log.info("status= flights_scanner_journeys_calculated, connections= {}, journeys= {}, parallel= {} ",
+        connectionScan.size(), journeys.size(), parallel);
+
+      forEach(journeys, journey -> journey.legs().length == 1, query.isStreaming(),
+        journey -> interconnFlights.accept(ConnectionScan.toInterconnFlights(journey, connectionScan::nameOf)));
+    }
+  }
+
+  /**
+   * Handles CalculateInterconnFlights messages of calendar queries.
+   *
+   * The connections of the routes and schedules of the whole date range are built once, then swept day by day with
+   * the daily window of the query, so no graph is rebuilt per day whatever the configured engine.
+   *
+   * @param msg a CalculateInterconnFlights message of a calendar query
+   * @return the catchable interconnecting flights with 1 or 2 legs of every day, keyed by ISO date in day order
+   */
+  private SortedMap<String, Set<InterconnFlights>> calendarInterconnectingFlights(CalculateInterconnFlights msg) {
+    final GetInterconnections query = msg.getGetInterconnections();
+    final LocalDate firstDate = query.getDepartureDateTime().toLocalDate();
+    final long firstWindowStart = ConnectionScan.toEpochMinute(query.getDepartureDateTime());
+    // the last window ends at the arrival date time, every window has the same length
+    final int windowMinutes = (int) (ConnectionScan.toEpochMinute(query.getArrivalDateTime()) - firstWindowStart -
+      (query.getCalendarDays() - 1) * 24L * 60L);
+
+    log.info("status= flights_calendar_starting, routes_size= {}, schedule_size= {}, days= {} ",
+      msg.getRoutes().size(), msg.getSchedules().size(), query.getCalendarDays());
+
+    final SortedMap<String, Set<InterconnFlights>> calendar = new TreeMap<>();
+    for (int day = 0; day < query.getCalendarDays(); day++) {
+      calendar.put(firstDate.plusDays(day).toString(), new LinkedHashSet<>());
+    }
+
+    final long buildStart = System.nanoTime();
+    ConnectionScan connectionScan = new ConnectionScan(msg.getRoutes(), msg.getSchedules(),
+      YearMonth.from(query.getDepartureDateTime()), YearMonth.from(query.getArrivalDateTime()));
+    metrics.recordStage("connections_build", buildStart);
+
+    if (connectionScan.contains(query.getDeparture()) && connectionScan.contains(query.getArrival())) {
+      final long searchStart = System.nanoTime();
+      List<List<ConnectionScan.Journey>> days = connectionScan.searchDaily(
+        connectionScan.indexOf(query.getDeparture()), connectionScan.indexOf(query.getArrival()), firstWindowStart,
+        windowMinutes, query.getCalendarDays(), minConnectionMinutes, maxLayoverMinutes);
+      metrics.recordStage("calendar_scan", searchStart);
+
+      for (int day = 0; day < days.size(); day++) {
+        final Set<InterconnFlights> interconnFlights = calendar.get(firstDate.plusDays(day).toString());
+        days.get(day).forEach(journey ->
+          interconnFlights.add(ConnectionScan.toInterconnFlights(journey, connectionScan::nameOf)));
       }
+      log.info("status= flights_calendar_calculated, connections= {}, days= {} ", connectionScan.size(), days.size());
+    }
+    return calendar;
+  }
+
+  /**
+   * Performs the given action for each item in order, or for the direct ones first when requested.
+   */
+  private static <T> void forEach(List<T> items, Predicate<T> isDirect, boolean directsFirst, Consumer<T> action) {
+    if (!directsFirst) {
+      items.forEach(action);
+      return;
     }
-    return interconnFlights;
+    items.stream().filter(isDirect).forEach(action);
+    items.stream().filter(isDirect.negate()).forEach(action);
   }
 
   /**
@@ -1,28 +1,74 @@
 package com.javaigua.interconnFlights.actors;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 
 import akka.actor.*;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import akka.japi.pf.DeciderBuilder;
+import akka.routing.RoundRobinPool;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 
 import com.javaigua.interconnFlights.actors.messages.*;
+import com.javaigua.interconnFlights.domain.InterconnFlights;
+import com.javaigua.interconnFlights.index.ConnectionIndex;
+import com.javaigua.interconnFlights.metrics.Metrics;
 
 /**
  * An actor that performs a distributed retrieval and calculation of interconnecting flights from a target set of routes
  * and schedules.
  *
- * Every GetInterconnections message received by this actor generates a pair of worker child actors that:
+ * Every GetInterconnections message received by this actor is dispatched to two fixed size pools of worker actors
+ * with bounded mailboxes that:
  * - fetch routes and flight schedules for all related data in an async non-blocking way.
  * - then calculates a set of the shortest interconnecting flights that are between a target of IATA codes and time range.
+ *
+ * Queries are admitted up to a maximum in flight, the ones over it are rejected right away with a
+ * RejectedExecutionException failure instead of queueing up while the workers are saturated. Every admitted query
+ * holds its slot until it is completed or, at the latest, until its deadline (the request timeout) in case its
+ * messages were lost, e.g. dropped by a full bounded mailbox.
+ *
+ * GetBatchInterconnections messages are admitted as many queries as they hold, and answered by a child
+ * BatchInterconnectionsActor that gathers the results of every query.
+ *
+ * Queries of the origin and destination pairs whose months are in the ConnectionIndex are answered right away with a
+ * lookup of the index, without taking a worker.
  */
 public class InterconnFlightsFinderActor extends AbstractActor {
 
   LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
+  final Metrics metrics = Metrics.get(getContext().getSystem());
+  final ConnectionIndex connectionIndex = ConnectionIndex.get(getContext().getSystem());
+  final Config config = ConfigFactory.load();
+  final int maxInFlight = config.getInt("application.workers.max-in-flight");
+  final FiniteDuration queryDeadline = Duration.create(config.getLong("application.timeout-millis"),
+    TimeUnit.MILLISECONDS);
+
+  /**
+   * A message to release the slot of an admitted query never completed.
+   */
+  static class QueryDeadline {
+    private final GetInterconnections query;
+
+    QueryDeadline(GetInterconnections query) {
+      this.query = query;
+    }
+  }
+
   // Supervision strategy for child actors
   private static SupervisorStrategy strategy =
     new OneForOneStrategy(10, Duration.create(1, "minute"),
@@ -30,6 +76,20 @@ public class InterconnFlightsFinderActor extends AbstractActor {
         .matchAny(o -> SupervisorStrategy.restart())
         .build());
 
+  // Supervision strategy of the pooled workers, a failing worker is restarted on its own and never given up on, so a
+  // bad query can neither restart nor stop the whole pool
+  private static SupervisorStrategy workerStrategy =
+    new OneForOneStrategy(-1, Duration.Inf(),
+      DeciderBuilder
+        .matchAny(o -> SupervisorStrategy.restart())
+        .build());
+
+  private ActorRef fetchers;
+  private ActorRef calculators;
+  private int inFlight = 0;
+  // deadlines of the admitted queries by query instance, the same instance may be admitted more than once
+  private final Map<GetInterconnections, Deque<Cancellable>> deadlines = new IdentityHashMap<>();
+
   /**
    * Convenient actor builder
    */
@@ -42,6 +102,15 @@ public class InterconnFlightsFinderActor extends AbstractActor {
     return strategy;
   }
 
+  @Override
+  public void preStart() {
+    checkCapacity();
+    fetchers = getContext().actorOf(createPool(RoutesAndSchedulesFetcherActor.props(), "application.workers.fetchers"),
+      "fetchers");
+    calculators = getContext().actorOf(
+      createPool(InterconnFlightsCalculatorActor.props(), "application.workers.calculators"), "calculators");
+  }
+
   /**
    * Main entry point of messages handled by this actor
    */
@@ -50,9 +119,37 @@ public class InterconnFlightsFinderActor extends AbstractActor {
     return receiveBuilder()
       .match(GetInterconnections.class, // handle GetInterconnections msgs
         getInterconnections -> {
-          FetchRoutesAndSchedule fetchMsg = new FetchRoutesAndSchedule(getInterconnections, getSelf(), getSender());
-          getActorRefOrCreate(RoutesAndSchedulesFetcherActor.props(), fetchMsg.getLookUpName())
-            .forward(fetchMsg, getContext());
+          final Optional<List<InterconnFlights>> indexed = connectionIndex.lookup(getInterconnections);
+          if (indexed.isPresent()) {
+            replyIndexed(getInterconnections, indexed.get());
+            return;
+          }
+          if (inFlight >= maxInFlight) {
+            log.warning("status= flights_finder_rejected, in_flight= {}, desc= {}", inFlight,
+              getInterconnections.getLookUpName());
+            getSender().tell(new Status.Failure(new RejectedExecutionException(
+              "Too many interconnections queries in flight: " + inFlight)), getSelf());
+            metrics.queriesRejected().increment();
+            return;
+          }
+          admit(getInterconnections);
+          fetchers.forward(new FetchRoutesAndSchedule(getInterconnections, getSelf(), getSender()), getContext());
+        }
+      )
+      .match(GetBatchInterconnections.class, // handle GetBatchInterconnections msgs
+        batch -> {
+          final int size = batch.getQueries().size();
+          if (inFlight + size > maxInFlight) {
+            log.warning("status= flights_finder_batch_rejected, in_flight= {}, desc= {}", inFlight,
+              batch.getLookUpName());
+            getSender().tell(new Status.Failure(new RejectedExecutionException(
+              "Too many interconnections queries in flight: " + inFlight)), getSelf());
+            metrics.queriesRejected().add(size);
+            return;
+          }
+          batch.getQueries().forEach(this::admit);
+          // every query of the batch is completed on its own, the batch actor only gathers their results
+          getContext().actorOf(BatchInterconnectionsActor.props(batch, fetchers, getSender()));
         }
       )
       .match(RoutesAndSchedules.class, // handle RoutesAndSchedules msgs
@@ -67,8 +164,23 @@ public class InterconnFlightsFinderActor extends AbstractActor {
             routesAndSchedule.getSchedules(),
             getSelf(),
             routesAndSchedule.getOriginalSender());
-          getActorRefOrCreate(InterconnFlightsCalculatorActor.props(), calculateMsg.getLookUpName())
-            .forward(calculateMsg, getContext());
+          calculators.forward(calculateMsg, getContext());
+        }
+      )
+      .match(InterconnectionsCompleted.class, // handle InterconnectionsCompleted msgs
+        completed -> {
+          final Cancellable deadline = release(completed.getGetInterconnections());
+          if (deadline == null) return;
+          deadline.cancel();
+          log.debug("status= flights_finder_completed, in_flight= {}, desc= {}", inFlight, completed.getLookUpName());
+        }
+      )
+      .match(QueryDeadline.class, // handle QueryDeadline msgs
+        expired -> {
+          if (release(expired.query) == null) return;
+          metrics.queriesExpired().increment();
+          log.warning("status= flights_finder_query_expired, in_flight= {}, desc= {}", inFlight,
+            expired.query.getLookUpName());
         }
       )
       .matchAny(unknown -> log.info("{} unknown message received: {}", this.getClass().getName(), unknown))
@@ -76,17 +188,72 @@ public class InterconnFlightsFinderActor extends AbstractActor {
   }
 
   /**
-   * Utility to perform an actor reference lookup by actorName.
+   * Takes a slot for a query until it is completed or its deadline is reached.
+   */
+  private void admit(GetInterconnections query) {
+    final Cancellable deadline = getContext().getSystem().scheduler().scheduleOnce(queryDeadline, getSelf(),
+      new QueryDeadline(query), getContext().dispatcher(), ActorRef.noSender());
+    deadlines.computeIfAbsent(query, k -> new ArrayDeque<>()).add(deadline);
+    metrics.queriesInFlight().set(++inFlight);
+  }
+
+  /**
+   * Releases the slot of a query, once.
+   *
+   * @return the deadline of the released slot, or null if the query holds no slot (already released)
+   */
+  private Cancellable release(GetInterconnections query) {
+    final Deque<Cancellable> queryDeadlines = deadlines.get(query);
+    if (queryDeadlines == null) return null;
+    final Cancellable deadline = queryDeadlines.poll();
+    if (queryDeadlines.isEmpty()) deadlines.remove(query);
+    inFlight = Math.max(0, inFlight - 1);
+    metrics.queriesInFlight().set(inFlight);
+    return deadline;
+  }
+
+  /**
+   * Checks that every admitted query fits in the bounded mailboxes of the workers, so none is dropped while the
+   * finder is under its maximum in flight.
+   */
+  private void checkCapacity() {
+    final int mailboxCapacity = config.getInt("application.workers.mailbox.mailbox-capacity");
+    final int capacity = mailboxCapacity * Math.min(config.getInt("application.workers.fetchers"),
+      config.getInt("application.workers.calculators"));
+    if (maxInFlight > capacity) {
+      throw new IllegalArgumentException("application.workers.max-in-flight (" + maxInFlight + ") exceeds the " +
+        "capacity of the worker mailboxes (" + capacity + ")");
+    }
+    // the fetches of a batch are all handed to a single fetcher
+    final int maxBatch = config.getInt("application.batch.max-queries");
+    if (maxBatch > mailboxCapacity) {
+      throw new IllegalArgumentException("application.batch.max-queries (" + maxBatch + ") exceeds the capacity " +
+        "of a worker mailbox (" + mailboxCapacity + ")");
+    }
+  }
+
+  /**
+   * Answers a query with the interconnecting flights looked up in the index, as the calculators do: every one of them
+   * followed by a Status.Success when streaming, direct flights first, or a single Set of them otherwise.
    */
-  private Optional<ActorRef> getActorRef(String actorName) {
-    return getContext().findChild(actorName);
+  private void replyIndexed(GetInterconnections query, List<InterconnFlights> interconnFlights) {
+    log.debug("status= flights_finder_indexed, interconnections= {}, desc= {}", interconnFlights.size(),
+      query.getLookUpName());
+    if (!query.isStreaming()) {
+      getSender().tell(new LinkedHashSet<>(interconnFlights), getSelf());
+      return;
+    }
+    interconnFlights.stream().filter(f -> f.getLegs().length == 1).forEach(f -> getSender().tell(f, getSelf()));
+    interconnFlights.stream().filter(f -> f.getLegs().length != 1).forEach(f -> getSender().tell(f, getSelf()));
+    getSender().tell(new Status.Success(interconnFlights.size()), getSelf());
   }
 
   /**
-   * Utility to perform an actor reference lookup by actorName, creating a new InterconnFlightsCalculatorActor
-   * in case it is not already present in the actor system.
+   * Utility to create a round robin pool of workers with bounded mailboxes, sized by the given config path.
    */
-  private ActorRef getActorRefOrCreate(Props props, String actorName) {
-    return getActorRef(actorName).orElseGet(() -> getContext().actorOf(props, actorName));
+  private Props createPool(Props worker, String sizePath) {
+    return new RoundRobinPool(config.getInt(sizePath))
+      .withSupervisorStrategy(workerStrategy)
+      .props(worker.withMailbox("application.workers.mailbox"));
   }
 }
@@ -6,28 +6,35 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import scala.concurrent.ExecutionContext;
 
 import akka.actor.*;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
-import akka.http.javadsl.Http;
-import akka.http.javadsl.model.HttpRequest;
-import akka.http.javadsl.marshallers.jackson.Jackson;
-import akka.stream.ActorMaterializer;
-import akka.stream.Materializer;
 import static akka.pattern.PatternsCS.pipe;
 
-import com.typesafe.config.Config;
-import com.typesafe.config.ConfigFactory;
-
+import com.javaigua.interconnFlights.algorithms.LongObjectHashMap;
 import com.javaigua.interconnFlights.domain.*;
+import com.javaigua.interconnFlights.catalog.RoutesCatalog;
+import com.javaigua.interconnFlights.metrics.Metrics;
+import com.javaigua.interconnFlights.sharding.ScheduleHolders;
+import com.javaigua.interconnFlights.timetable.ScheduleFilter;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+import com.javaigua.interconnFlights.timetable.Timetable;
 import com.javaigua.interconnFlights.actors.messages.*;
 
 /**
  * An actor that fetches routes and flight schedules and filter data by relevance.
  *
+ * Routes are read from the process-wide RoutesCatalog and month schedules from the process-wide Timetable cache, so
+ * only the schedules missing in memory are fetched over the network per request. When schedule holders are sharded,
+ * month schedules are asked to the node of the cluster holding their route instead. The queries of a batch share
+ * their month schedules, so every one of them is requested once for the whole batch.
+ *
  * Bulkhead pattern is applied to the amount of (http connection pool) resources given to this actor,
  * exposing a back-pressure behaviour and failing fast to clients.
  */
@@ -35,9 +42,17 @@ public class RoutesAndSchedulesFetcherActor extends AbstractActor {
 
   LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
-  final Http http = Http.get(context().system());
   final ExecutionContext ec = getContext().dispatcher();
-  final Materializer materializer = ActorMaterializer.create(context());
+  final RoutesCatalog routesCatalog = RoutesCatalog.get(getContext().getSystem());
+  final Timetable timetable = Timetable.get(getContext().getSystem());
+  final ScheduleHolders scheduleHolders = ScheduleHolders.get(getContext().getSystem());
+  final Metrics metrics = Metrics.get(getContext().getSystem());
+
+  /**
+   * A provider of the unfiltered month schedules of the queries.
+   */
+  private interface MonthSchedules extends Function<ScheduleKey, CompletionStage<MonthSchedule>> {
+  }
 
   /**
    * Convenient actor builder
@@ -53,68 +68,104 @@ public class RoutesAndSchedulesFetcherActor extends AbstractActor {
   public Receive createReceive() {
     return receiveBuilder()
       .match(FetchRoutesAndSchedule.class, // handle FetchRoutesAndSchedule msgs
-        fetchRoutesAndSchedule -> {
-          log.debug("status= routes_and_schedule_starting, desc= {}", fetchRoutesAndSchedule.getLookUpName());
-          pipe(fetchRoutesAndSchedule(fetchRoutesAndSchedule), ec).to(getSelf());
+        fetchRoutesAndSchedule -> fetchAndPipe(fetchRoutesAndSchedule, scheduleHolders::getMonthSchedule)
+      )
+      .match(FetchBatchRoutesAndSchedules.class, // handle FetchBatchRoutesAndSchedules msgs
+        fetchBatch -> {
+          // the union of the month schedules of all the queries, each one fetched once and shared by them
+          final Map<ScheduleKey, CompletionStage<MonthSchedule>> shared = new ConcurrentHashMap<>();
+          final MonthSchedules fetchOnce = key -> {
+            final boolean[] fetched = {false};
+            final CompletionStage<MonthSchedule> monthSchedule = shared.computeIfAbsent(key, k -> {
+              fetched[0] = true;
+              return scheduleHolders.getMonthSchedule(k);
+            });
+            metrics.batchScheduleRequests(!fetched[0]).increment();
+            return monthSchedule;
+          };
+          log.debug("status= batch_routes_and_schedules_starting, desc= {}", fetchBatch.getLookUpName());
+          fetchBatch.getFetches().forEach(fetchRoutesAndSchedule -> fetchAndPipe(fetchRoutesAndSchedule, fetchOnce));
         }
       )
       .match(RoutesAndSchedules.class, // handle RoutesAndSchedules msgs
         msg -> msg.getSender().tell(msg, getSelf())
       )
+      .match(Status.Failure.class, // already answered to the original sender
+        failure -> log.debug("status= routes_and_schedule_failure_piped, error= {}", failure.cause().getMessage())
+      )
       .matchAny(unknown -> log.info("{} unknown message received: {}", this.getClass().getName(), unknown))
       .build();
   }
 
+  /**
+   * Fetches the routes and schedules of a query and pipes them to this actor, or answers the query with a failure.
+   *
+   * @param msg a description of the routes and schedules to be fetched
+   * @param monthSchedules provider of the unfiltered month schedules
+   */
+  private void fetchAndPipe(FetchRoutesAndSchedule msg, MonthSchedules monthSchedules) {
+    log.debug("status= routes_and_schedule_starting, desc= {}", msg.getLookUpName());
+    final ActorRef self = getSelf();
+    pipe(fetchRoutesAndSchedule(msg, monthSchedules)
+      .whenComplete((routesAndSchedules, throwable) -> {
+        if (throwable != null) {
+          // answer the query right away, the finder no longer has it in flight
+          log.warning("status= routes_and_schedule_failed, desc= {}, error= {}", msg.getLookUpName(),
+            throwable.getMessage());
+          msg.getOriginalSender().tell(new Status.Failure(throwable), self);
+          msg.getSender().tell(new InterconnectionsCompleted(msg.getGetInterconnections()), self);
+        }
+      }), ec).to(self);
+  }
+
   /**
    * Performs the retrieval of the requested routes and schedule data in an async non-blocking manner,
    * even in parallel when possible.
    *
    * @param msg a description of the routes and schedules to be fetched
+   * @param monthSchedules provider of the unfiltered month schedules
    * @return a future of the RoutesAndSchedules object that will hold the requested data.
    */
-  private CompletableFuture<RoutesAndSchedules> fetchRoutesAndSchedule(final FetchRoutesAndSchedule msg) {
+  private CompletableFuture<RoutesAndSchedules> fetchRoutesAndSchedule(final FetchRoutesAndSchedule msg,
+                                                                       MonthSchedules monthSchedules) {
     log.info("status= routes_and_schedules_fetching, departure= {}, arrival= {}, depDateTime= {}, arrDateTime= {}",
       msg.getGetInterconnections().getDeparture(), msg.getGetInterconnections().getArrival(),
       msg.getGetInterconnections().getDepartureDateTime(), msg.getGetInterconnections().getArrivalDateTime());
 
-    Config config = ConfigFactory.load();
-    String routesUrlTemplate = config.getString("application.routes-url");
-    String schedulesUrlTemplate = config.getString("application.schedules-url");
-
-    return fetchRoutes(routesUrlTemplate)
-      .thenApplyAsync(routes -> routes.stream()
-          .filter(route -> {
-            String departure = msg.getGetInterconnections().getDeparture();
-            String arrival = msg.getGetInterconnections().getArrival();
-            return departure.equals(route.getAirportFrom()) || arrival.equals(route.getAirportTo());
-          })
-          .collect(Collectors.toList())
-      )
+    return routesCatalog.getSnapshot()
+      // only the direct route and the legs through hubs shared by departure and arrival can form a path
+      .thenApplyAsync(snapshot -> snapshot.getCandidateRoutes(msg.getGetInterconnections().getDeparture(),
+        msg.getGetInterconnections().getArrival()))
       .thenComposeAsync(routes -> {
-        List<CompletableFuture<Map<String, MonthSchedule>>> schedulesFutures = createFetchSchedulesFutures(msg,
-          schedulesUrlTemplate, routes);
-        log.debug("status= schedules_fetching, schedulesFuturesCount= {}", schedulesFutures.size());
+        final long fanOutStart = System.nanoTime();
+        // index routes by route key of their departure and arrival airports
+        final LongObjectHashMap<Route> routesMap = new LongObjectHashMap<>(routes.size());
+        routes.forEach(route -> routesMap.put(AirportDictionary.routeKey(route), route));
 
-        // execute the schedule futures in parallel
-        return CompletableFuture.allOf(schedulesFutures.toArray(new CompletableFuture[0]))
-          .thenApplyAsync(v -> schedulesFutures.stream().map(future -> future.join()).collect(Collectors.toList()))
-          .thenApplyAsync(schedules -> {
-            log.debug("status= schedules_fetched, schedules= {}", schedules);
-
-            // index routes by departure and arrival IATA codes
-            final Map<String, Route> routesMap = routes.stream()
-              .collect(Collectors.toMap(r -> getKeyFor(r.getAirportFrom(), r.getAirportTo()), r -> r));
+        final LongObjectHashMap<List<CompletableFuture<MonthSchedule>>> schedulesFutures =
+          createFetchSchedulesFutures(msg, routesMap, monthSchedules);
+        final CompletableFuture[] allFutures = schedulesFutures.values().stream()
+          .flatMap(List::stream).toArray(CompletableFuture[]::new);
+        log.debug("status= schedules_fetching, schedulesFuturesCount= {}", allFutures.length);
 
-            // index schedules by departure and arrival IATA codes
-            final Map<String, List<MonthSchedule>> schedulesMap = schedules.stream()
-              .map(map -> map.entrySet().stream()
-                .filter(e -> e.getValue().getMonth() > 0 && !e.getValue().getDays().isEmpty())
-                .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())))
-              .flatMap(map -> map.entrySet().stream())
-              .collect(Collectors.groupingBy(Map.Entry::getKey,
-                Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+        // execute the schedule futures in parallel
+        return CompletableFuture.allOf(allFutures)
+          .whenComplete((v, throwable) -> metrics.recordStage("schedules_fanout", fanOutStart))
+          .thenApplyAsync(v -> {
+            // index schedules by route key of their departure and arrival airports
+            final LongObjectHashMap<List<MonthSchedule>> schedulesMap = new LongObjectHashMap<>(routes.size());
+            schedulesFutures.forEach((routeKey, futures) -> {
+              for (CompletableFuture<MonthSchedule> future : futures) {
+                final MonthSchedule monthSchedule = future.join();
+                if (monthSchedule.getMonth() > 0 && !monthSchedule.getDays().isEmpty()) {
+                  schedulesMap.computeIfAbsent(routeKey, k -> new ArrayList<>(futures.size())).add(monthSchedule);
+                }
+              }
+            });
 
             log.debug("status= routes_and_schedules_fetched, routes_filtered= {}, schedules_filtered= {}", routes, schedulesMap);
+            log.debug("status= schedule_cache_stats, stats= {}, fetches= {}, coalesced= {}", timetable.getCacheStats(),
+              timetable.getInFlightFetches().getCalls(), timetable.getInFlightFetches().getCoalesced());
             return new RoutesAndSchedules(msg.getGetInterconnections(), routesMap, schedulesMap, msg.getSender(),
               msg.getOriginalSender());
           });
@@ -122,84 +173,66 @@ public class RoutesAndSchedulesFetcherActor extends AbstractActor {
       .toCompletableFuture();
   }
 
-  /**
-   * Fetches all the Routes from the Routes API.
-   * @return the collection of available routes.
-   */
-  private CompletableFuture<List<Route>> fetchRoutes(String routesUrl) {
-    log.debug("status= routes_fetching, url= {}", routesUrl);
-    return http.singleRequest(HttpRequest.create(routesUrl), materializer)
-      .thenComposeAsync(success -> Jackson.unmarshaller(Route[].class).unmarshal(success.entity(), ec, materializer))
-      .exceptionally(throwable -> new Route[0])
-      .thenApplyAsync(Arrays::asList)
-      .thenApplyAsync(routes ->
-        routes.stream()
-          .filter(route -> route.getConnectingAirport() == null) // filter to only direct routes (no connecting airports)
-          .filter(route -> route.getAirportFrom() != null || route.getAirportTo() != null) // filter empty ones
-          .collect(Collectors.toList()))
-      .toCompletableFuture();
-  }
-
   /**
    * Creates a collection of month schedules futures to be fetched from the Timetable API.
    *
    * @param msg the original message
-   * @param routes the fetched routes data
-   * @return a collection of month schedules futures to be fetched
+   * @param routes the fetched routes data, indexed by route key
+   * @param monthSchedules provider of the unfiltered month schedules
+   * @return the month schedules futures to be fetched, indexed by route key
    */
-  private List<CompletableFuture<Map<String, MonthSchedule>>> createFetchSchedulesFutures(FetchRoutesAndSchedule msg,
-                                                                                          String schedulesUrlTemplate,
-                                                                                          List<Route> routes) {
+  private LongObjectHashMap<List<CompletableFuture<MonthSchedule>>> createFetchSchedulesFutures(
+    FetchRoutesAndSchedule msg, LongObjectHashMap<Route> routes, MonthSchedules monthSchedules) {
     // futures to get all the schedule data from departure to arrival (possibly spans to a month range)
     final int months = getMonthsDifference(msg.getGetInterconnections());
     log.debug("status= routes_fetched_filtered, monthsBetween= {}, routesCount= {}, filtered= {}", months,
-      routes.size(), routes);
-
-    List<CompletableFuture<Map<String, MonthSchedule>>> schedulesFutures = new ArrayList<>();
-    for (int i = 0; i < routes.size(); i++) {
-      String departure = routes.get(i).getAirportFrom();
-      String arrival = routes.get(i).getAirportTo();
-      final LocalDateTime departureDateTime = msg.getGetInterconnections().getDepartureDateTime()
-        .minus(1, ChronoUnit.SECONDS);
-      final LocalDateTime arrivalDateTime = msg.getGetInterconnections().getArrivalDateTime()
-        .plus(1, ChronoUnit.SECONDS);
+      routes.size(), routes.values());
 
+    final LocalDateTime departureDateTime = msg.getGetInterconnections().getDepartureDateTime()
+      .minus(1, ChronoUnit.SECONDS);
+    final LocalDateTime arrivalDateTime = msg.getGetInterconnections().getArrivalDateTime()
+      .plus(1, ChronoUnit.SECONDS);
+    final LongObjectHashMap<List<CompletableFuture<MonthSchedule>>> schedulesFutures =
+      new LongObjectHashMap<>(routes.size());
+    routes.forEach((routeKey, route) -> {
+      final List<CompletableFuture<MonthSchedule>> futures = new ArrayList<>(months);
       for (int j = 0; j < months; j++) {
         boolean isFirstMonth = j == 0;
         LocalDateTime departureDateTimePlus = departureDateTime.plus(j, ChronoUnit.MONTHS);
-        schedulesFutures.add(fetchScheduleForYearMonth(schedulesUrlTemplate, departure, arrival, departureDateTimePlus, arrivalDateTime,
-          isFirstMonth));
+        futures.add(fetchScheduleForYearMonth(route.getAirportFrom(), route.getAirportTo(), departureDateTimePlus,
+          arrivalDateTime, isFirstMonth, monthSchedules));
       }
-    }
+      schedulesFutures.put(routeKey, futures);
+    });
     return schedulesFutures;
   }
 
   /**
    * An specific strategy to fetch and filter schedule data for a target departure and arrival IATA codes and temporal
-   * time.
+   * time. The unfiltered month schedule is served by the Timetable cache, filtering is performed per request.
    *
    * @param departure the target departure IATA code
    * @param arrival the target arrival IATA code
    * @param departureDateTime the target departure date time
    * @param arrivalDateTime the target arrival date time
    * @param isFirstMonth true if first month in the schedule sequence, false otherwise
-   * @return a future taht holds the month schedule for the provided data, index in a map by departure and arrival.
+   * @param monthSchedules provider of the unfiltered month schedules
+   * @return a future taht holds the filtered month schedule for the provided data.
    */
-  private CompletableFuture<Map<String, MonthSchedule>> fetchScheduleForYearMonth(String schedulesUrlTemplate,
-                                                                                  String departure, String arrival,
-                                                                                  LocalDateTime departureDateTime,
-                                                                                  LocalDateTime arrivalDateTime,
-                                                                                  boolean isFirstMonth) {
-    final String scheduleUrl = String.format(schedulesUrlTemplate, departure, arrival, departureDateTime.getYear(),
+  private CompletableFuture<MonthSchedule> fetchScheduleForYearMonth(String departure, String arrival,
+                                                                     LocalDateTime departureDateTime,
+                                                                     LocalDateTime arrivalDateTime,
+                                                                     boolean isFirstMonth,
+                                                                     MonthSchedules monthSchedules) {
+    final ScheduleKey scheduleKey = new ScheduleKey(departure, arrival, departureDateTime.getYear(),
       departureDateTime.getMonthValue());
-    log.debug("status= schedule_fetching, url= {}", scheduleUrl);
+    log.debug("status= schedule_requested, key= {}", scheduleKey);
 
-    return http.singleRequest(HttpRequest.create(scheduleUrl), materializer)
-      .thenComposeAsync(httpResponse ->
-        Jackson.unmarshaller(MonthSchedule.class).unmarshal(httpResponse.entity(), ec, materializer))
+    return monthSchedules.apply(scheduleKey)
       .exceptionally(throwable -> new MonthSchedule())
       .thenApplyAsync(monthSchedule -> {
         log.debug("status= month_schedule_unmarshaled, monthSchedule= {}", monthSchedule);
+        final long filterStart = System.nanoTime();
 
         // filter daySchedule by departure day and its flights by departure day and time
         List<DaySchedule> filteredDays = monthSchedule.getDays().stream()
@@ -207,29 +240,18 @@ public class RoutesAndSchedulesFetcherActor extends AbstractActor {
             departureDateTime, arrivalDateTime, isFirstMonth))
           .filter(daySchedule -> daySchedule.getFlights() != null && daySchedule.getFlights().size() > 0)
           .collect(Collectors.toList());
+        metrics.recordStage("schedule_filter", filterStart);
 
-        Map<String, MonthSchedule> monthScheduleMap = new HashMap<>();
-        monthScheduleMap.put(getKeyFor(departure, arrival), new MonthSchedule(monthSchedule.getMonth(), filteredDays));
-        log.debug("status= month_schedule_filtered, filtered= {}, original= {}",
-          monthScheduleMap.get(getKeyFor(departure, arrival)), monthSchedule);
+        final MonthSchedule filtered = new MonthSchedule(monthSchedule.getMonth(), filteredDays);
+        log.debug("status= month_schedule_filtered, filtered= {}, original= {}", filtered, monthSchedule);
 
-        return monthScheduleMap;
+        return filtered;
       })
       .toCompletableFuture();
   }
 
   /**
-   * Provided a target year, month, a day schedule and a pair of date times (from and to), and a flag indicating the
-   * the first month in the parent month schedule, this method filters the flights that are between the
-   * resulting range.
-   *
-   * @param year the target year
-   * @param month the target month
-   * @param daySchedule a day schedule
-   * @param departureDateTime the starting date time
-   * @param arrivalDateTime the ending date time
-   * @param isFirstMonth true if first month in the parent month schedule, false otherwise
-   * @return a filtered day schedule information of the flights in between.
+   * Filters the flights of a day schedule that are between the given date times, see ScheduleFilter.
    */
   private DaySchedule onlyFlightsInBetween(Integer year, Integer month,
                                                          DaySchedule daySchedule,
@@ -237,21 +259,8 @@ public class RoutesAndSchedulesFetcherActor extends AbstractActor {
                                                          boolean isFirstMonth) {
     log.debug("status= day_schedule_filtering, year_month={}, daySchedule= {}, from_to_time= {}, isFirstMonth= {}",
       year + "_" + month, daySchedule, departureDateTime + " -> " + arrivalDateTime, isFirstMonth);
-    List<Flight> filteredFlights = daySchedule.getFlights().stream()
-      .filter(flight -> {
-        // to filter flights, calculate full date time for departure and arrival
-        final LocalDateTime flightDeparture = LocalDateTime.of(year, month, daySchedule.getDay(),
-          flight.getDepartureLocalTime().getHour(), flight.getDepartureLocalTime().getMinute(), 0);
-        final LocalDateTime flightArrival = LocalDateTime.of(year, month, daySchedule.getDay(),
-          flight.getArrivalLocalTime().getHour(), flight.getArrivalLocalTime().getMinute(), 0);
-
-        if (isFirstMonth)
-          return departureDateTime.isBefore(flightDeparture) && arrivalDateTime.isAfter(flightArrival);
-        else
-          return arrivalDateTime.isAfter(flightArrival);
-      })
-      .collect(Collectors.toList());
-    DaySchedule filteredDaySchedule = new DaySchedule(daySchedule.getDay(), filteredFlights);
+    DaySchedule filteredDaySchedule = ScheduleFilter.onlyFlightsInBetween(year, month, daySchedule,
+      departureDateTime, arrivalDateTime, isFirstMonth);
     log.debug("status= day_schedule_filtered, filtered={}, original= {}", filteredDaySchedule, daySchedule);
     return filteredDaySchedule;
   }
@@ -264,11 +273,4 @@ public class RoutesAndSchedulesFetcherActor extends AbstractActor {
     final LocalDateTime arrivalDateTime = getInterconnections.getArrivalDateTime().plus(1, ChronoUnit.SECONDS);
     return (int) YearMonth.from(departureDateTime).until(YearMonth.from(arrivalDateTime), ChronoUnit.MONTHS) + 1;
   }
-
-  /**
-   * Utility method to generate a key for a given departure and arrival pair values
-   */
-  private static String getKeyFor(String departureCode, String arrivalCode) {
-    return departureCode + "_" + arrivalCode;
-  }
 }
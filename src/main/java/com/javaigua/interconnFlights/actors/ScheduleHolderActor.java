@@ -0,0 +1,79 @@
+package com.javaigua.interconnFlights.actors;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.duration.Duration;
+
+import akka.actor.*;
+import akka.cluster.sharding.ShardRegion;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import static akka.pattern.PatternsCS.pipe;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import com.javaigua.interconnFlights.actors.messages.GetMonthSchedule;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+import com.javaigua.interconnFlights.timetable.Timetable;
+
+/**
+ * A cluster sharded entity that owns the month schedules of a single route, identified by its departure and arrival
+ * IATA codes pair.
+ *
+ * As every route lives in a single node of the cluster, its schedules are only fetched, cached and revalidated by the
+ * Timetable of that node, so each node holds a partition of all schedules. Idle entities are passivated and their
+ * schedules dropped from the cache, the same happens when the entity is handed off to another node.
+ */
+public class ScheduleHolderActor extends AbstractActor {
+
+  LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+
+  final ExecutionContext ec = getContext().dispatcher();
+  final Timetable timetable = Timetable.get(getContext().getSystem());
+  final Config config = ConfigFactory.load();
+
+  // month schedules of this route served by this entity
+  private final Set<ScheduleKey> held = new HashSet<>();
+
+  /**
+   * Convenient actor builder
+   */
+  public static Props props() {
+    return Props.create(ScheduleHolderActor.class);
+  }
+
+  @Override
+  public void preStart() {
+    getContext().setReceiveTimeout(Duration.create(
+      config.getLong("application.schedule-holders.passivate-after-millis"), TimeUnit.MILLISECONDS));
+  }
+
+  @Override
+  public void postStop() {
+    timetable.invalidate(held);
+    log.debug("status= schedule_holder_stopped, route= {}, dropped= {}", getSelf().path().name(), held.size());
+  }
+
+  /**
+   * Main entry point of messages handled by this actor
+   */
+  @Override
+  public Receive createReceive() {
+    return receiveBuilder()
+      .match(GetMonthSchedule.class, // handle GetMonthSchedule msgs
+        getMonthSchedule -> {
+          held.add(getMonthSchedule.getKey());
+          pipe(timetable.getMonthSchedule(getMonthSchedule.getKey()), ec).to(getSender());
+        }
+      )
+      .match(ReceiveTimeout.class, // idle, ask the shard to stop this entity
+        timeout -> getContext().getParent().tell(new ShardRegion.Passivate(PoisonPill.getInstance()), getSelf())
+      )
+      .matchAny(unknown -> log.info("{} unknown message received: {}", this.getClass().getName(), unknown))
+      .build();
+  }
+}
@@ -0,0 +1,54 @@
+package com.javaigua.interconnFlights.actors;
+
+import java.util.concurrent.ForkJoinPool;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+
+/**
+ * The fork-join pool the calculators of an actor system split their heaviest connection-scan searches by hub on.
+ *
+ * The pool is sized after application.calculator.parallelism (the number of cores when not positive) of the actor
+ * system config, and shut down once the actor system terminates.
+ */
+public class SearchPool implements Extension {
+
+  public static final Id ID = new Id();
+
+  /**
+   * Akka extension id, one search pool per actor system.
+   */
+  public static class Id extends AbstractExtensionId<SearchPool> implements ExtensionIdProvider {
+    @Override
+    public Id lookup() {
+      return ID;
+    }
+
+    @Override
+    public SearchPool createExtension(ExtendedActorSystem system) {
+      return new SearchPool(system);
+    }
+  }
+
+  /**
+   * Convenient lookup of the search pool of the given actor system
+   */
+  public static SearchPool get(ActorSystem system) {
+    return ID.get(system);
+  }
+
+  private final ForkJoinPool pool;
+
+  private SearchPool(ExtendedActorSystem system) {
+    final int configured = system.settings().config().getInt("application.calculator.parallelism");
+    this.pool = new ForkJoinPool(configured > 0 ? configured : Runtime.getRuntime().availableProcessors());
+    system.registerOnTermination(pool::shutdown);
+  }
+
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+}
@@ -1,12 +1,11 @@
 package com.javaigua.interconnFlights.actors.messages;
 
 import java.io.Serializable;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import akka.actor.ActorRef;
 
+import com.javaigua.interconnFlights.algorithms.LongObjectHashMap;
 import com.javaigua.interconnFlights.domain.MonthSchedule;
 import com.javaigua.interconnFlights.domain.Route;
 
@@ -16,21 +15,22 @@ import com.javaigua.interconnFlights.domain.Route;
  */
 public class CalculateInterconnFlights  implements Serializable, MessageWithLookUpActorRefName {
   private final GetInterconnections getInterconnections;
-  private final Map<String, Route> routes;
-  private final Map<String, List<MonthSchedule>> schedules;
+  private final LongObjectHashMap<Route> routes;
+  private final LongObjectHashMap<List<MonthSchedule>> schedules;
   private final ActorRef sender;
   private final ActorRef originalSender;
 
   public CalculateInterconnFlights() {
     this.getInterconnections = new GetInterconnections();
-    this.routes = Collections.EMPTY_MAP;
-    this.schedules = Collections.EMPTY_MAP;
+    this.routes = new LongObjectHashMap<>();
+    this.schedules = new LongObjectHashMap<>();
     this.sender = ActorRef.noSender();
     this.originalSender = ActorRef.noSender();
   }
 
-  public CalculateInterconnFlights(GetInterconnections getInterconnections, Map<String, Route> routes,
-                                   Map<String, List<MonthSchedule>> schedules, ActorRef sender, ActorRef originalSender) {
+  public CalculateInterconnFlights(GetInterconnections getInterconnections, LongObjectHashMap<Route> routes,
+                                   LongObjectHashMap<List<MonthSchedule>> schedules, ActorRef sender,
+                                   ActorRef originalSender) {
     this.getInterconnections = getInterconnections;
     this.routes = routes;
     this.schedules = schedules;
@@ -42,11 +42,11 @@ public class CalculateInterconnFlights  implements Serializable, MessageWithLook
     return getInterconnections;
   }
 
-  public Map<String, Route> getRoutes() {
+  public LongObjectHashMap<Route> getRoutes() {
     return routes;
   }
 
-  public Map<String, List<MonthSchedule>> getSchedules() {
+  public LongObjectHashMap<List<MonthSchedule>> getSchedules() {
     return schedules;
   }
 
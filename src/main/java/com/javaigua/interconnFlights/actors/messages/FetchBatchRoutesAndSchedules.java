@@ -0,0 +1,29 @@
+package com.javaigua.interconnFlights.actors.messages;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message to signal the command to fetch routes and schedules for many queries, each month schedule being fetched
+ * once for all of them.
+ */
+public class FetchBatchRoutesAndSchedules implements Serializable, MessageWithLookUpActorRefName {
+  private final List<FetchRoutesAndSchedule> fetches;
+
+  public FetchBatchRoutesAndSchedules() {
+    this.fetches = new ArrayList<>();
+  }
+
+  public FetchBatchRoutesAndSchedules(List<FetchRoutesAndSchedule> fetches) {
+    this.fetches = fetches;
+  }
+
+  public List<FetchRoutesAndSchedule> getFetches() {
+    return fetches;
+  }
+
+  public String getLookUpName() {
+    return fetches.size() + "_FBR&S";
+  }
+}
@@ -0,0 +1,30 @@
+package com.javaigua.interconnFlights.actors.messages;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message to signal the command to find interconnecting flights for many queries at once, sharing the fetches of
+ * the month schedules they have in common. It is answered with a List of the outcome of every query, in the order of
+ * the queries.
+ */
+public class GetBatchInterconnections implements Serializable, MessageWithLookUpActorRefName {
+  private final List<GetInterconnections> queries;
+
+  public GetBatchInterconnections() {
+    this.queries = new ArrayList<>();
+  }
+
+  public GetBatchInterconnections(List<GetInterconnections> queries) {
+    this.queries = queries;
+  }
+
+  public List<GetInterconnections> getQueries() {
+    return queries;
+  }
+
+  public String getLookUpName() {
+    return queries.size() + "_GBI";
+  }
+}
@@ -1,6 +1,7 @@
 package com.javaigua.interconnFlights.actors.messages;
 
 import java.io.Serializable;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
@@ -13,20 +14,52 @@ public class GetInterconnections implements Serializable, MessageWithLookUpActor
   private final String arrival;
   private final LocalDateTime departureDateTime;
   private final LocalDateTime arrivalDateTime;
+  private final boolean streaming;
+  private final int calendarDays;
 
   public GetInterconnections() {
     this.departure = "";
     this.arrival = "";
     this.departureDateTime = LocalDateTime.now();
     this.arrivalDateTime = LocalDateTime.now();
+    this.streaming = false;
+    this.calendarDays = 0;
   }
 
   public GetInterconnections(String departure, String arrival, LocalDateTime departureDateTime,
                              LocalDateTime arrivalDateTime) {
+    this(departure, arrival, departureDateTime, arrivalDateTime, false);
+  }
+
+  /**
+   * @param streaming whether every interconnection is sent to the original sender as soon as it is calculated,
+   *                  followed by a Status.Success, instead of a single Set of them
+   */
+  public GetInterconnections(String departure, String arrival, LocalDateTime departureDateTime,
+                             LocalDateTime arrivalDateTime, boolean streaming) {
+    this(departure, arrival, departureDateTime, arrivalDateTime, streaming, 0);
+  }
+
+  private GetInterconnections(String departure, String arrival, LocalDateTime departureDateTime,
+                              LocalDateTime arrivalDateTime, boolean streaming, int calendarDays) {
     this.departure = departure;
     this.arrival = arrival;
     this.departureDateTime = departureDateTime;
     this.arrivalDateTime = arrivalDateTime;
+    this.streaming = streaming;
+    this.calendarDays = calendarDays;
+  }
+
+  /**
+   * Creates a calendar query, answered with the interconnections of every day from the first to the last date in a
+   * single SortedMap keyed by date. Every day the interconnections depart after the departure time and arrive before
+   * the arrival time, of the next day when it is not after the departure time.
+   */
+  public static GetInterconnections calendar(String departure, String arrival, LocalDate firstDate, LocalDate lastDate,
+                                             LocalTime departureTime, LocalTime arrivalTime) {
+    final LocalDate lastArrivalDate = arrivalTime.isAfter(departureTime) ? lastDate : lastDate.plusDays(1);
+    return new GetInterconnections(departure, arrival, firstDate.atTime(departureTime),
+      lastArrivalDate.atTime(arrivalTime), false, (int) ChronoUnit.DAYS.between(firstDate, lastDate) + 1);
   }
 
   public String getDeparture() {
@@ -45,6 +78,21 @@ public class GetInterconnections implements Serializable, MessageWithLookUpActor
     return arrivalDateTime;
   }
 
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  public boolean isCalendar() {
+    return calendarDays > 0;
+  }
+
+  /**
+   * Provides the number of days of a calendar query, 0 otherwise.
+   */
+  public int getCalendarDays() {
+    return calendarDays;
+  }
+
   public Integer getDepartureYear() {
     return departureDateTime.getYear();
   }
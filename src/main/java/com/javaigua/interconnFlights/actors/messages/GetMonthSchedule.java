@@ -0,0 +1,32 @@
+package com.javaigua.interconnFlights.actors.messages;
+
+import java.io.Serializable;
+
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+
+/**
+ * A message to request the unfiltered month schedule of a route to the sharded entity holding it.
+ */
+public class GetMonthSchedule implements Serializable {
+  private final ScheduleKey key;
+
+  public GetMonthSchedule(ScheduleKey key) {
+    this.key = key;
+  }
+
+  public ScheduleKey getKey() {
+    return key;
+  }
+
+  /**
+   * Provides the id of the entity holding the schedules of the route, its departure and arrival IATA codes pair.
+   */
+  public String getEntityId() {
+    return key.getDeparture() + "_" + key.getArrival();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder().append("GetMonthSchedule(").append(key).append(")").toString();
+  }
+}
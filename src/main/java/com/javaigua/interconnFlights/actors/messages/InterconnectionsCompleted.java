@@ -0,0 +1,27 @@
+package com.javaigua.interconnFlights.actors.messages;
+
+import java.io.Serializable;
+
+/**
+ * A message to signal the finder that a GetInterconnections query was answered, successfully or not, so it is no
+ * longer in flight.
+ */
+public class InterconnectionsCompleted implements Serializable, MessageWithLookUpActorRefName {
+  private final GetInterconnections getInterconnections;
+
+  public InterconnectionsCompleted() {
+    this.getInterconnections = new GetInterconnections();
+  }
+
+  public InterconnectionsCompleted(GetInterconnections getInterconnections) {
+    this.getInterconnections = getInterconnections;
+  }
+
+  public GetInterconnections getGetInterconnections() {
+    return getInterconnections;
+  }
+
+  public String getLookUpName() {
+    return getInterconnections.getLookUpName() + "_IC";
+  }
+}
@@ -1,35 +1,38 @@
 package com.javaigua.interconnFlights.actors.messages;
 
 import java.io.Serializable;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import akka.actor.ActorRef;
 
+import com.javaigua.interconnFlights.algorithms.LongObjectHashMap;
 import com.javaigua.interconnFlights.domain.Route;
 import com.javaigua.interconnFlights.domain.MonthSchedule;
 
 /**
  * A message to signal the result of fetching routes and schedules.
+ *
+ * Routes and month schedules are indexed by the route key of their departure and arrival airports, see
+ * AirportDictionary, keys are process-local so they are rebuilt from the airport codes when sent to another node.
  */
 public class RoutesAndSchedules implements Serializable, MessageWithLookUpActorRefName {
   private final GetInterconnections getInterconnections;
-  private final Map<String, Route> routes;
-  private final Map<String, List<MonthSchedule>> schedules;
+  private final LongObjectHashMap<Route> routes;
+  private final LongObjectHashMap<List<MonthSchedule>> schedules;
   private final ActorRef sender;
   private final ActorRef originalSender;
 
   public RoutesAndSchedules() {
     this.getInterconnections = new GetInterconnections();
-    this.routes = Collections.EMPTY_MAP;
-    this.schedules = Collections.EMPTY_MAP;
+    this.routes = new LongObjectHashMap<>();
+    this.schedules = new LongObjectHashMap<>();
     this.sender = ActorRef.noSender();
     this.originalSender = ActorRef.noSender();
   }
 
-  public RoutesAndSchedules(GetInterconnections getInterconnections, Map<String, Route> routes,
-                            Map<String, List<MonthSchedule>> schedules, ActorRef sender, ActorRef originalSender) {
+  public RoutesAndSchedules(GetInterconnections getInterconnections, LongObjectHashMap<Route> routes,
+                            LongObjectHashMap<List<MonthSchedule>> schedules, ActorRef sender,
+                            ActorRef originalSender) {
     this.getInterconnections = getInterconnections;
     this.routes = routes;
     this.schedules = schedules;
@@ -41,11 +44,11 @@ public class RoutesAndSchedules implements Serializable, MessageWithLookUpActorR
     return getInterconnections;
   }
 
-  public Map<String, Route> getRoutes() {
+  public LongObjectHashMap<Route> getRoutes() {
     return routes;
   }
 
-  public Map<String, List<MonthSchedule>> getSchedules() {
+  public LongObjectHashMap<List<MonthSchedule>> getSchedules() {
     return schedules;
   }
 
@@ -0,0 +1,244 @@
+package com.javaigua.interconnFlights.algorithms;
+
+import java.util.Arrays;
+
+import com.javaigua.interconnFlights.domain.Flight;
+
+/**
+ * An edge weighted directed graph in compressed sparse row form.
+ *
+ * The edges leaving vertex v are the indexes in [firstEdge(v), lastEdge(v)) of the primitive arrays of targets,
+ * weights in minutes and flight indexes into a flight table, so traversals do not allocate nor chase pointers:
+ *
+ *   for (int e = g.firstEdge(v); e < g.lastEdge(v); e++) { g.to(e); g.weight(e); }
+ *
+ * Edges of a vertex keep the order in which they were added.
+ */
+public class CompactDigraph {
+
+  private final int V;
+  private final int E;
+  private final int[] offsets;
+  private final int[] targets;
+  private final int[] weightMinutes;
+  private final int[] flightIdx;
+  private final Flight[] flights;
+  // original edges when created from an EdgeWeightedDigraph, null otherwise
+  private final DirectedEdge[] directedEdges;
+
+  private CompactDigraph(int V, int[] offsets, int[] targets, int[] weightMinutes, int[] flightIdx, Flight[] flights,
+                         DirectedEdge[] directedEdges) {
+    this.V = V;
+    this.E = targets.length;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weightMinutes = weightMinutes;
+    this.flightIdx = flightIdx;
+    this.flights = flights;
+    this.directedEdges = directedEdges;
+  }
+
+  /**
+   * Creates a compact copy of the given graph, with weights rounded to whole minutes.
+   */
+  public static CompactDigraph from(EdgeWeightedDigraph G) {
+    Builder builder = new Builder(G.V(), G.E());
+    DirectedEdge[] edges = new DirectedEdge[G.E()];
+    int[] positions = new int[G.E()];
+    int i = 0;
+    for (DirectedEdge e : G.edges()) {
+      builder.addEdge(e.from(), e.to(), (int) Math.round(e.weight()), builder.addFlight(e.flight()));
+      edges[i++] = e;
+    }
+    CompactDigraph compact = builder.build(positions);
+    DirectedEdge[] sorted = new DirectedEdge[edges.length];
+    for (int j = 0; j < edges.length; j++) {
+      sorted[positions[j]] = edges[j];
+    }
+    return new CompactDigraph(compact.V, compact.offsets, compact.targets, compact.weightMinutes, compact.flightIdx,
+      compact.flights, sorted);
+  }
+
+  public int V() {
+    return V;
+  }
+
+  public int E() {
+    return E;
+  }
+
+  /**
+   * First edge index of vertex v.
+   */
+  public int firstEdge(int v) {
+    return offsets[v];
+  }
+
+  /**
+   * Edge index after the last edge of vertex v.
+   */
+  public int lastEdge(int v) {
+    return offsets[v + 1];
+  }
+
+  public int outdegree(int v) {
+    return offsets[v + 1] - offsets[v];
+  }
+
+  /**
+   * Source vertex of edge e, found by binary search over the offsets.
+   */
+  public int from(int e) {
+    int lo = 0;
+    int hi = V - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (offsets[mid] <= e) lo = mid;
+      else hi = mid - 1;
+    }
+    return lo;
+  }
+
+  public int to(int e) {
+    return targets[e];
+  }
+
+  public int weight(int e) {
+    return weightMinutes[e];
+  }
+
+  public int flightIndex(int e) {
+    return flightIdx[e];
+  }
+
+  public Flight flight(int e) {
+    return flights[flightIdx[e]];
+  }
+
+  /**
+   * Provides edge e as a DirectedEdge, the original one when this graph was created from an EdgeWeightedDigraph.
+   */
+  public DirectedEdge edge(int e) {
+    if (directedEdges != null) return directedEdges[e];
+    return new DirectedEdge(from(e), to(e), weight(e), flight(e));
+  }
+
+  /**
+   * Creates an EdgeWeightedDigraph with the same edges.
+   */
+  public EdgeWeightedDigraph toEdgeWeightedDigraph() {
+    EdgeWeightedDigraph G = new EdgeWeightedDigraph(V);
+    for (int v = 0; v < V; v++) {
+      for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+        G.addEdge(directedEdges != null ? directedEdges[e] : new DirectedEdge(v, targets[e], weightMinutes[e], flight(e)));
+      }
+    }
+    return G;
+  }
+
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+    s.append("{vC: ").append(V).append(", eC: ").append(E).append(", v:[");
+    for (int v = 0; v < V; v++) {
+      s.append(v).append(": {");
+      for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+        s.append(v).append("->").append(targets[e]).append(" ").append(weightMinutes[e]).append(" ")
+          .append(flight(e)).append("  ");
+      }
+      s.append("} ");
+      if (v + 1 < V) s.append(", ");
+    }
+    return s.append("}}").toString();
+  }
+
+  /**
+   * Accumulates edges in insertion order and lays them out by source vertex.
+   */
+  public static class Builder {
+    private final int V;
+    private int edgeCount;
+    private int[] sources;
+    private int[] targets;
+    private int[] weightMinutes;
+    private int[] flightIdx;
+    private int flightCount;
+    private Flight[] flights;
+
+    public Builder(int V) {
+      this(V, 16);
+    }
+
+    public Builder(int V, int expectedEdges) {
+      if (V < 0) throw new IllegalArgumentException("Number of vertices in a Digraph must be non-negative");
+      int capacity = Math.max(expectedEdges, 1);
+      this.V = V;
+      this.sources = new int[capacity];
+      this.targets = new int[capacity];
+      this.weightMinutes = new int[capacity];
+      this.flightIdx = new int[capacity];
+      this.flights = new Flight[capacity];
+    }
+
+    /**
+     * Adds a flight to the flight table.
+     *
+     * @return the index of the flight in the table
+     */
+    public int addFlight(Flight flight) {
+      if (flightCount == flights.length) flights = Arrays.copyOf(flights, flightCount * 2);
+      flights[flightCount] = flight;
+      return flightCount++;
+    }
+
+    public void addEdge(int v, int w, int weightMinutes, int flightIndex) {
+      if (v < 0 || v >= V || w < 0 || w >= V)
+        throw new IllegalArgumentException("Vertex names must be between 0 and " + (V - 1));
+      if (weightMinutes < 0) throw new IllegalArgumentException("Weight must be non-negative");
+      if (edgeCount == sources.length) {
+        int capacity = edgeCount * 2;
+        sources = Arrays.copyOf(sources, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        this.weightMinutes = Arrays.copyOf(this.weightMinutes, capacity);
+        flightIdx = Arrays.copyOf(flightIdx, capacity);
+      }
+      sources[edgeCount] = v;
+      targets[edgeCount] = w;
+      this.weightMinutes[edgeCount] = weightMinutes;
+      flightIdx[edgeCount] = flightIndex;
+      edgeCount++;
+    }
+
+    public CompactDigraph build() {
+      return build(new int[edgeCount]);
+    }
+
+    /**
+     * Counting sort of the edges by source vertex, stable so every vertex keeps its edges insertion order.
+     *
+     * @param positions filled with the final index of every edge, in insertion order
+     */
+    private CompactDigraph build(int[] positions) {
+      int[] offsets = new int[V + 1];
+      for (int i = 0; i < edgeCount; i++) {
+        offsets[sources[i] + 1]++;
+      }
+      for (int v = 0; v < V; v++) {
+        offsets[v + 1] += offsets[v];
+      }
+
+      int[] next = Arrays.copyOf(offsets, V);
+      int[] sortedTargets = new int[edgeCount];
+      int[] sortedWeights = new int[edgeCount];
+      int[] sortedFlights = new int[edgeCount];
+      for (int i = 0; i < edgeCount; i++) {
+        int position = next[sources[i]]++;
+        sortedTargets[position] = targets[i];
+        sortedWeights[position] = weightMinutes[i];
+        sortedFlights[position] = flightIdx[i];
+        positions[i] = position;
+      }
+      return new CompactDigraph(V, offsets, sortedTargets, sortedWeights, sortedFlights,
+        Arrays.copyOf(flights, flightCount), null);
+    }
+  }
+}
@@ -0,0 +1,427 @@
+package com.javaigua.interconnFlights.algorithms;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import com.javaigua.interconnFlights.domain.*;
+
+/**
+ * A time-dependent search of direct and one stop interconnecting flights based on the Connection Scan Algorithm.
+ *
+ * Every flight is a connection between two airports at an absolute departure and arrival instant, expressed in minutes
+ * since the epoch of the airports local time. Connections are sorted once by departure instant and a search performs a
+ * single linear pass over the connections departing within the query window. A connection at a hub is only catchable
+ * if the second leg departs at least a minimum connection time and at most a maximum layover after the first leg lands.
+ *
+ * The search results are the Pareto optimal journeys of the window, that is no other journey departs later and arrives
+ * earlier or at the same time.
+ */
+public class ConnectionScan {
+
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
+  /**
+   * A flight between two airports at absolute departure and arrival instants.
+   */
+  public static class Connection {
+    private final int from;
+    private final int to;
+    private final long departure;
+    private final long arrival;
+    private final Flight flight;
+
+    public Connection(int from, int to, long departure, long arrival, Flight flight) {
+      if (from < 0 || to < 0) throw new IllegalArgumentException("Stop names must be non-negative integers");
+      if (arrival < departure) throw new IllegalArgumentException("Arrival must not be before departure");
+      this.from = from;
+      this.to = to;
+      this.departure = departure;
+      this.arrival = arrival;
+      this.flight = flight;
+    }
+
+    public int from() {
+      return from;
+    }
+
+    public int to() {
+      return to;
+    }
+
+    public long departure() {
+      return departure;
+    }
+
+    public long arrival() {
+      return arrival;
+    }
+
+    public Flight flight() {
+      return flight;
+    }
+
+    public String toString() {
+      return new StringBuilder().append(from).append("->").append(to).append(" ")
+        .append(toLocalDateTime(departure)).append("->").append(toLocalDateTime(arrival)).append(" ")
+        .append(flight)
+        .toString();
+    }
+  }
+
+  /**
+   * A sequence of catchable connections from source to target.
+   */
+  public static class Journey {
+    private final Connection[] legs;
+
+    public Journey(Connection... legs) {
+      this.legs = legs;
+    }
+
+    public Connection[] legs() {
+      return legs;
+    }
+
+    public long departure() {
+      return legs[0].departure;
+    }
+
+    public long arrival() {
+      return legs[legs.length - 1].arrival;
+    }
+
+    public String toString() {
+      return Arrays.toString(legs);
+    }
+  }
+
+  // stop by airport id of the AirportDictionary, -1 for the airports of no connection
+  private int[] st;
+  private int stops;
+  private final String[] keys;
+  private final Connection[] connections;
+
+  /**
+   * Creates the connections of the given routes and schedules.
+   *
+   * Month schedules do not carry their year, so it is resolved as the first year of the given window with that month.
+   *
+   * @param routes the routes indexed by route key
+   * @param schedules the month schedules indexed by route key
+   * @param firstMonth the first year-month of the schedules window
+   * @param lastMonth the last year-month of the schedules window
+   */
+  public ConnectionScan(LongObjectHashMap<Route> routes, LongObjectHashMap<List<MonthSchedule>> schedules,
+                        YearMonth firstMonth, YearMonth lastMonth) {
+    st = newStopsTable(AirportDictionary.size());
+    List<Connection> list = new ArrayList<>();
+    for (long routeKey : routes.keys()) {
+      // we only care for routes with available schedule
+      List<MonthSchedule> monthSchedules = schedules.get(routeKey);
+      if (monthSchedules == null) continue;
+
+      int from = indexOrAdd(AirportDictionary.departureOf(routeKey));
+      int to = indexOrAdd(AirportDictionary.arrivalOf(routeKey));
+      for (MonthSchedule monthSchedule : monthSchedules) {
+        YearMonth yearMonth = resolveYearMonth(monthSchedule.getMonth(), firstMonth, lastMonth);
+        if (yearMonth == null) continue;
+        for (DaySchedule daySchedule : monthSchedule.getDays()) {
+          long day = yearMonth.atDay(daySchedule.getDay()).toEpochDay() * MINUTES_PER_DAY;
+          for (Flight flight : daySchedule.getFlights()) {
+            long departure = day + flight.getDepartureMinute();
+            long arrival = day + flight.getArrivalMinute();
+            // different date departure and arrival
+            if (arrival < departure) arrival += MINUTES_PER_DAY;
+            list.add(new Connection(from, to, departure, arrival, flight));
+          }
+        }
+      }
+    }
+
+    keys = new String[stops];
+    for (int id = 0; id < st.length; id++) {
+      if (st[id] != -1) keys[st[id]] = AirportDictionary.nameOf(id);
+    }
+    connections = sortByDeparture(list);
+  }
+
+  /**
+   * Creates a connection scan over already indexed connections.
+   */
+  public ConnectionScan(List<Connection> connections, String[] names) {
+    st = newStopsTable(AirportDictionary.size());
+    for (String name : names) indexOrAdd(AirportDictionary.idOf(name));
+    keys = names.clone();
+    this.connections = sortByDeparture(connections);
+  }
+
+  public boolean contains(String s) {
+    int id = AirportDictionary.find(s);
+    return id != -1 && id < st.length && st[id] != -1;
+  }
+
+  public int indexOf(String s) {
+    return st[AirportDictionary.find(s)];
+  }
+
+  public String nameOf(int v) {
+    return keys[v];
+  }
+
+  public int size() {
+    return connections.length;
+  }
+
+  /**
+   * Provides the names of the stops by index.
+   */
+  public String[] names() {
+    return keys.clone();
+  }
+
+  /**
+   * Searches the direct and one stop journeys from source to target departing and arriving within the given window.
+   *
+   * @param source the departure stop
+   * @param target the arrival stop
+   * @param windowStart the earliest departure instant, in epoch minutes
+   * @param windowEnd the latest arrival instant, in epoch minutes
+   * @param minConnectionMinutes minimum time between landing at a hub and the departure of the next leg
+   * @param maxLayoverMinutes maximum time between landing at a hub and the departure of the next leg
+   * @return the Pareto optimal journeys sorted by departure
+   */
+  public List<Journey> search(int source, int target, long windowStart, long windowEnd, int minConnectionMinutes,
+                              int maxLayoverMinutes) {
+    return search(source, target, windowStart, windowEnd, minConnectionMinutes, maxLayoverMinutes, null);
+  }
+
+  /**
+   * Searches the direct and one stop journeys from source to target departing and arriving within the given window,
+   * scanning the connections through every hub in parallel in the given fork-join pool.
+   *
+   * The connections of the window are split by hub in a single pass, and as the one stop journeys through a hub only
+   * depend on the connections from the source to the hub and from the hub to the target, every hub is scanned
+   * independently and the journeys of all hubs are merged afterwards.
+   *
+   * @param pool the fork-join pool of the hub scans, or null to scan them sequentially in the calling thread
+   * @return the Pareto optimal journeys sorted by departure
+   * @see #search(int, int, long, long, int, int)
+   */
+  public List<Journey> search(int source, int target, long windowStart, long windowEnd, int minConnectionMinutes,
+                              int maxLayoverMinutes, ForkJoinPool pool) {
+    return paretoOptimal(
+      searchFeasible(source, target, windowStart, windowEnd, minConnectionMinutes, maxLayoverMinutes, pool));
+  }
+
+  /**
+   * Searches all the catchable direct and one stop journeys from source to target departing and arriving within the
+   * given window, every second leg paired with its best first leg, before keeping the Pareto optimal ones.
+   *
+   * The journeys of a wide window departing and arriving within a narrower one are the journeys a search of the
+   * narrower window pairs, so they can be searched once and looked up by departure for any window within it.
+   *
+   * @return the catchable journeys, in no particular order
+   * @see #search(int, int, long, long, int, int, ForkJoinPool)
+   */
+  public List<Journey> searchFeasible(int source, int target, long windowStart, long windowEnd,
+                                      int minConnectionMinutes, int maxLayoverMinutes, ForkJoinPool pool) {
+    if (minConnectionMinutes < 0 || maxLayoverMinutes < minConnectionMinutes)
+      throw new IllegalArgumentException("Invalid connection time bounds");
+
+    List<Journey> journeys = new ArrayList<>();
+    // first and second legs through each hub, in departure order
+    Map<Integer, List<Connection>> byHub = new HashMap<>();
+
+    for (int i = firstDepartingAtOrAfter(windowStart); i < connections.length; i++) {
+      final Connection c = connections[i];
+      if (c.departure > windowEnd) break;
+
+      if (c.from == source && c.to == target) {
+        if (c.arrival <= windowEnd) journeys.add(new Journey(c));
+      } else if (c.from == source && c.to != source) {
+        if (c.arrival + minConnectionMinutes <= windowEnd)
+          byHub.computeIfAbsent(c.to, k -> new ArrayList<>()).add(c);
+      } else if (c.to == target && c.from != target && c.arrival <= windowEnd) {
+        byHub.computeIfAbsent(c.from, k -> new ArrayList<>()).add(c);
+      }
+    }
+
+    if (pool == null) {
+      for (List<Connection> hubConnections : byHub.values()) {
+        journeys.addAll(scanHub(hubConnections, source, minConnectionMinutes, maxLayoverMinutes));
+      }
+    } else {
+      journeys.addAll(pool.submit(() -> byHub.values().parallelStream()
+        .flatMap(hubConnections -> scanHub(hubConnections, source, minConnectionMinutes, maxLayoverMinutes).stream())
+        .collect(Collectors.toList()))
+        .join());
+    }
+    return journeys;
+  }
+
+  /**
+   * Searches the direct and one stop journeys from source to target within the same daily window over consecutive
+   * days, e.g. for a calendar of the best journeys of every day.
+   *
+   * The connections are only built and sorted once, every day seeks the start of its window in them, so the whole
+   * range is swept without rebuilding anything per day.
+   *
+   * @param firstWindowStart the earliest departure instant of the first day, in epoch minutes
+   * @param windowMinutes the minutes from the earliest departure to the latest arrival of every day
+   * @param days the number of consecutive days
+   * @return the Pareto optimal journeys of every day sorted by departure, in day order
+   * @see #search(int, int, long, long, int, int)
+   */
+  public List<List<Journey>> searchDaily(int source, int target, long firstWindowStart, int windowMinutes, int days,
+                                         int minConnectionMinutes, int maxLayoverMinutes) {
+    List<List<Journey>> journeys = new ArrayList<>(days);
+    for (int day = 0; day < days; day++) {
+      long windowStart = firstWindowStart + (long) day * MINUTES_PER_DAY;
+      journeys.add(search(source, target, windowStart, windowStart + windowMinutes, minConnectionMinutes,
+        maxLayoverMinutes));
+    }
+    return journeys;
+  }
+
+  /**
+   * Provides the size of the search window, the number of connections departing within it.
+   */
+  public int windowSize(long windowStart, long windowEnd) {
+    int first = firstDepartingAtOrAfter(windowStart);
+    int last = firstDepartingAtOrAfter(windowEnd + 1);
+    return Math.max(0, last - first);
+  }
+
+  /**
+   * Scans the connections from the source to a hub and from the hub to the target, in departure order, pairing every
+   * second leg with the best catchable first leg.
+   */
+  private static List<Journey> scanHub(List<Connection> hubConnections, int source, int minConnectionMinutes,
+                                       int maxLayoverMinutes) {
+    // first legs landed at the hub, waiting for the minimum connection time (by arrival)
+    PriorityQueue<Connection> landing = new PriorityQueue<>(Comparator.comparingLong(Connection::arrival));
+    // first legs ready to connect at the hub, in arrival order and decreasing departure order
+    ArrayDeque<Connection> ready = new ArrayDeque<>();
+    List<Journey> journeys = new ArrayList<>();
+
+    for (Connection c : hubConnections) {
+      if (c.from == source) {
+        landing.add(c);
+      } else {
+        Connection feeder = bestFeeder(landing, ready, c.departure, minConnectionMinutes, maxLayoverMinutes);
+        if (feeder != null) journeys.add(new Journey(feeder, c));
+      }
+    }
+    return journeys;
+  }
+
+  /**
+   * Provides the first leg that departs the latest among the ones that landed at a hub in time to catch a second leg
+   * departing at the given instant. Since departures are scanned in order, first legs are moved from landing to ready
+   * and expired from ready in a single pass, dropping the ones dominated by a later departure that lands later.
+   */
+  private static Connection bestFeeder(PriorityQueue<Connection> landing, ArrayDeque<Connection> ready,
+                                       long departure, int minConnectionMinutes, int maxLayoverMinutes) {
+    while (!landing.isEmpty() && landing.peek().arrival + minConnectionMinutes <= departure) {
+      Connection feeder = landing.poll();
+      while (!ready.isEmpty() && ready.peekLast().departure <= feeder.departure) ready.pollLast();
+      ready.addLast(feeder);
+    }
+    while (!ready.isEmpty() && ready.peekFirst().arrival + maxLayoverMinutes < departure) ready.pollFirst();
+    return ready.peekFirst();
+  }
+
+  /**
+   * Keeps the journeys not dominated by another one departing later (or at the same time) and arriving earlier.
+   *
+   * @param journeys the journeys to filter, sorted in place
+   * @return the Pareto optimal journeys sorted by departure
+   */
+  public static List<Journey> paretoOptimal(List<Journey> journeys) {
+    journeys.sort(Comparator.comparingLong(Journey::departure).reversed().thenComparingLong(Journey::arrival));
+    LinkedList<Journey> optimal = new LinkedList<>();
+    long earliestArrival = Long.MAX_VALUE;
+    for (Journey journey : journeys) {
+      if (journey.arrival() < earliestArrival) {
+        optimal.addFirst(journey);
+        earliestArrival = journey.arrival();
+      }
+    }
+    return new ArrayList<>(optimal);
+  }
+
+  private int firstDepartingAtOrAfter(long instant) {
+    int lo = 0;
+    int hi = connections.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (connections[mid].departure < instant) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+
+  private int indexOrAdd(int id) {
+    if (id >= st.length) {
+      int length = st.length;
+      st = Arrays.copyOf(st, Math.max(id + 1, length * 2));
+      Arrays.fill(st, length, st.length, -1);
+    }
+    if (st[id] == -1) st[id] = stops++;
+    return st[id];
+  }
+
+  private static int[] newStopsTable(int airports) {
+    int[] table = new int[airports];
+    Arrays.fill(table, -1);
+    return table;
+  }
+
+  private static Connection[] sortByDeparture(List<Connection> list) {
+    Connection[] sorted = list.toArray(new Connection[0]);
+    Arrays.sort(sorted, Comparator.comparingLong(Connection::departure));
+    return sorted;
+  }
+
+  private static YearMonth resolveYearMonth(int month, YearMonth firstMonth, YearMonth lastMonth) {
+    for (YearMonth yearMonth = firstMonth; !yearMonth.isAfter(lastMonth); yearMonth = yearMonth.plusMonths(1)) {
+      if (yearMonth.getMonthValue() == month) return yearMonth;
+    }
+    return null;
+  }
+
+  /**
+   * Converts a journey to its interconnecting flights, with the given names of the stops.
+   */
+  public static InterconnFlights toInterconnFlights(Journey journey, IntFunction<String> nameOf) {
+    InterconnFlight[] legs = new InterconnFlight[journey.legs().length];
+    for (int i = 0; i < legs.length; i++) {
+      Connection c = journey.legs()[i];
+      legs[i] = new InterconnFlight(c.flight().getNumber(), nameOf.apply(c.from()), nameOf.apply(c.to()),
+        toLocalDateTime(c.departure()).toString(), toLocalDateTime(c.arrival()).toString());
+    }
+    // the same flight number operates every day, so departures are part of the identity
+    return new InterconnFlights(
+      Arrays.stream(legs).map(f -> f.getNumber() + "@" + f.getDepartureDateTime()).collect(Collectors.joining("_")),
+      legs);
+  }
+
+  /**
+   * Converts a local date time to minutes since the epoch.
+   */
+  public static long toEpochMinute(LocalDateTime dateTime) {
+    return dateTime.toLocalDate().toEpochDay() * MINUTES_PER_DAY + dateTime.getHour() * 60 + dateTime.getMinute();
+  }
+
+  /**
+   * Converts minutes since the epoch to a local date time.
+   */
+  public static LocalDateTime toLocalDateTime(long epochMinute) {
+    return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+  }
+}
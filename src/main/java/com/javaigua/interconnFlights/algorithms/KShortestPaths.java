@@ -3,7 +3,15 @@ package com.javaigua.interconnFlights.algorithms;
 import java.util.*;
 
 /**
- * An algorithm to calculate the k-shortest paths in an edge weighted directed graph.
+ * An algorithm to calculate the k-shortest simple paths in an edge weighted directed graph with non-negative weights.
+ *
+ * A best-first search pops partial paths from a min priority queue by weight, so paths reaching the target are found
+ * in non-decreasing order of weight and the search stops as soon as k of them are found: any path left in the queue,
+ * or any extension of it, weighs at least as much. Paths are limited to a maximum number of legs, and partial paths
+ * dominated by k lighter ones through the same sequence of vertices (i.e. parallel flights) are not expanded.
+ *
+ * The search traverses a CompactDigraph, partial paths only hold edge indexes and DirectedEdge objects are only
+ * created for the resulting paths.
  *
  * A computer science text-book implementation.
  */
@@ -11,44 +19,85 @@ public class KShortestPaths {
 
   public static class Path implements Comparable<Path> {
 
-    private Path previousPath;
-    private DirectedEdge directedEdge;
-    private int lastVertexInPath;
-    private double weight;
-    private HashSet<Integer> verticesInPath;
+    private final Path previousPath;
+    private final CompactDigraph digraph;
+    private final int edge;
+    private final int lastVertexInPath;
+    private final int legs;
+    private final double weight;
 
     public Path(int vertex) {
-      lastVertexInPath = vertex;
-
-      verticesInPath = new HashSet<>();
-      verticesInPath.add(vertex);
+      this.previousPath = null;
+      this.digraph = null;
+      this.edge = -1;
+      this.lastVertexInPath = vertex;
+      this.legs = 0;
+      this.weight = 0D;
     }
 
-    public Path(Path previousPath, DirectedEdge directedEdge) {
-      this(directedEdge.to());
+    public Path(Path previousPath, CompactDigraph digraph, int edge) {
       this.previousPath = previousPath;
-
-      verticesInPath.addAll(previousPath.verticesInPath);
-
-      this.directedEdge = directedEdge;
-      weight += previousPath.weight() + directedEdge.weight();
+      this.digraph = digraph;
+      this.edge = edge;
+      this.lastVertexInPath = digraph.to(edge);
+      this.legs = previousPath.legs + 1;
+      this.weight = previousPath.weight() + digraph.weight(edge);
     }
 
     public double weight() {
       return weight;
     }
 
+    public int legs() {
+      return legs;
+    }
+
+    /**
+     * Checks if the given vertex is part of this path.
+     */
+    public boolean contains(int vertex) {
+      for (Path iterator = this; iterator != null; iterator = iterator.previousPath) {
+        if (iterator.lastVertexInPath == vertex) return true;
+      }
+      return false;
+    }
+
+    /**
+     * Provides the sequence of vertices of this path.
+     */
+    public int[] vertices() {
+      int[] vertices = new int[legs + 1];
+      Path iterator = this;
+      for (int i = legs; i >= 0; i--) {
+        vertices[i] = iterator.lastVertexInPath;
+        iterator = iterator.previousPath;
+      }
+      return vertices;
+    }
+
+    /**
+     * Provides the edge indexes of this path, in the traversed CompactDigraph.
+     */
+    public int[] edges() {
+      int[] edges = new int[legs];
+      Path iterator = this;
+      for (int i = legs - 1; i >= 0; i--) {
+        edges[i] = iterator.edge;
+        iterator = iterator.previousPath;
+      }
+      return edges;
+    }
+
     public Iterable<DirectedEdge> getPath() {
       LinkedList<DirectedEdge> path = new LinkedList<>();
 
-      Path iterator = previousPath;
+      Path iterator = this;
 
-      while (iterator != null && iterator.directedEdge != null) {
-        path.addFirst(iterator.directedEdge);
+      while (iterator != null && iterator.edge >= 0) {
+        path.addFirst(iterator.digraph.edge(iterator.edge));
 
         iterator = iterator.previousPath;
       }
-      path.add(directedEdge);
 
       return path;
     }
@@ -65,37 +114,76 @@ public class KShortestPaths {
     }
   }
 
+  /**
+   * A sequence of vertices, used to count the partial paths expanded through the very same vertices.
+   */
+  private static class VertexSequence {
+    private final int[] vertices;
+    private final int hash;
+
+    private VertexSequence(int[] vertices) {
+      this.vertices = vertices;
+      this.hash = Arrays.hashCode(vertices);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof VertexSequence && Arrays.equals(vertices, ((VertexSequence) obj).vertices);
+    }
+  }
+
   public static List<Path> getKShortestPaths(EdgeWeightedDigraph digraph, int source, int target, int kPaths) {
-    List<Path> paths = new ArrayList<>();
-    Map<Integer, Integer> countMap = new HashMap<>();
-    countMap.put(target, 0);
+    return getKShortestPaths(digraph, source, target, kPaths, Integer.MAX_VALUE);
+  }
 
-    Deque<Path> priorityQueue = new ArrayDeque<>();
-    priorityQueue.addLast(new Path(source));
+  public static List<Path> getKShortestPaths(EdgeWeightedDigraph digraph, int source, int target, int kPaths,
+                                             int maxLegs) {
+    return getKShortestPaths(CompactDigraph.from(digraph), source, target, kPaths, maxLegs);
+  }
 
-    while (!priorityQueue.isEmpty() && countMap.get(target) < kPaths) {
-      Path currentPath = priorityQueue.pollFirst();
-      int lastVertexInPath = currentPath.lastVertexInPath;
+  public static List<Path> getKShortestPaths(CompactDigraph digraph, int source, int target, int kPaths,
+                                             int maxLegs) {
+    if (kPaths <= 0) throw new IllegalArgumentException("Number of paths must be a positive number");
+    if (maxLegs <= 0) throw new IllegalArgumentException("Number of legs must be a positive number");
 
-      int pathsToCurrentVertex = 0;
+    List<Path> paths = new ArrayList<>();
+    Map<VertexSequence, Integer> expandedCount = new HashMap<>();
 
-      if (countMap.get(lastVertexInPath) != null) {
-        pathsToCurrentVertex = countMap.get(lastVertexInPath);
-      }
+    PriorityQueue<Path> priorityQueue = new PriorityQueue<>();
+    priorityQueue.add(new Path(source));
 
-      pathsToCurrentVertex++;
-      countMap.put(lastVertexInPath, pathsToCurrentVertex);
+    while (!priorityQueue.isEmpty() && paths.size() < kPaths) {
+      Path currentPath = priorityQueue.poll();
+      int lastVertexInPath = currentPath.lastVertexInPath;
 
       if (lastVertexInPath == target) {
         paths.add(currentPath);
+        continue;
+      }
+      if (currentPath.legs >= maxLegs) {
+        continue;
       }
 
-      if (pathsToCurrentVertex <= kPaths) {
-        for (DirectedEdge edge : digraph.adj(lastVertexInPath)) {
-          if (!currentPath.verticesInPath.contains(edge.to())) {
-            Path newPath = new Path(currentPath, edge);
-            priorityQueue.addLast(newPath);
-          }
+      // k lighter paths through the same vertices already expanded, every extension of this one is dominated
+      VertexSequence sequence = new VertexSequence(currentPath.vertices());
+      int expanded = expandedCount.getOrDefault(sequence, 0);
+      if (expanded >= kPaths) {
+        continue;
+      }
+      expandedCount.put(sequence, expanded + 1);
+
+      boolean isLastLeg = currentPath.legs + 1 == maxLegs;
+      for (int e = digraph.firstEdge(lastVertexInPath); e < digraph.lastEdge(lastVertexInPath); e++) {
+        int to = digraph.to(e);
+        // the last leg can only be useful if it reaches the target
+        if (isLastLeg && to != target) continue;
+        if (!currentPath.contains(to)) {
+          priorityQueue.add(new Path(currentPath, digraph, e));
         }
       }
     }
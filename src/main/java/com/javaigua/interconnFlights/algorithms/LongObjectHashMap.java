@@ -0,0 +1,206 @@
+package com.javaigua.interconnFlights.algorithms;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * A hash map of primitive long keys to non-null values, such as routes by packed route key.
+ *
+ * Entries are appended to parallel key and value arrays, in insertion order, and an open addressing table with
+ * linear probing holds the position of every entry by key hash, so lookups neither box keys nor follow node links and
+ * iteration is a scan of the arrays. Entries can not be removed, maps are built once per request and then read.
+ */
+public class LongObjectHashMap<V> implements Serializable {
+
+  /**
+   * A consumer of the entries of the map.
+   */
+  public interface EntryConsumer<V> {
+    void accept(long key, V value);
+  }
+
+  private static final int MIN_CAPACITY = 8;
+
+  private long[] keys;
+  private Object[] values;
+  // entry position + 1 by key hash, 0 when empty; at most half full
+  private int[] table;
+  private int size;
+
+  public LongObjectHashMap() {
+    this(MIN_CAPACITY);
+  }
+
+  public LongObjectHashMap(int expectedSize) {
+    final int capacity = Math.max(MIN_CAPACITY, expectedSize);
+    this.keys = new long[capacity];
+    this.values = new Object[capacity];
+    this.table = new int[tableSizeFor(capacity)];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(long key) {
+    return table[slotOf(key)] != 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    final int entry = table[slotOf(key)];
+    return entry == 0 ? null : (V) values[entry - 1];
+  }
+
+  /**
+   * Associates a value to a key, replacing the previous value of the key.
+   *
+   * @return the previous value of the key, or null
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    Objects.requireNonNull(value, "Values must not be null");
+    final int slot = slotOf(key);
+    if (table[slot] != 0) {
+      final V previous = (V) values[table[slot] - 1];
+      values[table[slot] - 1] = value;
+      return previous;
+    }
+    append(slot, key, value);
+    return null;
+  }
+
+  /**
+   * Provides the value of a key, associating it the computed one first if the key has no value.
+   */
+  @SuppressWarnings("unchecked")
+  public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+    final int slot = slotOf(key);
+    if (table[slot] != 0) return (V) values[table[slot] - 1];
+    final V value = mappingFunction.apply(key);
+    if (value != null) append(slot, key, value);
+    return value;
+  }
+
+  /**
+   * Performs the given action for every entry, in insertion order.
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(EntryConsumer<? super V> action) {
+    for (int i = 0; i < size; i++) {
+      action.accept(keys[i], (V) values[i]);
+    }
+  }
+
+  /**
+   * Provides the keys, in insertion order.
+   */
+  public long[] keys() {
+    return Arrays.copyOf(keys, size);
+  }
+
+  /**
+   * Provides a read-only view of the values, in insertion order.
+   */
+  public List<V> values() {
+    return new AbstractList<V>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public V get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return (V) values[index];
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private void append(int slot, long key, V value) {
+    if (size == keys.length) {
+      grow();
+      slot = slotOf(key);
+    }
+    keys[size] = key;
+    values[size] = value;
+    table[slot] = ++size;
+  }
+
+  private void grow() {
+    final int capacity = keys.length * 2;
+    keys = Arrays.copyOf(keys, capacity);
+    values = Arrays.copyOf(values, capacity);
+    table = new int[tableSizeFor(capacity)];
+    for (int i = 0; i < size; i++) {
+      table[slotOf(keys[i])] = i + 1;
+    }
+  }
+
+  /**
+   * Provides the slot of the table holding the given key, or the empty slot where it would be inserted.
+   */
+  private int slotOf(long key) {
+    final int mask = table.length - 1;
+    int slot = hash(key) & mask;
+    while (table[slot] != 0 && keys[table[slot] - 1] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int hash(long key) {
+    // keys packing two small ids are spread over all the bits (64 bits finalizer of MurmurHash3)
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  private static int tableSizeFor(int capacity) {
+    return Integer.highestOneBit(capacity * 2 - 1) << 1;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof LongObjectHashMap)) return false;
+    final LongObjectHashMap<?> that = (LongObjectHashMap<?>) o;
+    if (size != that.size) return false;
+    for (int i = 0; i < size; i++) {
+      if (!values[i].equals(that.get(keys[i]))) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (int i = 0; i < size; i++) {
+      hash += Long.hashCode(keys[i]) ^ values[i].hashCode();
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) sb.append(", ");
+      sb.append(keys[i]).append("=").append(values[i]);
+    }
+    return sb.append("}").toString();
+  }
+}
@@ -1,82 +1,92 @@
 package com.javaigua.interconnFlights.algorithms;
 
-import java.util.Map;
+import java.util.Arrays;
 import java.util.List;
-import java.util.HashMap;
-import java.time.LocalTime;
-import static java.time.temporal.ChronoUnit.MINUTES;
 
 import com.javaigua.interconnFlights.domain.*;
 
 /**
  * A symbol table for a graph of airports IATA codes (vertices) and flights between them (edges).
  *
- * This table maps IATA code names to integer ids given in sequence to every airport contained in the provided
- * list of routes. The connections between them are weighted directed edges created by the schedule information that
- * link them together.
+ * This table maps the AirportDictionary ids of the airports contained in the provided routes to integer ids given in
+ * sequence to every one of them. The connections between them are weighted directed edges created by the schedule
+ * information that link them together.
+ *
+ * The graph is built in compressed sparse row form (a CompactDigraph), an EdgeWeightedDigraph view is only created
+ * when requested.
  *
  * A computer science text-book implementation by Robert Sedgewick and Kevin Wayne.
  */
 public class SymbolDigraph {
-  private Map<String, Integer> st;
+  private static final int LAST_MINUTE_OF_DAY = 23 * 60 + 59;
+
+  private int[] st;
   private String[] keys;
+  private CompactDigraph compactGraph;
   private EdgeWeightedDigraph graph;
 
-  public SymbolDigraph(Map<String, Route> routes, Map<String, List<MonthSchedule>> schedules) {
-    st = new HashMap<>();
+  public SymbolDigraph(LongObjectHashMap<Route> routes, LongObjectHashMap<List<MonthSchedule>> schedules) {
+    // vertex by airport id of the AirportDictionary, -1 for the airports of no route
+    st = new int[AirportDictionary.size()];
+    Arrays.fill(st, -1);
+    long[] routeKeys = routes.keys();
 
-    // First pass builds the index by reading strings to associate distinct strings with an index
-    for (Route route : routes.values()) {
-      String[] a = new String[]{route.getAirportFrom(), route.getAirportTo()};
+    // First pass builds the index by reading airport ids to associate distinct airports with an index
+    int vertices = 0;
+    for (long routeKey : routeKeys) {
+      int[] a = new int[]{AirportDictionary.departureOf(routeKey), AirportDictionary.arrivalOf(routeKey)};
       for (int i = 0; i < a.length; i++) {
-        if (!st.containsKey(a[i]))
-          st.put(a[i], st.size());
+        if (a[i] >= st.length) st = grow(st, a[i]);
+        if (st[a[i]] == -1)
+          st[a[i]] = vertices++;
       }
     }
 
     // inverted index to get string keys in an array
-    keys = new String[st.size()];
-    for (String name : st.keySet()) {
-      keys[st.get(name)] = name;
+    keys = new String[vertices];
+    for (int id = 0; id < st.length; id++) {
+      if (st[id] != -1) keys[st[id]] = AirportDictionary.nameOf(id);
     }
 
     // second pass builds the digraph by connecting first vertex on each line to all others
-    graph = new EdgeWeightedDigraph(st.size());
-    for (Route route : routes.values()) {
+    CompactDigraph.Builder builder = new CompactDigraph.Builder(vertices);
+    for (long routeKey : routeKeys) {
 
-      int v = st.get(route.getAirportFrom());
-      int w = st.get(route.getAirportTo());
-      String routeKey = getKeyFor(route.getAirportFrom(), route.getAirportTo());
+      int v = st[AirportDictionary.departureOf(routeKey)];
+      int w = st[AirportDictionary.arrivalOf(routeKey)];
 
       // we only care for routes with available schedule
-      if (schedules.containsKey(routeKey)) {
-        for (MonthSchedule monthSchedule : schedules.get(routeKey)) {
+      List<MonthSchedule> monthSchedules = schedules.get(routeKey);
+      if (monthSchedules != null) {
+        for (MonthSchedule monthSchedule : monthSchedules) {
           for (DaySchedule daySchedule : monthSchedule.getDays()) {
             for (Flight flight : daySchedule.getFlights()) {
               // weight is flight duration in minutes
-              double weight = 0D;
+              int weight = 0;
               // same date departure and arrival weight calculation
-              if (flight.getDepartureLocalTime().isBefore(flight.getArrivalLocalTime())) {
-                weight = Double.valueOf(MINUTES.between(flight.getDepartureLocalTime(), flight.getArrivalLocalTime()));
+              if (flight.getDepartureMinute() < flight.getArrivalMinute()) {
+                weight = flight.getArrivalMinute() - flight.getDepartureMinute();
               } else {
-                // different date depature and arrival weight calculation
-                weight += Double.valueOf(MINUTES.between(flight.getDepartureLocalTime(), LocalTime.of(23, 59, 59)));
-                weight += Double.valueOf(MINUTES.between(LocalTime.of(0, 0, 0), flight.getArrivalLocalTime()));
+                // different date depature and arrival weight calculation, up to 23:59 and from 00:00
+                weight += LAST_MINUTE_OF_DAY - flight.getDepartureMinute();
+                weight += flight.getArrivalMinute();
               }
-              graph.addEdge(new DirectedEdge(v, w, weight, flight));
+              builder.addEdge(v, w, weight, builder.addFlight(flight));
             }
           }
         }
       }
     }
+    compactGraph = builder.build();
   }
 
   public boolean contains(String s) {
-    return st.containsKey(s);
+    int id = AirportDictionary.find(s);
+    return id != -1 && id < st.length && st[id] != -1;
   }
 
   public int indexOf(String s) {
-    return st.get(s);
+    return st[AirportDictionary.find(s)];
   }
 
 
@@ -84,25 +94,36 @@ public class SymbolDigraph {
     return keys[v];
   }
 
+  public CompactDigraph compactDigraph() {
+    return compactGraph;
+  }
+
   public EdgeWeightedDigraph digraph() {
+    if (graph == null) {
+      graph = compactGraph.toEdgeWeightedDigraph();
+    }
     return graph;
   }
 
-  private static String getKeyFor(String source, String destination) {
-    return source + "_" + destination;
+  // airports seen after the table was sized
+  private static int[] grow(int[] st, int id) {
+    int length = st.length;
+    st = Arrays.copyOf(st, Math.max(id + 1, length * 2));
+    Arrays.fill(st, length, st.length, -1);
+    return st;
   }
 
   public String toString() {
-    EdgeWeightedDigraph g = digraph();
+    CompactDigraph g = compactDigraph();
     StringBuilder s = new StringBuilder();
     s.append("{vC: ").append(g.V()).append(", eC: ").append(g.E()).append(", v:[");
     for (int v = 0; v < g.V(); v++) {
       s.append(v).append(": {");
-      for (DirectedEdge e : g.adj(v)) {
-        s.append(nameOf(e.from())).append("->")
-          .append(nameOf(e.to())).append(" ")
-          .append(String.format("%5.2f", e.weight())).append(" ")
-          .append(e.flight().getNumber())
+      for (int e = g.firstEdge(v); e < g.lastEdge(v); e++) {
+        s.append(nameOf(v)).append("->")
+          .append(nameOf(g.to(e))).append(" ")
+          .append(String.format("%5.2f", (double) g.weight(e))).append(" ")
+          .append(g.flight(e).getNumber())
           .append(" ");
       }
       s.append("} ");
@@ -1,44 +1,100 @@
 package com.javaigua.interconnFlights.api;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.time.format.DateTimeParseException;
 
 import scala.concurrent.duration.Duration;
 
+import akka.NotUsed;
+import akka.japi.Pair;
+import akka.util.ByteString;
 import akka.util.Timeout;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import akka.pattern.PatternsCS;
-import akka.http.javadsl.marshallers.jackson.Jackson;
+import akka.http.javadsl.model.ContentType;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpCharsets;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpHeader;
+import akka.http.javadsl.model.MediaType;
+import akka.http.javadsl.model.MediaTypes;
 import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.RawHeader;
 import akka.http.javadsl.server.AllDirectives;
 import akka.http.javadsl.server.Route;
+import akka.http.javadsl.unmarshalling.Unmarshaller;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
 import com.javaigua.interconnFlights.domain.*;
 import com.javaigua.interconnFlights.actors.messages.*;
+import com.javaigua.interconnFlights.metrics.Metrics;
 
 /**
  * InterconnFlightsCalculatorActor RESTful API routes mapping.
  */
 public class InterconnFlightsRoutes extends AllDirectives {
 
+  /**
+   * Newline delimited JSON, one interconnection per line
+   */
+  static final MediaType.WithFixedCharset APPLICATION_NDJSON =
+    MediaTypes.customWithFixedCharset("application", "x-ndjson", HttpCharsets.UTF_8, Collections.emptyMap(), false);
+  private static final ContentType NDJSON = APPLICATION_NDJSON.toContentType();
+  private static final ByteString NEWLINE = ByteString.fromString("\n");
+  /**
+   * Response header of the version of the format of the interconnections
+   */
+  static final String VERSION_HEADER = "Interconnections-Version";
+
+  // same settings as the default Jackson marshaller
+  private static final ObjectMapper MAPPER = new ObjectMapper().enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+
   final private LoggingAdapter log;
   final private ActorRef interconnFlightsFinderActor;
+  final private Metrics metrics;
   final Config config = ConfigFactory.load();
   Timeout timeout = new Timeout(
     Duration.create(config.getInt("application.timeout-millis"), TimeUnit.MILLISECONDS));
+  final int streamBufferSize = config.getInt("application.streaming.buffer-size");
+  final int maxBatchQueries = config.getInt("application.batch.max-queries");
+  final int maxCalendarDays = config.getInt("application.calendar.max-days");
+  // only the connection-scan engine calculates dated interconnections
+  final boolean datedInterconnections = "connection-scan".equals(config.getString("application.calculator.engine"));
 
   public InterconnFlightsRoutes(ActorSystem system, ActorRef interconnFlightsFinderActor) {
     this.interconnFlightsFinderActor = interconnFlightsFinderActor;
+    this.metrics = Metrics.get(system);
     log = Logging.getLogger(system, this);
   }
 
@@ -46,15 +102,37 @@ public class InterconnFlightsRoutes extends AllDirectives {
    * Creates routes
    */
   public Route routes() {
-    return route(pathPrefix("interconnections", () ->
+    return route(
+      pathPrefix("interconnections", () ->
         route(
-          getInterconnections()
+          getInterconnections(),
+          postBatchInterconnections(),
+          getCalendarInterconnections()
         )
-    ));
+      ),
+      path("metrics", () ->
+        getMetrics()
+      )
+    );
+  }
+
+  /**
+   * Mapping to handle GET metrics requests, the latency histograms and counters in the Prometheus text format.
+   */
+  private Route getMetrics() {
+    return get(() -> complete(StatusCodes.OK, HttpEntities.create(ContentTypes.TEXT_PLAIN_UTF8, metrics.scrape())));
   }
 
   /**
    * Mapping to handle GET interconnections requests.
+   *
+   * The interconnections are streamed as newline delimited JSON in a chunked response when requested with an
+   * "Accept: application/x-ndjson" header or a "stream=true" parameter, otherwise a JSON array is responded once all
+   * of them are calculated.
+   *
+   * Interconnections are responded in the format of the requested "version" parameter, whatever the engine: times of
+   * the day (HH:mm) by default (version 1), ISO date-times with version 2, only available with the connection-scan
+   * engine. The format is echoed in an Interconnections-Version header.
    */
   private Route getInterconnections() {
     return pathEnd(() ->
@@ -62,7 +140,8 @@ public class InterconnFlightsRoutes extends AllDirectives {
         parameter("arrival", arrivalParam ->
           parameter("departureDateTime", departureDateTimeParam ->
             parameter("arrivalDateTime", arrivalDateTimeParam ->
-              get(() -> {
+              get(() -> optionalHeaderValueByName("Accept", accept -> parameterOptional("stream", stream ->
+                parameterOptional("version", versionParam -> {
                 Optional<String> departure = Optional.ofNullable(departureParam);
                 Optional<String> arrival = Optional.ofNullable(arrivalParam);
                 Optional<LocalDateTime> departureDateTime = parseLocalDateTime(departureDateTimeParam);
@@ -74,16 +153,26 @@ public class InterconnFlightsRoutes extends AllDirectives {
                   departureDateTime.get().isAfter(arrivalDateTime.get())) {
                   return complete(StatusCodes.BAD_REQUEST, "Invalid parameters provided");
                 }
+                Optional<Integer> version = parseVersion(versionParam, datedInterconnections);
+                if (!version.isPresent()) {
+                  return complete(StatusCodes.BAD_REQUEST, invalidVersion(datedInterconnections));
+                }
+
+                if (isStreamingRequested(accept, stream)) {
+                  return streamInterconnections(new GetInterconnections(departure.get(), arrival.get(),
+                    departureDateTime.get(), arrivalDateTime.get(), true), version.get());
+                }
 
-                CompletionStage<Set<InterconnFlights>> futureInterconnFlights =
+                CompletionStage<Set<InterconnFlights>> futureInterconnFlights = metrics.timeStage("query", () ->
                   PatternsCS.ask(interconnFlightsFinderActor, new GetInterconnections(departure.get(), arrival.get(),
                       departureDateTime.get(), arrivalDateTime.get()),
                     timeout)
-                    .thenApply(obj -> (Set<InterconnFlights>) obj);
+                    .thenApply(obj -> (Set<InterconnFlights>) obj));
 
-                return onSuccess(() -> futureInterconnFlights,
-                  interconnFlights -> complete(StatusCodes.OK, interconnFlights, Jackson.marshaller()));
-                }
+                return onComplete(() -> futureInterconnFlights, interconnFlights -> interconnFlights.isSuccess() ?
+                  completeWithJson(inVersion(interconnFlights.get(), version.get()), version.get()) :
+                  completeWithFailure(interconnFlights.failed().get()));
+                })))
               )
             )
           )
@@ -92,6 +181,297 @@ public class InterconnFlightsRoutes extends AllDirectives {
     );
   }
 
+  /**
+   * Mapping to handle POST interconnections batch requests.
+   *
+   * The body is a JSON array of queries with the same fields as the GET parameters. The month schedules shared by the
+   * queries are fetched once for the whole batch, and a JSON array is responded with the interconnections (or the
+   * error) of every query, in the order of the queries. Interconnections are in the format of the "version" parameter.
+   */
+  private Route postBatchInterconnections() {
+    return path("batch", () ->
+      post(() -> parameterOptional("version", versionParam -> entity(Unmarshaller.entityToString(), body -> {
+        Optional<List<GetInterconnections>> queries = parseBatch(body);
+        Optional<Integer> version = parseVersion(versionParam, datedInterconnections);
+        if (!version.isPresent()) {
+          return complete(StatusCodes.BAD_REQUEST, invalidVersion(datedInterconnections));
+        }
+
+        // simple batch validation
+        if (!queries.isPresent() || queries.get().isEmpty() || queries.get().size() > maxBatchQueries) {
+          return complete(StatusCodes.BAD_REQUEST, "Invalid batch provided, from 1 to " + maxBatchQueries +
+            " queries with valid parameters are expected");
+        }
+
+        CompletionStage<List<Object>> futureResults = metrics.timeStage("batch", () ->
+          PatternsCS.ask(interconnFlightsFinderActor, new GetBatchInterconnections(queries.get()), timeout)
+            .thenApply(obj -> (List<Object>) obj));
+
+        return onComplete(() -> futureResults, results -> results.isSuccess() ?
+          completeWithJson(toBatchJson(results.get(), version.get()), version.get()) :
+          completeWithFailure(results.failed().get()));
+      })))
+    );
+  }
+
+  /**
+   * Mapping to handle GET interconnections calendar requests.
+   *
+   * The interconnections of every day from firstDate to lastDate, departing after departureTime and arriving before
+   * arrivalTime (of the next day when it is not after departureTime), are responded in a JSON object keyed by date.
+   * The month schedules of the whole range are fetched once and swept day by day, so version 2 dated interconnections
+   * are available with any engine.
+   */
+  private Route getCalendarInterconnections() {
+    return path("calendar", () ->
+      parameter("departure", departure ->
+        parameter("arrival", arrival ->
+          parameter("firstDate", firstDateParam ->
+            parameter("lastDate", lastDateParam ->
+              parameterOptional("departureTime", departureTimeParam ->
+                parameterOptional("arrivalTime", arrivalTimeParam ->
+                  parameterOptional("version", versionParam -> get(() -> {
+                    Optional<LocalDate> firstDate = parseLocalDate(firstDateParam);
+                    Optional<LocalDate> lastDate = parseLocalDate(lastDateParam);
+                    Optional<LocalTime> departureTime = parseLocalTime(departureTimeParam.orElse("00:00"));
+                    Optional<LocalTime> arrivalTime = parseLocalTime(arrivalTimeParam.orElse("23:59"));
+
+                    // simple params validation
+                    if (departure.isEmpty() || arrival.isEmpty() || !firstDate.isPresent() || !lastDate.isPresent() ||
+                      !departureTime.isPresent() || !arrivalTime.isPresent() ||
+                      firstDate.get().isAfter(lastDate.get()) ||
+                      ChronoUnit.DAYS.between(firstDate.get(), lastDate.get()) >= maxCalendarDays) {
+                      return complete(StatusCodes.BAD_REQUEST, "Invalid parameters provided, up to " +
+                        maxCalendarDays + " days are expected");
+                    }
+                    Optional<Integer> version = parseVersion(versionParam, true);
+                    if (!version.isPresent()) {
+                      return complete(StatusCodes.BAD_REQUEST, invalidVersion(true));
+                    }
+
+                    CompletionStage<Map<String, Object>> futureCalendar = metrics.timeStage("calendar", () ->
+                      PatternsCS.ask(interconnFlightsFinderActor, GetInterconnections.calendar(departure, arrival,
+                          firstDate.get(), lastDate.get(), departureTime.get(), arrivalTime.get()),
+                        timeout)
+                        .thenApply(obj -> (Map<String, Object>) obj));
+
+                    return onComplete(() -> futureCalendar, calendar -> calendar.isSuccess() ?
+                      completeWithJson(calendarInVersion(calendar.get(), version.get()), version.get()) :
+                      completeWithFailure(calendar.failed().get()));
+                  }))
+                )
+              )
+            )
+          )
+        )
+      )
+    );
+  }
+
+  /**
+   * Responds a chunked entity with a line per interconnection, sent as soon as the calculator produces it.
+   *
+   * The request is sent to the finder actor with a source actor as sender that completes the stream on the final
+   * Status.Success (or fails it on Status.Failure). The response status is only chosen once the first interconnection
+   * (or the end of the stream) arrives, so a query rejected by the finder is still answered with 503.
+   */
+  private Route streamInterconnections(GetInterconnections getInterconnections, int version) {
+    final long start = System.nanoTime();
+    return extractMaterializer(materializer -> {
+      final CompletionStage<Pair<List<InterconnFlights>, Source<InterconnFlights, NotUsed>>> first =
+        Source.<InterconnFlights>actorRef(streamBufferSize, OverflowStrategy.fail())
+          .mapMaterializedValue(streamActor -> {
+            interconnFlightsFinderActor.tell(getInterconnections, streamActor);
+            return NotUsed.getInstance();
+          })
+          .completionTimeout(timeout.duration())
+          .prefixAndTail(1)
+          .runWith(Sink.head(), materializer);
+
+      return onComplete(() -> first, prefixAndTail -> prefixAndTail.isSuccess() ?
+        respondWithHeader(versionHeader(version), () -> complete(StatusCodes.OK, HttpEntities.createChunked(NDJSON,
+          toLines(Source.from(prefixAndTail.get().first()).concat(prefixAndTail.get().second()), version, start)))) :
+        completeWithFailure(prefixAndTail.failed().get()));
+    });
+  }
+
+  /**
+   * Renders streamed interconnections as newline delimited JSON, recording the size of the response.
+   */
+  private Source<ByteString, NotUsed> toLines(Source<InterconnFlights, NotUsed> interconnections, int version,
+                                              long start) {
+    return interconnections
+      // undated interconnections of the same flights on different days are sent once
+      .<InterconnFlights>statefulMapConcat(() -> {
+        final Set<String> sent = new HashSet<>();
+        return interconnFlights -> {
+          final InterconnFlights inVersion = version == 1 ? interconnFlights.undated() : interconnFlights;
+          return sent.add(inVersion.getId()) ? Collections.singletonList(inVersion) :
+            Collections.<InterconnFlights>emptyList();
+        };
+      })
+      .map(interconnFlights -> ByteString.fromArray(MAPPER.writeValueAsBytes(interconnFlights)).concat(NEWLINE))
+      // the whole response size is only known once the stream is completed
+      .alsoTo(Sink.<Long, ByteString>fold(0L, (size, line) -> size + line.size())
+        .mapMaterializedValue(size -> size.thenAccept(bytes -> {
+          metrics.recordStage("query", start);
+          metrics.responseSize("ndjson").record(bytes);
+        })));
+  }
+
+  /**
+   * Responds the given value as JSON, recording the size of the response.
+   */
+  private Route completeWithJson(Object value, int version) {
+    try {
+      final byte[] json = MAPPER.writeValueAsBytes(value);
+      metrics.responseSize("json").record(json.length);
+      return respondWithHeader(versionHeader(version), () ->
+        complete(StatusCodes.OK, HttpEntities.create(ContentTypes.APPLICATION_JSON, json)));
+    } catch (JsonProcessingException e) {
+      return failWith(e);
+    }
+  }
+
+  private static HttpHeader versionHeader(int version) {
+    return RawHeader.create(VERSION_HEADER, String.valueOf(version));
+  }
+
+  /**
+   * Utility method to parse the version of the format of the interconnections
+   * @param version the version parameter, 1 when absent
+   * @param dated whether version 2 dated interconnections can be responded
+   * @return an optional value of the version parsed, empty if not valid or not available
+   */
+  private static Optional<Integer> parseVersion(Optional<String> version, boolean dated) {
+    final String value = version.orElse("1");
+    if ("1".equals(value)) return Optional.of(1);
+    if ("2".equals(value) && dated) return Optional.of(2);
+    return Optional.empty();
+  }
+
+  private static String invalidVersion(boolean dated) {
+    return dated ? "Invalid version provided, 1 or 2 are expected" :
+      "Invalid version provided, only 1 is available, dated interconnections need the connection-scan engine";
+  }
+
+  /**
+   * Utility method to provide interconnections in the given version of the format, undated ones for version 1.
+   */
+  private static Set<InterconnFlights> inVersion(Set<InterconnFlights> interconnFlights, int version) {
+    if (version != 1) return interconnFlights;
+    return interconnFlights.stream().map(InterconnFlights::undated)
+      .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+
+  /**
+   * Utility method to provide the interconnections of every day of a calendar in the given version of the format.
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> calendarInVersion(Map<String, Object> calendar, int version) {
+    final Map<String, Object> inVersion = new TreeMap<>();
+    calendar.forEach((day, interconnFlights) -> inVersion.put(day, interconnFlights instanceof Set ?
+      inVersion((Set<InterconnFlights>) interconnFlights, version) : interconnFlights));
+    return inVersion;
+  }
+
+  /**
+   * Fails fast with 503 Service Unavailable when the query was rejected by saturated workers, otherwise the failure is
+   * left to the default exception handler.
+   */
+  private Route completeWithFailure(Throwable throwable) {
+    final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ?
+      throwable.getCause() : throwable;
+    if (cause instanceof RejectedExecutionException) {
+      log.warning("status= interconnections_rejected, error= {}", cause.getMessage());
+      return complete(StatusCodes.SERVICE_UNAVAILABLE, "Too many requests in flight, please retry later");
+    }
+    return failWith(cause);
+  }
+
+  /**
+   * Whether newline delimited JSON is accepted by the client or a stream is explicitly requested.
+   */
+  private boolean isStreamingRequested(Optional<String> accept, Optional<String> stream) {
+    return stream.map(Boolean::parseBoolean).orElse(false) ||
+      accept.map(value -> value.contains(APPLICATION_NDJSON.mainType() + "/" + APPLICATION_NDJSON.subType()))
+        .orElse(false);
+  }
+
+  /**
+   * Utility method to parse a JSON array of queries, with the same validation as the GET parameters
+   * @param body a JSON array of objects with departure, arrival, departureDateTime and arrivalDateTime fields
+   * @return an optional value of the queries parsed, empty if any of them is not valid
+   */
+  private Optional<List<GetInterconnections>> parseBatch(String body) {
+    final JsonNode batch;
+    try {
+      batch = MAPPER.readTree(body);
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+    if (batch == null || !batch.isArray()) {
+      return Optional.empty();
+    }
+
+    final List<GetInterconnections> queries = new ArrayList<>();
+    for (JsonNode query : batch) {
+      final String departure = query.path("departure").asText("");
+      final String arrival = query.path("arrival").asText("");
+      final Optional<LocalDateTime> departureDateTime = parseLocalDateTime(query.path("departureDateTime").asText(""));
+      final Optional<LocalDateTime> arrivalDateTime = parseLocalDateTime(query.path("arrivalDateTime").asText(""));
+      if (departure.isEmpty() || arrival.isEmpty() || !departureDateTime.isPresent() ||
+        !arrivalDateTime.isPresent() || departureDateTime.get().isAfter(arrivalDateTime.get())) {
+        return Optional.empty();
+      }
+      queries.add(new GetInterconnections(departure, arrival, departureDateTime.get(), arrivalDateTime.get()));
+    }
+    return Optional.of(queries);
+  }
+
+  /**
+   * Utility method to render the results of a batch, the interconnections or the error of every query in its order
+   */
+  @SuppressWarnings("unchecked")
+  private ArrayNode toBatchJson(List<Object> results, int version) {
+    final ArrayNode json = MAPPER.createArrayNode();
+    for (Object result : results) {
+      if (result instanceof Throwable) {
+        json.addObject().put("error", String.valueOf(((Throwable) result).getMessage()));
+      } else {
+        json.addObject().set("interconnections",
+          MAPPER.valueToTree(inVersion((Set<InterconnFlights>) result, version)));
+      }
+    }
+    return json;
+  }
+
+  /**
+   * Utility method to parse date values
+   * @param date a date string with valid ISO format
+   * @return an optional value of the date parsed
+   */
+  private Optional<LocalDate> parseLocalDate(String date) {
+    try {
+      return Optional.of(LocalDate.parse(date));
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Utility method to parse time values
+   * @param time a time string with valid ISO format
+   * @return an optional value of the time parsed
+   */
+  private Optional<LocalTime> parseLocalTime(String time) {
+    try {
+      return Optional.of(LocalTime.parse(time));
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+
   /**
    * Utility method to parse date time values
    * @param dateTime a date time string with valid ISO format
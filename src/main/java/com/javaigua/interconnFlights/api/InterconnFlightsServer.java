@@ -19,6 +19,10 @@ import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
 import com.javaigua.interconnFlights.actors.InterconnFlightsFinderActor;
+import com.javaigua.interconnFlights.catalog.RoutesCatalog;
+import com.javaigua.interconnFlights.sharding.ScheduleHolders;
+import com.javaigua.interconnFlights.store.TimetableStore;
+import com.javaigua.interconnFlights.timetable.Timetable;
 
 /**
  * Main entry point of the Interconnecting Flights API, a RESTful and reactive application.
@@ -55,6 +59,14 @@ public class InterconnFlightsServer extends AllDirectives {
 
     // bootstrap the actor system
     ActorSystem system = ActorSystem.create(config.getString("application.name"), config);
+
+    // warm the routes catalog and schedules cache from the local store before serving requests
+    final TimetableStore timetableStore = TimetableStore.get(system);
+    timetableStore.restore(RoutesCatalog.get(system), Timetable.get(system));
+
+    // host a partition of the schedule holders of the cluster, when enabled
+    ScheduleHolders.get(system);
+
     ActorRef interconnFlightsFinderActor = system.actorOf(InterconnFlightsFinderActor.props(), "interconnFlightsFinder");
     InterconnFlightsServer app = new InterconnFlightsServer(system, interconnFlightsFinderActor);
 
@@ -72,6 +84,7 @@ public class InterconnFlightsServer extends AllDirectives {
     // proper shutdown
     binding
       .thenCompose(ServerBinding::unbind)
-      .thenAccept(unbound -> system.terminate());
+      .thenCompose(unbound -> timetableStore.flush())
+      .thenAccept(flushed -> system.terminate());
   }
 }
@@ -0,0 +1,51 @@
+package com.javaigua.interconnFlights.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.javaigua.interconnFlights.domain.Route;
+
+/**
+ * The direct routes departing from an airport, as replicated across the cluster by the RoutesReplicaActor.
+ *
+ * Values of the replicated map are gossiped between nodes, so they are encoded by the InterconnFlightsSerializer
+ * rather than by Java serialization.
+ */
+public class OriginRoutes {
+  private final List<Route> routes;
+
+  public OriginRoutes(List<Route> routes) {
+    this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+  }
+
+  public List<Route> getRoutes() {
+    return routes;
+  }
+
+  @Override
+  public int hashCode() {
+    return routes.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+
+    OriginRoutes other = (OriginRoutes) obj;
+    return routes.equals(other.routes);
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder()
+      .append("[routes=").append(routes.size())
+      .append("]")
+      .toString();
+  }
+}
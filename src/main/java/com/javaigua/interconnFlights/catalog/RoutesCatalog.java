@@ -0,0 +1,265 @@
+package com.javaigua.interconnFlights.catalog;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import scala.concurrent.ExecutionContextExecutor;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.cluster.Cluster;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+
+import com.typesafe.config.Config;
+
+import com.javaigua.interconnFlights.domain.Route;
+import com.javaigua.interconnFlights.metrics.Metrics;
+import com.javaigua.interconnFlights.upstream.Upstream;
+
+/**
+ * A process-wide catalog of the direct routes offered by the Routes API.
+ *
+ * Routes are downloaded once when the catalog is first accessed and refreshed in the background at a configurable
+ * interval, atomically swapping in an immutable snapshot. Actors read the current snapshot without touching the network
+ * on the request path. When a refresh fails the last good snapshot keeps being served.
+ *
+ * When replicated, only the leader of the cluster refreshes the routes from the Routes API and publishes them with
+ * Distributed Data, the other nodes (and the ones joining later) get them by gossip. A node alone in the cluster, or
+ * without a local copy of the routes, loads them as soon as it is up instead of waiting for the gossip, and a node
+ * still without routes once the retry interval elapses refreshes them on its own.
+ */
+public class RoutesCatalog implements Extension {
+
+  public static final Id ID = new Id();
+
+  /**
+   * Akka extension id, one catalog instance per actor system.
+   */
+  public static class Id extends AbstractExtensionId<RoutesCatalog> implements ExtensionIdProvider {
+    @Override
+    public Id lookup() {
+      return ID;
+    }
+
+    @Override
+    public RoutesCatalog createExtension(ExtendedActorSystem system) {
+      return new RoutesCatalog(system);
+    }
+  }
+
+  /**
+   * Convenient lookup of the catalog of the given actor system
+   */
+  public static RoutesCatalog get(ActorSystem system) {
+    return ID.get(system);
+  }
+
+  private final LoggingAdapter log;
+  private final ActorSystem system;
+  private final Http http;
+  private final Materializer materializer;
+  private final ExecutionContextExecutor ec;
+  private final String routesUrl;
+  private final FiniteDuration retryInterval;
+  private final Cluster cluster;
+  private final ActorRef replica;
+  private final Metrics metrics;
+  private final Upstream upstream;
+
+  private final AtomicReference<RoutesSnapshot> snapshot = new AtomicReference<>(RoutesSnapshot.EMPTY);
+  private final CompletableFuture<RoutesSnapshot> firstLoad = new CompletableFuture<>();
+  private final AtomicBoolean refreshing = new AtomicBoolean(false);
+  private final List<Consumer<RoutesSnapshot>> refreshListeners = new CopyOnWriteArrayList<>();
+
+  private RoutesCatalog(ExtendedActorSystem system) {
+    this.system = system;
+    this.log = Logging.getLogger(system, this);
+    this.http = Http.get(system);
+    this.materializer = ActorMaterializer.create(system);
+    this.ec = system.dispatcher();
+    this.metrics = Metrics.get(system);
+    this.upstream = Upstream.get(system);
+
+    final Config config = system.settings().config();
+    this.routesUrl = config.getString("application.routes-url");
+    this.retryInterval = Duration.create(config.getLong("application.routes-catalog.retry-interval-millis"),
+      TimeUnit.MILLISECONDS);
+    final FiniteDuration refreshInterval = Duration.create(
+      config.getLong("application.routes-catalog.refresh-interval-millis"), TimeUnit.MILLISECONDS);
+
+    if (config.getBoolean("application.routes-catalog.replicated")) {
+      this.cluster = Cluster.get(system);
+      this.replica = system.actorOf(RoutesReplicaActor.props(this::onReplicated), "routesCatalogReplica");
+      // a node alone in the cluster is its leader, a restored node serves its local copy until the gossip arrives
+      cluster.registerOnMemberUp(this::refreshIfLeaderOrEmpty);
+      system.scheduler().scheduleOnce(retryInterval, () -> {
+        if (snapshot.get().isEmpty()) refresh();
+      }, ec);
+      // then keep them fresh from the leader
+      system.scheduler().schedule(refreshInterval, refreshInterval, this::refreshIfLeaderOrEmpty, ec);
+    } else {
+      this.cluster = null;
+      this.replica = null;
+      // initial load, then keep the catalog fresh in the background
+      refresh();
+      system.scheduler().schedule(refreshInterval, refreshInterval, this::refresh, ec);
+    }
+  }
+
+  /**
+   * Provides the current snapshot of routes. Only the very first callers wait for the initial load to complete,
+   * afterwards the snapshot is served from memory.
+   *
+   * @return a future of the current routes snapshot
+   */
+  public CompletionStage<RoutesSnapshot> getSnapshot() {
+    return firstLoad.isDone() ? CompletableFuture.completedFuture(snapshot.get()) : firstLoad;
+  }
+
+  /**
+   * Restores a snapshot from a local copy, only served until the first successful refresh.
+   */
+  public void restore(RoutesSnapshot restored) {
+    if (!restored.isEmpty() && snapshot.compareAndSet(RoutesSnapshot.EMPTY, restored)) {
+      firstLoad.complete(restored);
+      log.info("status= routes_catalog_restored, snapshot= {}", restored);
+    }
+  }
+
+  /**
+   * Registers a listener of the snapshots loaded from the Routes API or replicated from the leader of the cluster.
+   * Listeners must not block, and their failures are only logged.
+   */
+  public void addRefreshListener(Consumer<RoutesSnapshot> listener) {
+    refreshListeners.add(listener);
+  }
+
+  /**
+   * Downloads the routes from the Routes API and swaps in a new snapshot, keeping the previous one on failure.
+   * Only one refresh is performed at a time, concurrent calls get the current snapshot.
+   *
+   * @return a future of the snapshot being served after the refresh
+   */
+  public CompletionStage<RoutesSnapshot> refresh() {
+    if (!refreshing.compareAndSet(false, true)) {
+      return getSnapshot();
+    }
+
+    log.debug("status= routes_catalog_refreshing, url= {}", routesUrl);
+    return metrics.timeStage("routes_fetch", () ->
+      upstream.call("routes", () -> http.singleRequest(HttpRequest.create(routesUrl), materializer))
+        .thenCompose(this::parseRoutes))
+      .thenApply(routes -> new RoutesSnapshot(routes, Instant.now()))
+      .handle((loaded, throwable) -> {
+        if (throwable != null) {
+          log.warning("status= routes_catalog_refresh_failed, serving= {}, error= {}", snapshot.get(),
+            throwable.getMessage());
+          if (snapshot.get().isEmpty()) {
+            // nothing to serve yet, retry sooner than the regular refresh interval
+            system.scheduler().scheduleOnce(retryInterval, this::refresh, ec);
+          }
+        } else {
+          snapshot.set(loaded);
+          log.info("status= routes_catalog_refreshed, snapshot= {}", loaded);
+          notifyRefreshed(loaded);
+          if (replica != null) replica.tell(new RoutesReplicaActor.Publish(loaded), ActorRef.noSender());
+        }
+        refreshing.set(false);
+        firstLoad.complete(snapshot.get());
+        return snapshot.get();
+      });
+  }
+
+  /**
+   * Refreshes the routes from the Routes API when this node is the leader of the cluster, or has no routes to serve.
+   */
+  private void refreshIfLeaderOrEmpty() {
+    if (cluster.selfAddress().equals(cluster.state().getLeader()) || snapshot.get().isEmpty()) {
+      refresh();
+    }
+  }
+
+  /**
+   * Swaps in the routes replicated from the leader of the cluster.
+   */
+  private void onReplicated(Map<String, OriginRoutes> byOrigin) {
+    final List<Route> routes = new ArrayList<>();
+    byOrigin.values().forEach(origin -> routes.addAll(origin.getRoutes()));
+    if (routes.isEmpty()) return;
+    // the writes of this node, already served and notified when loaded
+    if (new HashSet<>(routes).equals(new HashSet<>(snapshot.get().getRoutes()))) return;
+
+    final RoutesSnapshot replicated = new RoutesSnapshot(routes, Instant.now());
+    snapshot.set(replicated);
+    firstLoad.complete(replicated);
+    log.info("status= routes_catalog_replicated, snapshot= {}", replicated);
+    notifyRefreshed(replicated);
+  }
+
+  private void notifyRefreshed(RoutesSnapshot refreshed) {
+    // a failing listener must neither stop the refreshes nor starve the others
+    for (Consumer<RoutesSnapshot> listener : refreshListeners) {
+      try {
+        listener.accept(refreshed);
+      } catch (RuntimeException e) {
+        log.error(e, "status= refresh_listener_failed, snapshot= {}, listener= {}", refreshed, listener);
+      }
+    }
+  }
+
+  /**
+   * Parses the direct routes of a Routes API response while its entity streams in, without buffering it whole.
+   */
+  private CompletionStage<List<Route>> parseRoutes(HttpResponse response) {
+    final CompletableFuture<List<Route>> failed = new CompletableFuture<>();
+    if (!response.status().isSuccess()) {
+      response.discardEntityBytes(materializer);
+      failed.completeExceptionally(new IllegalStateException("Unexpected routes response status " + response.status()));
+      return failed;
+    }
+
+    try {
+      final long start = System.nanoTime();
+      return response.entity().getDataBytes()
+        .runFold(new RoutesParser(), (parser, chunk) -> parser.feed(chunk.toArray()), materializer)
+        .thenApply(parser -> {
+          try {
+            final List<Route> routes = parser.finish();
+            metrics.recordStage("routes_unmarshal", start);
+            log.debug("status= routes_parsed, routes= {}, skipped= {}", routes.size(), parser.getSkipped());
+            return routes;
+          } catch (IOException e) {
+            throw new CompletionException(e);
+          }
+        });
+    } catch (IOException e) {
+      response.discardEntityBytes(materializer);
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+}
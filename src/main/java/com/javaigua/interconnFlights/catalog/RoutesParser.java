@@ -0,0 +1,171 @@
+package com.javaigua.interconnFlights.catalog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import com.javaigua.interconnFlights.domain.Route;
+
+/**
+ * An incremental parser of the Routes API response, a JSON array of route objects, keeping only direct routes.
+ *
+ * Chunks of the response are fed as they arrive to a non-blocking Jackson parser, so the response is never buffered
+ * as a whole. Routes are created as soon as their object ends, and the values of routes with a connecting airport or
+ * of unknown fields are skipped without being decoded.
+ */
+public class RoutesParser {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+  private final List<Route> routes = new ArrayList<>();
+  private int skipped;
+
+  // nesting depth: 1 inside the array, 2 inside a route, more inside unknown nested values
+  private int depth;
+  private boolean done;
+
+  // current route
+  private String field;
+  private boolean connecting;
+  private String airportFrom;
+  private String airportTo;
+  private Boolean newRoute;
+  private Boolean seasonalRoute;
+  private String operator;
+  private String group;
+
+  public RoutesParser() throws IOException {
+    this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+    this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+  }
+
+  /**
+   * Parses the next chunk of the response.
+   *
+   * @return this parser
+   */
+  public RoutesParser feed(byte[] chunk) throws IOException {
+    feeder.feedInput(chunk, 0, chunk.length);
+    parseAvailable();
+    return this;
+  }
+
+  /**
+   * Ends the parsing of the response.
+   *
+   * @return the direct routes of the response, in order
+   * @throws IOException if the response is not a complete JSON array
+   */
+  public List<Route> finish() throws IOException {
+    feeder.endOfInput();
+    parseAvailable();
+    if (!done) throw new JsonParseException(parser, "Unexpected end of routes array");
+    return routes;
+  }
+
+  /**
+   * Number of routes skipped so far, because of a connecting airport or a missing airport.
+   */
+  public int getSkipped() {
+    return skipped;
+  }
+
+  private void parseAvailable() throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+      if (done) throw new JsonParseException(parser, "Unexpected content after routes array");
+
+      if (depth > 2) {
+        // inside an unknown nested value
+        if (token.isStructStart()) depth++;
+        else if (token.isStructEnd()) depth--;
+      } else if (depth == 2) {
+        parseRouteToken(token);
+      } else if (depth == 1) {
+        if (token == JsonToken.START_OBJECT) {
+          startRoute();
+          depth++;
+        } else if (token == JsonToken.END_ARRAY) {
+          depth--;
+          done = true;
+        } else {
+          throw new JsonParseException(parser, "Route object expected, found " + token);
+        }
+      } else if (token == JsonToken.START_ARRAY) {
+        depth++;
+      } else {
+        throw new JsonParseException(parser, "Routes array expected, found " + token);
+      }
+    }
+  }
+
+  private void parseRouteToken(JsonToken token) throws IOException {
+    if (token == JsonToken.FIELD_NAME) {
+      field = parser.getCurrentName();
+      return;
+    }
+    if (token == JsonToken.END_OBJECT) {
+      endRoute();
+      depth--;
+      return;
+    }
+    if (token.isStructStart()) {
+      depth++;
+      return;
+    }
+
+    if ("connectingAirport".equals(field)) {
+      connecting = token != JsonToken.VALUE_NULL;
+    } else if (connecting) {
+      // the route is skipped, do not decode its values
+    } else if ("airportFrom".equals(field)) {
+      airportFrom = textOf(token);
+    } else if ("airportTo".equals(field)) {
+      airportTo = textOf(token);
+    } else if ("newRoute".equals(field)) {
+      newRoute = booleanOf(token);
+    } else if ("seasonalRoute".equals(field)) {
+      seasonalRoute = booleanOf(token);
+    } else if ("operator".equals(field)) {
+      operator = textOf(token);
+    } else if ("group".equals(field)) {
+      group = textOf(token);
+    }
+  }
+
+  private void startRoute() {
+    field = null;
+    connecting = false;
+    airportFrom = null;
+    airportTo = null;
+    newRoute = null;
+    seasonalRoute = null;
+    operator = null;
+    group = null;
+  }
+
+  private void endRoute() {
+    // only direct routes, filtering the ones missing an airport
+    if (connecting || airportFrom == null || airportTo == null) {
+      skipped++;
+    } else {
+      routes.add(new Route(airportFrom, airportTo, null, newRoute, seasonalRoute, operator, group));
+    }
+  }
+
+  private String textOf(JsonToken token) throws IOException {
+    return token == JsonToken.VALUE_NULL ? null : parser.getText();
+  }
+
+  private static Boolean booleanOf(JsonToken token) {
+    return token == JsonToken.VALUE_TRUE ? Boolean.TRUE : token == JsonToken.VALUE_FALSE ? Boolean.FALSE : null;
+  }
+}
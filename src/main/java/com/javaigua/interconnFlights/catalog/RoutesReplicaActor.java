@@ -0,0 +1,117 @@
+package com.javaigua.interconnFlights.catalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.cluster.Cluster;
+import akka.cluster.ddata.DistributedData;
+import akka.cluster.ddata.Key;
+import akka.cluster.ddata.LWWMap;
+import akka.cluster.ddata.LWWMapKey;
+import akka.cluster.ddata.Replicator;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+
+import com.javaigua.interconnFlights.domain.Route;
+
+/**
+ * An actor that replicates the routes catalog across the cluster with Distributed Data.
+ *
+ * The direct routes are kept in a last-writer-wins map of OriginRoutes keyed by origin airport. Snapshots published
+ * by the node refreshing the catalog from the Routes API are written to the local replica and spread by gossip, while
+ * every change of the replicated map, local or remote, is handed to the RoutesCatalog of this node.
+ */
+class RoutesReplicaActor extends AbstractActor {
+
+  static final Key<LWWMap<String, OriginRoutes>> ROUTES_KEY = LWWMapKey.create("routes-catalog");
+
+  /**
+   * A message to write a snapshot loaded from the Routes API into the replicated map.
+   */
+  static class Publish {
+    private final RoutesSnapshot snapshot;
+
+    Publish(RoutesSnapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+  }
+
+  LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+
+  private final ActorRef replicator = DistributedData.get(getContext().getSystem()).replicator();
+  private final Cluster cluster = Cluster.get(getContext().getSystem());
+  private final Consumer<Map<String, OriginRoutes>> onChanged;
+
+  /**
+   * Convenient actor builder
+   *
+   * @param onChanged consumer of the replicated routes by origin on every change
+   */
+  static Props props(Consumer<Map<String, OriginRoutes>> onChanged) {
+    return Props.create(RoutesReplicaActor.class, () -> new RoutesReplicaActor(onChanged));
+  }
+
+  RoutesReplicaActor(Consumer<Map<String, OriginRoutes>> onChanged) {
+    this.onChanged = onChanged;
+  }
+
+  @Override
+  public void preStart() {
+    replicator.tell(new Replicator.Subscribe<>(ROUTES_KEY, getSelf()), ActorRef.noSender());
+  }
+
+  /**
+   * Main entry point of messages handled by this actor
+   */
+  @Override
+  public Receive createReceive() {
+    return receiveBuilder()
+      .match(Replicator.Changed.class, // a new version of the replicated routes, from this or another node
+        changed -> {
+          @SuppressWarnings("unchecked")
+          LWWMap<String, OriginRoutes> routes = (LWWMap<String, OriginRoutes>) changed.dataValue();
+          onChanged.accept(routes.getEntries());
+        }
+      )
+      .match(Publish.class, // handle Publish msgs
+        publish -> replicator.tell(new Replicator.Update<>(ROUTES_KEY, LWWMap.create(), Replicator.writeLocal(),
+          routes -> update(routes, publish.snapshot)), getSelf())
+      )
+      .match(Replicator.UpdateSuccess.class,
+        success -> log.debug("status= routes_replica_updated, key= {}", success.key())
+      )
+      .match(Replicator.UpdateFailure.class,
+        failure -> log.warning("status= routes_replica_update_failed, key= {}, failure= {}", failure.key(), failure)
+      )
+      .matchAny(unknown -> log.info("{} unknown message received: {}", this.getClass().getName(), unknown))
+      .build();
+  }
+
+  /**
+   * Updates the replicated map with the routes of the given snapshot, only touching the origins that changed so the
+   * gossip stays small.
+   */
+  private LWWMap<String, OriginRoutes> update(LWWMap<String, OriginRoutes> replicated, RoutesSnapshot snapshot) {
+    final Map<String, List<Route>> byOrigin = new HashMap<>();
+    for (Route route : snapshot.getRoutes()) {
+      byOrigin.computeIfAbsent(route.getAirportFrom(), k -> new ArrayList<>()).add(route);
+    }
+
+    final Map<String, OriginRoutes> current = replicated.getEntries();
+    LWWMap<String, OriginRoutes> updated = replicated;
+    for (String origin : current.keySet()) {
+      if (!byOrigin.containsKey(origin)) updated = updated.remove(cluster, origin);
+    }
+    for (Map.Entry<String, List<Route>> origin : byOrigin.entrySet()) {
+      final OriginRoutes routes = new OriginRoutes(origin.getValue());
+      if (!routes.equals(current.get(origin.getKey()))) updated = updated.put(cluster, origin.getKey(), routes);
+    }
+    return updated;
+  }
+}
@@ -0,0 +1,122 @@
+package com.javaigua.interconnFlights.catalog;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.javaigua.interconnFlights.domain.AirportDictionary;
+import com.javaigua.interconnFlights.domain.Route;
+
+/**
+ * An immutable snapshot of the direct routes served by the RoutesCatalog.
+ *
+ * A new snapshot is created for every successful refresh of the catalog and swapped in atomically, so readers never
+ * observe a partially loaded list of routes. Routes are indexed by origin and by destination airport, so the candidate
+ * routes of a query can be computed without scanning the whole catalog.
+ */
+public class RoutesSnapshot {
+
+  public static final RoutesSnapshot EMPTY = new RoutesSnapshot(Collections.emptyList(), Instant.EPOCH);
+
+  private final List<Route> routes;
+  private final Instant loadedAt;
+  // origin -> destination -> route
+  private final Map<String, Map<String, Route>> byOrigin;
+  // destination -> origin -> route
+  private final Map<String, Map<String, Route>> byDestination;
+
+  /**
+   * @param routes the direct routes, the ones missing an airport are dropped
+   * @param loadedAt the time the routes were loaded
+   */
+  public RoutesSnapshot(List<Route> routes, Instant loadedAt) {
+    final List<Route> complete = new ArrayList<>(routes.size());
+    this.loadedAt = loadedAt;
+    this.byOrigin = new HashMap<>();
+    this.byDestination = new HashMap<>();
+    for (Route route : routes) {
+      if (route.getAirportFrom() == null || route.getAirportTo() == null) continue;
+      complete.add(route);
+      // the airports of the catalog are known to the dictionary before any of their routes is keyed
+      AirportDictionary.idOf(route.getAirportFrom());
+      AirportDictionary.idOf(route.getAirportTo());
+      byOrigin.computeIfAbsent(route.getAirportFrom(), k -> new HashMap<>()).put(route.getAirportTo(), route);
+      byDestination.computeIfAbsent(route.getAirportTo(), k -> new HashMap<>()).put(route.getAirportFrom(), route);
+    }
+    this.routes = Collections.unmodifiableList(complete);
+  }
+
+  public List<Route> getRoutes() {
+    return routes;
+  }
+
+  public Instant getLoadedAt() {
+    return loadedAt;
+  }
+
+  public int size() {
+    return routes.size();
+  }
+
+  public boolean isEmpty() {
+    return routes.isEmpty();
+  }
+
+  /**
+   * Provides the routes departing from the given airport, indexed by destination.
+   */
+  public Map<String, Route> getOutbound(String origin) {
+    return Collections.unmodifiableMap(byOrigin.getOrDefault(origin, Collections.emptyMap()));
+  }
+
+  /**
+   * Provides the routes arriving to the given airport, indexed by origin.
+   */
+  public Map<String, Route> getInbound(String destination) {
+    return Collections.unmodifiableMap(byDestination.getOrDefault(destination, Collections.emptyMap()));
+  }
+
+  /**
+   * Provides the routes that can take part of a direct or one stop path from departure to arrival airports, that is
+   * the direct route plus both legs through every hub in the intersection of the departure out-neighbours and the
+   * arrival in-neighbours.
+   *
+   * @param departure the departure IATA code
+   * @param arrival the arrival IATA code
+   * @return the candidate routes, direct route first
+   */
+  public List<Route> getCandidateRoutes(String departure, String arrival) {
+    final Map<String, Route> outbound = byOrigin.getOrDefault(departure, Collections.emptyMap());
+    final Map<String, Route> inbound = byDestination.getOrDefault(arrival, Collections.emptyMap());
+
+    List<Route> candidates = new ArrayList<>();
+    Route direct = outbound.get(arrival);
+    if (direct != null) candidates.add(direct);
+
+    // walk the smaller neighbourhood and probe the bigger one
+    final boolean walkOutbound = outbound.size() <= inbound.size();
+    for (String hub : walkOutbound ? outbound.keySet() : inbound.keySet()) {
+      if (hub.equals(departure) || hub.equals(arrival)) continue;
+      Route firstLeg = outbound.get(hub);
+      Route secondLeg = inbound.get(hub);
+      if (firstLeg != null && secondLeg != null) {
+        candidates.add(firstLeg);
+        candidates.add(secondLeg);
+      }
+    }
+    return candidates;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder()
+      .append("[routes=").append(routes.size())
+      .append(", origins=").append(byOrigin.size())
+      .append(", loadedAt=").append(loadedAt)
+      .append("]")
+      .toString();
+  }
+}
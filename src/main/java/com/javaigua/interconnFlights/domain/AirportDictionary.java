@@ -0,0 +1,97 @@
+package com.javaigua.interconnFlights.domain;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide dictionary of airport IATA codes to dense integer ids, and of routes to packed long keys.
+ *
+ * Airports are given the next id the first time they are seen and keep it for the life of the process, so ids can
+ * index arrays and a route is identified by the ids of its departure and arrival airports packed in a long, without
+ * building nor hashing strings. Ids depend on the order airports are seen, so they are only meaningful within the
+ * process and must never be sent to other nodes nor stored, codes are sent instead.
+ */
+public final class AirportDictionary {
+
+  private static final int INITIAL_CAPACITY = 512;
+
+  private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+  // id -> code, replaced by a bigger copy when full; guarded by the class for writes
+  private static volatile String[] codes = new String[INITIAL_CAPACITY];
+  private static int size;
+
+  private AirportDictionary() {
+  }
+
+  /**
+   * Provides the id of an airport, giving it the next one if it was never seen.
+   */
+  public static int idOf(String code) {
+    final Integer id = ids.get(code);
+    return id != null ? id : add(code);
+  }
+
+  /**
+   * Provides the id of an airport, or -1 if it was never seen. Codes of queries are looked up this way, so unknown
+   * codes do not grow the dictionary.
+   */
+  public static int find(String code) {
+    final Integer id = code != null ? ids.get(code) : null;
+    return id != null ? id : -1;
+  }
+
+  /**
+   * Provides the IATA code of an airport id.
+   */
+  public static String nameOf(int id) {
+    return codes[id];
+  }
+
+  /**
+   * Provides the number of airports seen so far, every id is lower than it.
+   */
+  public static int size() {
+    return ids.size();
+  }
+
+  /**
+   * Packs the ids of the departure and arrival airports of a route.
+   */
+  public static long routeKey(int departure, int arrival) {
+    return ((long) departure << 32) | (arrival & 0xFFFFFFFFL);
+  }
+
+  public static long routeKey(String departure, String arrival) {
+    return routeKey(idOf(departure), idOf(arrival));
+  }
+
+  public static long routeKey(Route route) {
+    return routeKey(route.getAirportFrom(), route.getAirportTo());
+  }
+
+  /**
+   * Provides the departure airport id of a route key.
+   */
+  public static int departureOf(long routeKey) {
+    return (int) (routeKey >>> 32);
+  }
+
+  /**
+   * Provides the arrival airport id of a route key.
+   */
+  public static int arrivalOf(long routeKey) {
+    return (int) routeKey;
+  }
+
+  private static synchronized int add(String code) {
+    if (code == null) throw new IllegalArgumentException("Airport code must not be null");
+    final Integer id = ids.get(code);
+    if (id != null) return id;
+
+    if (size == codes.length) codes = Arrays.copyOf(codes, size * 2);
+    // the code is published before its id, so readers of the id always find it
+    codes[size] = code;
+    ids.put(code, size);
+    return size++;
+  }
+}
@@ -1,5 +1,6 @@
 package com.javaigua.interconnFlights.domain;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Collections;
 import java.util.stream.Collectors;
@@ -7,7 +8,7 @@ import java.util.stream.Collectors;
 /**
  * A representation of the information of a DaySchedule.
  */
-public class DaySchedule {
+public class DaySchedule implements Serializable {
   private final Integer day;
   private final List<Flight> flights;
 
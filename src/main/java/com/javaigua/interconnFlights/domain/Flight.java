@@ -1,25 +1,44 @@
 package com.javaigua.interconnFlights.domain;
 
+import java.io.Serializable;
 import java.time.LocalTime;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * A representation of the information of a Flight.
+ *
+ * Departure and arrival times are parsed once at creation time into minutes of the day, so hot paths compare plain
+ * integers instead of parsing the time strings on every access.
  */
-public class Flight {
+public class Flight implements Serializable {
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
   private final String number;
   private final String departureTime;
   private final String arrivalTime;
+  private final short departureMinute;
+  private final short arrivalMinute;
 
   public Flight() {
     this.number = "";
     this.departureTime = "";
     this.arrivalTime = "";
+    this.departureMinute = -1;
+    this.arrivalMinute = -1;
   }
 
-  public Flight(String number, String departureTime, String arrivalTime) {
+  @JsonCreator
+  public Flight(@JsonProperty("number") String number,
+                @JsonProperty("departureTime") String departureTime,
+                @JsonProperty("arrivalTime") String arrivalTime) {
     this.number = number;
     this.departureTime = departureTime;
     this.arrivalTime = arrivalTime;
+    this.departureMinute = parseMinuteOfDay(departureTime);
+    this.arrivalMinute = parseMinuteOfDay(arrivalTime);
   }
 
   public String getNumber() {
@@ -35,11 +54,61 @@ public class Flight {
   }
 
   public LocalTime getDepartureLocalTime() {
-    return LocalTime.parse(departureTime);
+    return departureMinute < 0 ? LocalTime.parse(departureTime) :
+      LocalTime.of(departureMinute / 60, departureMinute % 60);
   }
 
   public LocalTime getArrivalLocalTime() {
-    return LocalTime.parse(arrivalTime);
+    return arrivalMinute < 0 ? LocalTime.parse(arrivalTime) : LocalTime.of(arrivalMinute / 60, arrivalMinute % 60);
+  }
+
+  /**
+   * Departure time as minutes of the day, -1 if unknown.
+   */
+  @JsonIgnore
+  public int getDepartureMinute() {
+    return departureMinute;
+  }
+
+  /**
+   * Arrival time as minutes of the day, -1 if unknown.
+   */
+  @JsonIgnore
+  public int getArrivalMinute() {
+    return arrivalMinute;
+  }
+
+  /**
+   * Flight duration in minutes, arriving the day after when the arrival time is not after the departure time.
+   */
+  @JsonIgnore
+  public int getDurationMinutes() {
+    return arrivalMinute > departureMinute ?
+      arrivalMinute - departureMinute :
+      arrivalMinute - departureMinute + MINUTES_PER_DAY;
+  }
+
+  /**
+   * Parses a HH:mm time into minutes of the day, falling back to ISO local time parsing for other formats.
+   */
+  private static short parseMinuteOfDay(String time) {
+    if (time == null || time.isEmpty()) {
+      return -1;
+    }
+    if (time.length() == 5 && time.charAt(2) == ':') {
+      int h1 = time.charAt(0) - '0';
+      int h2 = time.charAt(1) - '0';
+      int m1 = time.charAt(3) - '0';
+      int m2 = time.charAt(4) - '0';
+      if (h1 >= 0 && h1 <= 2 && h2 >= 0 && h2 <= 9 && m1 >= 0 && m1 <= 5 && m2 >= 0 && m2 <= 9) {
+        int hour = h1 * 10 + h2;
+        if (hour < 24) {
+          return (short) (hour * 60 + m1 * 10 + m2);
+        }
+      }
+    }
+    LocalTime localTime = LocalTime.parse(time);
+    return (short) (localTime.getHour() * 60 + localTime.getMinute());
   }
 
   @Override
@@ -52,6 +52,20 @@ public class InterconnFlight {
     return arrivalDateTime;
   }
 
+  /**
+   * Provides this flight in the undated format of the first version of the API, departure and arrival times of the day
+   * (HH:mm) instead of ISO date-times.
+   */
+  public InterconnFlight undated() {
+    return new InterconnFlight(number, departureAirport, arrivalAirport, timeOfDay(departureDateTime),
+      timeOfDay(arrivalDateTime));
+  }
+
+  private static String timeOfDay(String dateTime) {
+    final int time = dateTime != null ? dateTime.indexOf('T') : -1;
+    return time == -1 ? dateTime : dateTime.substring(time + 1, Math.min(dateTime.length(), time + 6));
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
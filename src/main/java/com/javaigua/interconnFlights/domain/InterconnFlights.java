@@ -37,6 +37,23 @@ public class InterconnFlights {
     return legs;
   }
 
+  /**
+   * Provides these interconnecting flights in the undated format of the first version of the API: times of the day
+   * and an id of the flight numbers, as the k-shortest engine calculates them. The same flights departing on different
+   * days are then equal.
+   */
+  public InterconnFlights undated() {
+    if (legs == null) return this;
+    final InterconnFlight[] undatedLegs = new InterconnFlight[legs.length];
+    final StringBuilder undatedId = new StringBuilder();
+    for (int i = 0; i < legs.length; i++) {
+      undatedLegs[i] = legs[i].undated();
+      if (i > 0) undatedId.append("_");
+      undatedId.append(legs[i].getNumber());
+    }
+    return new InterconnFlights(undatedId.toString(), undatedLegs);
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -1,5 +1,6 @@
 package com.javaigua.interconnFlights.domain;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -7,7 +8,7 @@ import java.util.stream.Collectors;
 /**
  * A representation of the information of a MonthSchedule.
  */
-public class MonthSchedule {
+public class MonthSchedule implements Serializable {
   private final Integer month;
   private final List<DaySchedule> days;
 
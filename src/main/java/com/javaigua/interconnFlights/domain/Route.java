@@ -1,9 +1,12 @@
 package com.javaigua.interconnFlights.domain;
 
+import java.io.Serializable;
+import java.util.Objects;
+
 /**
  * A representation of the information of a Route.
  */
-public class Route {
+public class Route implements Serializable {
   private final String airportFrom;
   private final String airportTo;
   private final String connectingAirport;
@@ -61,6 +64,35 @@ public class Route {
     return group;
   }
 
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + Objects.hashCode(airportFrom);
+    result = prime * result + Objects.hashCode(airportTo);
+    result = prime * result + Objects.hashCode(connectingAirport);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+
+    Route other = (Route) obj;
+    return Objects.equals(airportFrom, other.airportFrom) &&
+      Objects.equals(airportTo, other.airportTo) &&
+      Objects.equals(connectingAirport, other.connectingAirport) &&
+      Objects.equals(newRoute, other.newRoute) &&
+      Objects.equals(seasonalRoute, other.seasonalRoute) &&
+      Objects.equals(operator, other.operator) &&
+      Objects.equals(group, other.group);
+  }
+
   @Override
   public String toString() {
     return new StringBuilder()
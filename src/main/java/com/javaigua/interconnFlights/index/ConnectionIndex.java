@@ -0,0 +1,304 @@
+package com.javaigua.interconnFlights.index;
+
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.ExecutionContextExecutor;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+
+import com.typesafe.config.Config;
+
+import com.javaigua.interconnFlights.actors.messages.GetInterconnections;
+import com.javaigua.interconnFlights.algorithms.ConnectionScan;
+import com.javaigua.interconnFlights.catalog.RoutesCatalog;
+import com.javaigua.interconnFlights.domain.AirportDictionary;
+import com.javaigua.interconnFlights.domain.InterconnFlights;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+import com.javaigua.interconnFlights.domain.Route;
+import com.javaigua.interconnFlights.metrics.Metrics;
+import com.javaigua.interconnFlights.sharding.ScheduleHolders;
+import com.javaigua.interconnFlights.timetable.ScheduleDiff;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+import com.javaigua.interconnFlights.timetable.Timetable;
+
+/**
+ * A process-wide index of the direct and one stop journeys of the most queried origin and destination pairs, by month.
+ *
+ * Once an origin and destination has been queried a number of times, the MonthConnections of the months of its
+ * queries are built in the background from the cached month schedules of its candidate routes. Queries of the
+ * connection-scan engine whose months are all indexed are then answered with a range lookup on departure, without
+ * fetching schedules nor searching. Months are evicted in least-recently-used order past the configured count.
+ *
+ * Indexed months are kept up to date incrementally: only the months built from a month schedule fetched with
+ * different flights are updated, searching again just the journeys around the changed days when the Timetable API
+ * revalidation tells which ones they are, and the schedules and candidate routes of every indexed month are checked for
+ * changes at a regular interval and whenever the routes catalog is refreshed.
+ */
+public class ConnectionIndex implements Extension {
+
+  public static final Id ID = new Id();
+
+  /**
+   * Akka extension id, one index per actor system.
+   */
+  public static class Id extends AbstractExtensionId<ConnectionIndex> implements ExtensionIdProvider {
+    @Override
+    public Id lookup() {
+      return ID;
+    }
+
+    @Override
+    public ConnectionIndex createExtension(ExtendedActorSystem system) {
+      return new ConnectionIndex(system);
+    }
+  }
+
+  /**
+   * Convenient lookup of the connection index of the given actor system
+   */
+  public static ConnectionIndex get(ActorSystem system) {
+    return ID.get(system);
+  }
+
+  private final LoggingAdapter log;
+  private final ExecutionContextExecutor ec;
+  private final Metrics metrics;
+  private final RoutesCatalog routesCatalog;
+  private final ScheduleHolders scheduleHolders;
+  private final boolean enabled;
+  private final int minQueries;
+  private final int maxMonths;
+  private final int minConnectionMinutes;
+  private final int maxLayoverMinutes;
+
+  // access ordered, eldest entry is the least recently used one; guarded by this
+  private final LinkedHashMap<ScheduleKey, MonthConnections> months = new LinkedHashMap<>(16, 0.75f, true);
+  // queries of the origin and destination pairs, the least recently queried are forgotten; guarded by this
+  private final LinkedHashMap<Long, Integer> demand = new LinkedHashMap<Long, Integer>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+      return size() > maxMonths;
+    }
+  };
+  private final Set<ScheduleKey> building = ConcurrentHashMap.newKeySet();
+  // months to build again once their ongoing build completes
+  private final Set<ScheduleKey> outdated = ConcurrentHashMap.newKeySet();
+
+  private ConnectionIndex(ExtendedActorSystem system) {
+    this.log = Logging.getLogger(system, this);
+    this.ec = system.dispatcher();
+    this.metrics = Metrics.get(system);
+    this.routesCatalog = RoutesCatalog.get(system);
+    this.scheduleHolders = ScheduleHolders.get(system);
+
+    final Config config = system.settings().config();
+    // the indexed journeys are the catchable ones of the connection-scan engine
+    this.enabled = config.getBoolean("application.connection-index.enabled") &&
+      "connection-scan".equals(config.getString("application.calculator.engine"));
+    this.minQueries = config.getInt("application.connection-index.min-queries");
+    this.maxMonths = config.getInt("application.connection-index.max-months");
+    this.minConnectionMinutes = config.getInt("application.calculator.min-connection-minutes");
+    this.maxLayoverMinutes = config.getInt("application.calculator.max-layover-minutes");
+
+    if (enabled) {
+      Timetable.get(system).addFetchListener(this::onScheduleFetched);
+      routesCatalog.addRefreshListener(snapshot -> refresh());
+      final FiniteDuration refreshInterval = Duration.create(
+        config.getLong("application.connection-index.refresh-interval-millis"), TimeUnit.MILLISECONDS);
+      system.scheduler().schedule(refreshInterval, refreshInterval, this::refresh, ec);
+    }
+  }
+
+  /**
+   * Looks up the interconnecting flights of a query in the index, recording the query otherwise so the months of the
+   * most queried origin and destination pairs get indexed.
+   *
+   * @param query the interconnections query
+   * @return the interconnecting flights sorted by departure, as the connection-scan engine calculates them, or empty
+   * if any of the months of the query is not indexed
+   */
+  public Optional<List<InterconnFlights>> lookup(GetInterconnections query) {
+    if (!enabled || query.isCalendar()) return Optional.empty();
+    // airports of no route of the catalog have no journeys to index
+    final int departure = AirportDictionary.find(query.getDeparture());
+    final int arrival = AirportDictionary.find(query.getArrival());
+    if (departure == -1 || arrival == -1) return Optional.empty();
+
+    final long start = System.nanoTime();
+    final List<ScheduleKey> keys = monthKeys(query);
+    final List<MonthConnections> found = new ArrayList<>(keys.size());
+    final List<ScheduleKey> missing = new ArrayList<>();
+    final int queries;
+    synchronized (this) {
+      for (ScheduleKey key : keys) {
+        final MonthConnections month = months.get(key);
+        if (month != null) found.add(month);
+        else missing.add(key);
+      }
+      queries = missing.isEmpty() ? 0 : demand.merge(AirportDictionary.routeKey(departure, arrival), 1, Integer::sum);
+    }
+
+    if (!missing.isEmpty()) {
+      metrics.indexLookups(false).increment();
+      if (queries >= minQueries) missing.forEach(this::build);
+      return Optional.empty();
+    }
+
+    final List<InterconnFlights> interconnFlights = MonthConnections.lookup(found,
+      ConnectionScan.toEpochMinute(query.getDepartureDateTime()),
+      ConnectionScan.toEpochMinute(query.getArrivalDateTime()));
+    metrics.recordStage("index_lookup", start);
+    metrics.indexLookups(true).increment();
+    return Optional.of(interconnFlights);
+  }
+
+  /**
+   * Provides the number of indexed months.
+   */
+  public synchronized int size() {
+    return months.size();
+  }
+
+  /**
+   * Builds the journeys of an origin and destination in a month in the background, unless already being built.
+   */
+  private void build(ScheduleKey key) {
+    build(key, null, null, null, null);
+  }
+
+  /**
+   * Builds the journeys of an origin and destination in a month in the background, with the given month schedule
+   * just fetched instead of the cached one. Given the previously indexed month and the changes of the fetched month
+   * schedule from the version it was built from, only the journeys around the changed days are searched again.
+   */
+  private void build(ScheduleKey key, ScheduleKey fetchedKey, MonthSchedule fetched, MonthConnections previous,
+                     ScheduleDiff changes) {
+    if (!building.add(key)) {
+      if (fetchedKey != null) outdated.add(key);
+      return;
+    }
+
+    final long start = System.nanoTime();
+    final YearMonth month = YearMonth.of(key.getYear(), key.getMonth());
+    routesCatalog.getSnapshot()
+      .thenCompose(snapshot -> {
+        final List<Route> routes = snapshot.getCandidateRoutes(key.getDeparture(), key.getArrival());
+        final Map<ScheduleKey, CompletableFuture<MonthSchedule>> schedules = new HashMap<>();
+        for (Route route : routes) {
+          for (ScheduleKey scheduleKey : MonthConnections.scheduleKeys(route, month)) {
+            schedules.put(scheduleKey, scheduleKey.equals(fetchedKey) ? CompletableFuture.completedFuture(fetched) :
+              scheduleHolders.getMonthSchedule(scheduleKey).toCompletableFuture());
+          }
+        }
+        return CompletableFuture.allOf(schedules.values().toArray(new CompletableFuture[0]))
+          .thenApplyAsync(v -> {
+            final Map<ScheduleKey, MonthSchedule> loaded = new HashMap<>();
+            schedules.forEach((scheduleKey, schedule) -> loaded.put(scheduleKey, schedule.join()));
+            if (previous != null) {
+              return MonthConnections.update(previous, routes, loaded, fetchedKey, changes, minConnectionMinutes,
+                maxLayoverMinutes);
+            }
+            return MonthConnections.build(key, routes, loaded, minConnectionMinutes, maxLayoverMinutes);
+          }, ec);
+      })
+      .whenComplete((built, throwable) -> {
+        building.remove(key);
+        if (throwable != null) {
+          log.warning("status= connection_index_build_failed, key= {}, error= {}", key, throwable.getMessage());
+        } else {
+          put(key, built);
+          metrics.recordStage(previous != null ? "index_update" : "index_build", start);
+          log.debug("status= connection_index_built, month= {}", built);
+        }
+        if (outdated.remove(key)) build(key);
+      });
+  }
+
+  private synchronized void put(ScheduleKey key, MonthConnections built) {
+    months.put(key, built);
+    final Iterator<ScheduleKey> eldest = months.keySet().iterator();
+    while (months.size() > maxMonths && eldest.hasNext()) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Updates the indexed months built from a different version of a just fetched month schedule, incrementally when
+   * they were built from the version the changes are relative to.
+   */
+  private void onScheduleFetched(ScheduleKey scheduleKey, MonthSchedule schedule, ScheduleDiff changes) {
+    final List<MonthConnections> changed = new ArrayList<>();
+    synchronized (this) {
+      for (MonthConnections month : months.values()) {
+        if (month.getScheduleKeys().contains(scheduleKey) && !month.isBuiltFrom(scheduleKey, schedule)) {
+          changed.add(month);
+        }
+      }
+    }
+    if (!changed.isEmpty()) {
+      log.info("status= connection_index_schedule_changed, key= {}, months= {}, changes= {}", scheduleKey,
+        changed.size(), changes);
+      for (MonthConnections month : changed) {
+        final boolean incremental = changes != null && month.isBuiltFrom(scheduleKey, changes.getPrevious());
+        build(month.getKey(), scheduleKey, schedule, incremental ? month : null, incremental ? changes : null);
+      }
+    }
+  }
+
+  /**
+   * Checks the candidate routes and the month schedules of every indexed month, building again the changed ones.
+   * Reading the schedules also revalidates the stale ones of the cache, so the index follows the Timetable API.
+   */
+  private void refresh() {
+    final List<MonthConnections> indexed;
+    synchronized (this) {
+      indexed = new ArrayList<>(months.values());
+    }
+
+    routesCatalog.getSnapshot().thenAccept(snapshot -> {
+      for (MonthConnections month : indexed) {
+        final ScheduleKey key = month.getKey();
+        final Set<ScheduleKey> scheduleKeys = new HashSet<>();
+        for (Route route : snapshot.getCandidateRoutes(key.getDeparture(), key.getArrival())) {
+          scheduleKeys.addAll(MonthConnections.scheduleKeys(route, YearMonth.of(key.getYear(), key.getMonth())));
+        }
+        if (!scheduleKeys.equals(month.getScheduleKeys())) {
+          build(key);
+          continue;
+        }
+        for (ScheduleKey scheduleKey : scheduleKeys) {
+          scheduleHolders.getMonthSchedule(scheduleKey).thenAccept(schedule -> {
+            if (!month.isBuiltFrom(scheduleKey, schedule)) build(key, scheduleKey, schedule, null, null);
+          });
+        }
+      }
+      log.debug("status= connection_index_refreshed, months= {}", indexed.size());
+    });
+  }
+
+  /**
+   * Provides the keys of the months of the departures of a query.
+   */
+  private static List<ScheduleKey> monthKeys(GetInterconnections query) {
+    final List<ScheduleKey> keys = new ArrayList<>();
+    final YearMonth last = YearMonth.from(query.getArrivalDateTime());
+    for (YearMonth month = YearMonth.from(query.getDepartureDateTime()); !month.isAfter(last);
+         month = month.plusMonths(1)) {
+      keys.add(new ScheduleKey(query.getDeparture(), query.getArrival(), month.getYear(), month.getMonthValue()));
+    }
+    return keys;
+  }
+}
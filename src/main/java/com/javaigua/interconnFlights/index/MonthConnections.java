@@ -0,0 +1,285 @@
+package com.javaigua.interconnFlights.index;
+
+import java.time.YearMonth;
+import java.util.*;
+
+import com.javaigua.interconnFlights.algorithms.ConnectionScan;
+import com.javaigua.interconnFlights.algorithms.LongObjectHashMap;
+import com.javaigua.interconnFlights.domain.AirportDictionary;
+import com.javaigua.interconnFlights.domain.DaySchedule;
+import com.javaigua.interconnFlights.domain.Flight;
+import com.javaigua.interconnFlights.domain.InterconnFlights;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+import com.javaigua.interconnFlights.domain.Route;
+import com.javaigua.interconnFlights.timetable.ScheduleDiff;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+
+/**
+ * The precomputed direct and one stop journeys of an origin and destination departing within a month.
+ *
+ * Every catchable journey departing within the month is searched once over the schedules of the month and the next
+ * one (for the second legs and arrivals after the end of the month) and kept sorted by departure, so the journeys of
+ * any query window are a range of them. The Pareto optimal journeys of the window are then the ones a connection scan
+ * search of the window finds.
+ *
+ * The fingerprints of the month schedules it was built from are kept, so a change of any of them can be detected.
+ * As a second leg is paired with the latest departing first leg it can catch, a change of the flights of a day only
+ * changes the journeys departing from a day plus the maximum layover before it to the end of it, so only those are
+ * searched again when the changed days are known.
+ */
+public class MonthConnections {
+
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
+  private final ScheduleKey key;
+  // by departure, then latest arrival first
+  private final ConnectionScan.Journey[] journeys;
+  private final long[] departures;
+  private final long[] arrivals;
+  private final String[] names;
+  private final Map<ScheduleKey, Integer> fingerprints;
+
+  private MonthConnections(ScheduleKey key, ConnectionScan.Journey[] journeys, String[] names,
+                           Map<ScheduleKey, Integer> fingerprints) {
+    this.key = key;
+    this.journeys = journeys;
+    this.departures = new long[journeys.length];
+    this.arrivals = new long[journeys.length];
+    for (int i = 0; i < journeys.length; i++) {
+      departures[i] = journeys[i].departure();
+      arrivals[i] = journeys[i].arrival();
+    }
+    this.names = names;
+    this.fingerprints = Collections.unmodifiableMap(fingerprints);
+  }
+
+  /**
+   * Searches the journeys of an origin and destination departing within a month.
+   *
+   * @param key the origin, destination and year-month of the journeys
+   * @param routes the candidate routes of the origin and destination
+   * @param schedules the unfiltered month schedules of the candidate routes, for the month and the next one
+   * @param minConnectionMinutes minimum time between landing at a hub and the departure of the next leg
+   * @param maxLayoverMinutes maximum time between landing at a hub and the departure of the next leg
+   */
+  public static MonthConnections build(ScheduleKey key, List<Route> routes, Map<ScheduleKey, MonthSchedule> schedules,
+                                       int minConnectionMinutes, int maxLayoverMinutes) {
+    final YearMonth month = YearMonth.of(key.getYear(), key.getMonth());
+    final Map<ScheduleKey, Integer> fingerprints = new HashMap<>();
+    final ConnectionScan connectionScan = connectionScan(routes, schedules, month, fingerprints);
+    if (!connectionScan.contains(key.getDeparture()) || !connectionScan.contains(key.getArrival())) {
+      return new MonthConnections(key, new ConnectionScan.Journey[0], new String[0], fingerprints);
+    }
+
+    final long monthStart = month.atDay(1).toEpochDay() * MINUTES_PER_DAY;
+    final long nextMonthStart = month.plusMonths(1).atDay(1).toEpochDay() * MINUTES_PER_DAY;
+    final List<ConnectionScan.Journey> journeys = search(connectionScan, key, month, monthStart, nextMonthStart,
+      minConnectionMinutes, maxLayoverMinutes);
+    return new MonthConnections(key, sorted(journeys), connectionScan.names(), fingerprints);
+  }
+
+  /**
+   * Updates the journeys of an origin and destination departing within a month after a change of one of the month
+   * schedules they were built from, searching again only the journeys departing around the changed days. Falls back
+   * to building them again when the change adds or removes airports or month schedules.
+   *
+   * @param previous the journeys built from the previous version of the changed month schedule
+   * @param routes the candidate routes of the origin and destination
+   * @param schedules the unfiltered month schedules of the candidate routes, with the current version of the changed
+   * one
+   * @param changedKey the key of the changed month schedule
+   * @param changes the changes from the previous to the current version of the changed month schedule
+   * @see #build(ScheduleKey, List, Map, int, int)
+   */
+  public static MonthConnections update(MonthConnections previous, List<Route> routes,
+                                        Map<ScheduleKey, MonthSchedule> schedules, ScheduleKey changedKey,
+                                        ScheduleDiff changes, int minConnectionMinutes, int maxLayoverMinutes) {
+    final ScheduleKey key = previous.key;
+    final YearMonth month = YearMonth.of(key.getYear(), key.getMonth());
+    final Map<ScheduleKey, Integer> fingerprints = new HashMap<>();
+    final ConnectionScan connectionScan = connectionScan(routes, schedules, month, fingerprints);
+    if (!Arrays.equals(previous.names, connectionScan.names()) ||
+      !fingerprints.keySet().equals(previous.fingerprints.keySet()) ||
+      !Objects.equals(changes.getPrevious().getMonth(), changes.getCurrent().getMonth()) ||
+      previous.names.length == 0) {
+      return build(key, routes, schedules, minConnectionMinutes, maxLayoverMinutes);
+    }
+
+    // departures whose journeys may have changed, merged [start, end) intervals within the month
+    final long monthStart = month.atDay(1).toEpochDay() * MINUTES_PER_DAY;
+    final long nextMonthStart = month.plusMonths(1).atDay(1).toEpochDay() * MINUTES_PER_DAY;
+    final YearMonth changedMonth = YearMonth.of(changedKey.getYear(), changedKey.getMonth());
+    final List<long[]> intervals = new ArrayList<>();
+    for (int day : changes.getChangedDays()) {
+      final long dayStart = changedMonth.atDay(day).toEpochDay() * MINUTES_PER_DAY;
+      final long start = Math.max(monthStart, dayStart - maxLayoverMinutes - MINUTES_PER_DAY);
+      final long end = Math.min(nextMonthStart, dayStart + MINUTES_PER_DAY);
+      if (start >= end) continue;
+      final long[] last = intervals.isEmpty() ? null : intervals.get(intervals.size() - 1);
+      if (last != null && start <= last[1]) last[1] = Math.max(last[1], end);
+      else intervals.add(new long[] {start, end});
+    }
+
+    final List<ConnectionScan.Journey> journeys = new ArrayList<>();
+    int next = 0;
+    for (long[] interval : intervals) {
+      while (next < previous.journeys.length && previous.departures[next] < interval[0]) {
+        journeys.add(previous.journeys[next++]);
+      }
+      journeys.addAll(Arrays.asList(sorted(search(connectionScan, key, month, interval[0], interval[1],
+        minConnectionMinutes, maxLayoverMinutes))));
+      while (next < previous.journeys.length && previous.departures[next] < interval[1]) next++;
+    }
+    while (next < previous.journeys.length) journeys.add(previous.journeys[next++]);
+    return new MonthConnections(key, journeys.toArray(new ConnectionScan.Journey[0]), previous.names, fingerprints);
+  }
+
+  /**
+   * Creates the connections of the candidate routes, recording the fingerprints of their month schedules.
+   */
+  private static ConnectionScan connectionScan(List<Route> routes, Map<ScheduleKey, MonthSchedule> schedules,
+                                               YearMonth month, Map<ScheduleKey, Integer> fingerprints) {
+    final LongObjectHashMap<Route> routesMap = new LongObjectHashMap<>(routes.size());
+    final LongObjectHashMap<List<MonthSchedule>> schedulesMap = new LongObjectHashMap<>(routes.size());
+    for (Route route : routes) {
+      final long routeKey = AirportDictionary.routeKey(route);
+      routesMap.put(routeKey, route);
+      for (ScheduleKey scheduleKey : scheduleKeys(route, month)) {
+        final MonthSchedule schedule = schedules.get(scheduleKey);
+        if (schedule == null) continue;
+        fingerprints.put(scheduleKey, fingerprint(schedule));
+        if (schedule.getMonth() > 0 && !schedule.getDays().isEmpty()) {
+          schedulesMap.computeIfAbsent(routeKey, k -> new ArrayList<>()).add(schedule);
+        }
+      }
+    }
+    return new ConnectionScan(routesMap, schedulesMap, month, month.plusMonths(1));
+  }
+
+  /**
+   * Searches the catchable journeys departing within [departureStart, departureEnd), arriving at the latest at the
+   * end of the month after the given one.
+   */
+  private static List<ConnectionScan.Journey> search(ConnectionScan connectionScan, ScheduleKey key, YearMonth month,
+                                                     long departureStart, long departureEnd,
+                                                     int minConnectionMinutes, int maxLayoverMinutes) {
+    final long windowEnd = month.plusMonths(2).atDay(1).toEpochDay() * MINUTES_PER_DAY - 1;
+    // the second leg of a journey departs within a layover of the landing of the first one
+    final long searchEnd = Math.min(windowEnd, departureEnd + 2 * MINUTES_PER_DAY + maxLayoverMinutes);
+    final List<ConnectionScan.Journey> journeys = connectionScan.searchFeasible(
+      connectionScan.indexOf(key.getDeparture()), connectionScan.indexOf(key.getArrival()), departureStart, searchEnd,
+      minConnectionMinutes, maxLayoverMinutes, null);
+    journeys.removeIf(journey -> journey.departure() >= departureEnd);
+    return journeys;
+  }
+
+  private static ConnectionScan.Journey[] sorted(List<ConnectionScan.Journey> journeys) {
+    return journeys.stream()
+      .sorted(Comparator.comparingLong(ConnectionScan.Journey::departure)
+        .thenComparing(Comparator.comparingLong(ConnectionScan.Journey::arrival).reversed()))
+      .toArray(ConnectionScan.Journey[]::new);
+  }
+
+  /**
+   * Provides the keys of the month schedules of a route needed by the journeys departing within the given month.
+   */
+  public static List<ScheduleKey> scheduleKeys(Route route, YearMonth month) {
+    final YearMonth next = month.plusMonths(1);
+    return Arrays.asList(
+      new ScheduleKey(route.getAirportFrom(), route.getAirportTo(), month.getYear(), month.getMonthValue()),
+      new ScheduleKey(route.getAirportFrom(), route.getAirportTo(), next.getYear(), next.getMonthValue()));
+  }
+
+  /**
+   * Looks up the Pareto optimal journeys departing and arriving within the given window, as a connection scan search
+   * of the window does.
+   *
+   * @param months the consecutive months of the window, in month order
+   * @param windowStart the earliest departure instant, in epoch minutes
+   * @param windowEnd the latest arrival instant, in epoch minutes
+   * @return the interconnecting flights of the Pareto optimal journeys sorted by departure
+   */
+  public static List<InterconnFlights> lookup(List<MonthConnections> months, long windowStart, long windowEnd) {
+    final LinkedList<InterconnFlights> optimal = new LinkedList<>();
+    long earliestArrival = Long.MAX_VALUE;
+    // latest departures first, keeping the ones arriving earlier than all the later departures
+    for (int m = months.size() - 1; m >= 0; m--) {
+      final MonthConnections month = months.get(m);
+      for (int i = month.firstDepartingAfter(windowEnd) - 1; i >= 0 && month.departures[i] >= windowStart; i--) {
+        if (month.arrivals[i] <= windowEnd && month.arrivals[i] < earliestArrival) {
+          optimal.addFirst(ConnectionScan.toInterconnFlights(month.journeys[i], v -> month.names[v]));
+          earliestArrival = month.arrivals[i];
+        }
+      }
+    }
+    return new ArrayList<>(optimal);
+  }
+
+  public ScheduleKey getKey() {
+    return key;
+  }
+
+  public int size() {
+    return journeys.length;
+  }
+
+  /**
+   * Provides the journeys, by departure.
+   */
+  List<ConnectionScan.Journey> getJourneys() {
+    return Collections.unmodifiableList(Arrays.asList(journeys));
+  }
+
+  /**
+   * Provides the keys of the month schedules this month was built from.
+   */
+  public Set<ScheduleKey> getScheduleKeys() {
+    return fingerprints.keySet();
+  }
+
+  /**
+   * Whether this month was built from the given month schedule, a different one for the same key means the journeys
+   * of this month must be searched again.
+   */
+  public boolean isBuiltFrom(ScheduleKey scheduleKey, MonthSchedule schedule) {
+    final Integer fingerprint = fingerprints.get(scheduleKey);
+    return fingerprint != null && fingerprint == fingerprint(schedule);
+  }
+
+  /**
+   * Hashes the days and flights of a month schedule.
+   */
+  static int fingerprint(MonthSchedule schedule) {
+    int hash = Objects.hashCode(schedule.getMonth());
+    for (DaySchedule day : schedule.getDays()) {
+      hash = 31 * hash + Objects.hashCode(day.getDay());
+      for (Flight flight : day.getFlights()) {
+        hash = 31 * hash + Objects.hashCode(flight.getNumber());
+        hash = 31 * hash + flight.getDepartureMinute();
+        hash = 31 * hash + flight.getArrivalMinute();
+      }
+    }
+    return hash;
+  }
+
+  private int firstDepartingAfter(long instant) {
+    int lo = 0;
+    int hi = departures.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (departures[mid] <= instant) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder()
+      .append("[key=").append(key)
+      .append(", journeys=").append(journeys.length)
+      .append(", schedules=").append(fingerprints.size())
+      .append("]")
+      .toString();
+  }
+}
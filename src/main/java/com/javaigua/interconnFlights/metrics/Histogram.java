@@ -0,0 +1,90 @@
+package com.javaigua.interconnFlights.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe histogram of non-negative values with a bounded relative error, in the style of HdrHistogram.
+ *
+ * Values are counted in log-linear buckets: every power of two range is split in the same number of linear sub-buckets,
+ * so any recorded value is off by less than 1/64 (about 1.6%) of itself, and the whole range up to 2^40 fits in a few
+ * thousand counters. Recording is wait-free and never allocates, values over the range are counted in the last bucket.
+ */
+public class Histogram {
+
+  // 2^SUB_BUCKET_BITS linear sub-buckets for the values below it, half of them per power of two range above it
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+  private static final int MAX_VALUE_BITS = 40;
+  static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+  private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value, negative ones are recorded as zero.
+   */
+  public void record(long value) {
+    final long clamped = Math.max(0L, Math.min(value, MAX_VALUE));
+    counts.incrementAndGet(index(clamped));
+    count.increment();
+    sum.add(clamped);
+    if (clamped > max.get()) max.accumulateAndGet(clamped, Math::max);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Provides the value at the given percentile of the recorded ones, the highest value equivalent to it.
+   *
+   * @param percentile a percentile between 0 and 100
+   * @return the value at the percentile, 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    final long total = getCount();
+    if (total == 0) return 0L;
+    final long rank = Math.max(1L, (long) Math.ceil(Math.min(100D, Math.max(0D, percentile)) / 100D * total));
+
+    long seen = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) return Math.min(highestEquivalent(i), getMax());
+    }
+    return getMax();
+  }
+
+  /**
+   * Provides the bucket of a value in [0, MAX_VALUE].
+   */
+  static int index(long value) {
+    if (value < SUB_BUCKETS) return (int) value;
+    // shift that leaves the value within [HALF_SUB_BUCKETS, SUB_BUCKETS)
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) ((value >>> shift) - HALF_SUB_BUCKETS);
+  }
+
+  /**
+   * Provides the highest value counted in the given bucket.
+   */
+  static long highestEquivalent(int index) {
+    if (index < SUB_BUCKETS) return index;
+    final int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+    final long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,227 @@
+package com.javaigua.interconnFlights.metrics;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.http.javadsl.model.HttpResponse;
+
+/**
+ * A process-wide access point to the latency histograms and counters of the stages of the interconnections queries.
+ *
+ * Every stage (routes fetch, schedules fan-out, unmarshalling, filtering, graph build, path search) records its
+ * latency in microseconds into a histogram, exposed in seconds. Calls to the upstream APIs are counted by outcome,
+ * the requests issued while every pooled connection is busy are counted as connection pool waits. Hedged requests,
+ * calls shed by an open circuit breaker and the transitions of the circuit breakers are counted by API.
+ */
+public class Metrics implements Extension {
+
+  public static final String STAGE_LATENCY = "interconn_stage_duration_seconds";
+  public static final String QUERIES_IN_FLIGHT = "interconn_queries_in_flight";
+  public static final String QUERIES_REJECTED = "interconn_queries_rejected_total";
+  public static final String QUERIES_EXPIRED = "interconn_queries_expired_total";
+  public static final String RESPONSE_SIZE = "interconn_response_size_bytes";
+  public static final String BATCH_SCHEDULE_REQUESTS = "interconn_batch_schedule_requests_total";
+  public static final String INDEX_LOOKUPS = "interconn_connection_index_lookups_total";
+  public static final String SCHEDULE_REVALIDATIONS = "interconn_schedule_revalidations_total";
+  public static final String UPSTREAM_CALLS = "interconn_upstream_calls_total";
+  public static final String UPSTREAM_LATENCY = "interconn_upstream_response_seconds";
+  public static final String UPSTREAM_IN_FLIGHT = "interconn_upstream_requests_in_flight";
+  public static final String UPSTREAM_POOL_WAITS = "interconn_upstream_pool_waits_total";
+  public static final String UPSTREAM_RESPONSE_SIZE = "interconn_upstream_response_size_bytes";
+  public static final String UPSTREAM_HEDGES = "interconn_upstream_hedged_requests_total";
+  public static final String UPSTREAM_SHED = "interconn_upstream_calls_shed_total";
+  public static final String UPSTREAM_BREAKER_TRANSITIONS = "interconn_upstream_circuit_breaker_transitions_total";
+
+  private static final double MICROS = 1e-6;
+
+  public static final Id ID = new Id();
+
+  /**
+   * Akka extension id, one metrics registry per actor system.
+   */
+  public static class Id extends AbstractExtensionId<Metrics> implements ExtensionIdProvider {
+    @Override
+    public Id lookup() {
+      return ID;
+    }
+
+    @Override
+    public Metrics createExtension(ExtendedActorSystem system) {
+      return new Metrics(system);
+    }
+  }
+
+  /**
+   * Convenient lookup of the metrics of the given actor system
+   */
+  public static Metrics get(ActorSystem system) {
+    return ID.get(system);
+  }
+
+  private final MetricsRegistry registry = new MetricsRegistry();
+  private final int maxConnections;
+  private final AtomicLong upstreamInFlight = new AtomicLong();
+
+  private Metrics(ExtendedActorSystem system) {
+    this.maxConnections = system.settings().config().getInt("akka.http.host-connection-pool.max-connections");
+  }
+
+  /**
+   * Provides the latency histogram of a stage, in microseconds.
+   */
+  public Histogram stage(String stage) {
+    return registry.histogram(STAGE_LATENCY, "Latency of the stages of the interconnections queries.", MICROS,
+      "stage", stage);
+  }
+
+  /**
+   * Records the latency of a stage started at the given System.nanoTime().
+   */
+  public void recordStage(String stage, long startNanos) {
+    stage(stage).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+  }
+
+  /**
+   * Records the latency of an asynchronous stage, from its start until its future is completed.
+   */
+  public <T> CompletionStage<T> timeStage(String stage, Supplier<CompletionStage<T>> started) {
+    final long start = System.nanoTime();
+    return started.get().whenComplete((result, throwable) -> recordStage(stage, start));
+  }
+
+  /**
+   * Provides the gauge of the interconnections queries admitted and not completed yet.
+   */
+  public AtomicLong queriesInFlight() {
+    return registry.gauge(QUERIES_IN_FLIGHT, "Interconnections queries admitted and not completed yet.");
+  }
+
+  /**
+   * Provides the counter of the interconnections queries rejected by saturated workers.
+   */
+  public LongAdder queriesRejected() {
+    return registry.counter(QUERIES_REJECTED, "Interconnections queries rejected by saturated workers.");
+  }
+
+  /**
+   * Provides the counter of the interconnections queries released from flight by their deadline, never completed.
+   */
+  public LongAdder queriesExpired() {
+    return registry.counter(QUERIES_EXPIRED, "Interconnections queries released by their deadline, never completed.");
+  }
+
+  /**
+   * Provides the counter of the month schedules requested by the queries of batches, either fetched for the batch or
+   * shared with a previous query of it.
+   */
+  public LongAdder batchScheduleRequests(boolean shared) {
+    return registry.counter(BATCH_SCHEDULE_REQUESTS, "Month schedules requested by the queries of batches.",
+      "outcome", shared ? "shared" : "fetched");
+  }
+
+  /**
+   * Provides the counter of the interconnections queries looked up in the connection index, either answered by it or
+   * left to the fetchers and calculators.
+   */
+  public LongAdder indexLookups(boolean hit) {
+    return registry.counter(INDEX_LOOKUPS, "Interconnections queries looked up in the connection index.",
+      "outcome", hit ? "hit" : "miss");
+  }
+
+  /**
+   * Provides the counter of the cached month schedules revalidated against the Timetable API, by outcome: not_modified
+   * when answered with a 304, unchanged or modified when downloaded again.
+   */
+  public LongAdder scheduleRevalidations(String outcome) {
+    return registry.counter(SCHEDULE_REVALIDATIONS, "Cached month schedules revalidated against the Timetable API.",
+      "outcome", outcome);
+  }
+
+  /**
+   * Provides the histogram of the sizes of the interconnections responses of the given format.
+   */
+  public Histogram responseSize(String format) {
+    return registry.histogram(RESPONSE_SIZE, "Size of the interconnections responses.", 1D, "format", format);
+  }
+
+  /**
+   * Performs a request to an upstream API, recording its latency until the response headers, its outcome and its
+   * response size when known. A request issued while all the pooled connections are busy is counted as a pool wait.
+   *
+   * @param api the name of the upstream API
+   * @param request the request to perform
+   * @return the future of the response
+   */
+  public CompletionStage<HttpResponse> upstream(String api, Supplier<CompletionStage<HttpResponse>> request) {
+    final AtomicLong apiInFlight = registry.gauge(UPSTREAM_IN_FLIGHT, "Requests to the upstream APIs in flight.",
+      "api", api);
+    apiInFlight.incrementAndGet();
+    if (upstreamInFlight.incrementAndGet() > maxConnections) {
+      registry.counter(UPSTREAM_POOL_WAITS, "Requests to the upstream APIs that waited for a pooled connection.",
+        "api", api).increment();
+    }
+
+    final long start = System.nanoTime();
+    return request.get().whenComplete((response, throwable) -> {
+      upstreamInFlight.decrementAndGet();
+      apiInFlight.decrementAndGet();
+      upstreamLatency(api).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+      registry.counter(UPSTREAM_CALLS, "Calls to the upstream APIs by outcome.", "api", api, "outcome",
+        throwable != null ? "error" : (response.status().intValue() / 100) + "xx").increment();
+      if (response != null) {
+        response.entity().getContentLengthOption().ifPresent(size ->
+          registry.histogram(UPSTREAM_RESPONSE_SIZE, "Size of the upstream APIs responses.", 1D, "api", api)
+            .record(size));
+      }
+    });
+  }
+
+  /**
+   * Provides the latency histogram of an upstream API until the response headers, in microseconds.
+   */
+  public Histogram upstreamLatency(String api) {
+    return registry.histogram(UPSTREAM_LATENCY, "Latency of the upstream APIs until the response headers.", MICROS,
+      "api", api);
+  }
+
+  /**
+   * Provides the counter of the hedged requests to an upstream API, by outcome: issued for every duplicate request,
+   * won when the duplicate answered first.
+   */
+  public LongAdder upstreamHedges(String api, String outcome) {
+    return registry.counter(UPSTREAM_HEDGES, "Duplicate requests to the upstream APIs of the slow calls.", "api", api,
+      "outcome", outcome);
+  }
+
+  /**
+   * Provides the counter of the calls to an upstream API rejected by its open circuit breaker.
+   */
+  public LongAdder upstreamShed(String api) {
+    return registry.counter(UPSTREAM_SHED, "Calls to the upstream APIs rejected by an open circuit breaker.", "api",
+      api);
+  }
+
+  /**
+   * Provides the counter of the transitions of the circuit breaker of an upstream API to the given state: open,
+   * half_open or closed.
+   */
+  public LongAdder upstreamBreakerTransitions(String api, String state) {
+    return registry.counter(UPSTREAM_BREAKER_TRANSITIONS, "Transitions of the circuit breakers of the upstream APIs.",
+      "api", api, "state", state);
+  }
+
+  /**
+   * Renders all the metrics in the Prometheus text exposition format.
+   */
+  public String scrape() {
+    return registry.scrape();
+  }
+}
@@ -0,0 +1,143 @@
+package com.javaigua.interconnFlights.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A registry of named histograms, counters and gauges rendered in the Prometheus text exposition format.
+ *
+ * Metrics of the same name form a family told apart by their label pairs, e.g. the latency of every stage of a query.
+ * Histograms are exposed as summaries of the given quantiles, with their values scaled to the base unit of the family
+ * (e.g. seconds for histograms of microseconds). Lookups are lock free, so metrics can be fetched on the request path.
+ */
+public class MetricsRegistry {
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  /**
+   * A family of metrics of the same name, type and help.
+   */
+  private static class Family {
+    private final String name;
+    private final String type;
+    private final String help;
+    private final double scale;
+    // by rendered label pairs, sorted for a stable output
+    private final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    Family(String name, String type, String help, double scale) {
+      this.name = name;
+      this.type = type;
+      this.help = help;
+      this.scale = scale;
+    }
+  }
+
+  private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+  // by type, name and label pairs, the fast path of lookups of registered metrics
+  private final ConcurrentMap<String, Object> cache = new ConcurrentHashMap<>();
+
+  /**
+   * Provides the histogram of the given name and label pairs, registered on first use.
+   *
+   * @param name the metric name
+   * @param help a description of the metric
+   * @param scale factor from the recorded values to the base unit of the metric
+   * @param labels label name and value pairs
+   */
+  public Histogram histogram(String name, String help, double scale, String... labels) {
+    return (Histogram) register(name, "summary", help, scale, labels, Histogram::new);
+  }
+
+  /**
+   * Provides the monotonic counter of the given name and label pairs, registered on first use.
+   */
+  public LongAdder counter(String name, String help, String... labels) {
+    return (LongAdder) register(name, "counter", help, 1D, labels, LongAdder::new);
+  }
+
+  /**
+   * Provides the gauge of the given name and label pairs, registered on first use.
+   */
+  public AtomicLong gauge(String name, String help, String... labels) {
+    return (AtomicLong) register(name, "gauge", help, 1D, labels, AtomicLong::new);
+  }
+
+  /**
+   * Renders all the registered metrics in the Prometheus text exposition format.
+   */
+  public String scrape() {
+    final StringBuilder sb = new StringBuilder();
+    for (Family family : families.values()) {
+      sb.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+      sb.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+      for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+        final String labels = metric.getKey();
+        if (metric.getValue() instanceof Histogram) {
+          final Histogram histogram = (Histogram) metric.getValue();
+          for (double quantile : QUANTILES) {
+            appendSample(sb, family.name, withLabel(labels, "quantile", Double.toString(quantile)),
+              histogram.getValueAtPercentile(quantile * 100D) * family.scale);
+          }
+          appendSample(sb, family.name + "_sum", labels, histogram.getSum() * family.scale);
+          appendSample(sb, family.name + "_count", labels, histogram.getCount());
+        } else {
+          appendSample(sb, family.name, labels, ((Number) metric.getValue()).longValue());
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  private Object register(String name, String type, String help, double scale, String[] labels,
+                          Supplier<Object> factory) {
+    final String labelPairs = renderLabels(labels);
+    final String key = type + ' ' + name + labelPairs;
+    final Object cached = cache.get(key);
+    if (cached != null) return cached;
+
+    final Family family = families.computeIfAbsent(name, n -> new Family(n, type, help, scale));
+    if (!family.type.equals(type)) {
+      throw new IllegalArgumentException("Metric " + name + " already registered as a " + family.type);
+    }
+    final Object metric = family.metrics.computeIfAbsent(labelPairs, l -> factory.get());
+    cache.putIfAbsent(key, metric);
+    return metric;
+  }
+
+  /**
+   * Renders label pairs as {a="1",b="2"}, nothing when there are none.
+   */
+  static String renderLabels(String... labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels must be name and value pairs");
+    }
+    if (labels.length == 0) return "";
+
+    final StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) sb.append(',');
+      sb.append(labels[i]).append("=\"")
+        .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+    }
+    return sb.append('}').toString();
+  }
+
+  private static String withLabel(String labels, String name, String value) {
+    final String label = name + "=\"" + value + "\"";
+    return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+  }
+
+  private static void appendSample(StringBuilder sb, String name, String labels, double value) {
+    sb.append(name).append(labels).append(' ').append(value).append('\n');
+  }
+
+  private static void appendSample(StringBuilder sb, String name, String labels, long value) {
+    sb.append(name).append(labels).append(' ').append(value).append('\n');
+  }
+}
@@ -0,0 +1,538 @@
+package com.javaigua.interconnFlights.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializerWithStringManifest;
+
+import com.javaigua.interconnFlights.actors.messages.*;
+import com.javaigua.interconnFlights.algorithms.LongObjectHashMap;
+import com.javaigua.interconnFlights.catalog.OriginRoutes;
+import com.javaigua.interconnFlights.domain.*;
+import com.javaigua.interconnFlights.store.TimetableFile;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+
+/**
+ * A compact binary serializer of the messages of the interconnections pipeline and of the domain classes they carry.
+ *
+ * Every message is encoded on its own, its class given by a short string manifest:
+ *
+ *   query:     airport departure, airport arrival, date time departure, date time arrival, byte flags (streaming),
+ *              varint calendar days
+ *   fetch:     query, ref sender, ref original sender
+ *   routes and schedules, calculate:
+ *              query, varint routes, routes x route, varint schedules,
+ *              schedules x (airport departure, airport arrival, varint months, months x month schedule),
+ *              ref sender, ref original sender
+ *   route:     airport from, airport to, airport connecting, byte flags (new, seasonal), string operator, string group
+ *   origin routes:
+ *              varint routes, routes x route
+ *   month:     byte month, varint days, days x (byte day, varint flights, flights x flight)
+ *   flight:    string number, short departure, short arrival
+ *   leg:       string number, airport departure, airport arrival, leg time departure, leg time arrival
+ *   legs:      string id, varint legs, legs x leg
+ *   airport:   int packed IATA code (-1 if not packable, followed by string code)
+ *   date time: int epoch day, short minute of the day (-1 if not a whole minute, followed by long nano of the day)
+ *   leg time:  int epoch day (Integer.MIN_VALUE if not an ISO date time of a whole minute, followed by string value),
+ *              short minute of the day
+ *   ref:       string path of the actor ref (null for no sender)
+ *   string:    varint (0 null, 1 new string followed by short length and UTF-8 bytes, n > 1 the n-2th string of
+ *              the message)
+ *
+ * Strings are dictionary-encoded per message, so the flight numbers, operators and groups repeated along the month
+ * schedules and routes are written once. IATA codes are packed as ints of their three ASCII characters and flight times
+ * are minutes of the day, as in the timetable file. Boolean flags of 2 bits are 0 for null, 1 for false, 2 for true.
+ * Route keys are local to every node, so routes and schedules are keyed again by their airports once read.
+ */
+public class InterconnFlightsSerializer extends SerializerWithStringManifest {
+
+  static final int IDENTIFIER = 4201;
+
+  static final String GET_INTERCONNECTIONS = "GI";
+  static final String FETCH_ROUTES_AND_SCHEDULE = "FRS";
+  static final String ROUTES_AND_SCHEDULES = "RS";
+  static final String CALCULATE_INTERCONN_FLIGHTS = "CIF";
+  static final String GET_MONTH_SCHEDULE = "GMS";
+  static final String ROUTE = "R";
+  static final String ORIGIN_ROUTES = "OR";
+  static final String FLIGHT = "F";
+  static final String DAY_SCHEDULE = "DS";
+  static final String MONTH_SCHEDULE = "MS";
+  static final String INTERCONN_FLIGHT = "IF";
+  static final String INTERCONN_FLIGHTS = "IFS";
+
+  private static final int NULL_STRING = 0;
+  private static final int NEW_STRING = 1;
+  private static final int NOT_A_LEG_TIME = Integer.MIN_VALUE;
+
+  private final ExtendedActorSystem system;
+
+  public InterconnFlightsSerializer(ExtendedActorSystem system) {
+    this.system = system;
+  }
+
+  @Override
+  public int identifier() {
+    return IDENTIFIER;
+  }
+
+  @Override
+  public String manifest(Object o) {
+    if (o instanceof GetInterconnections) return GET_INTERCONNECTIONS;
+    if (o instanceof FetchRoutesAndSchedule) return FETCH_ROUTES_AND_SCHEDULE;
+    if (o instanceof RoutesAndSchedules) return ROUTES_AND_SCHEDULES;
+    if (o instanceof CalculateInterconnFlights) return CALCULATE_INTERCONN_FLIGHTS;
+    if (o instanceof GetMonthSchedule) return GET_MONTH_SCHEDULE;
+    if (o instanceof Route) return ROUTE;
+    if (o instanceof OriginRoutes) return ORIGIN_ROUTES;
+    if (o instanceof Flight) return FLIGHT;
+    if (o instanceof DaySchedule) return DAY_SCHEDULE;
+    if (o instanceof MonthSchedule) return MONTH_SCHEDULE;
+    if (o instanceof InterconnFlight) return INTERCONN_FLIGHT;
+    if (o instanceof InterconnFlights) return INTERCONN_FLIGHTS;
+    throw new IllegalArgumentException("Can not serialize object of class " + o.getClass().getName());
+  }
+
+  @Override
+  public byte[] toBinary(Object o) {
+    final Writer writer = new Writer();
+    try {
+      if (o instanceof GetInterconnections) {
+        writer.writeQuery((GetInterconnections) o);
+      } else if (o instanceof FetchRoutesAndSchedule) {
+        final FetchRoutesAndSchedule msg = (FetchRoutesAndSchedule) o;
+        writer.writeQuery(msg.getGetInterconnections());
+        writer.writeRef(msg.getSender());
+        writer.writeRef(msg.getOriginalSender());
+      } else if (o instanceof RoutesAndSchedules) {
+        final RoutesAndSchedules msg = (RoutesAndSchedules) o;
+        writer.writeRoutesAndSchedules(msg.getGetInterconnections(), msg.getRoutes(), msg.getSchedules(),
+          msg.getSender(), msg.getOriginalSender());
+      } else if (o instanceof CalculateInterconnFlights) {
+        final CalculateInterconnFlights msg = (CalculateInterconnFlights) o;
+        writer.writeRoutesAndSchedules(msg.getGetInterconnections(), msg.getRoutes(), msg.getSchedules(),
+          msg.getSender(), msg.getOriginalSender());
+      } else if (o instanceof GetMonthSchedule) {
+        final ScheduleKey key = ((GetMonthSchedule) o).getKey();
+        writer.writeAirport(key.getDeparture());
+        writer.writeAirport(key.getArrival());
+        writer.out.writeShort(key.getYear());
+        writer.out.writeByte(key.getMonth());
+      } else if (o instanceof Route) {
+        writer.writeRoute((Route) o);
+      } else if (o instanceof OriginRoutes) {
+        writer.writeOriginRoutes((OriginRoutes) o);
+      } else if (o instanceof Flight) {
+        writer.writeFlight((Flight) o);
+      } else if (o instanceof DaySchedule) {
+        writer.writeDaySchedule((DaySchedule) o);
+      } else if (o instanceof MonthSchedule) {
+        writer.writeMonthSchedule((MonthSchedule) o);
+      } else if (o instanceof InterconnFlight) {
+        writer.writeLeg((InterconnFlight) o);
+      } else if (o instanceof InterconnFlights) {
+        writer.writeLegs((InterconnFlights) o);
+      } else {
+        throw new IllegalArgumentException("Can not serialize object of class " + o.getClass().getName());
+      }
+    } catch (IOException e) {
+      // writes to a byte array do not fail
+      throw new UncheckedIOException(e);
+    }
+    return writer.bytes.toByteArray();
+  }
+
+  @Override
+  public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+    final Reader reader = new Reader(ByteBuffer.wrap(bytes));
+    try {
+      switch (manifest) {
+        case GET_INTERCONNECTIONS:
+          return reader.readQuery();
+        case FETCH_ROUTES_AND_SCHEDULE:
+          return new FetchRoutesAndSchedule(reader.readQuery(), reader.readRef(), reader.readRef());
+        case ROUTES_AND_SCHEDULES:
+          return new RoutesAndSchedules(reader.readQuery(), reader.readRoutes(), reader.readSchedules(),
+            reader.readRef(), reader.readRef());
+        case CALCULATE_INTERCONN_FLIGHTS:
+          return new CalculateInterconnFlights(reader.readQuery(), reader.readRoutes(), reader.readSchedules(),
+            reader.readRef(), reader.readRef());
+        case GET_MONTH_SCHEDULE:
+          return new GetMonthSchedule(new ScheduleKey(reader.readAirport(), reader.readAirport(),
+            reader.in.getShort(), reader.in.get()));
+        case ROUTE:
+          return reader.readRoute();
+        case ORIGIN_ROUTES:
+          return reader.readOriginRoutes();
+        case FLIGHT:
+          return reader.readFlight();
+        case DAY_SCHEDULE:
+          return reader.readDaySchedule();
+        case MONTH_SCHEDULE:
+          return reader.readMonthSchedule();
+        case INTERCONN_FLIGHT:
+          return reader.readLeg();
+        case INTERCONN_FLIGHTS:
+          return reader.readLegs();
+        default:
+          throw new NotSerializableException("Unknown manifest " + manifest);
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new NotSerializableException("Malformed " + manifest + " message: " + e);
+    }
+  }
+
+  /**
+   * Encodes the parts of a message, keeping the dictionary of the strings written so far.
+   */
+  private static class Writer {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    void writeQuery(GetInterconnections query) throws IOException {
+      writeAirport(query.getDeparture());
+      writeAirport(query.getArrival());
+      writeDateTime(query.getDepartureDateTime());
+      writeDateTime(query.getArrivalDateTime());
+      out.writeByte(query.isStreaming() ? 1 : 0);
+      writeVarInt(query.getCalendarDays());
+    }
+
+    void writeRoutesAndSchedules(GetInterconnections query, LongObjectHashMap<Route> routes,
+                                 LongObjectHashMap<List<MonthSchedule>> schedules, ActorRef sender,
+                                 ActorRef originalSender) throws IOException {
+      writeQuery(query);
+      writeVarInt(routes.size());
+      for (Route route : routes.values()) {
+        writeRoute(route);
+      }
+      writeVarInt(schedules.size());
+      final long[] routeKeys = schedules.keys();
+      final List<List<MonthSchedule>> monthSchedules = schedules.values();
+      for (int i = 0; i < routeKeys.length; i++) {
+        writeAirport(AirportDictionary.nameOf(AirportDictionary.departureOf(routeKeys[i])));
+        writeAirport(AirportDictionary.nameOf(AirportDictionary.arrivalOf(routeKeys[i])));
+        writeVarInt(monthSchedules.get(i).size());
+        for (MonthSchedule monthSchedule : monthSchedules.get(i)) {
+          writeMonthSchedule(monthSchedule);
+        }
+      }
+      writeRef(sender);
+      writeRef(originalSender);
+    }
+
+    void writeRoute(Route route) throws IOException {
+      writeAirport(route.getAirportFrom());
+      writeAirport(route.getAirportTo());
+      writeAirport(route.getConnectingAirport());
+      out.writeByte(flag(route.getNewRoute()) | flag(route.getSeasonalRoute()) << 2);
+      writeString(route.getOperator());
+      writeString(route.getGroup());
+    }
+
+    void writeOriginRoutes(OriginRoutes originRoutes) throws IOException {
+      writeVarInt(originRoutes.getRoutes().size());
+      for (Route route : originRoutes.getRoutes()) {
+        writeRoute(route);
+      }
+    }
+
+    void writeMonthSchedule(MonthSchedule monthSchedule) throws IOException {
+      out.writeByte(monthSchedule.getMonth());
+      writeVarInt(monthSchedule.getDays().size());
+      for (DaySchedule daySchedule : monthSchedule.getDays()) {
+        writeDaySchedule(daySchedule);
+      }
+    }
+
+    void writeDaySchedule(DaySchedule daySchedule) throws IOException {
+      out.writeByte(daySchedule.getDay());
+      writeVarInt(daySchedule.getFlights().size());
+      for (Flight flight : daySchedule.getFlights()) {
+        writeFlight(flight);
+      }
+    }
+
+    void writeFlight(Flight flight) throws IOException {
+      writeString(flight.getNumber());
+      out.writeShort(flight.getDepartureMinute());
+      out.writeShort(flight.getArrivalMinute());
+    }
+
+    void writeLegs(InterconnFlights interconnFlights) throws IOException {
+      final InterconnFlight[] legs = interconnFlights.getLegs() != null ? interconnFlights.getLegs() :
+        new InterconnFlight[0];
+      writeString(interconnFlights.getId());
+      writeVarInt(legs.length);
+      for (InterconnFlight leg : legs) {
+        writeLeg(leg);
+      }
+    }
+
+    void writeLeg(InterconnFlight leg) throws IOException {
+      writeString(leg.getNumber());
+      writeAirport(leg.getDepartureAirport());
+      writeAirport(leg.getArrivalAirport());
+      writeLegTime(leg.getDepartureDateTime());
+      writeLegTime(leg.getArrivalDateTime());
+    }
+
+    void writeAirport(String code) throws IOException {
+      final int packed = TimetableFile.packIata(code);
+      out.writeInt(packed);
+      if (packed == -1) writeString(code);
+    }
+
+    void writeDateTime(LocalDateTime dateTime) throws IOException {
+      final LocalTime time = dateTime.toLocalTime();
+      out.writeInt((int) dateTime.toLocalDate().toEpochDay());
+      if (time.getSecond() == 0 && time.getNano() == 0) {
+        out.writeShort(time.getHour() * 60 + time.getMinute());
+      } else {
+        out.writeShort(-1);
+        out.writeLong(time.toNanoOfDay());
+      }
+    }
+
+    /**
+     * Writes the ISO date time of a leg as a date and a minute of the day, any other value as a string.
+     */
+    void writeLegTime(String value) throws IOException {
+      LocalDateTime dateTime = null;
+      try {
+        dateTime = value != null ? LocalDateTime.parse(value) : null;
+      } catch (DateTimeParseException e) {
+        // written as a string
+      }
+      if (dateTime != null && dateTime.getSecond() == 0 && dateTime.getNano() == 0 &&
+        dateTime.toString().equals(value)) {
+        out.writeInt((int) dateTime.toLocalDate().toEpochDay());
+        out.writeShort(dateTime.getHour() * 60 + dateTime.getMinute());
+      } else {
+        out.writeInt(NOT_A_LEG_TIME);
+        writeString(value);
+      }
+    }
+
+    void writeRef(ActorRef ref) throws IOException {
+      writeString(ref != null ? Serialization.serializedActorPath(ref) : null);
+    }
+
+    void writeString(String value) throws IOException {
+      if (value == null) {
+        writeVarInt(NULL_STRING);
+        return;
+      }
+      final Integer index = strings.get(value);
+      if (index != null) {
+        writeVarInt(index + 2);
+        return;
+      }
+
+      final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      if (utf8.length > Short.MAX_VALUE) throw new IllegalArgumentException("String too long to be serialized");
+      strings.put(value, strings.size());
+      writeVarInt(NEW_STRING);
+      out.writeShort(utf8.length);
+      out.write(utf8);
+    }
+
+    void writeVarInt(int value) throws IOException {
+      while ((value & ~0x7F) != 0) {
+        out.writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.writeByte(value);
+    }
+
+    private static int flag(Boolean value) {
+      return value == null ? 0 : value ? 2 : 1;
+    }
+  }
+
+  /**
+   * Decodes the parts of a message, rebuilding the dictionary of the strings read so far.
+   */
+  private class Reader {
+    private final ByteBuffer in;
+    private final List<String> strings = new ArrayList<>();
+
+    Reader(ByteBuffer in) {
+      this.in = in;
+    }
+
+    GetInterconnections readQuery() {
+      final String departure = readAirport();
+      final String arrival = readAirport();
+      final LocalDateTime departureDateTime = readDateTime();
+      final LocalDateTime arrivalDateTime = readDateTime();
+      final boolean streaming = (in.get() & 1) != 0;
+      final int calendarDays = readVarInt();
+      if (calendarDays == 0) {
+        return new GetInterconnections(departure, arrival, departureDateTime, arrivalDateTime, streaming);
+      }
+      final LocalDate lastDate = departureDateTime.toLocalDate().plusDays(calendarDays - 1);
+      return GetInterconnections.calendar(departure, arrival, departureDateTime.toLocalDate(), lastDate,
+        departureDateTime.toLocalTime(), arrivalDateTime.toLocalTime());
+    }
+
+    LongObjectHashMap<Route> readRoutes() {
+      final int size = readVarInt();
+      final LongObjectHashMap<Route> routes = new LongObjectHashMap<>(size);
+      for (int i = 0; i < size; i++) {
+        final Route route = readRoute();
+        routes.put(AirportDictionary.routeKey(route), route);
+      }
+      return routes;
+    }
+
+    LongObjectHashMap<List<MonthSchedule>> readSchedules() {
+      final int size = readVarInt();
+      final LongObjectHashMap<List<MonthSchedule>> schedules = new LongObjectHashMap<>(size);
+      for (int i = 0; i < size; i++) {
+        final long key = AirportDictionary.routeKey(readAirport(), readAirport());
+        final int months = readVarInt();
+        final List<MonthSchedule> monthSchedules = new ArrayList<>(months);
+        for (int j = 0; j < months; j++) {
+          monthSchedules.add(readMonthSchedule());
+        }
+        schedules.put(key, monthSchedules);
+      }
+      return schedules;
+    }
+
+    Route readRoute() {
+      final String from = readAirport();
+      final String to = readAirport();
+      final String connecting = readAirport();
+      final int flags = in.get();
+      return new Route(from, to, connecting, flag(flags), flag(flags >> 2), readString(), readString());
+    }
+
+    OriginRoutes readOriginRoutes() {
+      final int size = readVarInt();
+      final List<Route> routes = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        routes.add(readRoute());
+      }
+      return new OriginRoutes(routes);
+    }
+
+    MonthSchedule readMonthSchedule() {
+      final int month = in.get();
+      final int size = readVarInt();
+      final List<DaySchedule> days = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        days.add(readDaySchedule());
+      }
+      return new MonthSchedule(month, days);
+    }
+
+    DaySchedule readDaySchedule() {
+      final int day = in.get();
+      final int size = readVarInt();
+      final List<Flight> flights = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        flights.add(readFlight());
+      }
+      return new DaySchedule(day, flights);
+    }
+
+    Flight readFlight() {
+      final String number = readString();
+      return new Flight(number, formatMinuteOfDay(in.getShort()), formatMinuteOfDay(in.getShort()));
+    }
+
+    InterconnFlights readLegs() {
+      final String id = readString();
+      final InterconnFlight[] legs = new InterconnFlight[readVarInt()];
+      for (int i = 0; i < legs.length; i++) {
+        legs[i] = readLeg();
+      }
+      return new InterconnFlights(id, legs);
+    }
+
+    InterconnFlight readLeg() {
+      return new InterconnFlight(readString(), readAirport(), readAirport(), readLegTime(), readLegTime());
+    }
+
+    String readAirport() {
+      final int packed = in.getInt();
+      return packed == -1 ? readString() : TimetableFile.unpackIata(packed);
+    }
+
+    LocalDateTime readDateTime() {
+      final LocalDate date = LocalDate.ofEpochDay(in.getInt());
+      final int minuteOfDay = in.getShort();
+      return date.atTime(minuteOfDay < 0 ? LocalTime.ofNanoOfDay(in.getLong()) :
+        LocalTime.of(minuteOfDay / 60, minuteOfDay % 60));
+    }
+
+    String readLegTime() {
+      final int epochDay = in.getInt();
+      if (epochDay == NOT_A_LEG_TIME) return readString();
+      final int minuteOfDay = in.getShort();
+      return LocalDate.ofEpochDay(epochDay).atTime(minuteOfDay / 60, minuteOfDay % 60).toString();
+    }
+
+    ActorRef readRef() {
+      final String path = readString();
+      return path != null ? system.provider().resolveActorRef(path) : ActorRef.noSender();
+    }
+
+    String readString() {
+      final int index = readVarInt();
+      if (index == NULL_STRING) return null;
+      if (index != NEW_STRING) return strings.get(index - 2);
+
+      final byte[] utf8 = new byte[in.getShort()];
+      in.get(utf8);
+      final String value = new String(utf8, StandardCharsets.UTF_8);
+      strings.add(value);
+      return value;
+    }
+
+    int readVarInt() {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        final byte b = in.get();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) return value;
+      }
+      throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private Boolean flag(int bits) {
+      switch (bits & 3) {
+        case 1:
+          return Boolean.FALSE;
+        case 2:
+          return Boolean.TRUE;
+        default:
+          return null;
+      }
+    }
+  }
+
+  private static String formatMinuteOfDay(int minuteOfDay) {
+    if (minuteOfDay < 0) return "";
+    final int hour = minuteOfDay / 60;
+    final int minute = minuteOfDay % 60;
+    return (hour < 10 ? "0" : "") + hour + ":" + (minute < 10 ? "0" : "") + minute;
+  }
+}
@@ -0,0 +1,121 @@
+package com.javaigua.interconnFlights.sharding;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.duration.Duration;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.cluster.sharding.ClusterSharding;
+import akka.cluster.sharding.ClusterShardingSettings;
+import akka.cluster.sharding.ShardRegion;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.pattern.PatternsCS;
+import akka.util.Timeout;
+
+import com.typesafe.config.Config;
+
+import com.javaigua.interconnFlights.actors.ScheduleHolderActor;
+import com.javaigua.interconnFlights.actors.messages.GetMonthSchedule;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+import com.javaigua.interconnFlights.timetable.Timetable;
+
+/**
+ * A cluster-wide access point to the month schedules, partitioned by route among the nodes of the cluster.
+ *
+ * When enabled, the ScheduleHolder shard region is started on this node and month schedules are asked to the sharded
+ * ScheduleHolderActor entity of their route, so every schedule is fetched and cached once per cluster instead of once
+ * per node. Otherwise schedules are served by the Timetable of this node.
+ */
+public class ScheduleHolders implements Extension {
+
+  static final String TYPE_NAME = "ScheduleHolder";
+
+  public static final Id ID = new Id();
+
+  /**
+   * Akka extension id, one shard region per actor system.
+   */
+  public static class Id extends AbstractExtensionId<ScheduleHolders> implements ExtensionIdProvider {
+    @Override
+    public Id lookup() {
+      return ID;
+    }
+
+    @Override
+    public ScheduleHolders createExtension(ExtendedActorSystem system) {
+      return new ScheduleHolders(system);
+    }
+  }
+
+  /**
+   * Convenient lookup of the schedule holders of the given actor system
+   */
+  public static ScheduleHolders get(ActorSystem system) {
+    return ID.get(system);
+  }
+
+  /**
+   * Routes GetMonthSchedule messages to the entity of their route, the route hash code being its shard.
+   */
+  static class MessageExtractor extends ShardRegion.HashCodeMessageExtractor {
+    MessageExtractor(int numberOfShards) {
+      super(numberOfShards);
+    }
+
+    @Override
+    public String entityId(Object message) {
+      return message instanceof GetMonthSchedule ? ((GetMonthSchedule) message).getEntityId() : null;
+    }
+  }
+
+  private final LoggingAdapter log;
+  private final Timetable timetable;
+  private final ActorRef region;
+  private final Timeout askTimeout;
+
+  private ScheduleHolders(ExtendedActorSystem system) {
+    this.log = Logging.getLogger(system, this);
+    this.timetable = Timetable.get(system);
+
+    final Config config = system.settings().config();
+    this.askTimeout = new Timeout(Duration.create(
+      config.getLong("application.schedule-holders.ask-timeout-millis"), TimeUnit.MILLISECONDS));
+
+    if (config.getBoolean("application.schedule-holders.enabled")) {
+      final int numberOfShards = config.getInt("application.schedule-holders.number-of-shards");
+      this.region = ClusterSharding.get(system).start(TYPE_NAME, ScheduleHolderActor.props(),
+        ClusterShardingSettings.create(system), new MessageExtractor(numberOfShards));
+      log.info("status= schedule_holders_started, region= {}, shards= {}", region, numberOfShards);
+    } else {
+      this.region = null;
+    }
+  }
+
+  /**
+   * Provides the unfiltered month schedule of a route, from the node holding the route when sharding is enabled.
+   *
+   * @param key the route and year-month of the schedule
+   * @return a future of the month schedule, failed if it could not be fetched
+   */
+  public CompletionStage<MonthSchedule> getMonthSchedule(ScheduleKey key) {
+    if (region == null) {
+      return timetable.getMonthSchedule(key);
+    }
+    return PatternsCS.ask(region, new GetMonthSchedule(key), askTimeout).thenApply(MonthSchedule.class::cast);
+  }
+
+  /**
+   * Whether month schedules are partitioned among the nodes of the cluster.
+   */
+  public boolean isSharded() {
+    return region != null;
+  }
+}
@@ -0,0 +1,459 @@
+package com.javaigua.interconnFlights.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import com.javaigua.interconnFlights.catalog.RoutesSnapshot;
+import com.javaigua.interconnFlights.domain.*;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+
+/**
+ * An append-only binary file of routes snapshots and month schedules.
+ *
+ * The file is a header followed by records, every record superseding the previous ones with the same key:
+ *
+ *   header:   int magic, int version
+ *   record:   byte type, int payload length, int payload CRC-32, payload
+ *   routes:   long loaded at (epoch millis), int count, count x (int from, int to, byte flags, string operator,
+ *             string group)
+ *   schedule: int departure, int arrival, short year, byte month, long fetched at (epoch millis), short days,
+ *             days x (byte day, short flights, flights x (string number, short departure, short arrival))
+ *   string:   short length (-1 if null), UTF-8 bytes
+ *
+ * IATA codes are packed as ints of their three ASCII characters and flight times are minutes of the day.
+ *
+ * The file is read through a memory mapping of its whole content, stopping at the first truncated or corrupted record
+ * (e.g. a write interrupted by a crash) which is dropped. Appended records are buffered and written on flush, when the
+ * file is also compacted, i.e. rewritten with only the latest records, once it grows over a ratio of its live records.
+ */
+public class TimetableFile implements Closeable {
+
+  static final int MAGIC = 0x49465453; // IFTS
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 8;
+  static final int RECORD_HEADER_BYTES = 9;
+  static final byte ROUTES = 1;
+  static final byte SCHEDULE = 2;
+
+  // pending appends are written once they reach this size, even before a flush
+  private static final int MAX_PENDING_BYTES = 1 << 20;
+  // files smaller than this are never compacted
+  private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+  /**
+   * The latest routes snapshot and month schedules read from the file.
+   */
+  public static class Contents {
+    private final RoutesSnapshot routes;
+    private final Map<ScheduleKey, MonthSchedule> schedules;
+    private final Map<ScheduleKey, Long> fetchedAt;
+
+    Contents(RoutesSnapshot routes, Map<ScheduleKey, MonthSchedule> schedules, Map<ScheduleKey, Long> fetchedAt) {
+      this.routes = routes;
+      this.schedules = Collections.unmodifiableMap(schedules);
+      this.fetchedAt = Collections.unmodifiableMap(fetchedAt);
+    }
+
+    public RoutesSnapshot getRoutes() {
+      return routes;
+    }
+
+    public Map<ScheduleKey, MonthSchedule> getSchedules() {
+      return schedules;
+    }
+
+    /**
+     * @return the epoch milliseconds at which each of the schedules was fetched from the Timetable API
+     */
+    public Map<ScheduleKey, Long> getFetchedAt() {
+      return fetchedAt;
+    }
+  }
+
+  /**
+   * Position and length of a record in the file.
+   */
+  private static class Record {
+    private final long offset;
+    private final int length;
+
+    private Record(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private final Path path;
+  private final double compactionRatio;
+  private FileChannel channel;
+  private long fileSize;
+  private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+  // latest records of every key
+  private Record routesRecord;
+  private Map<ScheduleKey, Record> scheduleRecords = new HashMap<>();
+  private long liveBytes = HEADER_BYTES;
+
+  /**
+   * Opens or creates a timetable file.
+   *
+   * @param path the file path, its parent directories are created if missing
+   * @param compactionRatio the file is compacted on flush once its size exceeds this ratio of its live records
+   */
+  public TimetableFile(Path path, double compactionRatio) throws IOException {
+    if (compactionRatio < 1D) throw new IllegalArgumentException("Compaction ratio must not be less than 1");
+    this.path = path;
+    this.compactionRatio = compactionRatio;
+    if (path.getParent() != null) Files.createDirectories(path.getParent());
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE);
+    this.fileSize = channel.size();
+    if (fileSize == 0) {
+      writeHeader(channel);
+      fileSize = HEADER_BYTES;
+    }
+  }
+
+  /**
+   * Reads the latest routes snapshot and month schedules of the file, truncating it after the last valid record.
+   */
+  public synchronized Contents read() throws IOException {
+    writePending();
+    if (fileSize > Integer.MAX_VALUE) throw new IOException("Timetable file too big to be mapped: " + path);
+
+    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+    if (fileSize < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Not a timetable file: " + path);
+    }
+
+    RoutesSnapshot routes = RoutesSnapshot.EMPTY;
+    final Map<ScheduleKey, MonthSchedule> schedules = new HashMap<>();
+    final Map<ScheduleKey, Long> fetchedAt = new HashMap<>();
+    routesRecord = null;
+    scheduleRecords = new HashMap<>();
+    liveBytes = HEADER_BYTES;
+
+    long valid = HEADER_BYTES;
+    while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+      final int offset = buffer.position();
+      final byte type = buffer.get();
+      final int length = buffer.getInt();
+      final int crc = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) break;
+
+      final ByteBuffer payload = buffer.slice();
+      payload.limit(length);
+      if (crc32(payload.duplicate()) != crc) break;
+      buffer.position(offset + RECORD_HEADER_BYTES + length);
+
+      final Record record = new Record(offset, RECORD_HEADER_BYTES + length);
+      try {
+        if (type == ROUTES) {
+          routes = readRoutes(payload);
+          setRoutesRecord(record);
+        } else if (type == SCHEDULE) {
+          final ScheduleKey key = readScheduleKey(payload);
+          final long fetchedAtMillis = payload.getLong();
+          schedules.put(key, readMonthSchedule(payload, key.getMonth()));
+          fetchedAt.put(key, fetchedAtMillis);
+          setScheduleRecord(key, record);
+        }
+      } catch (BufferUnderflowException | IllegalArgumentException e) {
+        break;
+      }
+      valid = buffer.position();
+    }
+
+    if (valid < fileSize) {
+      // drop a partially written or corrupted tail
+      channel.truncate(valid);
+      fileSize = valid;
+    }
+    return new Contents(routes, schedules, fetchedAt);
+  }
+
+  /**
+   * Appends a routes snapshot, routes with codes that can not be packed are skipped.
+   */
+  public synchronized void appendRoutes(RoutesSnapshot snapshot) throws IOException {
+    final List<Route> routes = new ArrayList<>(snapshot.size());
+    for (Route route : snapshot.getRoutes()) {
+      if (packIata(route.getAirportFrom()) != -1 && packIata(route.getAirportTo()) != -1) routes.add(route);
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + routes.size() * 24);
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeLong(snapshot.getLoadedAt().toEpochMilli());
+    out.writeInt(routes.size());
+    for (Route route : routes) {
+      out.writeInt(packIata(route.getAirportFrom()));
+      out.writeInt(packIata(route.getAirportTo()));
+      out.writeByte((Boolean.TRUE.equals(route.getNewRoute()) ? 1 : 0) |
+        (Boolean.TRUE.equals(route.getSeasonalRoute()) ? 2 : 0));
+      writeString(out, route.getOperator());
+      writeString(out, route.getGroup());
+    }
+    setRoutesRecord(append(ROUTES, bytes.toByteArray()));
+  }
+
+  /**
+   * Appends a month schedule.
+   *
+   * @return false if the schedule key codes can not be packed and the schedule was not appended
+   */
+  public synchronized boolean appendSchedule(ScheduleKey key, MonthSchedule schedule, long fetchedAtMillis)
+    throws IOException {
+    final int departure = packIata(key.getDeparture());
+    final int arrival = packIata(key.getArrival());
+    if (departure == -1 || arrival == -1) return false;
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + schedule.getDays().size() * 64);
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(departure);
+    out.writeInt(arrival);
+    out.writeShort(key.getYear());
+    out.writeByte(key.getMonth());
+    out.writeLong(fetchedAtMillis);
+    out.writeShort(schedule.getDays().size());
+    for (DaySchedule day : schedule.getDays()) {
+      out.writeByte(day.getDay());
+      out.writeShort(day.getFlights().size());
+      for (Flight flight : day.getFlights()) {
+        writeString(out, flight.getNumber());
+        out.writeShort(flight.getDepartureMinute());
+        out.writeShort(flight.getArrivalMinute());
+      }
+    }
+    setScheduleRecord(key, append(SCHEDULE, bytes.toByteArray()));
+    return true;
+  }
+
+  /**
+   * Writes the pending appends and forces them to the storage device, compacting the file if it grew too much.
+   */
+  public synchronized void flush() throws IOException {
+    writePending();
+    channel.force(false);
+    if (fileSize > MIN_COMPACTION_BYTES && fileSize > liveBytes * compactionRatio) {
+      compact();
+    }
+  }
+
+  /**
+   * Size of the file, including the pending appends.
+   */
+  public synchronized long size() {
+    return fileSize + pending.size();
+  }
+
+  /**
+   * Size of the latest records of every key, that is the size of the file once compacted.
+   */
+  public synchronized long liveBytes() {
+    return liveBytes;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel.isOpen()) {
+      flush();
+      channel.close();
+    }
+  }
+
+  /**
+   * Rewrites the latest records of every key into a new file, replacing this one atomically.
+   */
+  private void compact() throws IOException {
+    final Path compactedPath = path.resolveSibling(path.getFileName() + ".compacting");
+    final MappedByteBuffer source = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+    final Map<ScheduleKey, Record> compactedRecords = new HashMap<>();
+    Record compactedRoutes = null;
+
+    try (FileChannel compacted = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+      StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writeHeader(compacted);
+      long position = HEADER_BYTES;
+      if (routesRecord != null) {
+        compactedRoutes = copy(source, routesRecord, compacted, position);
+        position += routesRecord.length;
+      }
+      for (Map.Entry<ScheduleKey, Record> entry : scheduleRecords.entrySet()) {
+        compactedRecords.put(entry.getKey(), copy(source, entry.getValue(), compacted, position));
+        position += entry.getValue().length;
+      }
+      compacted.force(true);
+    }
+
+    channel.close();
+    Files.move(compactedPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    fileSize = channel.size();
+    routesRecord = compactedRoutes;
+    scheduleRecords = compactedRecords;
+  }
+
+  private static Record copy(MappedByteBuffer source, Record record, FileChannel target, long position)
+    throws IOException {
+    final ByteBuffer bytes = source.duplicate();
+    bytes.position((int) record.offset);
+    bytes.limit((int) record.offset + record.length);
+    while (bytes.hasRemaining()) {
+      target.write(bytes, position + bytes.position() - record.offset);
+    }
+    return new Record(position, record.length);
+  }
+
+  private Record append(byte type, byte[] payload) throws IOException {
+    final CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+
+    final Record record = new Record(fileSize + pending.size(), RECORD_HEADER_BYTES + payload.length);
+    final DataOutputStream out = new DataOutputStream(pending);
+    out.writeByte(type);
+    out.writeInt(payload.length);
+    out.writeInt((int) crc.getValue());
+    out.write(payload);
+    if (pending.size() >= MAX_PENDING_BYTES) writePending();
+    return record;
+  }
+
+  private void writePending() throws IOException {
+    if (pending.size() == 0) return;
+    final ByteBuffer bytes = ByteBuffer.wrap(pending.toByteArray());
+    while (bytes.hasRemaining()) {
+      fileSize += channel.write(bytes, fileSize);
+    }
+    pending.reset();
+  }
+
+  private void setRoutesRecord(Record record) {
+    if (routesRecord != null) liveBytes -= routesRecord.length;
+    routesRecord = record;
+    liveBytes += record.length;
+  }
+
+  private void setScheduleRecord(ScheduleKey key, Record record) {
+    final Record previous = scheduleRecords.put(key, record);
+    if (previous != null) liveBytes -= previous.length;
+    liveBytes += record.length;
+  }
+
+  private static void writeHeader(FileChannel channel) throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(MAGIC).putInt(VERSION).flip();
+    while (header.hasRemaining()) {
+      channel.write(header, header.position());
+    }
+  }
+
+  private static RoutesSnapshot readRoutes(ByteBuffer in) {
+    final Instant loadedAt = Instant.ofEpochMilli(in.getLong());
+    final int count = in.getInt();
+    final List<Route> routes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final String from = unpackIata(in.getInt());
+      final String to = unpackIata(in.getInt());
+      final byte flags = in.get();
+      final String operator = readString(in);
+      final String group = readString(in);
+      routes.add(new Route(from, to, null, (flags & 1) != 0, (flags & 2) != 0, operator, group));
+    }
+    return new RoutesSnapshot(routes, loadedAt);
+  }
+
+  private static ScheduleKey readScheduleKey(ByteBuffer in) {
+    final String departure = unpackIata(in.getInt());
+    final String arrival = unpackIata(in.getInt());
+    final int year = in.getShort();
+    final int month = in.get();
+    return new ScheduleKey(departure, arrival, year, month);
+  }
+
+  private static MonthSchedule readMonthSchedule(ByteBuffer in, int month) {
+    final int dayCount = in.getShort();
+    final List<DaySchedule> days = new ArrayList<>(dayCount);
+    for (int d = 0; d < dayCount; d++) {
+      final int day = in.get();
+      final int flightCount = in.getShort();
+      final List<Flight> flights = new ArrayList<>(flightCount);
+      for (int f = 0; f < flightCount; f++) {
+        final String number = readString(in);
+        flights.add(new Flight(number, formatMinuteOfDay(in.getShort()), formatMinuteOfDay(in.getShort())));
+      }
+      days.add(new DaySchedule(day, flights));
+    }
+    return new MonthSchedule(month, days);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeShort(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > Short.MAX_VALUE) throw new IllegalArgumentException("String too long to be stored");
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    final int length = in.getShort();
+    if (length < 0) return null;
+    final byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Packs a three characters ASCII IATA code into an int.
+   *
+   * @return the packed code, -1 if it can not be packed
+   */
+  public static int packIata(String code) {
+    if (code == null || code.length() != 3) return -1;
+    int packed = 0;
+    for (int i = 0; i < 3; i++) {
+      final char c = code.charAt(i);
+      if (c == 0 || c > 127) return -1;
+      packed = (packed << 8) | c;
+    }
+    return packed;
+  }
+
+  public static String unpackIata(int packed) {
+    if (packed <= 0 || packed > 0xFFFFFF) throw new IllegalArgumentException("Invalid packed IATA code " + packed);
+    return new String(new char[]{(char) ((packed >> 16) & 0xFF), (char) ((packed >> 8) & 0xFF), (char) (packed & 0xFF)});
+  }
+
+  private static String formatMinuteOfDay(int minuteOfDay) {
+    if (minuteOfDay < 0) return "";
+    final int hour = minuteOfDay / 60;
+    final int minute = minuteOfDay % 60;
+    return (hour < 10 ? "0" : "") + hour + ":" + (minute < 10 ? "0" : "") + minute;
+  }
+
+  private static int crc32(ByteBuffer bytes) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,177 @@
+package com.javaigua.interconnFlights.store;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+
+import com.typesafe.config.Config;
+
+import com.javaigua.interconnFlights.catalog.RoutesCatalog;
+import com.javaigua.interconnFlights.catalog.RoutesSnapshot;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+import com.javaigua.interconnFlights.timetable.Timetable;
+
+/**
+ * A process-wide local copy of the routes catalog and the fetched month schedules, for warm restarts.
+ *
+ * On start the routes and schedules stored by a previous run are restored into the RoutesCatalog and the Timetable
+ * cache, so a restarted node serves from memory immediately while both are lazily refreshed in the background. Every
+ * routes snapshot and month schedule loaded afterwards is appended to a TimetableFile, flushed periodically and on
+ * graceful shutdown.
+ *
+ * The file is only written by a single writer thread, in the order of the appends and flushes, so fetches and routes
+ * refreshes never wait for the file while it is forced to disk or compacted.
+ */
+public class TimetableStore implements Extension {
+
+  public static final Id ID = new Id();
+
+  /**
+   * Akka extension id, one store instance per actor system.
+   */
+  public static class Id extends AbstractExtensionId<TimetableStore> implements ExtensionIdProvider {
+    @Override
+    public Id lookup() {
+      return ID;
+    }
+
+    @Override
+    public TimetableStore createExtension(ExtendedActorSystem system) {
+      return new TimetableStore(system);
+    }
+  }
+
+  /**
+   * Convenient lookup of the store of the given actor system
+   */
+  public static TimetableStore get(ActorSystem system) {
+    return ID.get(system);
+  }
+
+  private final LoggingAdapter log;
+  private final TimetableFile file;
+  private final ExecutorService writer;
+
+  private TimetableStore(ExtendedActorSystem system) {
+    this.log = Logging.getLogger(system, this);
+
+    final Config config = system.settings().config();
+    TimetableFile opened = null;
+    if (config.getBoolean("application.timetable-store.enabled")) {
+      final String path = config.getString("application.timetable-store.path");
+      try {
+        opened = new TimetableFile(Paths.get(path), config.getDouble("application.timetable-store.compaction-ratio"));
+      } catch (IOException e) {
+        log.error(e, "status= timetable_store_unavailable, path= {}", path);
+      }
+    }
+    this.file = opened;
+    this.writer = file != null ? Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, system.name() + "-timetable-store-writer");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+
+    if (file != null) {
+      final FiniteDuration flushInterval = Duration.create(
+        config.getLong("application.timetable-store.flush-interval-millis"), TimeUnit.MILLISECONDS);
+      system.scheduler().schedule(flushInterval, flushInterval, this::flush, system.dispatcher());
+      system.registerOnTermination(writer::shutdown);
+    }
+  }
+
+  /**
+   * Restores the routes and schedules stored by a previous run into the given catalog and timetable, and stores the
+   * ones they load from now on. To be called before serving requests.
+   */
+  public void restore(RoutesCatalog routesCatalog, Timetable timetable) {
+    if (file == null) return;
+
+    // listen first, so a refresh completing while restoring is stored as well
+    routesCatalog.addRefreshListener(this::appendRoutes);
+    // a schedule revalidated without changes is already stored
+    timetable.addFetchListener((key, schedule, changes) -> {
+      if (changes == null || !changes.isEmpty()) appendSchedule(key, schedule);
+    });
+
+    final long start = System.nanoTime();
+    try {
+      final TimetableFile.Contents contents = file.read();
+      routesCatalog.restore(contents.getRoutes());
+      timetable.restore(contents.getSchedules(), contents.getFetchedAt());
+      log.info("status= timetable_store_restored, path= {}, routes= {}, schedules= {}, bytes= {}, millis= {}",
+        file.getPath(), contents.getRoutes().size(), contents.getSchedules().size(), file.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (IOException e) {
+      log.error(e, "status= timetable_store_restore_failed, path= {}", file.getPath());
+    }
+  }
+
+  /**
+   * Writes the appends made so far to disk.
+   *
+   * @return the future completed once they are written
+   */
+  public CompletionStage<Void> flush() {
+    if (file == null) return CompletableFuture.completedFuture(null);
+    final CompletableFuture<Void> flushed = new CompletableFuture<>();
+    write("flush", () -> {
+      try {
+        file.flush();
+        log.debug("status= timetable_store_flushed, bytes= {}, liveBytes= {}", file.size(), file.liveBytes());
+      } catch (IOException e) {
+        log.error(e, "status= timetable_store_flush_failed, path= {}", file.getPath());
+      } finally {
+        flushed.complete(null);
+      }
+    });
+    return flushed;
+  }
+
+  private void appendRoutes(RoutesSnapshot snapshot) {
+    write("routes", () -> {
+      try {
+        file.appendRoutes(snapshot);
+      } catch (IOException e) {
+        log.error(e, "status= timetable_store_append_failed, routes= {}", snapshot);
+      }
+    });
+  }
+
+  private void appendSchedule(ScheduleKey key, MonthSchedule schedule) {
+    final long fetchedAt = System.currentTimeMillis();
+    write("schedule", () -> {
+      try {
+        file.appendSchedule(key, schedule, fetchedAt);
+      } catch (IOException e) {
+        log.error(e, "status= timetable_store_append_failed, key= {}", key);
+      }
+    });
+  }
+
+  private void write(String operation, Runnable write) {
+    try {
+      writer.execute(write);
+    } catch (RejectedExecutionException e) {
+      // the actor system is terminating
+      log.debug("status= timetable_store_closed, operation= {}", operation);
+    }
+  }
+}
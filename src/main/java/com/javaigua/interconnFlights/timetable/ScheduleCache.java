@@ -0,0 +1,313 @@
+package com.javaigua.interconnFlights.timetable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.javaigua.interconnFlights.domain.DaySchedule;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+
+/**
+ * A bounded in-memory cache of unfiltered month schedules keyed by route and year-month.
+ *
+ * Entries are evicted in least-recently-used order once the configured entry count or estimated size in bytes is
+ * exceeded. Every entry is fresh for a time-to-live, then it is still served while being revalidated in the background
+ * (stale-while-revalidate) until it finally expires and has to be loaded again.
+ *
+ * Revalidations and loads of expired entries are conditional on the validators of the cached version, so a schedule
+ * that did not change is not downloaded again and its entry is just fresh for another time-to-live.
+ */
+public class ScheduleCache {
+
+  /**
+   * Loads a month schedule from its source, usually the Timetable API.
+   */
+  public interface Loader {
+    CompletionStage<MonthSchedule> load(ScheduleKey key);
+  }
+
+  /**
+   * Loads a month schedule from its source conditionally on the validators of the cached version, if any.
+   */
+  public interface ConditionalLoader {
+    /**
+     * @param key the route and year-month of the schedule
+     * @param cached the cached version of the schedule, or null
+     * @return a future of the loaded version, or of the cached one confirmed as not modified
+     */
+    CompletionStage<ScheduleVersion> load(ScheduleKey key, ScheduleVersion cached);
+  }
+
+  // rough per object footprints used to estimate the size of a cached month schedule
+  private static final long MONTH_BYTES = 64;
+  private static final long DAY_BYTES = 64;
+  private static final long FLIGHT_BYTES = 160;
+
+  private final int maxEntries;
+  private final long maxBytes;
+  private final long ttlNanos;
+  private final long staleNanos;
+  private final ConditionalLoader loader;
+  private final LongSupplier clock;
+
+  // access ordered, eldest entry is the least recently used one; guarded by this
+  private final LinkedHashMap<ScheduleKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes = 0L;
+
+  private final Set<ScheduleKey> revalidating = ConcurrentHashMap.newKeySet();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder staleHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder loadFailures = new LongAdder();
+  private final LongAdder notModified = new LongAdder();
+
+  public ScheduleCache(int maxEntries, long maxBytes, long ttlMillis, long staleWhileRevalidateMillis, Loader loader) {
+    this(maxEntries, maxBytes, ttlMillis, staleWhileRevalidateMillis, loader, System::nanoTime);
+  }
+
+  public ScheduleCache(int maxEntries, long maxBytes, long ttlMillis, long staleWhileRevalidateMillis,
+                       ConditionalLoader loader) {
+    this(maxEntries, maxBytes, ttlMillis, staleWhileRevalidateMillis, loader, System::nanoTime);
+  }
+
+  ScheduleCache(int maxEntries, long maxBytes, long ttlMillis, long staleWhileRevalidateMillis, Loader loader,
+                LongSupplier clock) {
+    this(maxEntries, maxBytes, ttlMillis, staleWhileRevalidateMillis,
+      (key, cached) -> loader.load(key).thenApply(ScheduleVersion::new), clock);
+  }
+
+  ScheduleCache(int maxEntries, long maxBytes, long ttlMillis, long staleWhileRevalidateMillis,
+                ConditionalLoader loader, LongSupplier clock) {
+    if (maxEntries <= 0) throw new IllegalArgumentException("Max entries must be a positive number");
+    if (maxBytes <= 0) throw new IllegalArgumentException("Max bytes must be a positive number");
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.staleNanos = TimeUnit.MILLISECONDS.toNanos(staleWhileRevalidateMillis);
+    this.loader = loader;
+    this.clock = clock;
+  }
+
+  /**
+   * Provides the unfiltered month schedule for the given key, from memory when possible.
+   *
+   * @param key the route and year-month of the schedule
+   * @return a future of the month schedule, failed if it could not be loaded
+   */
+  public CompletionStage<MonthSchedule> get(ScheduleKey key) {
+    final long now = clock.getAsLong();
+    final Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+
+    if (entry != null && now - entry.loadedAt < ttlNanos) {
+      hits.increment();
+      return CompletableFuture.completedFuture(entry.version.getSchedule());
+    }
+    if (entry != null && now - entry.loadedAt < ttlNanos + staleNanos) {
+      staleHits.increment();
+      revalidate(key, entry.version);
+      return CompletableFuture.completedFuture(entry.version.getSchedule());
+    }
+
+    misses.increment();
+    // an expired entry not evicted yet is revalidated instead of downloaded again
+    return load(key, entry != null ? entry.version : null);
+  }
+
+  /**
+   * Stores a month schedule, evicting the least recently used entries if the cache grows over its bounds.
+   */
+  public void put(ScheduleKey key, MonthSchedule schedule) {
+    put(key, new ScheduleVersion(schedule), clock.getAsLong());
+  }
+
+  /**
+   * Stores a month schedule restored from a local copy, already stale so it is served while being revalidated on its
+   * first access. An entry already in the cache is not replaced.
+   */
+  public void putStale(ScheduleKey key, MonthSchedule schedule) {
+    restore(key, schedule, TimeUnit.NANOSECONDS.toMillis(ttlNanos));
+  }
+
+  /**
+   * Stores a month schedule restored from a local copy, aged by the time elapsed since it was fetched so it expires as
+   * if it had been cached all along. An entry already in the cache is not replaced.
+   *
+   * @param ageMillis the time elapsed since the schedule was fetched
+   * @return false if the schedule is too old to be served even stale, and was not stored
+   */
+  public boolean restore(ScheduleKey key, MonthSchedule schedule, long ageMillis) {
+    final long ageNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, ageMillis));
+    if (ageNanos >= ttlNanos + staleNanos) return false;
+    synchronized (this) {
+      if (!entries.containsKey(key)) put(key, new ScheduleVersion(schedule), clock.getAsLong() - ageNanos);
+    }
+    return true;
+  }
+
+  /**
+   * Removes the month schedule of the given key, if cached.
+   */
+  public void invalidate(ScheduleKey key) {
+    synchronized (this) {
+      Entry previous = entries.remove(key);
+      if (previous != null) bytes -= previous.bytes;
+    }
+  }
+
+  private void put(ScheduleKey key, ScheduleVersion version, long loadedAt) {
+    final Entry entry = new Entry(version, loadedAt, estimateBytes(version.getSchedule()));
+    synchronized (this) {
+      Entry previous = entries.put(key, entry);
+      if (previous != null) bytes -= previous.bytes;
+      bytes += entry.bytes;
+
+      Iterator<Map.Entry<ScheduleKey, Entry>> eldest = entries.entrySet().iterator();
+      while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+        bytes -= eldest.next().getValue().bytes;
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Provides a snapshot of the counters of this cache.
+   */
+  public Stats getStats() {
+    synchronized (this) {
+      return new Stats(hits.sum(), staleHits.sum(), misses.sum(), evictions.sum(), loadFailures.sum(),
+        notModified.sum(), entries.size(), bytes);
+    }
+  }
+
+  private CompletionStage<MonthSchedule> load(ScheduleKey key, ScheduleVersion cached) {
+    return loader.load(key, cached)
+      .whenComplete((version, throwable) -> {
+        if (throwable != null) {
+          loadFailures.increment();
+        } else {
+          // a schedule not modified is fresh again for another time-to-live
+          if (version.isNotModified()) notModified.increment();
+          put(key, version, clock.getAsLong());
+        }
+      })
+      .thenApply(ScheduleVersion::getSchedule);
+  }
+
+  private void revalidate(ScheduleKey key, ScheduleVersion cached) {
+    // only one background revalidation per key at a time
+    if (revalidating.add(key)) {
+      load(key, cached).whenComplete((schedule, throwable) -> revalidating.remove(key));
+    }
+  }
+
+  /**
+   * Estimates the heap footprint of a month schedule.
+   */
+  static long estimateBytes(MonthSchedule schedule) {
+    long estimate = MONTH_BYTES;
+    for (DaySchedule day : schedule.getDays()) {
+      estimate += DAY_BYTES + FLIGHT_BYTES * day.getFlights().size();
+    }
+    return estimate;
+  }
+
+  private static class Entry {
+    private final ScheduleVersion version;
+    private final long loadedAt;
+    private final long bytes;
+
+    private Entry(ScheduleVersion version, long loadedAt, long bytes) {
+      this.version = version;
+      this.loadedAt = loadedAt;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * A point in time view of the cache counters.
+   */
+  public static class Stats {
+    private final long hits;
+    private final long staleHits;
+    private final long misses;
+    private final long evictions;
+    private final long loadFailures;
+    private final long notModified;
+    private final int size;
+    private final long bytes;
+
+    public Stats(long hits, long staleHits, long misses, long evictions, long loadFailures, long notModified, int size,
+                 long bytes) {
+      this.hits = hits;
+      this.staleHits = staleHits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.loadFailures = loadFailures;
+      this.notModified = notModified;
+      this.size = size;
+      this.bytes = bytes;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getStaleHits() {
+      return staleHits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getEvictions() {
+      return evictions;
+    }
+
+    public long getLoadFailures() {
+      return loadFailures;
+    }
+
+    /**
+     * Number of loads answered as not modified, keeping the cached schedule.
+     */
+    public long getNotModified() {
+      return notModified;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuilder()
+        .append("[hits=").append(hits)
+        .append(", staleHits=").append(staleHits)
+        .append(", misses=").append(misses)
+        .append(", evictions=").append(evictions)
+        .append(", loadFailures=").append(loadFailures)
+        .append(", notModified=").append(notModified)
+        .append(", size=").append(size)
+        .append(", bytes=").append(bytes)
+        .append("]")
+        .toString();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package com.javaigua.interconnFlights.timetable;
+
+import java.util.*;
+
+import com.javaigua.interconnFlights.domain.DaySchedule;
+import com.javaigua.interconnFlights.domain.Flight;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+
+/**
+ * The changes between two versions of a month schedule: the days whose flights changed and the flights added to and
+ * removed from them.
+ *
+ * Flights are compared by number, departure and arrival time, so a flight rescheduled within a day is removed at its
+ * previous times and added at the new ones. A month schedule of another month changes every day of both.
+ */
+public class ScheduleDiff {
+  private final MonthSchedule previous;
+  private final MonthSchedule current;
+  private final int[] changedDays;
+  private final int addedFlights;
+  private final int removedFlights;
+
+  private ScheduleDiff(MonthSchedule previous, MonthSchedule current, int[] changedDays, int addedFlights,
+                       int removedFlights) {
+    this.previous = previous;
+    this.current = current;
+    this.changedDays = changedDays;
+    this.addedFlights = addedFlights;
+    this.removedFlights = removedFlights;
+  }
+
+  /**
+   * Compares two versions of a month schedule.
+   *
+   * @param previous the previous version
+   * @param current the current version
+   * @return the changes from the previous to the current version
+   */
+  public static ScheduleDiff between(MonthSchedule previous, MonthSchedule current) {
+    final boolean sameMonth = Objects.equals(previous.getMonth(), current.getMonth());
+    final Map<Integer, List<Flight>> previousDays = flightsByDay(previous);
+    final Map<Integer, List<Flight>> currentDays = flightsByDay(current);
+    final SortedSet<Integer> days = new TreeSet<>(previousDays.keySet());
+    days.addAll(currentDays.keySet());
+
+    final List<Integer> changed = new ArrayList<>();
+    int added = 0;
+    int removed = 0;
+    for (Integer day : days) {
+      final List<String> before = signatures(previousDays.get(day));
+      final List<String> after = signatures(currentDays.get(day));
+      if (!sameMonth) {
+        // every flight of the previous month is removed, every flight of the current one is added
+        changed.add(day);
+        removed += before.size();
+        added += after.size();
+        continue;
+      }
+
+      final List<String> onlyBefore = new ArrayList<>(before);
+      for (String flight : after) onlyBefore.remove(flight);
+      final List<String> onlyAfter = new ArrayList<>(after);
+      for (String flight : before) onlyAfter.remove(flight);
+      if (!onlyBefore.isEmpty() || !onlyAfter.isEmpty()) {
+        changed.add(day);
+        removed += onlyBefore.size();
+        added += onlyAfter.size();
+      }
+    }
+    return new ScheduleDiff(previous, current, changed.stream().mapToInt(Integer::intValue).toArray(), added,
+      removed);
+  }
+
+  public MonthSchedule getPrevious() {
+    return previous;
+  }
+
+  public MonthSchedule getCurrent() {
+    return current;
+  }
+
+  /**
+   * Provides the days of the month whose flights changed, in day order.
+   */
+  public int[] getChangedDays() {
+    return changedDays.clone();
+  }
+
+  public int getAddedFlights() {
+    return addedFlights;
+  }
+
+  public int getRemovedFlights() {
+    return removedFlights;
+  }
+
+  /**
+   * Whether both versions have the same flights every day.
+   */
+  public boolean isEmpty() {
+    return changedDays.length == 0;
+  }
+
+  private static Map<Integer, List<Flight>> flightsByDay(MonthSchedule schedule) {
+    final Map<Integer, List<Flight>> days = new HashMap<>();
+    for (DaySchedule day : schedule.getDays()) {
+      if (day.getFlights() == null || day.getFlights().isEmpty()) continue;
+      days.computeIfAbsent(day.getDay(), k -> new ArrayList<>()).addAll(day.getFlights());
+    }
+    return days;
+  }
+
+  private static List<String> signatures(List<Flight> flights) {
+    final List<String> signatures = new ArrayList<>();
+    if (flights == null) return signatures;
+    for (Flight flight : flights) {
+      signatures.add(flight.getNumber() + " " + flight.getDepartureTime() + " " + flight.getArrivalTime());
+    }
+    return signatures;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder()
+      .append("[changedDays=").append(Arrays.toString(changedDays))
+      .append(", addedFlights=").append(addedFlights)
+      .append(", removedFlights=").append(removedFlights)
+      .append("]")
+      .toString();
+  }
+}
@@ -0,0 +1,49 @@
+package com.javaigua.interconnFlights.timetable;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.javaigua.interconnFlights.domain.DaySchedule;
+import com.javaigua.interconnFlights.domain.Flight;
+
+/**
+ * Filtering of day schedules by a date time range.
+ */
+public class ScheduleFilter {
+
+  private ScheduleFilter() {
+  }
+
+  /**
+   * Provided a target year, month, a day schedule and a pair of date times (from and to), and a flag indicating the
+   * the first month in the parent month schedule, this method filters the flights that are between the
+   * resulting range.
+   *
+   * @param year the target year
+   * @param month the target month
+   * @param daySchedule a day schedule
+   * @param departureDateTime the starting date time
+   * @param arrivalDateTime the ending date time
+   * @param isFirstMonth true if first month in the parent month schedule, false otherwise
+   * @return a filtered day schedule information of the flights in between.
+   */
+  public static DaySchedule onlyFlightsInBetween(int year, int month, DaySchedule daySchedule,
+                                                 LocalDateTime departureDateTime, LocalDateTime arrivalDateTime,
+                                                 boolean isFirstMonth) {
+    // to filter flights, compare their pre-parsed times against the range bounds in seconds since the start of the day
+    final LocalDateTime startOfDay = LocalDateTime.of(year, month, daySchedule.getDay(), 0, 0, 0);
+    final long fromSecond = ChronoUnit.SECONDS.between(startOfDay, departureDateTime);
+    final long toSecond = ChronoUnit.SECONDS.between(startOfDay, arrivalDateTime);
+    List<Flight> filteredFlights = new ArrayList<>(daySchedule.getFlights().size());
+    for (Flight flight : daySchedule.getFlights()) {
+      final long flightDeparture = flight.getDepartureMinute() * 60L;
+      final long flightArrival = flight.getArrivalMinute() * 60L;
+
+      if ((!isFirstMonth || fromSecond < flightDeparture) && toSecond > flightArrival)
+        filteredFlights.add(flight);
+    }
+    return new DaySchedule(daySchedule.getDay(), filteredFlights);
+  }
+}
@@ -0,0 +1,81 @@
+package com.javaigua.interconnFlights.timetable;
+
+import java.io.Serializable;
+
+/**
+ * Identifies the month schedule of a route, that is a departure and arrival IATA codes pair and a year-month.
+ */
+public class ScheduleKey implements Serializable {
+  private final String departure;
+  private final String arrival;
+  private final int year;
+  private final int month;
+
+  public ScheduleKey(String departure, String arrival, int year, int month) {
+    this.departure = departure;
+    this.arrival = arrival;
+    this.year = year;
+    this.month = month;
+  }
+
+  public String getDeparture() {
+    return departure;
+  }
+
+  public String getArrival() {
+    return arrival;
+  }
+
+  public int getYear() {
+    return year;
+  }
+
+  public int getMonth() {
+    return month;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((departure == null) ? 0 : departure.hashCode());
+    result = prime * result + ((arrival == null) ? 0 : arrival.hashCode());
+    result = prime * result + year;
+    result = prime * result + month;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+
+    ScheduleKey other = (ScheduleKey) obj;
+    if (year != other.year || month != other.month)
+      return false;
+    if (departure == null) {
+      if (other.departure != null)
+        return false;
+    } else if (!departure.equals(other.departure))
+      return false;
+    if (arrival == null) {
+      if (other.arrival != null)
+        return false;
+    } else if (!arrival.equals(other.arrival))
+      return false;
+
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder()
+      .append(departure).append("_").append(arrival)
+      .append(" ").append(year).append("/").append(month)
+      .toString();
+  }
+}
@@ -0,0 +1,77 @@
+package com.javaigua.interconnFlights.timetable;
+
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+
+/**
+ * A month schedule along with the validators the Timetable API answered it with, so it can be revalidated with a
+ * conditional request instead of being downloaded again.
+ */
+public class ScheduleVersion {
+  private final MonthSchedule schedule;
+  private final String etag;
+  private final String lastModified;
+  private final boolean notModified;
+
+  public ScheduleVersion(MonthSchedule schedule) {
+    this(schedule, null, null, false);
+  }
+
+  public ScheduleVersion(MonthSchedule schedule, String etag, String lastModified) {
+    this(schedule, etag, lastModified, false);
+  }
+
+  private ScheduleVersion(MonthSchedule schedule, String etag, String lastModified, boolean notModified) {
+    this.schedule = schedule;
+    this.etag = etag;
+    this.lastModified = lastModified;
+    this.notModified = notModified;
+  }
+
+  /**
+   * Provides this version confirmed by a not modified answer, with the validators of the answer if it has any.
+   */
+  public ScheduleVersion notModified(String etag, String lastModified) {
+    return new ScheduleVersion(schedule, etag != null ? etag : this.etag,
+      lastModified != null ? lastModified : this.lastModified, true);
+  }
+
+  public MonthSchedule getSchedule() {
+    return schedule;
+  }
+
+  /**
+   * Provides the entity tag of the schedule, or null.
+   */
+  public String getEtag() {
+    return etag;
+  }
+
+  /**
+   * Provides the last modification date of the schedule as an http date, or null.
+   */
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  public boolean hasValidators() {
+    return etag != null || lastModified != null;
+  }
+
+  /**
+   * Whether this version was revalidated without downloading the schedule again.
+   */
+  public boolean isNotModified() {
+    return notModified;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder()
+      .append("[etag=").append(etag)
+      .append(", lastModified=").append(lastModified)
+      .append(", notModified=").append(notModified)
+      .append(", schedule=").append(schedule)
+      .append("]")
+      .toString();
+  }
+}
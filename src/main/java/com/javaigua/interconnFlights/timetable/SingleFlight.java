@@ -0,0 +1,71 @@
+package com.javaigua.interconnFlights.timetable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent identical calls into a single one.
+ *
+ * The first caller for a given key owns the in-flight future and performs the call, every other caller for the same
+ * key attaches to that future until it completes. Once completed the key is released, so later callers perform a new
+ * call.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Performs the call for the given key, unless an identical call is already in flight.
+   *
+   * @param key the identity of the call
+   * @param call the call to perform when no identical call is in flight
+   * @return a future of the result of the in-flight call
+   */
+  public CompletionStage<V> execute(K key, Function<K, CompletionStage<V>> call) {
+    final CompletableFuture<V> promise = new CompletableFuture<>();
+    final CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+    if (existing != null) {
+      coalesced.increment();
+      return existing;
+    }
+
+    calls.increment();
+    try {
+      call.apply(key).whenComplete((value, throwable) -> {
+        inFlight.remove(key, promise);
+        if (throwable != null) promise.completeExceptionally(throwable);
+        else promise.complete(value);
+      });
+    } catch (RuntimeException e) {
+      inFlight.remove(key, promise);
+      promise.completeExceptionally(e);
+    }
+    return promise;
+  }
+
+  /**
+   * Number of calls currently in flight.
+   */
+  public int getInFlight() {
+    return inFlight.size();
+  }
+
+  /**
+   * Number of calls actually performed.
+   */
+  public long getCalls() {
+    return calls.sum();
+  }
+
+  /**
+   * Number of callers that attached to an already in-flight call.
+   */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+}
@@ -0,0 +1,243 @@
+package com.javaigua.interconnFlights.timetable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import scala.concurrent.ExecutionContextExecutor;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.model.HttpHeader;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.RawHeader;
+import akka.http.javadsl.marshallers.jackson.Jackson;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+
+import com.typesafe.config.Config;
+
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+import com.javaigua.interconnFlights.metrics.Metrics;
+import com.javaigua.interconnFlights.upstream.Upstream;
+
+/**
+ * A process-wide access point to the month schedules of the Timetable API.
+ *
+ * Schedules are kept unfiltered in a bounded ScheduleCache shared by all the actors of the actor system, so popular
+ * routes are served from memory and per-request filtering is left to the callers. Concurrent identical calls to the
+ * Timetable API are coalesced into a single http request.
+ *
+ * Cached schedules are revalidated with conditional requests carrying the ETag and Last-Modified validators of their
+ * last response, so an unchanged schedule costs a 304 answer instead of downloading and parsing it again. When it did
+ * change, the fetch listeners are given the days and flights that changed, so they can update incrementally.
+ */
+public class Timetable implements Extension {
+
+  public static final Id ID = new Id();
+
+  /**
+   * Akka extension id, one timetable instance per actor system.
+   */
+  public static class Id extends AbstractExtensionId<Timetable> implements ExtensionIdProvider {
+    @Override
+    public Id lookup() {
+      return ID;
+    }
+
+    @Override
+    public Timetable createExtension(ExtendedActorSystem system) {
+      return new Timetable(system);
+    }
+  }
+
+  /**
+   * Convenient lookup of the timetable of the given actor system
+   */
+  public static Timetable get(ActorSystem system) {
+    return ID.get(system);
+  }
+
+  /**
+   * A listener of the month schedules downloaded from the Timetable API.
+   */
+  public interface FetchListener {
+    /**
+     * @param key the route and year-month of the schedule
+     * @param schedule the downloaded month schedule
+     * @param changes the changes from the cached version the download revalidated, or null if none was cached
+     */
+    void onFetched(ScheduleKey key, MonthSchedule schedule, ScheduleDiff changes);
+  }
+
+  private final LoggingAdapter log;
+  private final Http http;
+  private final Materializer materializer;
+  private final ExecutionContextExecutor ec;
+  private final Metrics metrics;
+  private final Upstream upstream;
+  private final String schedulesUrlTemplate;
+  private final ScheduleCache cache;
+  private final SingleFlight<ScheduleKey, ScheduleVersion> inFlightFetches = new SingleFlight<>();
+  private final List<FetchListener> fetchListeners = new CopyOnWriteArrayList<>();
+
+  private Timetable(ExtendedActorSystem system) {
+    this.log = Logging.getLogger(system, this);
+    this.http = Http.get(system);
+    this.materializer = ActorMaterializer.create(system);
+    this.ec = system.dispatcher();
+    this.metrics = Metrics.get(system);
+    this.upstream = Upstream.get(system);
+
+    final Config config = system.settings().config();
+    this.schedulesUrlTemplate = config.getString("application.schedules-url");
+    this.cache = new ScheduleCache(
+      config.getInt("application.schedule-cache.max-entries"),
+      config.getBytes("application.schedule-cache.max-bytes"),
+      config.getLong("application.schedule-cache.ttl-millis"),
+      config.getLong("application.schedule-cache.stale-while-revalidate-millis"),
+      (key, cached) -> inFlightFetches.execute(key, k -> fetchMonthSchedule(k, cached)));
+  }
+
+  /**
+   * Provides the unfiltered month schedule of a route.
+   *
+   * @param key the route and year-month of the schedule
+   * @return a future of the month schedule, failed if it could not be fetched
+   */
+  public CompletionStage<MonthSchedule> getMonthSchedule(ScheduleKey key) {
+    return cache.get(key);
+  }
+
+  /**
+   * Restores month schedules from a local copy, expiring as if they had been cached since they were fetched. The ones
+   * older than the ttl and stale-while-revalidate windows are dropped, to be fetched again on their first access.
+   *
+   * @param schedules the restored month schedules
+   * @param fetchedAt the epoch milliseconds at which each of the schedules was fetched
+   */
+  public void restore(Map<ScheduleKey, MonthSchedule> schedules, Map<ScheduleKey, Long> fetchedAt) {
+    final long now = System.currentTimeMillis();
+    int dropped = 0;
+    for (Map.Entry<ScheduleKey, MonthSchedule> entry : schedules.entrySet()) {
+      final Long fetchedAtMillis = fetchedAt.get(entry.getKey());
+      final long ageMillis = fetchedAtMillis != null ? now - fetchedAtMillis : Long.MAX_VALUE;
+      if (!cache.restore(entry.getKey(), entry.getValue(), ageMillis)) dropped++;
+    }
+    log.info("status= timetable_restored, schedules= {}, dropped= {}, cache= {}", schedules.size() - dropped, dropped,
+      cache.getStats());
+  }
+
+  /**
+   * Drops the cached month schedules of the given keys, e.g. once the routes they belong to are served elsewhere.
+   */
+  public void invalidate(Collection<ScheduleKey> keys) {
+    keys.forEach(cache::invalidate);
+  }
+
+  /**
+   * Registers a listener of the month schedules fetched from the Timetable API. Listeners are called on the thread
+   * completing the fetch, so they must not block, and their failures are only logged.
+   */
+  public void addFetchListener(FetchListener listener) {
+    fetchListeners.add(listener);
+  }
+
+  /**
+   * Provides a snapshot of the schedule cache counters.
+   */
+  public ScheduleCache.Stats getCacheStats() {
+    return cache.getStats();
+  }
+
+  /**
+   * Provides the in-flight Timetable API calls coalescing counters.
+   */
+  public SingleFlight<ScheduleKey, ScheduleVersion> getInFlightFetches() {
+    return inFlightFetches;
+  }
+
+  /**
+   * Fetches a month schedule from the Timetable API, conditionally on the validators of the cached version if any. A
+   * route without schedule for the month is an empty schedule.
+   */
+  private CompletionStage<ScheduleVersion> fetchMonthSchedule(ScheduleKey key, ScheduleVersion cached) {
+    final String scheduleUrl = String.format(schedulesUrlTemplate, key.getDeparture(), key.getArrival(), key.getYear(),
+      key.getMonth());
+    log.debug("status= schedule_fetching, url= {}, cached= {}", scheduleUrl, cached != null);
+
+    HttpRequest request = HttpRequest.create(scheduleUrl);
+    if (cached != null && cached.getEtag() != null) {
+      request = request.addHeader(RawHeader.create("If-None-Match", cached.getEtag()));
+    }
+    if (cached != null && cached.getLastModified() != null) {
+      request = request.addHeader(RawHeader.create("If-Modified-Since", cached.getLastModified()));
+    }
+    final HttpRequest scheduleRequest = request;
+
+    return upstream.call("schedules", () -> http.singleRequest(scheduleRequest, materializer))
+      .thenCompose(httpResponse -> {
+        final String etag = headerValue(httpResponse, "ETag");
+        final String lastModified = headerValue(httpResponse, "Last-Modified");
+        if (httpResponse.status().equals(StatusCodes.NOT_MODIFIED) && cached != null) {
+          httpResponse.discardEntityBytes(materializer);
+          return CompletableFuture.completedFuture(cached.notModified(etag, lastModified));
+        } else if (httpResponse.status().equals(StatusCodes.NOT_FOUND)) {
+          httpResponse.discardEntityBytes(materializer);
+          return CompletableFuture.completedFuture(
+            new ScheduleVersion(new MonthSchedule(key.getMonth(), Collections.emptyList())));
+        } else if (!httpResponse.status().isSuccess()) {
+          httpResponse.discardEntityBytes(materializer);
+          CompletableFuture<ScheduleVersion> failed = new CompletableFuture<>();
+          failed.completeExceptionally(new IllegalStateException(
+            "Unexpected status " + httpResponse.status().intValue() + " fetching " + scheduleUrl));
+          return failed;
+        }
+        return metrics.timeStage("schedule_unmarshal", () ->
+          Jackson.unmarshaller(MonthSchedule.class).unmarshal(httpResponse.entity(), ec, materializer))
+          .thenApply(schedule -> new ScheduleVersion(schedule, etag, lastModified));
+      })
+      .thenApply(version -> {
+        if (version.isNotModified()) {
+          metrics.scheduleRevalidations("not_modified").increment();
+          return version;
+        }
+
+        final ScheduleDiff changes = cached != null ?
+          ScheduleDiff.between(cached.getSchedule(), version.getSchedule()) : null;
+        if (changes != null) {
+          metrics.scheduleRevalidations(changes.isEmpty() ? "unchanged" : "modified").increment();
+          if (!changes.isEmpty()) log.info("status= schedule_changed, key= {}, changes= {}", key, changes);
+        }
+        notifyFetched(key, version.getSchedule(), changes);
+        return version;
+      });
+  }
+
+  private void notifyFetched(ScheduleKey key, MonthSchedule schedule, ScheduleDiff changes) {
+    // a failing listener must neither fail the fetch nor starve the others
+    for (FetchListener listener : fetchListeners) {
+      try {
+        listener.onFetched(key, schedule, changes);
+      } catch (RuntimeException e) {
+        log.error(e, "status= fetch_listener_failed, key= {}, listener= {}", key, listener);
+      }
+    }
+  }
+
+  private static String headerValue(HttpResponse httpResponse, String name) {
+    return httpResponse.getHeader(name).map(HttpHeader::value).orElse(null);
+  }
+}
@@ -0,0 +1,69 @@
+package com.javaigua.interconnFlights.upstream;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests: a request still unanswered after a delay is issued again, the first response wins and the call fails
+ * only if every issued request failed. The responses of the losing requests are left to the caller.
+ */
+final class Hedging {
+
+  /**
+   * Runs a task after a delay.
+   */
+  interface Scheduler {
+    /**
+     * @return the action cancelling the task, if not run yet
+     */
+    Runnable scheduleOnce(long delayMillis, Runnable task);
+  }
+
+  private Hedging() {
+  }
+
+  /**
+   * Performs a request, issuing a duplicate one if still unanswered after the hedge delay.
+   *
+   * @param attempt the request to perform, performed again to hedge it
+   * @param delayMillis the time after which an unanswered request is hedged
+   * @param scheduler the scheduler of the hedge
+   * @param onHedged called when the duplicate request is issued
+   * @param onHedgeWon called when the duplicate request wins
+   * @return the future of the first response
+   */
+  static <T> CompletionStage<T> hedged(Supplier<CompletionStage<T>> attempt, long delayMillis, Scheduler scheduler,
+                                       Runnable onHedged, Runnable onHedgeWon) {
+    final CompletableFuture<T> first = attempt.get().toCompletableFuture();
+    if (first.isDone()) return first;
+
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    // requests issued and not failed yet, no more are issued once it reaches 0
+    final AtomicInteger pending = new AtomicInteger(1);
+    final Runnable cancelHedge = scheduler.scheduleOnce(delayMillis, () -> {
+      if (result.isDone() || pending.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) return;
+      onHedged.run();
+      attempt.get().whenComplete(complete(result, pending, onHedgeWon));
+    });
+
+    first.whenComplete((value, throwable) -> {
+      cancelHedge.run();
+      complete(result, pending, null).accept(value, throwable);
+    });
+    return result;
+  }
+
+  private static <T> BiConsumer<T, Throwable> complete(CompletableFuture<T> result, AtomicInteger pending,
+                                                       Runnable onWon) {
+    return (value, throwable) -> {
+      if (throwable == null) {
+        if (result.complete(value) && onWon != null) onWon.run();
+      } else if (pending.decrementAndGet() == 0) {
+        result.completeExceptionally(throwable);
+      }
+    };
+  }
+}
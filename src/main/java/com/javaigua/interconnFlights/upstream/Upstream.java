@@ -0,0 +1,170 @@
+package com.javaigua.interconnFlights.upstream;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import scala.concurrent.ExecutionContextExecutor;
+import scala.concurrent.duration.Duration;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.http.javadsl.model.HttpResponse;
+import akka.pattern.CircuitBreaker;
+import akka.pattern.CircuitBreakerOpenException;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+
+import com.typesafe.config.Config;
+
+import com.javaigua.interconnFlights.metrics.Metrics;
+
+/**
+ * A process-wide gateway of the calls to the upstream Routes and Timetable APIs, cutting their tail latency with
+ * hedged requests and shedding them with a circuit breaker while an API is unhealthy.
+ *
+ * Every API has its own UpstreamPolicy (application.upstream.{api}), so the big and rare routes download and the many
+ * small schedule requests are tuned independently. A call still unanswered after the hedge delay of its API is issued
+ * again, the first response wins and the other one is discarded. Hedging happens within the circuit breaker, so an
+ * open breaker rejects the calls before any request is issued and a hedged call counts as a single call.
+ */
+public class Upstream implements Extension {
+
+  public static final Id ID = new Id();
+
+  /**
+   * Akka extension id, one gateway per actor system.
+   */
+  public static class Id extends AbstractExtensionId<Upstream> implements ExtensionIdProvider {
+    @Override
+    public Id lookup() {
+      return ID;
+    }
+
+    @Override
+    public Upstream createExtension(ExtendedActorSystem system) {
+      return new Upstream(system);
+    }
+  }
+
+  /**
+   * Convenient lookup of the upstream gateway of the given actor system
+   */
+  public static Upstream get(ActorSystem system) {
+    return ID.get(system);
+  }
+
+  /**
+   * The policy of an upstream API and its circuit breaker.
+   */
+  private static class Guard {
+    private final UpstreamPolicy policy;
+    private final CircuitBreaker breaker;
+
+    private Guard(UpstreamPolicy policy, CircuitBreaker breaker) {
+      this.policy = policy;
+      this.breaker = breaker;
+    }
+  }
+
+  private final ActorSystem system;
+  private final LoggingAdapter log;
+  private final ExecutionContextExecutor ec;
+  private final Materializer materializer;
+  private final Metrics metrics;
+  private final Config config;
+  private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+  private Upstream(ExtendedActorSystem system) {
+    this.system = system;
+    this.log = Logging.getLogger(system, this);
+    this.ec = system.dispatcher();
+    this.materializer = ActorMaterializer.create(system);
+    this.metrics = Metrics.get(system);
+    this.config = system.settings().config().getConfig("application.upstream");
+  }
+
+  /**
+   * Performs a call to an upstream API, hedged and guarded by the circuit breaker of the API.
+   *
+   * @param api the name of the upstream API, the key of its policy
+   * @param request the request to perform, performed again to hedge the call
+   * @return the future of the first response, failed with a CircuitBreakerOpenException if the call was shed
+   */
+  public CompletionStage<HttpResponse> call(String api, Supplier<CompletionStage<HttpResponse>> request) {
+    final Guard guard = guards.computeIfAbsent(api, this::createGuard);
+    final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+    final Supplier<CompletionStage<HttpResponse>> attempt = () -> metrics.upstream(api, request)
+      .whenComplete((response, throwable) -> {
+        if (response != null) discardUnlessResult(response, result);
+      });
+    final Supplier<CompletionStage<HttpResponse>> call = guard.policy.isHedgeEnabled() ?
+      () -> hedged(api, guard.policy, attempt) : attempt;
+
+    // server errors count as failures, the API is unhealthy even if it answers
+    final CompletionStage<HttpResponse> guarded = guard.breaker == null ? call.get() :
+      guard.breaker.callWithCircuitBreakerCS(call::get,
+        (response, throwable) -> throwable.isPresent() || response.get().status().intValue() >= 500);
+    guarded.whenComplete((response, throwable) -> {
+      if (throwable == null) {
+        result.complete(response);
+        return;
+      }
+      final Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+      if (cause instanceof CircuitBreakerOpenException) metrics.upstreamShed(api).increment();
+      result.completeExceptionally(cause);
+    });
+    return result;
+  }
+
+  private CompletionStage<HttpResponse> hedged(String api, UpstreamPolicy policy,
+                                               Supplier<CompletionStage<HttpResponse>> attempt) {
+    final long delayMillis = policy.hedgeDelayMillis(metrics.upstreamLatency(api));
+    return Hedging.hedged(attempt, delayMillis,
+      (delay, task) -> system.scheduler().scheduleOnce(Duration.create(delay, TimeUnit.MILLISECONDS), task, ec)::cancel,
+      () -> {
+        metrics.upstreamHedges(api, "issued").increment();
+        log.debug("status= upstream_request_hedged, api= {}, delayMillis= {}", api, delayMillis);
+      },
+      () -> metrics.upstreamHedges(api, "won").increment());
+  }
+
+  /**
+   * Consumes a response once the call completes with another one, a losing hedge or one arriving after the call timed
+   * out, so its pooled connection is released.
+   */
+  private void discardUnlessResult(HttpResponse response, CompletableFuture<HttpResponse> result) {
+    result.whenComplete((winner, throwable) -> {
+      if (winner != response) response.discardEntityBytes(materializer);
+    });
+  }
+
+  private Guard createGuard(String api) {
+    final UpstreamPolicy policy = UpstreamPolicy.from(config.getConfig(api));
+    log.info("status= upstream_policy, api= {}, policy= {}", api, policy);
+    if (!policy.isBreakerEnabled()) return new Guard(policy, null);
+
+    final CircuitBreaker breaker = new CircuitBreaker(ec, system.scheduler(), policy.getBreakerMaxFailures(),
+      Duration.create(policy.getBreakerCallTimeoutMillis(), TimeUnit.MILLISECONDS),
+      Duration.create(policy.getBreakerResetTimeoutMillis(), TimeUnit.MILLISECONDS))
+      .addOnOpenListener(() -> {
+        metrics.upstreamBreakerTransitions(api, "open").increment();
+        log.warning("status= upstream_circuit_breaker_opened, api= {}", api);
+      })
+      .addOnHalfOpenListener(() -> metrics.upstreamBreakerTransitions(api, "half_open").increment())
+      .addOnCloseListener(() -> {
+        metrics.upstreamBreakerTransitions(api, "closed").increment();
+        log.info("status= upstream_circuit_breaker_closed, api= {}", api);
+      });
+    return new Guard(policy, breaker);
+  }
+}
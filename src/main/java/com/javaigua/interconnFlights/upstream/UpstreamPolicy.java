@@ -0,0 +1,126 @@
+package com.javaigua.interconnFlights.upstream;
+
+import java.util.concurrent.TimeUnit;
+
+import com.typesafe.config.Config;
+
+import com.javaigua.interconnFlights.metrics.Histogram;
+
+/**
+ * The hedging and circuit breaker settings of the calls to an upstream API.
+ *
+ * A call still unanswered after the given percentile of the latencies of the API is hedged with a duplicate request,
+ * the first response wins. Until enough latencies are recorded the maximum delay is used, and the delay is clamped
+ * between the minimum and maximum ones so a fast or degraded API never hedges every call.
+ *
+ * The circuit breaker opens after the given number of consecutive failed calls (errors, timeouts and 5xx responses),
+ * rejecting calls right away until a trial call succeeds after the reset timeout.
+ */
+public class UpstreamPolicy {
+  private final boolean hedgeEnabled;
+  private final double hedgePercentile;
+  private final long hedgeMinSamples;
+  private final long hedgeMinDelayMillis;
+  private final long hedgeMaxDelayMillis;
+  private final boolean breakerEnabled;
+  private final int breakerMaxFailures;
+  private final long breakerCallTimeoutMillis;
+  private final long breakerResetTimeoutMillis;
+
+  public UpstreamPolicy(boolean hedgeEnabled, double hedgePercentile, long hedgeMinSamples, long hedgeMinDelayMillis,
+                        long hedgeMaxDelayMillis, boolean breakerEnabled, int breakerMaxFailures,
+                        long breakerCallTimeoutMillis, long breakerResetTimeoutMillis) {
+    if (hedgePercentile <= 0D || hedgePercentile > 100D)
+      throw new IllegalArgumentException("Hedge percentile must be between 0 and 100");
+    if (hedgeMinDelayMillis < 0 || hedgeMaxDelayMillis < hedgeMinDelayMillis)
+      throw new IllegalArgumentException("Invalid hedge delay bounds");
+    if (breakerMaxFailures < 1 || breakerCallTimeoutMillis <= 0 || breakerResetTimeoutMillis <= 0)
+      throw new IllegalArgumentException("Invalid circuit breaker settings");
+    this.hedgeEnabled = hedgeEnabled;
+    this.hedgePercentile = hedgePercentile;
+    this.hedgeMinSamples = hedgeMinSamples;
+    this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+    this.hedgeMaxDelayMillis = hedgeMaxDelayMillis;
+    this.breakerEnabled = breakerEnabled;
+    this.breakerMaxFailures = breakerMaxFailures;
+    this.breakerCallTimeoutMillis = breakerCallTimeoutMillis;
+    this.breakerResetTimeoutMillis = breakerResetTimeoutMillis;
+  }
+
+  public static UpstreamPolicy from(Config config) {
+    return new UpstreamPolicy(
+      config.getBoolean("hedge.enabled"),
+      config.getDouble("hedge.percentile"),
+      config.getLong("hedge.min-samples"),
+      config.getLong("hedge.min-delay-millis"),
+      config.getLong("hedge.max-delay-millis"),
+      config.getBoolean("circuit-breaker.enabled"),
+      config.getInt("circuit-breaker.max-failures"),
+      config.getLong("circuit-breaker.call-timeout-millis"),
+      config.getLong("circuit-breaker.reset-timeout-millis"));
+  }
+
+  /**
+   * Provides the time after which an unanswered call is hedged.
+   *
+   * @param latencies the latencies of the upstream API, in microseconds
+   * @return the hedge delay, in milliseconds
+   */
+  public long hedgeDelayMillis(Histogram latencies) {
+    if (latencies.getCount() < hedgeMinSamples) return hedgeMaxDelayMillis;
+    final long percentileMillis = TimeUnit.MICROSECONDS.toMillis(latencies.getValueAtPercentile(hedgePercentile));
+    return Math.max(hedgeMinDelayMillis, Math.min(hedgeMaxDelayMillis, percentileMillis));
+  }
+
+  public boolean isHedgeEnabled() {
+    return hedgeEnabled;
+  }
+
+  public double getHedgePercentile() {
+    return hedgePercentile;
+  }
+
+  public long getHedgeMinSamples() {
+    return hedgeMinSamples;
+  }
+
+  public long getHedgeMinDelayMillis() {
+    return hedgeMinDelayMillis;
+  }
+
+  public long getHedgeMaxDelayMillis() {
+    return hedgeMaxDelayMillis;
+  }
+
+  public boolean isBreakerEnabled() {
+    return breakerEnabled;
+  }
+
+  public int getBreakerMaxFailures() {
+    return breakerMaxFailures;
+  }
+
+  public long getBreakerCallTimeoutMillis() {
+    return breakerCallTimeoutMillis;
+  }
+
+  public long getBreakerResetTimeoutMillis() {
+    return breakerResetTimeoutMillis;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder()
+      .append("[hedgeEnabled=").append(hedgeEnabled)
+      .append(", hedgePercentile=").append(hedgePercentile)
+      .append(", hedgeMinSamples=").append(hedgeMinSamples)
+      .append(", hedgeMinDelayMillis=").append(hedgeMinDelayMillis)
+      .append(", hedgeMaxDelayMillis=").append(hedgeMaxDelayMillis)
+      .append(", breakerEnabled=").append(breakerEnabled)
+      .append(", breakerMaxFailures=").append(breakerMaxFailures)
+      .append(", breakerCallTimeoutMillis=").append(breakerCallTimeoutMillis)
+      .append(", breakerResetTimeoutMillis=").append(breakerResetTimeoutMillis)
+      .append("]")
+      .toString();
+  }
+}
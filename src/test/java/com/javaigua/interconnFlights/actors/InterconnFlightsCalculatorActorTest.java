@@ -3,6 +3,7 @@ package com.javaigua.interconnFlights.actors;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.scalatest.junit.JUnitSuite;
@@ -14,14 +15,17 @@ import org.junit.Test;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import akka.actor.Status;
 import akka.testkit.javadsl.TestKit;
 
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
-import com.javaigua.interconnFlights.domain.InterconnFlights;
+import com.javaigua.interconnFlights.algorithms.LongObjectHashMap;
+import com.javaigua.interconnFlights.domain.*;
 import com.javaigua.interconnFlights.actors.messages.GetInterconnections;
 import com.javaigua.interconnFlights.actors.messages.CalculateInterconnFlights;
+import com.javaigua.interconnFlights.actors.messages.InterconnectionsCompleted;
 
 /**
  * A test suit for the InterconnFlightsCalculatorActor class.
@@ -54,8 +58,8 @@ public class InterconnFlightsCalculatorActorTest extends JUnitSuite {
         LocalDateTime.now().plus(2, ChronoUnit.DAYS));
 
       within(duration("2 seconds"), () -> {
-        subject.tell(new CalculateInterconnFlights(getInterconnections, Collections.EMPTY_MAP, Collections.EMPTY_MAP,
-            getRef(), probe.getRef()),
+        subject.tell(new CalculateInterconnFlights(getInterconnections, new LongObjectHashMap<>(),
+            new LongObjectHashMap<>(), getRef(), probe.getRef()),
           getRef());
         probe.expectMsgPF(duration("2 seconds"), "Should receive Set<InterconnFlights>", (msg) -> {
           Set<InterconnFlights> interconnFlightsColl = (Set<InterconnFlights>) msg;
@@ -63,6 +67,67 @@ public class InterconnFlightsCalculatorActorTest extends JUnitSuite {
           return null;
         });
 
+        expectMsgClass(InterconnectionsCompleted.class);
+        expectNoMessage();
+        return null;
+      });
+    }};
+  }
+
+  @Test
+  public void testHandleStreamingCalculateInterconnFlights() {
+    new TestKit(system) {{
+      final Props props = Props.create(InterconnFlightsCalculatorActor.class);
+      final ActorRef subject = system.actorOf(props);
+      final TestKit probe = new TestKit(system);
+
+      GetInterconnections getInterconnections = new GetInterconnections("DUB","WRO", LocalDateTime.now(),
+        LocalDateTime.now().plus(2, ChronoUnit.DAYS), true);
+
+      within(duration("2 seconds"), () -> {
+        subject.tell(new CalculateInterconnFlights(getInterconnections, new LongObjectHashMap<>(),
+            new LongObjectHashMap<>(), getRef(), probe.getRef()),
+          getRef());
+        probe.expectMsgEquals(duration("2 seconds"), new Status.Success(0));
+
+        expectMsgClass(InterconnectionsCompleted.class);
+        expectNoMessage();
+        return null;
+      });
+    }};
+  }
+
+  @Test
+  public void testStreamsDirectFlightsBeforeCompleting() {
+    new TestKit(system) {{
+      final Props props = Props.create(InterconnFlightsCalculatorActor.class);
+      final ActorRef subject = system.actorOf(props);
+      final TestKit probe = new TestKit(system);
+
+      LocalDateTime departure = LocalDateTime.of(2018, 4, 1, 6, 0);
+      GetInterconnections getInterconnections = new GetInterconnections("DUB","WRO", departure,
+        departure.plus(2, ChronoUnit.DAYS), true);
+      Route direct = new Route("DUB", "WRO", null, false, false, "RYANAIR", "GENERIC");
+      LongObjectHashMap<Route> routes = new LongObjectHashMap<>();
+      routes.put(AirportDictionary.routeKey(direct), direct);
+      LongObjectHashMap<List<MonthSchedule>> schedules = new LongObjectHashMap<>();
+      schedules.put(AirportDictionary.routeKey(direct), Collections.singletonList(new MonthSchedule(4,
+        Collections.singletonList(new DaySchedule(1,
+          Collections.singletonList(new Flight("1926", "17:50", "21:25")))))));
+
+      within(duration("2 seconds"), () -> {
+        subject.tell(new CalculateInterconnFlights(getInterconnections, routes, schedules, getRef(), probe.getRef()),
+          getRef());
+        // the direct flight is sent first, and only once even if calculated again
+        probe.expectMsgPF(duration("2 seconds"), "Should receive the direct flight first", (msg) -> {
+          InterconnFlights interconnFlights = (InterconnFlights) msg;
+          Assert.assertEquals(1, interconnFlights.getLegs().length);
+          Assert.assertEquals("1926", interconnFlights.getLegs()[0].getNumber());
+          return null;
+        });
+        probe.expectMsgEquals(duration("2 seconds"), new Status.Success(1));
+
+        expectMsgClass(InterconnectionsCompleted.class);
         expectNoMessage();
         return null;
       });
@@ -2,6 +2,8 @@ package com.javaigua.interconnFlights.actors;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -68,4 +70,57 @@ public class InterconnFlightsFinderActorTest extends JUnitSuite {
       });
     }};
   }
+
+  @Test
+  public void testHandleGetBatchInterconnections() {
+    new TestKit(system) {{
+      final Props props = Props.create(InterconnFlightsFinderActor.class);
+      final ActorRef subject = system.actorOf(props);
+      final FiniteDuration duration = FiniteDuration.create(config.getInt("application.timeout-millis"),
+        TimeUnit.MILLISECONDS);
+
+      GetInterconnections first = new GetInterconnections("DUB","WRO", LocalDateTime.now(),
+        LocalDateTime.now().plus(2, ChronoUnit.DAYS));
+      GetInterconnections second = new GetInterconnections("DUB","WRO", LocalDateTime.now().plus(1, ChronoUnit.DAYS),
+        LocalDateTime.now().plus(3, ChronoUnit.DAYS));
+
+      subject.tell(new GetBatchInterconnections(Arrays.asList(first, second)), getRef());
+      expectMsgPF(duration, "Should receive the results in the order of the queries", (msg) -> {
+        List<Object> results = (List<Object>) msg;
+        Assert.assertEquals(2, results.size());
+        Assert.assertTrue(results.get(0) instanceof Set);
+        Assert.assertTrue(results.get(1) instanceof Set);
+        return null;
+      });
+
+      expectNoMessage();
+    }};
+  }
+
+  @Test
+  public void testHandleGetBatchInterconnectionsWithDuplicateQueries() {
+    new TestKit(system) {{
+      final Props props = Props.create(InterconnFlightsFinderActor.class);
+      final ActorRef subject = system.actorOf(props);
+      final FiniteDuration duration = FiniteDuration.create(config.getInt("application.timeout-millis"),
+        TimeUnit.MILLISECONDS);
+
+      LocalDateTime departure = LocalDateTime.now();
+      GetInterconnections query = new GetInterconnections("DUB","WRO", departure, departure.plus(2, ChronoUnit.DAYS));
+      // same look up name, to the hour
+      GetInterconnections duplicate = new GetInterconnections("DUB","WRO", departure,
+        departure.plus(2, ChronoUnit.DAYS));
+
+      subject.tell(new GetBatchInterconnections(Arrays.asList(query, duplicate, query)), getRef());
+      expectMsgPF(duration, "Should receive a result for every query", (msg) -> {
+        List<Object> results = (List<Object>) msg;
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(results.get(0), results.get(1));
+        Assert.assertEquals(results.get(0), results.get(2));
+        return null;
+      });
+
+      expectNoMessage();
+    }};
+  }
 }
@@ -0,0 +1,56 @@
+package com.javaigua.interconnFlights.algorithms;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.domain.Flight;
+
+/**
+ * A test suit for the CompactDigraph class.
+ */
+public class CompactDigraphTest extends JUnitSuite {
+
+  @Test
+  public void testEdgesAreLaidOutBySourceVertex() {
+    CompactDigraph.Builder builder = new CompactDigraph.Builder(4, 2);
+    builder.addEdge(2, 3, 100, builder.addFlight(new Flight("FR1", "06:00", "07:40")));
+    builder.addEdge(0, 1, 70, builder.addFlight(new Flight("FR2", "06:00", "07:10")));
+    builder.addEdge(2, 0, 90, builder.addFlight(new Flight("FR3", "08:00", "09:30")));
+    CompactDigraph digraph = builder.build();
+
+    Assert.assertEquals(4, digraph.V());
+    Assert.assertEquals(3, digraph.E());
+    Assert.assertEquals(1, digraph.outdegree(0));
+    Assert.assertEquals(0, digraph.outdegree(1));
+    Assert.assertEquals(2, digraph.outdegree(2));
+    Assert.assertEquals(0, digraph.outdegree(3));
+
+    // edges of vertex 2 keep their insertion order
+    int e = digraph.firstEdge(2);
+    Assert.assertEquals(3, digraph.to(e));
+    Assert.assertEquals(100, digraph.weight(e));
+    Assert.assertEquals("FR1", digraph.flight(e).getNumber());
+    Assert.assertEquals(2, digraph.from(e));
+    Assert.assertEquals("FR3", digraph.flight(e + 1).getNumber());
+    Assert.assertEquals(2, digraph.from(e + 1));
+    Assert.assertEquals(0, digraph.from(digraph.firstEdge(0)));
+  }
+
+  @Test
+  public void testConversionKeepsOriginalEdges() {
+    EdgeWeightedDigraph original = new EdgeWeightedDigraph(3);
+    DirectedEdge first = new DirectedEdge(1, 2, 45, new Flight("FR1", "06:00", "06:45"));
+    DirectedEdge second = new DirectedEdge(0, 1, 30, new Flight("FR2", "06:00", "06:30"));
+    original.addEdge(first);
+    original.addEdge(second);
+
+    CompactDigraph compact = CompactDigraph.from(original);
+    Assert.assertSame(second, compact.edge(compact.firstEdge(0)));
+    Assert.assertSame(first, compact.edge(compact.firstEdge(1)));
+
+    EdgeWeightedDigraph converted = compact.toEdgeWeightedDigraph();
+    Assert.assertEquals(2, converted.E());
+    Assert.assertEquals(1, converted.indegree(2));
+  }
+}
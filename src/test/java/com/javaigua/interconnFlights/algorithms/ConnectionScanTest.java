@@ -0,0 +1,159 @@
+package com.javaigua.interconnFlights.algorithms;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.domain.*;
+import com.javaigua.interconnFlights.synthetic.SyntheticNetwork;
+
+/**
+ * A test suit for the ConnectionScan class.
+ */
+public class ConnectionScanTest extends JUnitSuite {
+
+  private static final LocalDateTime FROM = LocalDateTime.of(2018, 4, 1, 0, 0);
+  private static final LocalDateTime TO = LocalDateTime.of(2018, 4, 1, 23, 59);
+
+  private static ConnectionScan createConnectionScan() {
+    LongObjectHashMap<Route> routes = new LongObjectHashMap<>();
+    LongObjectHashMap<List<MonthSchedule>> schedules = new LongObjectHashMap<>();
+    addRoute(routes, schedules, "DUB", "WRO", new Flight("FR1", "18:00", "21:30"));
+    addRoute(routes, schedules, "DUB", "STN",
+      new Flight("FR2", "06:00", "07:15"), new Flight("FR3", "08:00", "09:15"), new Flight("FR4", "09:00", "10:15"));
+    addRoute(routes, schedules, "STN", "WRO", new Flight("FR5", "10:30", "13:30"), new Flight("FR6", "12:00", "15:00"));
+    return new ConnectionScan(routes, schedules, YearMonth.of(2018, 4), YearMonth.of(2018, 4));
+  }
+
+  private static void addRoute(LongObjectHashMap<Route> routes, LongObjectHashMap<List<MonthSchedule>> schedules,
+                               String from, String to, Flight... flights) {
+    routes.put(AirportDictionary.routeKey(from, to), new Route(from, to, null, false, false, "RYANAIR", "GENERIC"));
+    schedules.put(AirportDictionary.routeKey(from, to), Arrays.asList(new MonthSchedule(4, Arrays.asList(
+      new DaySchedule(1, Arrays.asList(flights))))));
+  }
+
+  private static String numbers(ConnectionScan.Journey journey) {
+    StringBuilder sb = new StringBuilder();
+    for (ConnectionScan.Connection c : journey.legs()) sb.append(c.flight().getNumber()).append(" ");
+    return sb.toString().trim();
+  }
+
+  private static List<ConnectionScan.Journey> search(ConnectionScan cs, int minConnection, int maxLayover) {
+    return cs.search(cs.indexOf("DUB"), cs.indexOf("WRO"), ConnectionScan.toEpochMinute(FROM),
+      ConnectionScan.toEpochMinute(TO), minConnection, maxLayover);
+  }
+
+  @Test
+  public void testOnlyCatchableConnectionsAreFound() {
+    List<ConnectionScan.Journey> journeys = search(createConnectionScan(), 120, 1440);
+
+    // FR3 and FR4 land too late for FR5, FR4 lands too late for FR6 with 2 hours of minimum connection time
+    Assert.assertEquals(3, journeys.size());
+    Assert.assertEquals("FR2 FR5", numbers(journeys.get(0)));
+    Assert.assertEquals("FR3 FR6", numbers(journeys.get(1)));
+    Assert.assertEquals("FR1", numbers(journeys.get(2)));
+  }
+
+  @Test
+  public void testMaximumLayoverIsHonoured() {
+    List<ConnectionScan.Journey> journeys = search(createConnectionScan(), 60, 120);
+
+    // FR2 waits too long for FR5, FR3 to FR6 is dominated by FR4 to FR6
+    Assert.assertEquals(3, journeys.size());
+    Assert.assertEquals("FR3 FR5", numbers(journeys.get(0)));
+    Assert.assertEquals("FR4 FR6", numbers(journeys.get(1)));
+    Assert.assertEquals("FR1", numbers(journeys.get(2)));
+  }
+
+  @Test
+  public void testJourneysWithinTheWindowOnly() {
+    ConnectionScan cs = createConnectionScan();
+    List<ConnectionScan.Journey> journeys = cs.search(cs.indexOf("DUB"), cs.indexOf("WRO"),
+      ConnectionScan.toEpochMinute(LocalDateTime.of(2018, 4, 1, 7, 0)),
+      ConnectionScan.toEpochMinute(LocalDateTime.of(2018, 4, 1, 21, 0)), 120, 1440);
+
+    // FR2 departs too early and FR1 arrives too late
+    Assert.assertEquals(1, journeys.size());
+    Assert.assertEquals("FR3 FR6", numbers(journeys.get(0)));
+    Assert.assertEquals(LocalDateTime.of(2018, 4, 1, 8, 0),
+      ConnectionScan.toLocalDateTime(journeys.get(0).departure()));
+  }
+
+  @Test
+  public void testDailySearchSweepsEveryDayWindow() {
+    ConnectionScan cs = createConnectionScan();
+    List<List<ConnectionScan.Journey>> days = cs.searchDaily(cs.indexOf("DUB"), cs.indexOf("WRO"),
+      ConnectionScan.toEpochMinute(LocalDateTime.of(2018, 3, 31, 6, 0)), 18 * 60, 2, 120, 1440);
+
+    // only April 1st has flights, from 06:00 to 24:00
+    Assert.assertEquals(2, days.size());
+    Assert.assertTrue(days.get(0).isEmpty());
+    Assert.assertEquals(3, days.get(1).size());
+    Assert.assertEquals("FR2 FR5", numbers(days.get(1).get(0)));
+  }
+
+  @Test
+  public void testDailySearchFindsTheSameJourneysAsEveryDaySearch() {
+    SyntheticNetwork network = new SyntheticNetwork(30, 300, 4, 1, 7L);
+    ConnectionScan cs = new ConnectionScan(network.getRoutesByKey(), network.getSchedules(), network.getFirstMonth(),
+      network.getLastMonth());
+    long firstWindowStart = ConnectionScan.toEpochMinute(network.getFirstMonth().atDay(1).atTime(22, 0));
+    int days = network.getFirstMonth().lengthOfMonth();
+    // overnight windows, from 22:00 to 10:00 of the next day
+    int windowMinutes = 12 * 60;
+
+    for (Route route : network.getRoutes().subList(0, 20)) {
+      int source = cs.indexOf(route.getAirportFrom());
+      int target = cs.indexOf(network.getRoutes().get((source * 31) % network.getRoutes().size()).getAirportTo());
+      if (source == target) continue;
+      List<List<ConnectionScan.Journey>> daily = cs.searchDaily(source, target, firstWindowStart, windowMinutes, days,
+        60, 1440);
+      Assert.assertEquals(days, daily.size());
+      for (int day = 0; day < days; day++) {
+        long windowStart = firstWindowStart + day * 24 * 60;
+        List<ConnectionScan.Journey> expected = cs.search(source, target, windowStart, windowStart + windowMinutes,
+          60, 1440);
+        Assert.assertEquals(expected.size(), daily.get(day).size());
+        for (int i = 0; i < expected.size(); i++) {
+          Assert.assertEquals(numbers(expected.get(i)), numbers(daily.get(day).get(i)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testParallelSearchFindsTheSameJourneys() {
+    SyntheticNetwork network = new SyntheticNetwork(30, 300, 4, 1, 7L);
+    ConnectionScan cs = new ConnectionScan(network.getRoutesByKey(), network.getSchedules(), network.getFirstMonth(),
+      network.getLastMonth());
+    long windowStart = ConnectionScan.toEpochMinute(network.getFirstMonth().atDay(1).atStartOfDay());
+    long windowEnd = ConnectionScan.toEpochMinute(network.getLastMonth().atEndOfMonth().atTime(23, 59));
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      for (Route route : network.getRoutes()) {
+        int source = cs.indexOf(route.getAirportFrom());
+        for (int hops = 0; hops < 3; hops++) {
+          int target = cs.indexOf(network.getRoutes().get((source * 31 + hops) % network.getRoutes().size())
+            .getAirportTo());
+          if (source == target) continue;
+          List<ConnectionScan.Journey> sequential = cs.search(source, target, windowStart, windowEnd, 60, 1440);
+          List<ConnectionScan.Journey> parallel = cs.search(source, target, windowStart, windowEnd, 60, 1440, pool);
+          Assert.assertEquals(sequential.size(), parallel.size());
+          for (int i = 0; i < sequential.size(); i++) {
+            Assert.assertEquals(numbers(sequential.get(i)), numbers(parallel.get(i)));
+            Assert.assertEquals(sequential.get(i).departure(), parallel.get(i).departure());
+          }
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.javaigua.interconnFlights.algorithms;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.domain.Flight;
+
+/**
+ * A test suit for the KShortestPaths class.
+ */
+public class KShortestPathsTest extends JUnitSuite {
+
+  private static final int DUB = 0;
+  private static final int STN = 1;
+  private static final int BCN = 2;
+  private static final int WRO = 3;
+
+  private static EdgeWeightedDigraph createDigraph() {
+    EdgeWeightedDigraph digraph = new EdgeWeightedDigraph(4);
+    digraph.addEdge(new DirectedEdge(DUB, WRO, 200, new Flight("FR1", "06:00", "09:20")));
+    digraph.addEdge(new DirectedEdge(DUB, STN, 70, new Flight("FR2", "06:00", "07:10")));
+    digraph.addEdge(new DirectedEdge(DUB, STN, 80, new Flight("FR3", "08:00", "09:20")));
+    digraph.addEdge(new DirectedEdge(DUB, STN, 90, new Flight("FR4", "10:00", "11:30")));
+    digraph.addEdge(new DirectedEdge(STN, WRO, 100, new Flight("FR5", "12:00", "13:40")));
+    digraph.addEdge(new DirectedEdge(DUB, BCN, 10, new Flight("FR6", "06:00", "06:10")));
+    digraph.addEdge(new DirectedEdge(BCN, STN, 10, new Flight("FR7", "08:00", "08:10")));
+    return digraph;
+  }
+
+  private static String numbers(KShortestPaths.Path path) {
+    StringBuilder sb = new StringBuilder();
+    for (DirectedEdge e : path.getPath()) sb.append(e.flight().getNumber()).append(" ");
+    return sb.toString().trim();
+  }
+
+  @Test
+  public void testPathsInIncreasingWeightOrder() {
+    List<KShortestPaths.Path> paths = KShortestPaths.getKShortestPaths(createDigraph(), DUB, WRO, 3, 2);
+
+    Assert.assertEquals(3, paths.size());
+    Assert.assertEquals("FR2 FR5", numbers(paths.get(0)));
+    Assert.assertEquals("FR3 FR5", numbers(paths.get(1)));
+    Assert.assertEquals("FR4 FR5", numbers(paths.get(2)));
+  }
+
+  @Test
+  public void testMaximumLegsIsHonoured() {
+    List<KShortestPaths.Path> twoLegs = KShortestPaths.getKShortestPaths(createDigraph(), DUB, WRO, 1, 2);
+    Assert.assertEquals("FR2 FR5", numbers(twoLegs.get(0)));
+
+    List<KShortestPaths.Path> threeLegs = KShortestPaths.getKShortestPaths(createDigraph(), DUB, WRO, 1, 3);
+    Assert.assertEquals("FR6 FR7 FR5", numbers(threeLegs.get(0)));
+    Assert.assertEquals(3, threeLegs.get(0).legs());
+
+    List<KShortestPaths.Path> oneLeg = KShortestPaths.getKShortestPaths(createDigraph(), DUB, WRO, 5, 1);
+    Assert.assertEquals(1, oneLeg.size());
+    Assert.assertEquals("FR1", numbers(oneLeg.get(0)));
+  }
+}
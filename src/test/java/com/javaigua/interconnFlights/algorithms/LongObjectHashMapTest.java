@@ -0,0 +1,76 @@
+package com.javaigua.interconnFlights.algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.domain.AirportDictionary;
+
+/**
+ * A test suit for the LongObjectHashMap class.
+ */
+public class LongObjectHashMapTest extends JUnitSuite {
+
+  @Test
+  public void testPutAndGet() {
+    LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    Assert.assertTrue(map.isEmpty());
+    Assert.assertNull(map.put(0L, "zero"));
+    Assert.assertNull(map.put(-1L, "minus one"));
+    Assert.assertNull(map.put(Long.MAX_VALUE, "max"));
+
+    Assert.assertEquals(3, map.size());
+    Assert.assertEquals("zero", map.get(0L));
+    Assert.assertEquals("minus one", map.get(-1L));
+    Assert.assertEquals("max", map.get(Long.MAX_VALUE));
+    Assert.assertNull(map.get(1L));
+    Assert.assertFalse(map.containsKey(1L));
+
+    // replacing keeps the size and the insertion order
+    Assert.assertEquals("zero", map.put(0L, "0"));
+    Assert.assertEquals(3, map.size());
+    Assert.assertEquals("0", map.values().get(0));
+    Assert.assertEquals("0", map.computeIfAbsent(0L, k -> "other"));
+    Assert.assertEquals("1", map.computeIfAbsent(1L, Long::toString));
+    Assert.assertEquals(4, map.size());
+  }
+
+  @Test
+  public void testGrowsKeepingInsertionOrder() {
+    LongObjectHashMap<Integer> map = new LongObjectHashMap<>(1);
+    for (int i = 0; i < 1000; i++) {
+      map.put(AirportDictionary.routeKey(i % 37, i), i);
+    }
+
+    Assert.assertEquals(1000, map.size());
+    List<Integer> values = new ArrayList<>();
+    map.forEach((key, value) -> {
+      Assert.assertEquals(value.intValue(), AirportDictionary.arrivalOf(key));
+      Assert.assertEquals(value % 37, AirportDictionary.departureOf(key));
+      values.add(value);
+    });
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i, values.get(i).intValue());
+      Assert.assertEquals(i, map.get(AirportDictionary.routeKey(i % 37, i)).intValue());
+    }
+    Assert.assertEquals(map.values(), values);
+  }
+
+  @Test
+  public void testEquality() {
+    LongObjectHashMap<String> a = new LongObjectHashMap<>();
+    LongObjectHashMap<String> b = new LongObjectHashMap<>();
+    a.put(1L, "one");
+    a.put(2L, "two");
+    b.put(2L, "two");
+    b.put(1L, "one");
+
+    Assert.assertEquals(a, b);
+    Assert.assertEquals(a.hashCode(), b.hashCode());
+    b.put(1L, "uno");
+    Assert.assertFalse(a.equals(b));
+  }
+}
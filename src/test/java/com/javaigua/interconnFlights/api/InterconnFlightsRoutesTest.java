@@ -1,19 +1,29 @@
 package com.javaigua.interconnFlights.api;
 
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import scala.concurrent.duration.FiniteDuration;
 
+import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.Status;
 import akka.http.javadsl.testkit.JUnitRouteTest;
 import akka.http.javadsl.testkit.TestRoute;
+import akka.http.javadsl.model.ContentTypes;
 import akka.http.javadsl.model.HttpRequest;
 import akka.http.javadsl.model.StatusCodes;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
@@ -24,12 +34,26 @@ import com.javaigua.interconnFlights.actors.InterconnFlightsFinderActor;
  */
 public class InterconnFlightsRoutesTest extends JUnitRouteTest {
 
+  private ActorSystem system;
   private TestRoute appRoute;
 
+  /**
+   * A finder with no query slot left, rejecting every query.
+   */
+  public static class SaturatedFinder extends AbstractActor {
+    @Override
+    public Receive createReceive() {
+      return receiveBuilder()
+        .matchAny(query -> getSender().tell(new Status.Failure(
+          new RejectedExecutionException("Too many interconnections queries in flight")), getSelf()))
+        .build();
+    }
+  }
+
   @Before
   public void initClass() {
     final Config config = ConfigFactory.load("reference");
-    ActorSystem system = ActorSystem.create(config.getString("application.name"), config);
+    system = ActorSystem.create(config.getString("application.name"), config);
     ActorRef interconnFlightsFinderActor = system.actorOf(InterconnFlightsFinderActor.props(), "interconnFlightsFinder");
     InterconnFlightsServer server = new InterconnFlightsServer(system, interconnFlightsFinderActor);
     appRoute = testRoute(server.createRoute());
@@ -48,4 +72,92 @@ public class InterconnFlightsRoutesTest extends JUnitRouteTest {
       .assertStatusCode(StatusCodes.OK)
       .assertMediaType("application/json");
   }
+
+  @Test
+  public void testInterconnectionsVersionGET() {
+    appRoute.run(HttpRequest.GET("/interconnections?departure=DUB&arrival=WRO&" +
+      "departureDateTime=2018-03-29T00:00&arrivalDateTime=2018-04-01T23:59&version=1"))
+      .assertStatusCode(StatusCodes.OK)
+      .assertHeaderExists("Interconnections-Version", "1");
+
+    // dated interconnections need the connection-scan engine
+    appRoute.run(HttpRequest.GET("/interconnections?departure=DUB&arrival=WRO&" +
+      "departureDateTime=2018-03-29T00:00&arrivalDateTime=2018-04-01T23:59&version=2"))
+      .assertStatusCode(StatusCodes.BAD_REQUEST);
+  }
+
+  @Test
+  public void testHandleInterconnectionsStreamGET() {
+    appRoute.run(HttpRequest.GET("/interconnections?departure=DUB&arrival=WRO&" +
+      "departureDateTime=2018-03-29T00:00&arrivalDateTime=2018-04-01T23:59&stream=true"))
+      .assertStatusCode(StatusCodes.OK)
+      .assertMediaType("application/x-ndjson");
+  }
+
+  @Test
+  public void testRejectInterconnectionsStreamGETWhenSaturated() {
+    ActorRef saturatedFinder = system.actorOf(Props.create(SaturatedFinder.class));
+    TestRoute saturatedRoute = testRoute(new InterconnFlightsServer(system, saturatedFinder).createRoute());
+
+    saturatedRoute.run(HttpRequest.GET("/interconnections?departure=DUB&arrival=WRO&" +
+      "departureDateTime=2018-03-29T00:00&arrivalDateTime=2018-04-01T23:59&stream=true"))
+      .assertStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+  }
+
+  @Test
+  public void testHandleBatchInterconnectionsPOST() {
+    appRoute.run(HttpRequest.POST("/interconnections/batch").withEntity(ContentTypes.APPLICATION_JSON,
+      "[{\"departure\":\"DUB\",\"arrival\":\"WRO\",\"departureDateTime\":\"2018-03-29T00:00\"," +
+        "\"arrivalDateTime\":\"2018-04-01T23:59\"}," +
+        "{\"departure\":\"DUB\",\"arrival\":\"WRO\",\"departureDateTime\":\"2018-03-30T00:00\"," +
+        "\"arrivalDateTime\":\"2018-04-02T23:59\"}]"))
+      .assertStatusCode(StatusCodes.OK)
+      .assertMediaType("application/json");
+  }
+
+  @Test
+  public void testBatchInterconnectionsWithDuplicateQueriesPOST() throws IOException {
+    final String query = "{\"departure\":\"DUB\",\"arrival\":\"WRO\",\"departureDateTime\":\"2018-03-29T00:00\"," +
+      "\"arrivalDateTime\":\"2018-04-01T23:59\"}";
+    final String body = appRoute.run(HttpRequest.POST("/interconnections/batch")
+      .withEntity(ContentTypes.APPLICATION_JSON, "[" + query + "," + query + "]"))
+      .assertStatusCode(StatusCodes.OK)
+      .entityString();
+
+    // one answer per query, in their order
+    final JsonNode results = new ObjectMapper().readTree(body);
+    Assert.assertTrue(results.isArray());
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals(results.get(0), results.get(1));
+  }
+
+  @Test
+  public void testRejectInvalidBatchInterconnectionsPOST() {
+    appRoute.run(HttpRequest.POST("/interconnections/batch").withEntity(ContentTypes.APPLICATION_JSON,
+      "[{\"departure\":\"DUB\",\"arrival\":\"WRO\",\"departureDateTime\":\"2018-04-01T00:00\"," +
+        "\"arrivalDateTime\":\"2018-03-29T23:59\"}]"))
+      .assertStatusCode(StatusCodes.BAD_REQUEST);
+  }
+
+  @Test
+  public void testHandleCalendarInterconnectionsGET() {
+    appRoute.run(HttpRequest.GET("/interconnections/calendar?departure=DUB&arrival=WRO&" +
+      "firstDate=2018-03-29&lastDate=2018-04-05&departureTime=06:00&arrivalTime=23:59"))
+      .assertStatusCode(StatusCodes.OK)
+      .assertMediaType("application/json");
+  }
+
+  @Test
+  public void testRejectInvalidCalendarInterconnectionsGET() {
+    appRoute.run(HttpRequest.GET("/interconnections/calendar?departure=DUB&arrival=WRO&" +
+      "firstDate=2018-04-05&lastDate=2018-03-29"))
+      .assertStatusCode(StatusCodes.BAD_REQUEST);
+  }
+
+  @Test
+  public void testHandleMetricsGET() {
+    appRoute.run(HttpRequest.GET("/metrics"))
+      .assertStatusCode(StatusCodes.OK)
+      .assertMediaType("text/plain");
+  }
 }
@@ -0,0 +1,69 @@
+package com.javaigua.interconnFlights.catalog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.domain.Route;
+
+/**
+ * A test suit for the RoutesParser class.
+ */
+public class RoutesParserTest extends JUnitSuite {
+
+  private static final String ROUTES = "[" +
+    "{\"airportFrom\":\"DUB\",\"airportTo\":\"WRO\",\"connectingAirport\":null,\"newRoute\":false," +
+    "\"seasonalRoute\":true,\"operator\":\"RYANAIR\",\"group\":\"GENERIC\"}," +
+    "{\"airportFrom\":\"DUB\",\"airportTo\":\"BCN\",\"connectingAirport\":\"STN\",\"newRoute\":false," +
+    "\"seasonalRoute\":false,\"operator\":\"RYANAIR\",\"group\":\"GENERIC\"}," +
+    "{\"connectingAirport\":null,\"tags\":[\"a\",{\"b\":[1,2]}],\"similarArrivalAirportCodes\":[]," +
+    "\"airportTo\":\"STN\",\"airportFrom\":\"MAD\",\"operator\":\"RYANAIR\",\"group\":\"ETHNIC\"}," +
+    "{\"airportFrom\":null,\"airportTo\":null,\"connectingAirport\":null}," +
+    "{\"airportFrom\":\"DUB\",\"airportTo\":null,\"connectingAirport\":null}" +
+    "]";
+
+  @Test
+  public void testParsesOnlyDirectRoutes() throws IOException {
+    RoutesParser parser = new RoutesParser();
+    List<Route> routes = parser.feed(ROUTES.getBytes(StandardCharsets.UTF_8)).finish();
+
+    Assert.assertEquals(2, routes.size());
+    Assert.assertEquals(3, parser.getSkipped());
+
+    Route first = routes.get(0);
+    Assert.assertEquals("DUB", first.getAirportFrom());
+    Assert.assertEquals("WRO", first.getAirportTo());
+    Assert.assertNull(first.getConnectingAirport());
+    Assert.assertEquals(Boolean.FALSE, first.getNewRoute());
+    Assert.assertEquals(Boolean.TRUE, first.getSeasonalRoute());
+    Assert.assertEquals("RYANAIR", first.getOperator());
+
+    Route second = routes.get(1);
+    Assert.assertEquals("MAD", second.getAirportFrom());
+    Assert.assertEquals("STN", second.getAirportTo());
+    Assert.assertEquals("ETHNIC", second.getGroup());
+  }
+
+  @Test
+  public void testParsesChunksSplitAnywhere() throws IOException {
+    byte[] bytes = ROUTES.getBytes(StandardCharsets.UTF_8);
+    for (int split = 1; split < bytes.length; split++) {
+      List<Route> routes = new RoutesParser()
+        .feed(Arrays.copyOfRange(bytes, 0, split))
+        .feed(Arrays.copyOfRange(bytes, split, bytes.length))
+        .finish();
+      Assert.assertEquals("split at " + split, 2, routes.size());
+      Assert.assertEquals("MAD", routes.get(1).getAirportFrom());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testFailsOnTruncatedResponse() throws IOException {
+    new RoutesParser().feed(ROUTES.substring(0, ROUTES.length() / 2).getBytes(StandardCharsets.UTF_8)).finish();
+  }
+}
@@ -0,0 +1,58 @@
+package com.javaigua.interconnFlights.catalog;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.domain.Route;
+
+/**
+ * A test suit for the RoutesSnapshot class.
+ */
+public class RoutesSnapshotTest extends JUnitSuite {
+
+  private static Route route(String from, String to) {
+    return new Route(from, to, null, false, false, "RYANAIR", "GENERIC");
+  }
+
+  @Test
+  public void testCandidateRoutesThroughSharedHubsOnly() {
+    RoutesSnapshot snapshot = new RoutesSnapshot(Arrays.asList(
+      route("DUB", "WRO"),
+      route("DUB", "STN"), route("STN", "WRO"),  // STN is a viable hub
+      route("DUB", "BCN"),                       // no BCN -> WRO route
+      route("MAD", "WRO"),                       // no DUB -> MAD route
+      route("STN", "BCN")), Instant.now());
+
+    List<String> candidates = snapshot.getCandidateRoutes("DUB", "WRO").stream()
+      .map(r -> r.getAirportFrom() + "_" + r.getAirportTo())
+      .collect(Collectors.toList());
+
+    Assert.assertEquals(Arrays.asList("DUB_WRO", "DUB_STN", "STN_WRO"), candidates);
+  }
+
+  @Test
+  public void testNoCandidateRoutesForUnknownAirports() {
+    RoutesSnapshot snapshot = new RoutesSnapshot(Arrays.asList(route("DUB", "STN")), Instant.now());
+    Assert.assertTrue(snapshot.getCandidateRoutes("XXX", "STN").isEmpty());
+    Assert.assertTrue(RoutesSnapshot.EMPTY.getCandidateRoutes("DUB", "STN").isEmpty());
+  }
+
+  @Test
+  public void testRoutesMissingAnAirportAreDropped() {
+    RoutesSnapshot snapshot = new RoutesSnapshot(Arrays.asList(
+      route("DUB", "STN"), route("STN", "WRO"),
+      route("DUB", null), route(null, "WRO")), Instant.now());
+
+    Assert.assertEquals(2, snapshot.size());
+    List<String> candidates = snapshot.getCandidateRoutes("DUB", "WRO").stream()
+      .map(r -> r.getAirportFrom() + "_" + r.getAirportTo())
+      .collect(Collectors.toList());
+    Assert.assertEquals(Arrays.asList("DUB_STN", "STN_WRO"), candidates);
+  }
+}
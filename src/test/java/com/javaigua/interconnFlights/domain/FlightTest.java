@@ -0,0 +1,48 @@
+package com.javaigua.interconnFlights.domain;
+
+import java.time.LocalTime;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A test suit for the Flight class.
+ */
+public class FlightTest extends JUnitSuite {
+
+  @Test
+  public void testTimesAreParsedIntoMinutesOfDay() {
+    Flight flight = new Flight("FR1", "06:05", "23:59");
+    Assert.assertEquals(365, flight.getDepartureMinute());
+    Assert.assertEquals(1439, flight.getArrivalMinute());
+    Assert.assertEquals(1074, flight.getDurationMinutes());
+    Assert.assertEquals(LocalTime.of(6, 5), flight.getDepartureLocalTime());
+    Assert.assertEquals(LocalTime.of(23, 59), flight.getArrivalLocalTime());
+
+    // different date departure and arrival
+    Flight overnight = new Flight("FR2", "23:30", "01:10");
+    Assert.assertEquals(100, overnight.getDurationMinutes());
+
+    // not HH:mm times fall back to ISO parsing
+    Flight withSeconds = new Flight("FR3", "07:15:30", "09:00");
+    Assert.assertEquals(435, withSeconds.getDepartureMinute());
+  }
+
+  @Test
+  public void testJsonShapeIsKept() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    Flight flight = mapper.readValue("{\"number\":\"1926\",\"departureTime\":\"17:50\",\"arrivalTime\":\"21:25\"}",
+      Flight.class);
+    Assert.assertEquals("1926", flight.getNumber());
+    Assert.assertEquals(17 * 60 + 50, flight.getDepartureMinute());
+    Assert.assertEquals(21 * 60 + 25, flight.getArrivalMinute());
+
+    String json = mapper.writeValueAsString(flight);
+    Assert.assertFalse(json.contains("Minute"));
+    Assert.assertFalse(json.contains("durationMinutes"));
+    Assert.assertTrue(json.contains("\"departureTime\":\"17:50\""));
+  }
+}
@@ -0,0 +1,38 @@
+package com.javaigua.interconnFlights.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+/**
+ * A test suit for the InterconnFlights class.
+ */
+public class InterconnFlightsTest extends JUnitSuite {
+
+  private static InterconnFlights dated(String day) {
+    return new InterconnFlights("FR1@" + day + "T06:05_FR2@" + day + "T10:30", new InterconnFlight[] {
+      new InterconnFlight("FR1", "DUB", "STN", day + "T06:05", day + "T07:20"),
+      new InterconnFlight("FR2", "STN", "WRO", day + "T10:30", day + "T13:45")});
+  }
+
+  @Test
+  public void testUndatedFormatIsTheKShortestOne() {
+    InterconnFlights undated = dated("2018-04-01").undated();
+
+    Assert.assertEquals("FR1_FR2", undated.getId());
+    Assert.assertEquals(2, undated.getStops().intValue());
+    Assert.assertEquals("06:05", undated.getLegs()[0].getDepartureDateTime());
+    Assert.assertEquals("07:20", undated.getLegs()[0].getArrivalDateTime());
+    Assert.assertEquals("STN", undated.getLegs()[1].getDepartureAirport());
+    Assert.assertEquals("13:45", undated.getLegs()[1].getArrivalDateTime());
+
+    // already undated interconnections are kept
+    Assert.assertEquals("13:45", undated.undated().getLegs()[1].getArrivalDateTime());
+  }
+
+  @Test
+  public void testSameFlightsOnDifferentDaysAreEqualOnceUndated() {
+    Assert.assertFalse(dated("2018-04-01").equals(dated("2018-04-02")));
+    Assert.assertEquals(dated("2018-04-01").undated(), dated("2018-04-02").undated());
+  }
+}
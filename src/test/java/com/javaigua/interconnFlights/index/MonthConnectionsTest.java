@@ -0,0 +1,153 @@
+package com.javaigua.interconnFlights.index;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.algorithms.ConnectionScan;
+import com.javaigua.interconnFlights.catalog.RoutesSnapshot;
+import com.javaigua.interconnFlights.domain.*;
+import com.javaigua.interconnFlights.synthetic.SyntheticNetwork;
+import com.javaigua.interconnFlights.timetable.ScheduleDiff;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+
+/**
+ * A test suit for the MonthConnections class.
+ */
+public class MonthConnectionsTest extends JUnitSuite {
+
+  private static MonthConnections build(SyntheticNetwork network, RoutesSnapshot snapshot, String departure,
+                                        String arrival, YearMonth month) {
+    List<Route> routes = snapshot.getCandidateRoutes(departure, arrival);
+    return MonthConnections.build(new ScheduleKey(departure, arrival, month.getYear(), month.getMonthValue()), routes,
+      schedules(network, routes, month), 60, 1440);
+  }
+
+  private static Map<ScheduleKey, MonthSchedule> schedules(SyntheticNetwork network, List<Route> routes,
+                                                           YearMonth month) {
+    Map<ScheduleKey, MonthSchedule> schedules = new HashMap<>();
+    for (Route route : routes) {
+      for (ScheduleKey key : MonthConnections.scheduleKeys(route, month)) {
+        schedules.put(key, network.getMonthSchedule(key.getDeparture(), key.getArrival(),
+          YearMonth.of(key.getYear(), key.getMonth())));
+      }
+    }
+    return schedules;
+  }
+
+  private static List<String> journeys(MonthConnections month) {
+    return month.getJourneys().stream().map(Object::toString).sorted().collect(Collectors.toList());
+  }
+
+  private static List<String> ids(List<InterconnFlights> interconnFlights) {
+    return interconnFlights.stream().map(InterconnFlights::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testLookupFindsTheSameJourneysAsSearch() {
+    SyntheticNetwork network = new SyntheticNetwork(30, 300, 4, 2, 11L);
+    RoutesSnapshot snapshot = new RoutesSnapshot(network.getRoutes(), Instant.EPOCH);
+    ConnectionScan cs = new ConnectionScan(network.getRoutesByKey(), network.getSchedules(), network.getFirstMonth(),
+      network.getLastMonth());
+    Random random = new Random(11L);
+    int found = 0;
+
+    for (Route route : network.getRoutes().subList(0, 30)) {
+      String departure = route.getAirportFrom();
+      String arrival = network.getRoutes().get(random.nextInt(network.getRoutes().size())).getAirportTo();
+      if (departure.equals(arrival) || !cs.contains(arrival)) continue;
+      List<MonthConnections> months = Arrays.asList(
+        build(network, snapshot, departure, arrival, network.getFirstMonth()),
+        build(network, snapshot, departure, arrival, network.getLastMonth()));
+
+      for (int window = 0; window < 10; window++) {
+        // windows of up to three days, some of them across the end of the first month
+        LocalDateTime start = network.getFirstMonth().atDay(1).atStartOfDay().plusMinutes(random.nextInt(55 * 24 * 60));
+        long windowStart = ConnectionScan.toEpochMinute(start);
+        long windowEnd = windowStart + random.nextInt(3 * 24 * 60);
+        List<InterconnFlights> expected = cs.search(cs.indexOf(departure), cs.indexOf(arrival), windowStart,
+          windowEnd, 60, 1440).stream()
+          .map(journey -> ConnectionScan.toInterconnFlights(journey, cs::nameOf))
+          .collect(Collectors.toList());
+
+        Assert.assertEquals(ids(expected), ids(MonthConnections.lookup(months, windowStart, windowEnd)));
+        found += expected.size();
+      }
+    }
+    Assert.assertTrue(found > 0);
+  }
+
+  @Test
+  public void testChangedSchedulesAreDetected() {
+    SyntheticNetwork network = new SyntheticNetwork(30, 300, 4, 1, 7L);
+    RoutesSnapshot snapshot = new RoutesSnapshot(network.getRoutes(), Instant.EPOCH);
+    Route route = network.getRoutes().get(0);
+    MonthConnections month = build(network, snapshot, route.getAirportFrom(), route.getAirportTo(),
+      network.getFirstMonth());
+
+    ScheduleKey key = MonthConnections.scheduleKeys(route, network.getFirstMonth()).get(0);
+    MonthSchedule schedule = network.getMonthSchedule(route.getAirportFrom(), route.getAirportTo(),
+      network.getFirstMonth());
+    Assert.assertTrue(month.getScheduleKeys().contains(key));
+    Assert.assertTrue(month.isBuiltFrom(key, schedule));
+
+    // the first flight of the first day departs a minute later
+    List<DaySchedule> days = new ArrayList<>(schedule.getDays());
+    List<Flight> flights = new ArrayList<>(days.get(0).getFlights());
+    Flight flight = flights.get(0);
+    int departure = flight.getDepartureMinute() + 1;
+    flights.set(0, new Flight(flight.getNumber(), String.format("%02d:%02d", departure / 60, departure % 60),
+      flight.getArrivalTime()));
+    days.set(0, new DaySchedule(days.get(0).getDay(), flights));
+    Assert.assertFalse(month.isBuiltFrom(key, new MonthSchedule(schedule.getMonth(), days)));
+  }
+
+  @Test
+  public void testUpdateFindsTheSameJourneysAsBuild() {
+    SyntheticNetwork network = new SyntheticNetwork(30, 300, 4, 2, 11L);
+    RoutesSnapshot snapshot = new RoutesSnapshot(network.getRoutes(), Instant.EPOCH);
+    YearMonth month = network.getFirstMonth();
+    int updated = 0;
+
+    for (Route route : network.getRoutes().subList(0, 30)) {
+      String departure = route.getAirportFrom();
+      String arrival = network.getRoutes().get(updated * 7 % network.getRoutes().size()).getAirportTo();
+      List<Route> routes = snapshot.getCandidateRoutes(departure, arrival);
+      if (departure.equals(arrival) || routes.isEmpty()) continue;
+      Map<ScheduleKey, MonthSchedule> schedules = schedules(network, routes, month);
+      MonthConnections previous = MonthConnections.build(
+        new ScheduleKey(departure, arrival, month.getYear(), month.getMonthValue()), routes, schedules, 60, 1440);
+      if (previous.size() == 0) continue;
+
+      // the first flight of a day in the middle of the month of a candidate route departs two hours earlier
+      ScheduleKey changedKey = MonthConnections.scheduleKeys(routes.get(updated % routes.size()), month).get(0);
+      MonthSchedule schedule = schedules.get(changedKey);
+      List<DaySchedule> days = new ArrayList<>(schedule.getDays());
+      int day = days.size() / 2;
+      if (days.isEmpty() || days.get(day).getFlights().isEmpty()) continue;
+      List<Flight> flights = new ArrayList<>(days.get(day).getFlights());
+      Flight flight = flights.get(0);
+      int departureMinute = Math.max(0, flight.getDepartureMinute() - 120);
+      flights.set(0, new Flight(flight.getNumber(),
+        String.format("%02d:%02d", departureMinute / 60, departureMinute % 60), flight.getArrivalTime()));
+      days.set(day, new DaySchedule(days.get(day).getDay(), flights));
+      MonthSchedule changed = new MonthSchedule(schedule.getMonth(), days);
+      schedules.put(changedKey, changed);
+
+      ScheduleDiff changes = ScheduleDiff.between(schedule, changed);
+      Assert.assertArrayEquals(new int[] {days.get(day).getDay()}, changes.getChangedDays());
+      MonthConnections built = MonthConnections.build(previous.getKey(), routes, schedules, 60, 1440);
+      MonthConnections update = MonthConnections.update(previous, routes, schedules, changedKey, changes, 60, 1440);
+      Assert.assertEquals(journeys(built), journeys(update));
+      Assert.assertTrue(update.isBuiltFrom(changedKey, changed));
+      updated++;
+    }
+    Assert.assertTrue(updated > 0);
+  }
+}
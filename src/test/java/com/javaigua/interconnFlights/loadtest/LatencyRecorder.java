@@ -0,0 +1,46 @@
+package com.javaigua.interconnFlights.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread safe recorder of request latencies, with exact percentiles of all the recorded values.
+ */
+public class LatencyRecorder {
+
+  private long[] latencies = new long[1024];
+  private int count;
+
+  public synchronized void record(long latencyNanos) {
+    if (count == latencies.length) {
+      latencies = Arrays.copyOf(latencies, count * 2);
+    }
+    latencies[count++] = latencyNanos;
+  }
+
+  public synchronized int count() {
+    return count;
+  }
+
+  public synchronized void reset() {
+    count = 0;
+  }
+
+  /**
+   * Provides a snapshot of the recorded latencies, sorted.
+   */
+  public synchronized long[] sorted() {
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  /**
+   * Nearest-rank percentile of the given sorted latencies, in milliseconds.
+   */
+  public static double percentileMillis(long[] sorted, double percentile) {
+    if (sorted.length == 0) return 0D;
+    int rank = (int) Math.ceil(percentile / 100D * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
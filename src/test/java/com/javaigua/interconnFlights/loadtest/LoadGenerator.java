@@ -0,0 +1,167 @@
+package com.javaigua.interconnFlights.loadtest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import akka.actor.ActorSystem;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.model.HttpRequest;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+
+/**
+ * A load generator of http GET requests, in closed or open loop.
+ *
+ * In closed loop a fixed number of clients send a request as soon as their previous one completes, so the offered
+ * load adapts to the service and latencies are measured from the actual send instant.
+ *
+ * In open loop requests are sent at a fixed rate regardless of the completion of previous ones, and latencies are
+ * measured from the intended send instant, so a stalled service shows up in the percentiles instead of silently
+ * reducing the load (coordinated omission). Requests that would exceed the maximum in flight are dropped and counted.
+ */
+public class LoadGenerator {
+
+  public enum Mode { CLOSED, OPEN }
+
+  /**
+   * The outcome of a load generator run.
+   */
+  public static class Report {
+    private final Mode mode;
+    private final long durationNanos;
+    private final long requests;
+    private final long errors;
+    private final long dropped;
+    private final long[] sortedLatencies;
+
+    Report(Mode mode, long durationNanos, long requests, long errors, long dropped, long[] sortedLatencies) {
+      this.mode = mode;
+      this.durationNanos = durationNanos;
+      this.requests = requests;
+      this.errors = errors;
+      this.dropped = dropped;
+      this.sortedLatencies = sortedLatencies;
+    }
+
+    public long getRequests() {
+      return requests;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public long getDropped() {
+      return dropped;
+    }
+
+    public double getThroughput() {
+      return requests / (durationNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public double getPercentileMillis(double percentile) {
+      return LatencyRecorder.percentileMillis(sortedLatencies, percentile);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("mode= %s, requests= %d, errors= %d, dropped= %d, duration= %.1fs, throughput= %.1f req/s," +
+          " p50= %.2fms, p99= %.2fms, p999= %.2fms, max= %.2fms",
+        mode.name().toLowerCase(), requests, errors, dropped, durationNanos / 1e9, getThroughput(),
+        getPercentileMillis(50), getPercentileMillis(99), getPercentileMillis(99.9), getPercentileMillis(100));
+    }
+  }
+
+  private final Http http;
+  private final Materializer materializer;
+  private final List<String> uris;
+  private final AtomicInteger nextUri = new AtomicInteger();
+
+  /**
+   * @param system the actor system of the http client
+   * @param uris the request uris, sent in round robin
+   */
+  public LoadGenerator(ActorSystem system, List<String> uris) {
+    if (uris.isEmpty()) throw new IllegalArgumentException("At least one request uri is required");
+    this.http = Http.get(system);
+    this.materializer = ActorMaterializer.create(system);
+    this.uris = uris;
+  }
+
+  /**
+   * Runs the given number of clients in closed loop for the given duration.
+   */
+  public Report closedLoop(int concurrency, long durationMillis) {
+    final LatencyRecorder recorder = new LatencyRecorder();
+    final AtomicLong errors = new AtomicLong();
+    final long start = System.nanoTime();
+    final long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+    CompletableFuture<?>[] clients = new CompletableFuture<?>[concurrency];
+    for (int i = 0; i < concurrency; i++) {
+      clients[i] = client(deadline, recorder, errors).toCompletableFuture();
+    }
+    CompletableFuture.allOf(clients).join();
+    return new Report(Mode.CLOSED, System.nanoTime() - start, recorder.count(), errors.get(), 0L, recorder.sorted());
+  }
+
+  /**
+   * Sends requests at the given rate for the given duration, with at most maxInFlight requests outstanding.
+   */
+  public Report openLoop(double ratePerSecond, int maxInFlight, long durationMillis) {
+    final LatencyRecorder recorder = new LatencyRecorder();
+    final AtomicLong errors = new AtomicLong();
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicLong pending = new AtomicLong();
+    long dropped = 0L;
+    final long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    final long start = System.nanoTime();
+    final long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+    for (long intended = start; intended < deadline; intended += intervalNanos) {
+      long wait = intended - System.nanoTime();
+      if (wait > 0) LockSupport.parkNanos(wait);
+
+      if (inFlight.incrementAndGet() > maxInFlight) {
+        inFlight.decrementAndGet();
+        dropped++;
+        continue;
+      }
+      pending.incrementAndGet();
+      final long intendedStart = intended;
+      send(intendedStart, recorder, errors).whenComplete((done, t) -> {
+        inFlight.decrementAndGet();
+        pending.decrementAndGet();
+      });
+    }
+    // wait for the requests still in flight
+    while (pending.get() > 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    return new Report(Mode.OPEN, System.nanoTime() - start, recorder.count(), errors.get(), dropped,
+      recorder.sorted());
+  }
+
+  private CompletionStage<Void> client(long deadline, LatencyRecorder recorder, AtomicLong errors) {
+    if (System.nanoTime() >= deadline) return CompletableFuture.completedFuture(null);
+    return send(System.nanoTime(), recorder, errors).thenCompose(done -> client(deadline, recorder, errors));
+  }
+
+  /**
+   * Sends the next request, recording its latency from the given start instant once its entity is fully read.
+   */
+  private CompletionStage<Void> send(long startNanos, LatencyRecorder recorder, AtomicLong errors) {
+    final String uri = uris.get(Math.floorMod(nextUri.getAndIncrement(), uris.size()));
+    return http.singleRequest(HttpRequest.GET(uri), materializer)
+      .thenCompose(response -> response.entity().toStrict(30000L, materializer)
+        .thenApply(entity -> response.status().isSuccess()))
+      .handle((success, t) -> {
+        recorder.record(System.nanoTime() - startNanos);
+        if (t != null || !success) errors.incrementAndGet();
+        return null;
+      });
+  }
+}
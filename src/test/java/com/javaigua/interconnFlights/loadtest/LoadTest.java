@@ -0,0 +1,157 @@
+package com.javaigua.interconnFlights.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.http.javadsl.ConnectHttp;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.ServerBinding;
+import akka.stream.ActorMaterializer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import com.javaigua.interconnFlights.actors.InterconnFlightsFinderActor;
+import com.javaigua.interconnFlights.api.InterconnFlightsRoutes;
+import com.javaigua.interconnFlights.domain.Route;
+import com.javaigua.interconnFlights.synthetic.SyntheticNetwork;
+
+/**
+ * Entry point of the end to end load test of the interconnections endpoint, configured by loadtest.conf.
+ *
+ * A StubUpstreamServer stands in for the Routes and Timetable APIs and, unless a target node is configured, a node of
+ * this application is started in process with its upstream urls pointing to the stub. After a warm up, the load
+ * generator drives /interconnections with queries between airports of the network (direct and one stop pairs) and
+ * reports throughput and latency percentiles.
+ *
+ * Settings can be overridden with system properties, e.g. -Dloadtest.mode=open -Dloadtest.rate-per-second=500
+ */
+public class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    final Config config = ConfigFactory.load("loadtest");
+    final Config settings = config.getConfig("loadtest");
+
+    final Config networkConfig = settings.getConfig("stub.network");
+    final SyntheticNetwork network = new SyntheticNetwork(
+      networkConfig.getInt("airports"),
+      networkConfig.getInt("routes"),
+      networkConfig.getInt("flights-per-day"),
+      YearMonth.parse(networkConfig.getString("first-month")),
+      networkConfig.getInt("months"),
+      networkConfig.getLong("seed"));
+
+    // stub of the upstream apis
+    final ActorSystem stubSystem = ActorSystem.create("stubUpstream", config);
+    final StubUpstreamServer.Settings stubSettings = StubUpstreamServer.Settings.from(settings.getConfig("stub"));
+    final ServerBinding stubBinding = new StubUpstreamServer(stubSystem, network, stubSettings)
+      .bind(settings.getString("stub.host"), settings.getInt("stub.port"))
+      .toCompletableFuture().get();
+    System.out.println(String.format("status= stub_upstream_bound, address= %s, network= %s, settings= %s",
+      stubBinding.localAddress(), network, stubSettings));
+
+    // node under test, in process unless a target is given
+    String target = settings.getString("target");
+    ActorSystem nodeSystem = null;
+    ServerBinding nodeBinding = null;
+    if (target.isEmpty()) {
+      nodeSystem = ActorSystem.create(config.getString("application.name"), config);
+      ActorRef interconnFlightsFinderActor =
+        nodeSystem.actorOf(InterconnFlightsFinderActor.props(), "interconnFlightsFinder");
+      final ActorMaterializer materializer = ActorMaterializer.create(nodeSystem);
+      nodeBinding = Http.get(nodeSystem).bindAndHandle(
+        new InterconnFlightsRoutes(nodeSystem, interconnFlightsFinderActor).routes().flow(nodeSystem, materializer),
+        ConnectHttp.toHost("localhost", config.getInt("application.exposed-port")), materializer)
+        .toCompletableFuture().get();
+      target = "http://localhost:" + config.getInt("application.exposed-port");
+      System.out.println(String.format("status= node_bound, address= %s", nodeBinding.localAddress()));
+    }
+
+    final List<Route> routes = stubSettings.getRecordingsDir().isEmpty() ? network.getRoutes() :
+      recordedRoutes(Paths.get(stubSettings.getRecordingsDir(), "routes.json"), network.getRoutes());
+    final List<String> uris = createQueries(target, routes, network.getFirstMonth().atDay(1),
+      network.getFirstMonth().lengthOfMonth(), settings.getInt("query-window-hours"), settings.getInt("queries"),
+      networkConfig.getLong("seed"));
+
+    // load generator with its own http client pool
+    final ActorSystem clientSystem = ActorSystem.create("loadGenerator",
+      settings.getConfig("client").withFallback(config));
+    final LoadGenerator generator = new LoadGenerator(clientSystem, uris);
+    final LoadGenerator.Mode mode = LoadGenerator.Mode.valueOf(settings.getString("mode").toUpperCase());
+    try {
+      System.out.println("status= warming_up");
+      run(generator, mode, settings, settings.getLong("warmup-seconds") * 1000L);
+      System.out.println("status= running");
+      LoadGenerator.Report report = run(generator, mode, settings, settings.getLong("duration-seconds") * 1000L);
+      System.out.println("status= load_test_completed, " + report);
+    } finally {
+      clientSystem.terminate();
+      if (nodeBinding != null) nodeBinding.unbind().toCompletableFuture().get();
+      if (nodeSystem != null) nodeSystem.terminate();
+      stubBinding.unbind().toCompletableFuture().get();
+      stubSystem.terminate();
+    }
+  }
+
+  private static LoadGenerator.Report run(LoadGenerator generator, LoadGenerator.Mode mode, Config settings,
+                                          long durationMillis) {
+    if (mode == LoadGenerator.Mode.OPEN) {
+      return generator.openLoop(settings.getDouble("rate-per-second"), settings.getInt("max-in-flight"),
+        durationMillis);
+    }
+    return generator.closedLoop(settings.getInt("concurrency"), durationMillis);
+  }
+
+  /**
+   * Provides the direct routes of a recorded routes response, or the given ones when not recorded.
+   */
+  private static List<Route> recordedRoutes(Path routesFile, List<Route> orElse) throws IOException {
+    if (!Files.isRegularFile(routesFile)) return orElse;
+    final ObjectMapper mapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    final List<Route> routes = new ArrayList<>();
+    for (Route route : mapper.readValue(routesFile.toFile(), Route[].class)) {
+      if (route.getConnectingAirport() == null) routes.add(route);
+    }
+    return routes;
+  }
+
+  /**
+   * Creates interconnections queries between the departure of a random route and the arrival of a random route
+   * departing from its destination, i.e. pairs with a one stop (and maybe direct) connection, starting at a random
+   * day of the first month of the network.
+   */
+  static List<String> createQueries(String target, List<Route> routes, LocalDate firstDay, int days,
+                                    int windowHours, int queries, long seed) {
+    final Map<String, List<Route>> byOrigin = new HashMap<>();
+    for (Route route : routes) {
+      byOrigin.computeIfAbsent(route.getAirportFrom(), k -> new ArrayList<>()).add(route);
+    }
+
+    final Random random = new Random(seed);
+    final List<String> uris = new ArrayList<>(queries);
+    for (int attempts = 0; uris.size() < queries && attempts < queries * 10; attempts++) {
+      Route firstLeg = routes.get(random.nextInt(routes.size()));
+      List<Route> next = byOrigin.getOrDefault(firstLeg.getAirportTo(), Collections.emptyList());
+      if (next.isEmpty()) continue;
+      Route secondLeg = next.get(random.nextInt(next.size()));
+      if (secondLeg.getAirportTo().equals(firstLeg.getAirportFrom())) continue;
+
+      LocalDateTime departureDateTime = firstDay.plusDays(random.nextInt(days)).atStartOfDay();
+      LocalDateTime arrivalDateTime = departureDateTime.plusHours(windowHours).minusMinutes(1);
+      uris.add(target + "/interconnections?departure=" + firstLeg.getAirportFrom() +
+        "&arrival=" + secondLeg.getAirportTo() +
+        "&departureDateTime=" + departureDateTime + "&arrivalDateTime=" + arrivalDateTime);
+    }
+    return uris;
+  }
+}
@@ -0,0 +1,248 @@
+package com.javaigua.interconnFlights.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import scala.concurrent.duration.FiniteDuration;
+
+import akka.actor.ActorSystem;
+import akka.http.javadsl.ConnectHttp;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.ServerBinding;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpHeader;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.RawHeader;
+import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.server.Route;
+import static akka.http.javadsl.server.PathMatchers.integerSegment;
+import static akka.http.javadsl.server.PathMatchers.segment;
+import akka.pattern.PatternsCS;
+import akka.stream.ActorMaterializer;
+import akka.util.ByteString;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.typesafe.config.Config;
+
+import com.javaigua.interconnFlights.domain.AirportDictionary;
+import com.javaigua.interconnFlights.domain.Flight;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+import com.javaigua.interconnFlights.synthetic.SyntheticNetwork;
+
+/**
+ * An embedded stand-in of the Routes and Timetable APIs, for load tests without network access.
+ *
+ * It serves the routes and month schedules of a SyntheticNetwork, or the recorded responses found in a recordings
+ * directory laid out as the upstream paths:
+ *
+ *   routes.json
+ *   schedules/{departure}/{arrival}/years/{year}/months/{month}.json
+ *
+ * Every response is delayed by a fixed latency plus a random jitter, and a configurable ratio of the requests fail
+ * with an internal server error. JSON payloads are serialized once and kept in memory, so the stub itself is not the
+ * bottleneck of a load test.
+ *
+ * Payloads are served with an ETag of their content and a Last-Modified of the start of the stub, and conditional
+ * requests matching them are answered with a 304 Not Modified without payload.
+ */
+public class StubUpstreamServer extends AllDirectives {
+
+  /**
+   * Latency and error injection settings of the stub.
+   */
+  public static class Settings {
+    private final long latencyMillis;
+    private final long latencyJitterMillis;
+    private final double errorRate;
+    private final String recordingsDir;
+
+    public Settings(long latencyMillis, long latencyJitterMillis, double errorRate, String recordingsDir) {
+      if (latencyMillis < 0 || latencyJitterMillis < 0) throw new IllegalArgumentException("Latency must be non-negative");
+      if (errorRate < 0D || errorRate > 1D) throw new IllegalArgumentException("Error rate must be between 0 and 1");
+      this.latencyMillis = latencyMillis;
+      this.latencyJitterMillis = latencyJitterMillis;
+      this.errorRate = errorRate;
+      this.recordingsDir = recordingsDir;
+    }
+
+    public static Settings from(Config config) {
+      return new Settings(
+        config.getLong("latency-millis"),
+        config.getLong("latency-jitter-millis"),
+        config.getDouble("error-rate"),
+        config.getString("recordings-dir"));
+    }
+
+    public long getLatencyMillis() {
+      return latencyMillis;
+    }
+
+    public long getLatencyJitterMillis() {
+      return latencyJitterMillis;
+    }
+
+    public double getErrorRate() {
+      return errorRate;
+    }
+
+    public String getRecordingsDir() {
+      return recordingsDir;
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuilder()
+        .append("[latencyMillis=").append(latencyMillis)
+        .append(", latencyJitterMillis=").append(latencyJitterMillis)
+        .append(", errorRate=").append(errorRate)
+        .append(", recordingsDir=").append(recordingsDir)
+        .append("]")
+        .toString();
+    }
+  }
+
+  private final ActorSystem system;
+  private final SyntheticNetwork network;
+  private final Settings settings;
+  private final Path recordings;
+  private final ObjectMapper mapper = new ObjectMapper().addMixIn(Flight.class, UpstreamFlight.class);
+  // serialized payloads by request path, empty when not found
+  private final Map<String, Optional<ByteString>> payloads = new ConcurrentHashMap<>();
+  private final Map<String, String> etags = new ConcurrentHashMap<>();
+  private final ZonedDateTime lastModified = ZonedDateTime.now(ZoneOffset.UTC).withNano(0);
+
+  public StubUpstreamServer(ActorSystem system, SyntheticNetwork network, Settings settings) {
+    this.system = system;
+    this.network = network;
+    this.settings = settings;
+    this.recordings = settings.getRecordingsDir().isEmpty() ? null : Paths.get(settings.getRecordingsDir());
+  }
+
+  public Route createRoute() {
+    return route(
+      path(segment("core").slash("3").slash("routes"), () ->
+        get(() -> extractRequest(request -> respond(request, "routes.json", this::routesPayload)))
+      ),
+      pathPrefix(segment("timetable").slash("3").slash("schedules").slash(segment()).slash(segment()),
+        (departure, arrival) ->
+          path(segment("years").slash(integerSegment()).slash("months").slash(integerSegment()), (year, month) ->
+            get(() -> extractRequest(request -> respond(request,
+              "schedules/" + departure + "/" + arrival + "/years/" + year + "/months/" + month + ".json",
+              () -> schedulePayload(departure, arrival, year, month))))
+          )
+      )
+    );
+  }
+
+  /**
+   * Binds the stub to the given host and port.
+   */
+  public CompletionStage<ServerBinding> bind(String host, int port) {
+    final ActorMaterializer materializer = ActorMaterializer.create(system);
+    return Http.get(system).bindAndHandle(createRoute().flow(system, materializer), ConnectHttp.toHost(host, port),
+      materializer);
+  }
+
+  private Route respond(HttpRequest request, String recordingPath, PayloadSupplier supplier) {
+    return completeWithFuture(delayed(() -> {
+      if (settings.getErrorRate() > 0D && ThreadLocalRandom.current().nextDouble() < settings.getErrorRate()) {
+        return HttpResponse.create().withStatus(StatusCodes.INTERNAL_SERVER_ERROR);
+      }
+      final Optional<ByteString> payload = payloads.computeIfAbsent(recordingPath, path -> {
+        try {
+          if (recordings != null && Files.isRegularFile(recordings.resolve(path))) {
+            return Optional.of(ByteString.fromArray(Files.readAllBytes(recordings.resolve(path))));
+          }
+          return supplier.get();
+        } catch (Exception e) {
+          throw new IllegalStateException("Unable to create the payload of " + path, e);
+        }
+      });
+      if (!payload.isPresent()) {
+        return HttpResponse.create().withStatus(StatusCodes.NOT_FOUND);
+      }
+      final String etag = etags.computeIfAbsent(recordingPath,
+        path -> "\"" + Integer.toHexString(payload.get().hashCode()) + "\"");
+      final String modified = DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified);
+      final HttpResponse response = notModified(request, etag) ?
+        HttpResponse.create().withStatus(StatusCodes.NOT_MODIFIED) :
+        HttpResponse.create().withEntity(HttpEntities.create(ContentTypes.APPLICATION_JSON, payload.get()));
+      return response
+        .addHeader(RawHeader.create("ETag", etag))
+        .addHeader(RawHeader.create("Last-Modified", modified));
+    }));
+  }
+
+  /**
+   * Whether the validators of a conditional request match the payload, If-None-Match taking precedence.
+   */
+  private boolean notModified(HttpRequest request, String etag) {
+    final Optional<String> ifNoneMatch = request.getHeader("If-None-Match").map(HttpHeader::value);
+    if (ifNoneMatch.isPresent()) {
+      return ifNoneMatch.get().equals("*") || Arrays.asList(ifNoneMatch.get().split("\\s*,\\s*")).contains(etag);
+    }
+    return request.getHeader("If-Modified-Since").map(HttpHeader::value).map(since -> {
+      try {
+        return !lastModified.isAfter(ZonedDateTime.parse(since, DateTimeFormatter.RFC_1123_DATE_TIME));
+      } catch (DateTimeParseException e) {
+        return false;
+      }
+    }).orElse(false);
+  }
+
+  private CompletionStage<HttpResponse> delayed(Supplier<HttpResponse> response) {
+    long latency = settings.getLatencyMillis();
+    if (settings.getLatencyJitterMillis() > 0) {
+      latency += ThreadLocalRandom.current().nextLong(settings.getLatencyJitterMillis() + 1);
+    }
+    if (latency == 0) {
+      return CompletableFuture.completedFuture(response.get());
+    }
+    return PatternsCS.after(FiniteDuration.create(latency, TimeUnit.MILLISECONDS), system.scheduler(),
+      system.dispatcher(), () -> CompletableFuture.completedFuture(response.get()));
+  }
+
+  private Optional<ByteString> routesPayload() throws Exception {
+    return Optional.of(ByteString.fromArray(mapper.writeValueAsBytes(network.getRoutes())));
+  }
+
+  private Optional<ByteString> schedulePayload(String departure, String arrival, int year, int month)
+    throws Exception {
+    if (!network.getRoutesByKey().containsKey(AirportDictionary.routeKey(departure, arrival))) {
+      return Optional.empty();
+    }
+    MonthSchedule monthSchedule = network.getMonthSchedule(departure, arrival, YearMonth.of(year, month));
+    return Optional.of(ByteString.fromArray(mapper.writeValueAsBytes(monthSchedule)));
+  }
+
+  /**
+   * Keeps flights in the upstream JSON shape, without the derived local times.
+   */
+  @JsonIgnoreProperties({"departureLocalTime", "arrivalLocalTime"})
+  private abstract static class UpstreamFlight {
+  }
+
+  @FunctionalInterface
+  private interface PayloadSupplier {
+    Optional<ByteString> get() throws Exception;
+  }
+}
@@ -0,0 +1,56 @@
+package com.javaigua.interconnFlights.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+/**
+ * A test suit for the Histogram class.
+ */
+public class HistogramTest extends JUnitSuite {
+
+  @Test
+  public void testBucketsCoverContiguousRanges() {
+    long lowest = 0L;
+    for (int i = 0; i <= Histogram.index(Histogram.MAX_VALUE); i++) {
+      Assert.assertEquals(i, Histogram.index(lowest));
+      long highest = Histogram.highestEquivalent(i);
+      Assert.assertEquals(i, Histogram.index(highest));
+      // about 1.6% of relative error at most
+      Assert.assertTrue(highest - lowest <= Math.max(0L, lowest / 64));
+      lowest = highest + 1;
+    }
+    Assert.assertEquals(Histogram.MAX_VALUE + 1, lowest);
+  }
+
+  @Test
+  public void testPercentilesWithinRelativeError() {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 100000; value++) {
+      histogram.record(value);
+    }
+
+    Assert.assertEquals(100000, histogram.getCount());
+    Assert.assertEquals(5000050000L, histogram.getSum());
+    Assert.assertEquals(100000, histogram.getMax());
+    assertWithin(50000, histogram.getValueAtPercentile(50));
+    assertWithin(99000, histogram.getValueAtPercentile(99));
+    Assert.assertEquals(100000, histogram.getValueAtPercentile(100));
+    Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+  }
+
+  @Test
+  public void testOutOfRangeValuesAreClamped() {
+    Histogram histogram = new Histogram();
+    Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+    Assert.assertEquals(Histogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    Assert.assertTrue("expected ~" + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 64);
+  }
+}
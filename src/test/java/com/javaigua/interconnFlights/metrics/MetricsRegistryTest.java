@@ -0,0 +1,44 @@
+package com.javaigua.interconnFlights.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+/**
+ * A test suit for the MetricsRegistry class.
+ */
+public class MetricsRegistryTest extends JUnitSuite {
+
+  @Test
+  public void testScrapesFamiliesInTextFormat() {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("upstream_calls_total", "Calls.", "api", "routes", "outcome", "2xx").add(3);
+    registry.gauge("queries_in_flight", "In flight.").set(2);
+    registry.histogram("stage_duration_seconds", "Latency.", 1e-6, "stage", "graph_build").record(2000);
+
+    String scraped = registry.scrape();
+    Assert.assertTrue(scraped, scraped.contains("# TYPE upstream_calls_total counter\n" +
+      "upstream_calls_total{api=\"routes\",outcome=\"2xx\"} 3\n"));
+    Assert.assertTrue(scraped, scraped.contains("# HELP queries_in_flight In flight.\n" +
+      "# TYPE queries_in_flight gauge\nqueries_in_flight 2\n"));
+    Assert.assertTrue(scraped, scraped.contains("# TYPE stage_duration_seconds summary\n"));
+    Assert.assertTrue(scraped, scraped.contains("stage_duration_seconds{stage=\"graph_build\",quantile=\"0.5\"} 0.002"));
+    Assert.assertTrue(scraped, scraped.contains("stage_duration_seconds_count{stage=\"graph_build\"} 1\n"));
+  }
+
+  @Test
+  public void testSameNameAndLabelsIsTheSameMetric() {
+    MetricsRegistry registry = new MetricsRegistry();
+    Assert.assertSame(registry.counter("calls_total", "Calls.", "api", "routes"),
+      registry.counter("calls_total", "Calls.", "api", "routes"));
+    Assert.assertNotSame(registry.counter("calls_total", "Calls.", "api", "routes"),
+      registry.counter("calls_total", "Calls.", "api", "schedules"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsAnotherTypeUnderTheSameName() {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("calls_total", "Calls.");
+    registry.gauge("calls_total", "Calls.");
+  }
+}
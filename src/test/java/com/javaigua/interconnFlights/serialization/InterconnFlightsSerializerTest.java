@@ -0,0 +1,131 @@
+package com.javaigua.interconnFlights.serialization;
+
+import java.io.NotSerializableException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.JavaSerializer;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.testkit.javadsl.TestKit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.actors.messages.GetInterconnections;
+import com.javaigua.interconnFlights.actors.messages.RoutesAndSchedules;
+import com.javaigua.interconnFlights.algorithms.LongObjectHashMap;
+import com.javaigua.interconnFlights.catalog.OriginRoutes;
+import com.javaigua.interconnFlights.domain.*;
+
+/**
+ * A test suit for the InterconnFlightsSerializer class.
+ */
+public class InterconnFlightsSerializerTest extends JUnitSuite {
+
+  static ActorSystem system;
+  static Serialization serialization;
+
+  @BeforeClass
+  public static void setup() {
+    system = ActorSystem.create();
+    serialization = SerializationExtension.get(system);
+  }
+
+  @AfterClass
+  public static void teardown() {
+    TestKit.shutdownActorSystem(system);
+    system = null;
+  }
+
+  private static Object roundTrip(Object o) throws NotSerializableException {
+    final Serializer serializer = serialization.findSerializerFor(o);
+    Assert.assertTrue(serializer instanceof InterconnFlightsSerializer);
+    final InterconnFlightsSerializer interconn = (InterconnFlightsSerializer) serializer;
+    return interconn.fromBinary(interconn.toBinary(o), interconn.manifest(o));
+  }
+
+  @Test
+  public void testRoutesAndSchedulesRoundTrip() throws NotSerializableException {
+    final TestKit sender = new TestKit(system);
+    final GetInterconnections query = new GetInterconnections("DUB", "WRO", LocalDateTime.of(2018, 4, 1, 7, 0),
+      LocalDateTime.of(2018, 4, 3, 21, 0), true);
+    final LongObjectHashMap<Route> routes = new LongObjectHashMap<>();
+    for (Route route : Arrays.asList(new Route("DUB", "WRO", null, false, null, "RYANAIR", "GENERIC"),
+      new Route("DUB", "STN", null, true, true, "RYANAIR", "GENERIC"))) {
+      routes.put(AirportDictionary.routeKey(route), route);
+    }
+    final List<Flight> flights = Arrays.asList(new Flight("1926", "17:50", "21:25"), new Flight("1927", "06:25", ""));
+    final MonthSchedule april = new MonthSchedule(4, Arrays.asList(new DaySchedule(1, flights),
+      new DaySchedule(2, flights)));
+    final LongObjectHashMap<List<MonthSchedule>> schedules = new LongObjectHashMap<>();
+    schedules.put(AirportDictionary.routeKey("DUB", "WRO"), Collections.singletonList(april));
+
+    final RoutesAndSchedules decoded = (RoutesAndSchedules) roundTrip(
+      new RoutesAndSchedules(query, routes, schedules, sender.getRef(), null));
+
+    Assert.assertEquals(query.getLookUpName(), decoded.getGetInterconnections().getLookUpName());
+    Assert.assertTrue(decoded.getGetInterconnections().isStreaming());
+    Assert.assertEquals(routes, decoded.getRoutes());
+    Assert.assertArrayEquals(schedules.keys(), decoded.getSchedules().keys());
+    Assert.assertEquals(april.toString(),
+      decoded.getSchedules().get(AirportDictionary.routeKey("DUB", "WRO")).get(0).toString());
+    Assert.assertEquals(sender.getRef(), decoded.getSender());
+    Assert.assertNull(decoded.getOriginalSender());
+  }
+
+  @Test
+  public void testQueriesAndLegsRoundTrip() throws NotSerializableException {
+    final GetInterconnections calendar = GetInterconnections.calendar("DUB", "WRO", LocalDate.of(2018, 4, 1),
+      LocalDate.of(2018, 4, 7), LocalTime.of(18, 0), LocalTime.of(6, 0));
+    final GetInterconnections decoded = (GetInterconnections) roundTrip(calendar);
+    Assert.assertEquals(calendar.getLookUpName(), decoded.getLookUpName());
+    Assert.assertEquals(7, decoded.getCalendarDays());
+
+    // not a whole minute, nor packable codes
+    final GetInterconnections now = new GetInterconnections("DUBLIN", "WRO", LocalDateTime.of(2018, 4, 1, 7, 0, 15, 5),
+      LocalDateTime.of(2018, 4, 1, 23, 0));
+    final GetInterconnections decodedNow = (GetInterconnections) roundTrip(now);
+    Assert.assertEquals("DUBLIN", decodedNow.getDeparture());
+    Assert.assertEquals(now.getDepartureDateTime(), decodedNow.getDepartureDateTime());
+
+    final InterconnFlights legs = new InterconnFlights("DUB_STN_WRO", new InterconnFlight[]{
+      new InterconnFlight("202", "DUB", "STN", "2018-04-01T07:00", "2018-04-01T08:20"),
+      new InterconnFlight("1926", "STN", "WRO", "2018-04-01T10:05", "10:05")});
+    final InterconnFlights decodedLegs = (InterconnFlights) roundTrip(legs);
+    Assert.assertEquals(legs.getId(), decodedLegs.getId());
+    Assert.assertEquals(Arrays.toString(legs.getLegs()), Arrays.toString(decodedLegs.getLegs()));
+  }
+
+  @Test
+  public void testOriginRoutesRoundTrip() throws NotSerializableException {
+    final OriginRoutes routes = new OriginRoutes(Arrays.asList(
+      new Route("DUB", "WRO", null, false, null, "RYANAIR", "GENERIC"),
+      new Route("DUB", "STN", null, true, true, "RYANAIR", null)));
+    Assert.assertEquals(routes, roundTrip(routes));
+  }
+
+  @Test
+  public void testEncodingIsSmallerThanJavaSerialization() {
+    final DaySchedule[] days = new DaySchedule[30];
+    for (int i = 0; i < days.length; i++) {
+      days[i] = new DaySchedule(i + 1, Arrays.asList(new Flight("1926", "17:50", "21:25"),
+        new Flight("1927", "06:25", "10:00")));
+    }
+    final MonthSchedule month = new MonthSchedule(4, Arrays.asList(days));
+
+    final byte[] compact = serialization.findSerializerFor(month).toBinary(month);
+    final byte[] java = new JavaSerializer((ExtendedActorSystem) system).toBinary(month);
+    Assert.assertTrue(compact.length * 4 < java.length);
+  }
+}
@@ -0,0 +1,32 @@
+package com.javaigua.interconnFlights.sharding;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.actors.messages.GetMonthSchedule;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+
+/**
+ * A test suit for the sharding of the ScheduleHolders.
+ */
+public class ScheduleHoldersTest extends JUnitSuite {
+
+  private final ScheduleHolders.MessageExtractor extractor = new ScheduleHolders.MessageExtractor(100);
+
+  @Test
+  public void testMonthsOfARouteShareTheirEntity() {
+    GetMonthSchedule april = new GetMonthSchedule(new ScheduleKey("DUB", "WRO", 2018, 4));
+    GetMonthSchedule may = new GetMonthSchedule(new ScheduleKey("DUB", "WRO", 2018, 5));
+
+    Assert.assertEquals("DUB_WRO", extractor.entityId(april));
+    Assert.assertEquals(extractor.entityId(april), extractor.entityId(may));
+    Assert.assertEquals(extractor.shardId(april), extractor.shardId(may));
+    Assert.assertSame(april, extractor.entityMessage(april));
+  }
+
+  @Test
+  public void testRoutesAreDirected() {
+    Assert.assertEquals("WRO_DUB", extractor.entityId(new GetMonthSchedule(new ScheduleKey("WRO", "DUB", 2018, 4))));
+  }
+}
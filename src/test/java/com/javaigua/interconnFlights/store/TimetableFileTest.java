@@ -0,0 +1,145 @@
+package com.javaigua.interconnFlights.store;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.catalog.RoutesSnapshot;
+import com.javaigua.interconnFlights.domain.*;
+import com.javaigua.interconnFlights.timetable.ScheduleKey;
+
+/**
+ * A test suit for the TimetableFile class.
+ */
+public class TimetableFileTest extends JUnitSuite {
+
+  private static final ScheduleKey DUB_WRO_APRIL = new ScheduleKey("DUB", "WRO", 2018, 4);
+  private static final ScheduleKey DUB_STN_APRIL = new ScheduleKey("DUB", "STN", 2018, 4);
+
+  private Path directory;
+  private Path path;
+
+  @Before
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("timetable-store");
+    path = directory.resolve("timetable.store");
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    Files.deleteIfExists(path);
+    Files.deleteIfExists(directory);
+  }
+
+  private static MonthSchedule april(String... flightNumbers) {
+    Flight[] flights = new Flight[flightNumbers.length];
+    for (int i = 0; i < flightNumbers.length; i++) {
+      flights[i] = new Flight(flightNumbers[i], "23:10", "01:25");
+    }
+    return new MonthSchedule(4, Arrays.asList(
+      new DaySchedule(1, Arrays.asList(flights)),
+      new DaySchedule(2, Collections.emptyList())));
+  }
+
+  @Test
+  public void testRoutesAndSchedulesSurviveReopening() throws IOException {
+    Instant loadedAt = Instant.ofEpochMilli(1522540800000L);
+    try (TimetableFile file = new TimetableFile(path, 2D)) {
+      file.appendRoutes(new RoutesSnapshot(Arrays.asList(
+        new Route("DUB", "WRO", null, true, false, "RYANAIR", "GENERIC"),
+        new Route("DUB", "STN", null, false, true, "RYANAIR", null)), loadedAt));
+      file.appendSchedule(DUB_WRO_APRIL, april("1926"), 0L);
+      file.appendSchedule(DUB_STN_APRIL, april("202"), 0L);
+      // supersedes the first one
+      file.appendSchedule(DUB_WRO_APRIL, april("1926", "1927"), 1523000000000L);
+    }
+
+    try (TimetableFile file = new TimetableFile(path, 2D)) {
+      TimetableFile.Contents contents = file.read();
+
+      Assert.assertEquals(2, contents.getRoutes().size());
+      Assert.assertEquals(loadedAt, contents.getRoutes().getLoadedAt());
+      Route route = contents.getRoutes().getRoutes().get(0);
+      Assert.assertEquals("DUB", route.getAirportFrom());
+      Assert.assertEquals("WRO", route.getAirportTo());
+      Assert.assertNull(route.getConnectingAirport());
+      Assert.assertTrue(route.getNewRoute());
+      Assert.assertFalse(route.getSeasonalRoute());
+      Assert.assertNull(contents.getRoutes().getRoutes().get(1).getGroup());
+
+      Assert.assertEquals(2, contents.getSchedules().size());
+      Assert.assertEquals(Long.valueOf(1523000000000L), contents.getFetchedAt().get(DUB_WRO_APRIL));
+      MonthSchedule schedule = contents.getSchedules().get(DUB_WRO_APRIL);
+      Assert.assertEquals(Integer.valueOf(4), schedule.getMonth());
+      Assert.assertEquals(2, schedule.getDays().size());
+      Flight flight = schedule.getDays().get(0).getFlights().get(1);
+      Assert.assertEquals("1927", flight.getNumber());
+      Assert.assertEquals("23:10", flight.getDepartureTime());
+      Assert.assertEquals("01:25", flight.getArrivalTime());
+      Assert.assertTrue(schedule.getDays().get(1).getFlights().isEmpty());
+    }
+  }
+
+  @Test
+  public void testTruncatedTailIsDropped() throws IOException {
+    long validSize;
+    try (TimetableFile file = new TimetableFile(path, 2D)) {
+      file.appendSchedule(DUB_WRO_APRIL, april("1926"), 0L);
+      file.flush();
+      validSize = file.size();
+      file.appendSchedule(DUB_STN_APRIL, april("202"), 0L);
+    }
+    // simulate a crash in the middle of the last append
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    try (TimetableFile file = new TimetableFile(path, 2D)) {
+      TimetableFile.Contents contents = file.read();
+      Assert.assertEquals(1, contents.getSchedules().size());
+      Assert.assertTrue(contents.getSchedules().containsKey(DUB_WRO_APRIL));
+      Assert.assertEquals(validSize, file.size());
+
+      // appends continue after the last valid record
+      file.appendSchedule(DUB_STN_APRIL, april("202"), 0L);
+    }
+    try (TimetableFile file = new TimetableFile(path, 2D)) {
+      Assert.assertEquals(2, file.read().getSchedules().size());
+    }
+  }
+
+  @Test
+  public void testCompactionKeepsLatestRecords() throws IOException {
+    String[] numbers = new String[200];
+    for (int i = 0; i < numbers.length; i++) numbers[i] = String.valueOf(1000 + i);
+
+    try (TimetableFile file = new TimetableFile(path, 2D)) {
+      // rewrite the same schedule until the file is well over the compaction threshold
+      for (int i = 0; i < 600; i++) {
+        file.appendSchedule(DUB_WRO_APRIL, april(numbers), 0L);
+      }
+      file.appendSchedule(DUB_STN_APRIL, april("202"), 0L);
+      file.flush();
+
+      Assert.assertEquals(file.liveBytes(), file.size());
+      Assert.assertEquals(2, file.read().getSchedules().size());
+    }
+    try (TimetableFile file = new TimetableFile(path, 2D)) {
+      TimetableFile.Contents contents = file.read();
+      Assert.assertEquals(200, contents.getSchedules().get(DUB_WRO_APRIL).getDays().get(0).getFlights().size());
+      Assert.assertEquals("202", contents.getSchedules().get(DUB_STN_APRIL).getDays().get(0).getFlights().get(0)
+        .getNumber());
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.javaigua.interconnFlights.synthetic;
+
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import com.javaigua.interconnFlights.algorithms.LongObjectHashMap;
+import com.javaigua.interconnFlights.domain.*;
+
+/**
+ * A synthetic network of airports, direct routes and month schedules, for benchmarks and load tests.
+ *
+ * The network is parameterised by the number of airports, the number of directed routes between them, the flights
+ * per day of every route and the number of consecutive months of schedules. It is generated from a seed, so the same
+ * parameters and seed always produce the same network.
+ *
+ * Every route flies the same daily flights all the days of the months, departing between 05:00 and 23:00 and
+ * lasting between 45 minutes and 4 hours, some of them arriving the day after.
+ */
+public class SyntheticNetwork {
+
+  public static final YearMonth DEFAULT_FIRST_MONTH = YearMonth.of(2018, 4);
+
+  private final String[] airports;
+  private final List<Route> routes;
+  // route key -> route
+  private final LongObjectHashMap<Route> routesByKey;
+  // route key -> month schedules
+  private final LongObjectHashMap<List<MonthSchedule>> schedules;
+  private final YearMonth firstMonth;
+  private final YearMonth lastMonth;
+
+  public SyntheticNetwork(int airports, int routes, int flightsPerDay, int months, long seed) {
+    this(airports, routes, flightsPerDay, DEFAULT_FIRST_MONTH, months, seed);
+  }
+
+  public SyntheticNetwork(int airports, int routes, int flightsPerDay, YearMonth firstMonth, int months, long seed) {
+    if (airports < 2) throw new IllegalArgumentException("At least two airports are required");
+    if (routes < 0 || routes > (long) airports * (airports - 1))
+      throw new IllegalArgumentException("Number of routes must be between 0 and " + (long) airports * (airports - 1));
+    if (flightsPerDay < 0) throw new IllegalArgumentException("Flights per day must be non-negative");
+    if (months <= 0) throw new IllegalArgumentException("Number of months must be a positive number");
+
+    final Random random = new Random(seed);
+    this.firstMonth = firstMonth;
+    this.lastMonth = firstMonth.plusMonths(months - 1);
+
+    this.airports = new String[airports];
+    for (int i = 0; i < airports; i++) {
+      this.airports[i] = iataCode(i);
+    }
+
+    this.routes = new ArrayList<>(routes);
+    this.routesByKey = new LongObjectHashMap<>(routes);
+    this.schedules = new LongObjectHashMap<>(routes);
+    int flightNumber = 1000;
+    while (this.routes.size() < routes) {
+      String from = this.airports[random.nextInt(airports)];
+      String to = this.airports[random.nextInt(airports)];
+      long key = AirportDictionary.routeKey(from, to);
+      if (from.equals(to) || routesByKey.containsKey(key)) continue;
+
+      Route route = new Route(from, to, null, false, false, "RYANAIR", "GENERIC");
+      this.routes.add(route);
+      routesByKey.put(key, route);
+
+      List<Flight> dailyFlights = new ArrayList<>(flightsPerDay);
+      for (int f = 0; f < flightsPerDay; f++) {
+        int departure = 5 * 60 + 5 * random.nextInt(18 * 12);
+        int arrival = (departure + 45 + 5 * random.nextInt(40)) % (24 * 60);
+        dailyFlights.add(new Flight(String.valueOf(flightNumber++), formatTime(departure), formatTime(arrival)));
+      }
+      dailyFlights.sort(Comparator.comparingInt(Flight::getDepartureMinute));
+
+      List<MonthSchedule> monthSchedules = new ArrayList<>(months);
+      for (YearMonth yearMonth = firstMonth; !yearMonth.isAfter(lastMonth); yearMonth = yearMonth.plusMonths(1)) {
+        List<DaySchedule> days = new ArrayList<>(yearMonth.lengthOfMonth());
+        for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+          days.add(new DaySchedule(day, dailyFlights));
+        }
+        monthSchedules.add(new MonthSchedule(yearMonth.getMonthValue(), days));
+      }
+      schedules.put(key, monthSchedules);
+    }
+  }
+
+  public String[] getAirports() {
+    return airports.clone();
+  }
+
+  public String airport(int i) {
+    return airports[i];
+  }
+
+  public List<Route> getRoutes() {
+    return Collections.unmodifiableList(routes);
+  }
+
+  public LongObjectHashMap<Route> getRoutesByKey() {
+    return routesByKey;
+  }
+
+  public LongObjectHashMap<List<MonthSchedule>> getSchedules() {
+    return schedules;
+  }
+
+  /**
+   * Provides the month schedule of a route for the given year-month, or an empty one.
+   */
+  public MonthSchedule getMonthSchedule(String departure, String arrival, YearMonth yearMonth) {
+    List<MonthSchedule> monthSchedules = schedules.get(AirportDictionary.routeKey(departure, arrival));
+    if (monthSchedules == null || yearMonth.isBefore(firstMonth) || yearMonth.isAfter(lastMonth)) {
+      return new MonthSchedule(yearMonth.getMonthValue(), Collections.emptyList());
+    }
+    return monthSchedules.get((int) firstMonth.until(yearMonth, ChronoUnit.MONTHS));
+  }
+
+  public YearMonth getFirstMonth() {
+    return firstMonth;
+  }
+
+  public YearMonth getLastMonth() {
+    return lastMonth;
+  }
+
+  /**
+   * Provides a three letters code for the i-th airport: AAA, AAB, ...
+   */
+  static String iataCode(int i) {
+    char[] code = new char[3];
+    for (int c = 2; c >= 0; c--) {
+      code[c] = (char) ('A' + i % 26);
+      i /= 26;
+    }
+    return new String(code);
+  }
+
+  private static String formatTime(int minuteOfDay) {
+    int hour = minuteOfDay / 60;
+    int minute = minuteOfDay % 60;
+    return (hour < 10 ? "0" : "") + hour + ":" + (minute < 10 ? "0" : "") + minute;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder()
+      .append("[airports=").append(airports.length)
+      .append(", routes=").append(routes.size())
+      .append(", months=").append(firstMonth).append("..").append(lastMonth)
+      .append("]")
+      .toString();
+  }
+}
@@ -0,0 +1,180 @@
+package com.javaigua.interconnFlights.timetable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.domain.DaySchedule;
+import com.javaigua.interconnFlights.domain.Flight;
+import com.javaigua.interconnFlights.domain.MonthSchedule;
+
+/**
+ * A test suit for the ScheduleCache class.
+ */
+public class ScheduleCacheTest extends JUnitSuite {
+
+  private static final ScheduleKey DUB_STN_APRIL = new ScheduleKey("DUB", "STN", 2018, 4);
+  private static final ScheduleKey DUB_WRO_APRIL = new ScheduleKey("DUB", "WRO", 2018, 4);
+  private static final ScheduleKey STN_WRO_APRIL = new ScheduleKey("STN", "WRO", 2018, 4);
+
+  private AtomicLong clock;
+  private AtomicInteger loads;
+
+  @Before
+  public void setup() {
+    clock = new AtomicLong(0L);
+    loads = new AtomicInteger(0);
+  }
+
+  private ScheduleCache createCache(int maxEntries) {
+    return new ScheduleCache(maxEntries, Long.MAX_VALUE, 1000L, 1000L, key -> {
+      loads.incrementAndGet();
+      return CompletableFuture.completedFuture(new MonthSchedule(key.getMonth(), Arrays.asList(
+        new DaySchedule(1, Collections.singletonList(new Flight("1926", "17:50", "21:25"))))));
+    }, clock::get);
+  }
+
+  private static MonthSchedule get(ScheduleCache cache, ScheduleKey key) {
+    return cache.get(key).toCompletableFuture().join();
+  }
+
+  @Test
+  public void testHitAfterMiss() {
+    ScheduleCache cache = createCache(10);
+
+    Assert.assertEquals(Integer.valueOf(4), get(cache, DUB_STN_APRIL).getMonth());
+    Assert.assertEquals(Integer.valueOf(4), get(cache, DUB_STN_APRIL).getMonth());
+
+    Assert.assertEquals(1, loads.get());
+    Assert.assertEquals(1, cache.getStats().getMisses());
+    Assert.assertEquals(1, cache.getStats().getHits());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    ScheduleCache cache = createCache(2);
+
+    get(cache, DUB_STN_APRIL);
+    get(cache, DUB_WRO_APRIL);
+    get(cache, DUB_STN_APRIL);
+    get(cache, STN_WRO_APRIL);
+
+    Assert.assertEquals(2, cache.getStats().getSize());
+    Assert.assertEquals(1, cache.getStats().getEvictions());
+
+    // DUB_STN was recently used and still cached, DUB_WRO was evicted
+    get(cache, DUB_STN_APRIL);
+    Assert.assertEquals(3, loads.get());
+    get(cache, DUB_WRO_APRIL);
+    Assert.assertEquals(4, loads.get());
+  }
+
+  @Test
+  public void testServesStaleWhileRevalidating() {
+    ScheduleCache cache = createCache(10);
+    get(cache, DUB_STN_APRIL);
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500L));
+    Assert.assertNotNull(get(cache, DUB_STN_APRIL));
+    Assert.assertEquals(1, cache.getStats().getStaleHits());
+    Assert.assertEquals(2, loads.get());
+
+    // revalidated entry is fresh again
+    get(cache, DUB_STN_APRIL);
+    Assert.assertEquals(1, cache.getStats().getHits());
+    Assert.assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testExpiredEntryIsLoadedAgain() {
+    ScheduleCache cache = createCache(10);
+    get(cache, DUB_STN_APRIL);
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2500L));
+    get(cache, DUB_STN_APRIL);
+    Assert.assertEquals(2, cache.getStats().getMisses());
+    Assert.assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testRestoredEntryIsServedStale() {
+    ScheduleCache cache = createCache(10);
+    MonthSchedule restored = new MonthSchedule(4, Collections.emptyList());
+    cache.putStale(DUB_STN_APRIL, restored);
+
+    // served from memory while revalidated
+    Assert.assertSame(restored, get(cache, DUB_STN_APRIL));
+    Assert.assertEquals(1, cache.getStats().getStaleHits());
+    Assert.assertEquals(1, loads.get());
+
+    // a restored entry does not replace a loaded one
+    cache.putStale(DUB_STN_APRIL, restored);
+    Assert.assertEquals(1, get(cache, DUB_STN_APRIL).getDays().size());
+  }
+
+  @Test
+  public void testRestoredEntryIsAgedByItsFetchTime() {
+    ScheduleCache cache = createCache(10);
+    MonthSchedule restored = new MonthSchedule(4, Collections.emptyList());
+
+    // fetched within the ttl, still fresh
+    Assert.assertTrue(cache.restore(DUB_STN_APRIL, restored, 400L));
+    Assert.assertSame(restored, get(cache, DUB_STN_APRIL));
+    Assert.assertEquals(1, cache.getStats().getHits());
+    Assert.assertEquals(0, loads.get());
+
+    // stale once the rest of the ttl elapses
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(600L));
+    Assert.assertSame(restored, get(cache, DUB_STN_APRIL));
+    Assert.assertEquals(1, cache.getStats().getStaleHits());
+
+    // too old to be served even stale
+    Assert.assertFalse(cache.restore(DUB_WRO_APRIL, restored, 2000L));
+    Assert.assertEquals(1, cache.getStats().getSize());
+  }
+
+  @Test
+  public void testInvalidatedEntryIsLoadedAgain() {
+    ScheduleCache cache = createCache(10);
+    get(cache, DUB_STN_APRIL);
+    get(cache, DUB_WRO_APRIL);
+
+    cache.invalidate(DUB_STN_APRIL);
+    Assert.assertEquals(1, cache.getStats().getSize());
+    Assert.assertEquals(ScheduleCache.estimateBytes(get(cache, DUB_WRO_APRIL)), cache.getStats().getBytes());
+
+    get(cache, DUB_STN_APRIL);
+    Assert.assertEquals(3, loads.get());
+  }
+
+  @Test
+  public void testNotModifiedExtendsTheEntry() {
+    MonthSchedule loaded = new MonthSchedule(4, Collections.emptyList());
+    ScheduleCache cache = new ScheduleCache(10, Long.MAX_VALUE, 1000L, 1000L, (key, cached) -> {
+      loads.incrementAndGet();
+      return CompletableFuture.completedFuture(cached == null ? new ScheduleVersion(loaded, "\"v1\"", null) :
+        cached.notModified(null, null));
+    }, clock::get);
+    get(cache, DUB_STN_APRIL);
+
+    // an expired entry is revalidated with its validators, and kept as it was not modified
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2500L));
+    Assert.assertSame(loaded, get(cache, DUB_STN_APRIL));
+    Assert.assertEquals(2, loads.get());
+    Assert.assertEquals(1, cache.getStats().getNotModified());
+
+    // and fresh again for a whole ttl
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(900L));
+    get(cache, DUB_STN_APRIL);
+    Assert.assertEquals(1, cache.getStats().getHits());
+    Assert.assertEquals(2, loads.get());
+  }
+}
@@ -0,0 +1,54 @@
+package com.javaigua.interconnFlights.timetable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+/**
+ * A test suit for the SingleFlight class.
+ */
+public class SingleFlightTest extends JUnitSuite {
+
+  @Test
+  public void testCoalescesConcurrentCalls() {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    CompletableFuture<String> response = new CompletableFuture<>();
+    AtomicInteger calls = new AtomicInteger(0);
+
+    CompletionStage<String> first = singleFlight.execute("DUB_STN", key -> {
+      calls.incrementAndGet();
+      return response;
+    });
+    CompletionStage<String> second = singleFlight.execute("DUB_STN", key -> {
+      calls.incrementAndGet();
+      return response;
+    });
+    Assert.assertEquals(1, singleFlight.getInFlight());
+
+    response.complete("schedule");
+    Assert.assertEquals("schedule", first.toCompletableFuture().join());
+    Assert.assertEquals("schedule", second.toCompletableFuture().join());
+    Assert.assertEquals(1, calls.get());
+    Assert.assertEquals(1, singleFlight.getCoalesced());
+    Assert.assertEquals(0, singleFlight.getInFlight());
+  }
+
+  @Test
+  public void testReleasesKeyOnFailure() {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    CompletableFuture<String> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException("upstream unavailable"));
+
+    CompletionStage<String> first = singleFlight.execute("DUB_STN", key -> failed);
+    Assert.assertTrue(first.toCompletableFuture().isCompletedExceptionally());
+
+    CompletionStage<String> second = singleFlight.execute("DUB_STN",
+      key -> CompletableFuture.completedFuture("schedule"));
+    Assert.assertEquals("schedule", second.toCompletableFuture().join());
+    Assert.assertEquals(2, singleFlight.getCalls());
+  }
+}
@@ -0,0 +1,98 @@
+package com.javaigua.interconnFlights.upstream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+/**
+ * A test suit for the Hedging class.
+ */
+public class HedgingTest extends JUnitSuite {
+
+  private List<CompletableFuture<String>> requests;
+  private Supplier<CompletionStage<String>> attempt;
+  private Runnable hedge;
+  private AtomicInteger hedged;
+  private AtomicInteger hedgesWon;
+
+  @Before
+  public void setup() {
+    requests = new ArrayList<>();
+    attempt = () -> {
+      CompletableFuture<String> request = new CompletableFuture<>();
+      requests.add(request);
+      return request;
+    };
+    hedge = null;
+    hedged = new AtomicInteger(0);
+    hedgesWon = new AtomicInteger(0);
+  }
+
+  private CompletableFuture<String> call() {
+    return Hedging.hedged(attempt, 100L, (delayMillis, task) -> {
+      hedge = task;
+      return () -> hedge = null;
+    }, hedged::incrementAndGet, hedgesWon::incrementAndGet).toCompletableFuture();
+  }
+
+  @Test
+  public void testFastHedgeWinsOverSlowRequest() {
+    CompletableFuture<String> result = call();
+    Assert.assertEquals(1, requests.size());
+
+    // the hedge delay elapses
+    hedge.run();
+    Assert.assertEquals(2, requests.size());
+    Assert.assertEquals(1, hedged.get());
+
+    requests.get(1).complete("hedge");
+    Assert.assertEquals("hedge", result.join());
+    Assert.assertEquals(1, hedgesWon.get());
+
+    // the slow response arrives too late
+    requests.get(0).complete("first");
+    Assert.assertEquals("hedge", result.join());
+  }
+
+  @Test
+  public void testFailsWhenBothRequestsFail() {
+    CompletableFuture<String> result = call();
+    hedge.run();
+
+    requests.get(0).completeExceptionally(new IllegalStateException("first"));
+    Assert.assertFalse(result.isDone());
+
+    requests.get(1).completeExceptionally(new IllegalStateException("hedge"));
+    Assert.assertTrue(result.isCompletedExceptionally());
+    Assert.assertEquals(0, hedgesWon.get());
+  }
+
+  @Test
+  public void testNoHedgeOnceTheRequestFailed() {
+    CompletableFuture<String> result = call();
+
+    requests.get(0).completeExceptionally(new IllegalStateException("first"));
+    Assert.assertTrue(result.isCompletedExceptionally());
+    // the hedge is cancelled
+    Assert.assertNull(hedge);
+    Assert.assertEquals(1, requests.size());
+    Assert.assertEquals(0, hedged.get());
+  }
+
+  @Test
+  public void testNoHedgeOnceAnswered() {
+    CompletableFuture<String> result = call();
+    requests.get(0).complete("first");
+    Assert.assertEquals("first", result.join());
+    Assert.assertNull(hedge);
+    Assert.assertEquals(0, hedged.get());
+  }
+}
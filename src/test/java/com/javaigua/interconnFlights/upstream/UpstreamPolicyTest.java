@@ -0,0 +1,44 @@
+package com.javaigua.interconnFlights.upstream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.scalatest.junit.JUnitSuite;
+
+import com.javaigua.interconnFlights.metrics.Histogram;
+
+/**
+ * A test suit for the UpstreamPolicy class.
+ */
+public class UpstreamPolicyTest extends JUnitSuite {
+
+  private final UpstreamPolicy policy = new UpstreamPolicy(true, 90D, 10L, 50L, 2000L, true, 5, 10000L, 10000L);
+
+  @Test
+  public void testHedgesAfterTheLatencyPercentile() {
+    Histogram latencies = new Histogram();
+    // 90% of the calls answered within 200 millis
+    for (int i = 0; i < 90; i++) latencies.record(200000L);
+    for (int i = 0; i < 10; i++) latencies.record(5000000L);
+
+    long delay = policy.hedgeDelayMillis(latencies);
+    Assert.assertTrue(delay >= 200L && delay < 210L);
+  }
+
+  @Test
+  public void testHedgeDelayIsBounded() {
+    Histogram latencies = new Histogram();
+    // the maximum delay until enough latencies are recorded
+    latencies.record(1000L);
+    Assert.assertEquals(2000L, policy.hedgeDelayMillis(latencies));
+
+    for (int i = 0; i < 100; i++) latencies.record(1000L);
+    Assert.assertEquals(50L, policy.hedgeDelayMillis(latencies));
+    for (int i = 0; i < 1000; i++) latencies.record(60000000L);
+    Assert.assertEquals(2000L, policy.hedgeDelayMillis(latencies));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDelayBoundsAreRejected() {
+    new UpstreamPolicy(true, 90D, 10L, 500L, 100L, true, 5, 10000L, 10000L);
+  }
+}